@@ -20,3 +20,13 @@ CREATE TABLE IF NOT EXISTS paiement (
         FOREIGN KEY (inscription_id) REFERENCES inscription(id)
         ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 3. Suivi asynchrone des paiements en ligne (Stripe / Flouci)
+--    (ajouté automatiquement par PaiementService.ensureSchema() si absent)
+ALTER TABLE paiement
+    ADD COLUMN provider_ref   VARCHAR(128) NULL COMMENT 'session Stripe | payment_id Flouci' AFTER reference_code,
+    ADD COLUMN check_attempts INT NOT NULL DEFAULT 0 AFTER provider_ref,
+    ADD COLUMN next_check_at  DATETIME NULL AFTER check_attempts,
+    ADD COLUMN expires_at     DATETIME NULL AFTER next_check_at,
+    ADD COLUMN last_error     VARCHAR(255) NULL AFTER expires_at,
+    ADD KEY idx_paiement_statut_check (statut, next_check_at);
@@ -3,8 +3,6 @@ package controllers.back.analytics;
 import analytics.AnalyticsResult;
 import analytics.StatEngine;
 import javafx.animation.*;
-import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -16,6 +14,7 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.util.Duration;
+import utils.ui.UiTasks;
 
 import java.util.*;
 
@@ -78,32 +77,22 @@ public class AnalyticsDashboardController {
     };
 
     private AnalyticsResult result;
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("AnalyticsDashboard");
 
     // ════════════════════════════════════════════════════════════════
 
     @FXML
     public void initialize() {
         showLoading(true);
-        Task<AnalyticsResult> task = new Task<>() {
-            @Override
-            protected AnalyticsResult call() {
-                return new StatEngine().compute();
-            }
-        };
-        task.setOnSucceeded(e -> {
-            result = task.getValue();
-            Platform.runLater(() -> {
-                showLoading(false);
-                renderAll();
-            });
-        });
-        task.setOnFailed(e -> {
-            Platform.runLater(() -> {
-                showLoading(false);
-                showError(task.getException().getMessage());
-            });
+        tasks.bindTo(rootBox);
+        tasks.load(() -> new StatEngine().compute(), r -> {
+            result = r;
+            showLoading(false);
+            renderAll();
+        }, e -> {
+            showLoading(false);
+            showError(e.getMessage());
         });
-        new Thread(task, "analytics-engine").start();
     }
 
     // ════════════════════════════════════════════════════════════════
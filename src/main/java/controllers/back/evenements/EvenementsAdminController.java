@@ -2,10 +2,7 @@ package controllers.back.evenements;
 
 import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
-import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.CacheHint;
@@ -22,20 +19,32 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 import models.evenements.Evenement;
 import models.evenements.Inscription;
+import models.evenements.Paiement;
 import models.evenements.Ticket;
 import models.lieux.Lieu;
 import models.users.User;
 import services.evenements.EvenementService;
+import services.evenements.EventStatsRebuildJob;
+import services.evenements.EventStatsService;
 import services.evenements.ICalendarService;
+import services.evenements.IcsFeedServer;
 import services.evenements.NotionCalendarService;
 import services.evenements.InscriptionService;
+import services.evenements.InterestSnapshotService;
+import services.evenements.PaiementService;
 import services.evenements.RecommendationService;
 import services.evenements.TicketService;
+import services.evenements.WeatherPrefetchService;
 import services.evenements.WeatherService;
 import utils.Mydb;
+import utils.payment.TicketBatchPdfGenerator;
+import utils.payment.TicketPdfGenerator;
+import utils.ui.UiTasks;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -50,8 +59,10 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
@@ -71,8 +82,9 @@ public class EvenementsAdminController {
     @FXML private ComboBox<String> filterCombo;
     @FXML private TextField        searchField;
     @FXML private Button           btnAdd;
-    @FXML private ScrollPane       cardsScroll;
-    @FXML private TilePane         cardsPane;
+    @FXML private ComboBox<String> sortCombo;
+    /** Liste virtualisée : une ligne = une rangée de cartes, seules les rangées visibles sont construites. */
+    @FXML private ListView<List<Evenement>> cardsList;
     @FXML private Label kpiTotal;
     @FXML private Label kpiOuverts;
     @FXML private Label kpiInscriptions;
@@ -102,20 +114,40 @@ public class EvenementsAdminController {
     private final EvenementService   evenementService   = new EvenementService();
     private final InscriptionService inscriptionService = new InscriptionService();
     private final TicketService      ticketService      = new TicketService();
+    private final PaiementService    paiementService    = new PaiementService();
     private final RecommendationService recommendationService = new RecommendationService();
+    private final InterestSnapshotService interestSnapshotService = new InterestSnapshotService();
     private final WeatherService     weatherService     = new WeatherService();
+    private final EventStatsService  eventStatsService  = new EventStatsService();
     private final ICalendarService icsService = ICalendarService.getInstance();
     private final NotionCalendarService notionService = NotionCalendarService.getInstance();
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("EvenementsAdmin");
     private List<Lieu> allLieux = List.of();
     private List<User> allUsers = List.of();
-
-    private final ObservableList<Evenement> masterList   = FXCollections.observableArrayList();
-    private final FilteredList<Evenement>  filteredList = new FilteredList<>(masterList, p -> true);
+    /** Compteurs matérialisés (inscriptions, tickets, revenu) des événements affichés, lus par lot. */
+    private final Map<Integer, EventStatsService.EventStats> statsByEvent = new HashMap<>();
+
+    // Liste paginée (keyset) : seules les pages parcourues sont en mémoire
+    static final int PAGE_SIZE = 30;               // multiple de 1, 2 et 3 colonnes : pas de rangée à cheval
+    private static final int PREFETCH_ROWS = 3;    // rangées restantes sous lesquelles on ajoute la page suivante
+    private final List<Evenement> loadedEvents = new ArrayList<>();
+    private EvenementService.PageQuery pageQuery = EvenementService.PageQuery.all();
+    private EvenementService.PageCursor nextCursor = null;
+    private UiTasks.Handle prefetch = null;          // page suivante en cours de lecture (ou déjà lue)
+    private LoadedPage prefetchedPage = null;       // page suivante arrivée, pas encore affichée
+    private boolean appending = false;             // la liste attend la page suivante
+    private boolean appendQueued = false;          // ajout demandé par une cellule, pas encore exécuté
+    private long pageGeneration = 0;               // invalide les pages d'une requête précédente
+    private int cardColumns = 3;
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(250));
+
+    // Calendrier : seuls les événements du mois affiché (et de ses bords)
+    private List<Evenement> calendarEvents = List.of();
 
     private Evenement   currentEvent       = null;
     private Inscription currentInscription = null;
     private Node        selectedCard       = null;
-    private double      lastViewportW      = -1;
+    private int         selectedEventId    = -1;
 
     // Calendar state
     private YearMonth calCurrentMonth = YearMonth.now();
@@ -139,6 +171,14 @@ public class EvenementsAdminController {
 
     @FXML
     public void initialize() {
+        tasks.bindTo(panelEvents);
+        // Vue quittée : le préchargement interrompu sera relancé au prochain défilement
+        tasks.onCancel(() -> {
+            prefetch = null;
+            appending = false;
+        });
+        WeatherPrefetchService.getInstance().start();
+        EventStatsRebuildJob.getInstance().start();
         // Load additional calendar stylesheet
         if (panelCalendar != null && panelCalendar.getScene() != null) {
             panelCalendar.getScene().getStylesheets().add(
@@ -157,7 +197,7 @@ public class EvenementsAdminController {
         }
         setupFilterCombo();
         setupSearchFilter();
-        setupResponsiveTiles();
+        setupCardsList();
         allLieux = loadAllLieux();
         allUsers = loadAllUsers();
         loadData();
@@ -175,60 +215,93 @@ public class EvenementsAdminController {
             }
         }
         // Test connection on startup and log DB properties for debugging
-        new Thread(() -> {
-            boolean ok = notionService.testConnection();
-            javafx.application.Platform.runLater(() -> {
-                if (calNotionStatus != null) {
-                    calNotionStatus.setText(ok ? "☁ Notion connecté ✅" : "☁ Notion ❌ " + notionService.getLastError());
-                }
-            });
-        }).start();
+        tasks.background(notionService::testConnection, ok -> {
+            if (calNotionStatus != null) {
+                calNotionStatus.setText(ok ? "☁ Notion connecté ✅" : "☁ Notion ❌ " + notionService.getLastError());
+            }
+        });
     }
 
     private void setupFilterCombo() {
         filterCombo.setItems(FXCollections.observableArrayList("Titre", "Statut", "Type"));
         filterCombo.getSelectionModel().select("Titre");
-        filterCombo.valueProperty().addListener((obs, o, n) -> renderCards(filteredList));
+        filterCombo.valueProperty().addListener((obs, o, n) -> reloadPages());
+        if (sortCombo != null) {
+            sortCombo.setItems(FXCollections.observableArrayList("Date ↓", "Date ↑", "Titre A→Z"));
+            sortCombo.getSelectionModel().select("Date ↓");
+            sortCombo.valueProperty().addListener((obs, o, n) -> reloadPages());
+        }
     }
 
     private void setupSearchFilter() {
-        searchField.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredList.setPredicate(ev -> matchesFilter(ev, newVal));
-            renderCards(filteredList);
-        });
+        // Le filtre part en SQL : on attend une pause de frappe avant de relancer la requête
+        searchDebounce.setOnFinished(ev -> reloadPages());
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
     }
 
-    private boolean matchesFilter(Evenement e, String q) {
-        String query = (q == null) ? "" : q.trim().toLowerCase();
-        if (query.isEmpty()) return true;
-        return switch (filterCombo.getValue() == null ? "Titre" : filterCombo.getValue()) {
-            case "Statut" -> contains(e.getStatut(), query);
-            case "Type"   -> contains(e.getType(),   query);
-            default       -> contains(e.getTitre(),  query);
+    private EvenementService.PageQuery currentPageQuery() {
+        EvenementService.FilterField field = switch (filterCombo.getValue() == null ? "Titre" : filterCombo.getValue()) {
+            case "Statut" -> EvenementService.FilterField.STATUT;
+            case "Type"   -> EvenementService.FilterField.TYPE;
+            default       -> EvenementService.FilterField.TITRE;
         };
+        String sortLabel = sortCombo == null || sortCombo.getValue() == null ? "Date ↓" : sortCombo.getValue();
+        EvenementService.SortOrder sort = switch (sortLabel) {
+            case "Date ↑"    -> EvenementService.SortOrder.DATE_ASC;
+            case "Titre A→Z" -> EvenementService.SortOrder.TITRE_ASC;
+            default          -> EvenementService.SortOrder.DATE_DESC;
+        };
+        return new EvenementService.PageQuery(field, searchField.getText(), sort);
+    }
+
+    private void setupCardsList() {
+        if (cardsList == null) return;
+        cardsList.setFocusTraversable(false);
+        cardsList.setSelectionModel(null);
+        cardsList.setPlaceholder(emptyLabel("Aucun événement trouvé."));
+        cardsList.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(List<Evenement> row, boolean empty) {
+                super.updateItem(row, empty);
+                setText(null);
+                if (empty || row == null) {
+                    setGraphic(null);
+                    return;
+                }
+                HBox box = new HBox(16);
+                box.setPadding(new Insets(8, 8, 8, 8));
+                for (Evenement e : row) {
+                    Node card = createEventCard(e);
+                    HBox.setHgrow(card, Priority.ALWAYS);
+                    box.getChildren().add(card);
+                }
+                setGraphic(box);
+                // Rangée proche de la fin : on ajoute la page suivante (déjà préchargée en général)
+                if (getIndex() >= lv.getItems().size() - PREFETCH_ROWS) requestNextPage();
+            }
+        });
+        cardsList.widthProperty().addListener((obs, o, w) -> {
+            int cols = columnsFor(w.doubleValue());
+            if (cols != cardColumns) {
+                cardColumns = cols;
+                cardsList.getItems().setAll(chunk(loadedEvents, cardColumns));
+            }
+        });
     }
 
-    private boolean contains(String s, String q) {
-        return s != null && s.toLowerCase().contains(q);
+    /** Nombre de cartes par rangée (1 à 3) selon la largeur disponible. */
+    static int columnsFor(double width) {
+        if (width <= 0) return 3;
+        int cols = (int) ((width - 36) / (CARD_MIN_W + 16));
+        return Math.max(1, Math.min(3, cols));
     }
 
-    private void setupResponsiveTiles() {
-        if (cardsScroll == null || cardsPane == null) return;
-        cardsScroll.setFitToWidth(true);
-        cardsScroll.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
-        cardsScroll.viewportBoundsProperty().addListener((obs, oldB, b) -> {
-            if (b == null) return;
-            double w = b.getWidth();
-            if (lastViewportW > 0 && Math.abs(w - lastViewportW) < 0.5) return;
-            lastViewportW = w;
-            double tileW = Math.max(CARD_MIN_W, (w - 16 - 36) / 3.0);
-            cardsPane.setPrefTileWidth(tileW);
-        });
-        Bounds b = cardsScroll.getViewportBounds();
-        if (b != null && b.getWidth() > 0) {
-            double tileW = Math.max(CARD_MIN_W, (b.getWidth() - 16 - 36) / 3.0);
-            cardsPane.setPrefTileWidth(tileW);
+    static <T> List<List<T>> chunk(List<T> items, int size) {
+        List<List<T>> rows = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            rows.add(List.copyOf(items.subList(i, Math.min(items.size(), i + size))));
         }
+        return rows;
     }
 
     // ═══════════════════════════════════════════════════════════
@@ -237,11 +310,7 @@ public class EvenementsAdminController {
 
     private void loadData() {
         try {
-            masterList.clear();
-            List<Evenement> events = evenementService.search(null, null, null);
-            masterList.addAll(events);
-            updateKpis(events);
-            renderCards(filteredList);
+            reloadPages();   // relit aussi les KPI avec la première page
             // Always refresh calendar so it's up-to-date when user switches to it
             if (calendarContainer != null) {
                 renderCalendar();
@@ -251,38 +320,180 @@ public class EvenementsAdminController {
         }
     }
 
-    private void updateKpis(List<Evenement> events) {
-        if (kpiTotal != null) kpiTotal.setText(String.valueOf(events.size()));
-        if (kpiOuverts != null) {
-            long nb = events.stream()
-                    .filter(e -> "OUVERT".equalsIgnoreCase(safeStr(e.getStatut()))).count();
-            kpiOuverts.setText(String.valueOf(nb));
+    /**
+     * Repart de la première page pour le filtre/tri courant. La première page est
+     * lue en arrière-plan ; la suivante est préchargée dès qu'elle est affichée.
+     */
+    private void reloadPages() {
+        long generation = ++pageGeneration;
+        pageQuery = currentPageQuery();
+        loadedEvents.clear();
+        nextCursor = null;
+        if (prefetch != null) prefetch.cancel();
+        prefetch = null;
+        prefetchedPage = null;
+        appending = false;
+        selectedCard = null;
+        if (cardsList != null) cardsList.getItems().clear();
+
+        EvenementService.PageQuery query = pageQuery;
+        Integer openEventId = currentEvent != null ? currentEvent.getId() : null;
+        tasks.load(() -> new FirstPage(fetchPage(query, null), fetchKpis(openEventId)), first -> {
+            showKpis(first.kpis());
+            if (generation != pageGeneration) return;   // filtre changé entre-temps
+            appendPage(first.page());
+        }, err -> {
+            if (generation != pageGeneration) return;
+            showError("Erreur", "Chargement impossible", rootMessage(err));
+        });
+    }
+
+    /** Une page et les compteurs de ses événements. */
+    private record LoadedPage(EvenementService.EventPage page, Map<Integer, EventStatsService.EventStats> stats) {}
+
+    /** Première page d'une requête, lue avec les KPI dans la même tâche de fond. */
+    private record FirstPage(LoadedPage page, Kpis kpis) {}
+
+    /** KPI globaux ; un champ null signifie que sa requête a échoué (affiché « — »). */
+    private record Kpis(EvenementService.Summary summary, Integer inscriptions,
+                        EventStatsService.EventStats openEvent) {}
+
+    /** Lit une page et ses compteurs (deux requêtes, hors thread UI). */
+    private LoadedPage fetchPage(EvenementService.PageQuery query, EvenementService.PageCursor after) {
+        EvenementService.EventPage page = evenementService.findPage(query, after, PAGE_SIZE);
+        Map<Integer, EventStatsService.EventStats> stats = eventStatsService.getByIds(
+                page.items().stream().map(Evenement::getId).toList());
+        return new LoadedPage(page, stats);
+    }
+
+    private void appendPage(LoadedPage loaded) {
+        EvenementService.EventPage page = loaded.page();
+        statsByEvent.putAll(loaded.stats());
+        loadedEvents.addAll(page.items());
+        nextCursor = page.next();
+        // Les pages font un multiple du nombre de colonnes : les nouvelles rangées se
+        // contentent de s'ajouter, les cellules déjà visibles ne sont pas reconstruites.
+        if (cardsList != null) cardsList.getItems().addAll(chunk(page.items(), cardColumns));
+        prefetchNextPage();
+    }
+
+    private void prefetchNextPage() {
+        if (nextCursor == null || prefetch != null) return;
+        long generation = pageGeneration;
+        EvenementService.PageQuery query = pageQuery;
+        EvenementService.PageCursor after = nextCursor;
+        prefetch = tasks.load(() -> fetchPage(query, after), page -> {
+            if (generation != pageGeneration) return;
+            if (appending) {
+                appending = false;
+                prefetch = null;
+                appendPage(page);
+            } else {
+                prefetchedPage = page;
+            }
+        }, err -> {
+            if (generation != pageGeneration) return;
+            // On garde le curseur : le prochain défilement retentera la page
+            prefetch = null;
+            appending = false;
+            System.err.println("[EvenementsAdmin] Page suivante: " + rootMessage(err));
+        });
+    }
+
+    /**
+     * Demandé par une cellule proche du bas de la liste. Le ListView est alors en pleine
+     * mise en page : l'ajout est reporté après celle-ci, une seule fois par rafale de cellules.
+     */
+    private void requestNextPage() {
+        if (appendQueued) return;
+        appendQueued = true;
+        javafx.application.Platform.runLater(() -> {
+            appendQueued = false;
+            appendNextPage();
+        });
+    }
+
+    /** Ajoute la page préchargée, ou la demande si elle n'est pas encore arrivée. */
+    private void appendNextPage() {
+        if (appending) return;
+        if (prefetchedPage != null) {
+            LoadedPage page = prefetchedPage;
+            prefetchedPage = null;
+            prefetch = null;
+            appendPage(page);
+            return;
         }
+        if (nextCursor == null) return;
+        // Page pas encore arrivée : elle sera ajoutée dès sa réception
+        appending = true;
+        prefetchNextPage();
+    }
+
+    private static String rootMessage(Throwable t) {
+        while (t.getCause() != null) t = t.getCause();
+        return t.getMessage();
+    }
+
+    /** Relit les KPI globaux (tous événements, indépendamment du filtre) en arrière-plan. */
+    private void updateKpis() {
+        Integer openEventId = currentEvent != null ? currentEvent.getId() : null;
+        tasks.load(() -> fetchKpis(openEventId), this::showKpis);
+    }
+
+    /** Deux requêtes d'agrégat, plus les compteurs de l'événement ouvert (hors thread UI). */
+    private Kpis fetchKpis(Integer openEventId) {
+        EvenementService.Summary summary = null;
+        Integer inscriptions = null;
+        EventStatsService.EventStats openEvent = null;
+        try {
+            summary = evenementService.summary(EvenementService.PageQuery.all());
+        } catch (Exception ex) {
+            System.err.println("[EvenementsAdmin] KPI événements: " + ex.getMessage());
+        }
+        try {
+            inscriptions = eventStatsService.totalActives();
+            // L'événement ouvert vient peut-être de changer : on relit ses compteurs
+            if (openEventId != null) openEvent = eventStatsService.get(openEventId);
+        } catch (Exception ex) {
+            System.err.println("[EvenementsAdmin] KPI inscriptions: " + ex.getMessage());
+        }
+        return new Kpis(summary, inscriptions, openEvent);
+    }
+
+    private void showKpis(Kpis kpis) {
+        EvenementService.Summary summary = kpis.summary();
+        if (kpiTotal != null) kpiTotal.setText(summary != null ? String.valueOf(summary.total()) : "—");
+        if (kpiOuverts != null) kpiOuverts.setText(summary != null ? String.valueOf(summary.ouverts()) : "—");
         if (kpiInscriptions != null) {
-            try {
-                int total = events.stream()
-                        .mapToInt(e -> inscriptionService.countByEvent(e.getId())).sum();
-                kpiInscriptions.setText(String.valueOf(total));
-            } catch (Exception ex) { kpiInscriptions.setText("—"); }
+            kpiInscriptions.setText(kpis.inscriptions() != null ? String.valueOf(kpis.inscriptions()) : "—");
+        }
+        if (kpis.openEvent() != null) {
+            statsByEvent.put(kpis.openEvent().eventId(), kpis.openEvent());
+            if (cardsList != null) cardsList.refresh();
         }
     }
 
-    // ═══════════════════════════════════════════════════════════
-    //  PANNEAU 1 — Cards événements
-    // ═══════════════════════════════════════════════════════════
+    private EventStatsService.EventStats statsOf(int eventId) {
+        EventStatsService.EventStats s = statsByEvent.get(eventId);
+        return s != null ? s : EventStatsService.EventStats.empty(eventId);
+    }
 
-    private void renderCards(List<Evenement> events) {
-        cardsPane.getChildren().clear();
-        selectedCard = null;
-        if (events.isEmpty()) {
-            Label empty = new Label("Aucun événement trouvé.");
-            empty.setStyle("-fx-text-fill:rgba(15,42,68,0.65);-fx-font-weight:800;");
-            cardsPane.getChildren().add(empty);
-            return;
+    /** Charge les compteurs manquants d'une liste d'événements en une requête. */
+    private void loadStatsFor(List<Evenement> events) {
+        List<Integer> missing = events.stream().map(Evenement::getId)
+                .filter(id -> !statsByEvent.containsKey(id)).toList();
+        if (missing.isEmpty()) return;
+        try {
+            statsByEvent.putAll(eventStatsService.getByIds(missing));
+        } catch (Exception ex) {
+            System.err.println("[EvenementsAdmin] Compteurs: " + ex.getMessage());
         }
-        for (Evenement e : events) cardsPane.getChildren().add(createEventCard(e));
     }
 
+    // ═══════════════════════════════════════════════════════════
+    //  PANNEAU 1 — Cards événements
+    // ═══════════════════════════════════════════════════════════
+
     private Node createEventCard(Evenement e) {
         VBox card = new VBox(8);
         card.getStyleClass().add("lieu-card");
@@ -331,6 +542,13 @@ public class EvenementsAdminController {
         details.getStyleClass().add("cardLine");
         details.setWrapText(true);
 
+        EventStatsService.EventStats stats = statsOf(e.getId());
+        Label counters = new Label(
+                "📝 " + stats.actives() + " inscrit(s)" + (stats.enAttente() > 0 ? " (" + stats.enAttente() + " en attente)" : "")
+                + "   •   🎟 " + stats.tickets() + "   •   💵 " + String.format(LOCALE_FR, "%.2f", stats.revenu()) + " TND");
+        counters.getStyleClass().add("cardLine");
+        counters.setWrapText(true);
+
         String lieuName = "Sans lieu";
         if (e.getLieuId() != null) {
             lieuName = allLieux.stream()
@@ -368,34 +586,36 @@ public class EvenementsAdminController {
 
             final double finalLat = wLat;
             final double finalLon = wLon;
-            new Thread(() -> {
-                try {
-                    WeatherService.WeatherResult wr = weatherService.getWeather(
-                            finalLat, finalLon, e.getDateDebut(), isOutdoor);
-                    if (wr != null) {
-                        javafx.application.Platform.runLater(() -> {
-                            weatherEstLabel.setText(wr.icon + "  " + wr.attendancePercent + "%");
-                            if (wr.attendancePercent >= 75) {
-                                weatherEstLabel.getStyleClass().add("adminEstGood");
-                            } else if (wr.attendancePercent >= 50) {
-                                weatherEstLabel.getStyleClass().add("adminEstCaution");
-                            } else {
-                                weatherEstLabel.getStyleClass().add("adminEstBad");
-                            }
-                        });
-                    } else {
-                        javafx.application.Platform.runLater(() -> {
-                            weatherEstLabel.setText("⛅  Estimation indisponible");
-                            weatherEstLabel.getStyleClass().add("adminEstNeutral");
-                        });
-                    }
-                } catch (Exception ex) {
-                    javafx.application.Platform.runLater(() -> {
-                        weatherEstLabel.setText("⛅  Estimation indisponible");
-                        weatherEstLabel.getStyleClass().add("adminEstNeutral");
-                    });
+            java.util.function.Consumer<WeatherService.WeatherResult> showEstimate = wr -> {
+                if (wr == null) {
+                    weatherEstLabel.setText("⛅  Estimation indisponible");
+                    weatherEstLabel.getStyleClass().add("adminEstNeutral");
+                    return;
+                }
+                weatherEstLabel.setText(wr.icon + "  " + wr.attendancePercent + "%");
+                if (wr.attendancePercent >= 75) {
+                    weatherEstLabel.getStyleClass().add("adminEstGood");
+                } else if (wr.attendancePercent >= 50) {
+                    weatherEstLabel.getStyleClass().add("adminEstCaution");
+                } else {
+                    weatherEstLabel.getStyleClass().add("adminEstBad");
                 }
-            }).start();
+            };
+
+            // Prévision préchargée → affichage immédiat, sinon appel en arrière-plan
+            WeatherService.WeatherResult cached = weatherService.peekWeather(
+                    finalLat, finalLon, e.getDateDebut(), isOutdoor);
+            if (cached != null) {
+                showEstimate.accept(cached);
+            } else {
+                tasks.background(() -> {
+                    try {
+                        return weatherService.getWeather(finalLat, finalLon, e.getDateDebut(), isOutdoor);
+                    } catch (Exception ignored) {
+                        return null; // estimation indisponible
+                    }
+                }, showEstimate);
+            }
         } else {
             weatherEstLabel.setText("⛅  Date inconnue");
             weatherEstLabel.getStyleClass().add("adminEstNeutral");
@@ -420,14 +640,20 @@ public class EvenementsAdminController {
 
         HBox actions = new HBox(10, btnEdit, btnDel);
         actions.getStyleClass().add("card-actions");
-        card.getChildren().addAll(imgWrap, title, meta, details, lieu, weatherEstLabel, actions);
-        card.setOnMouseClicked(ev -> { selectCard(card); showPanelInscriptions(e); });
+        card.getChildren().addAll(imgWrap, title, meta, details, counters, lieu, weatherEstLabel, actions);
+        // Cellules recyclées : la sélection suit l'événement, pas le nœud
+        if (e.getId() == selectedEventId) {
+            card.getStyleClass().add("selected");
+            selectedCard = card;
+        }
+        card.setOnMouseClicked(ev -> { selectCard(card, e); showPanelInscriptions(e); });
         return card;
     }
 
-    private void selectCard(Node card) {
+    private void selectCard(Node card, Evenement e) {
         if (selectedCard != null) selectedCard.getStyleClass().remove("selected");
         selectedCard = card;
+        selectedEventId = e.getId();
         card.getStyleClass().add("selected");
     }
 
@@ -858,6 +1084,8 @@ public class EvenementsAdminController {
         aiStatusLabel.setVisible(false);
         aiStatusLabel.setManaged(false);
 
+        // Lié au formulaire : fermer l'éditeur abandonne le téléchargement en cours
+        UiTasks.Scope aiTasks = UiTasks.scope(imgWrap);
         btnGenerateAI.setOnAction(e -> {
             String desc = safeStr(taDesc.getText()).trim();
             String titre = safeStr(tfTitre.getText()).trim();
@@ -877,41 +1105,34 @@ public class EvenementsAdminController {
             aiStatusLabel.setVisible(true);
             aiStatusLabel.setManaged(true);
 
-            java.util.concurrent.CompletableFuture.supplyAsync(() -> {
-                return downloadAIImage(searchText);
-            }).thenAccept(savedPath -> {
-                javafx.application.Platform.runLater(() -> {
-                    pickedPath[0] = savedPath;
-                    imgPath.setText(new java.io.File(savedPath).getName());
-                    Image im = loadImageOrNull(savedPath);
-                    imgPrev.setImage(im);
-                    boolean empty2 = (im == null);
-                    imgEmpty.setVisible(empty2);
-                    imgEmpty.setManaged(empty2);
-                    applyPreviewImageIfChanged.run();
-                    schedulePreview.run();
-
-                    btnGenerateAI.setText("\u2728 Générer par IA");
-                    btnGenerateAI.setDisable(false);
-                    aiSpinner.setVisible(false);
-                    aiSpinner.setManaged(false);
-                    aiStatusLabel.setText("\u2705 Image générée !");
-                    PauseTransition hideStatus = new PauseTransition(Duration.seconds(3));
-                    hideStatus.setOnFinished(ev -> { aiStatusLabel.setVisible(false); aiStatusLabel.setManaged(false); });
-                    hideStatus.play();
-                });
-            }).exceptionally(ex -> {
-                javafx.application.Platform.runLater(() -> {
-                    showError("Génération IA", "Échec de la génération",
-                            "Aucun serveur d'images n'a pu répondre.\n" + ex.getMessage());
-                    btnGenerateAI.setText("\u2728 Générer par IA");
-                    btnGenerateAI.setDisable(false);
-                    aiSpinner.setVisible(false);
-                    aiSpinner.setManaged(false);
-                    aiStatusLabel.setVisible(false);
-                    aiStatusLabel.setManaged(false);
-                });
-                return null;
+            aiTasks.load(() -> downloadAIImage(searchText), savedPath -> {
+                pickedPath[0] = savedPath;
+                imgPath.setText(new java.io.File(savedPath).getName());
+                Image im = loadImageOrNull(savedPath);
+                imgPrev.setImage(im);
+                boolean empty2 = (im == null);
+                imgEmpty.setVisible(empty2);
+                imgEmpty.setManaged(empty2);
+                applyPreviewImageIfChanged.run();
+                schedulePreview.run();
+
+                btnGenerateAI.setText("\u2728 Générer par IA");
+                btnGenerateAI.setDisable(false);
+                aiSpinner.setVisible(false);
+                aiSpinner.setManaged(false);
+                aiStatusLabel.setText("\u2705 Image générée !");
+                PauseTransition hideStatus = new PauseTransition(Duration.seconds(3));
+                hideStatus.setOnFinished(ev -> { aiStatusLabel.setVisible(false); aiStatusLabel.setManaged(false); });
+                hideStatus.play();
+            }, ex -> {
+                showError("Génération IA", "Échec de la génération",
+                        "Aucun serveur d'images n'a pu répondre.\n" + rootMessage(ex));
+                btnGenerateAI.setText("\u2728 Générer par IA");
+                btnGenerateAI.setDisable(false);
+                aiSpinner.setVisible(false);
+                aiSpinner.setManaged(false);
+                aiStatusLabel.setVisible(false);
+                aiStatusLabel.setManaged(false);
             });
         });
 
@@ -993,6 +1214,8 @@ public class EvenementsAdminController {
                 dialog.close();
             } catch (IllegalArgumentException ex) {
                 showError("Erreur", "Données invalides", ex.getMessage());
+            } catch (IllegalStateException ex) {
+                showError("Conflit", "Lieu indisponible", ex.getMessage());
             } catch (Exception ex) {
                 showError("Erreur", "Enregistrement impossible", ex.getMessage());
             }
@@ -1316,13 +1539,13 @@ public class EvenementsAdminController {
         btnAnnuler.getStyleClass().add("card-btn");
         btnTickets.getStyleClass().add("card-btn");
         btnDel.getStyleClass().addAll("card-btn", "danger");
-        btnConfirm.setOnAction(e -> { inscriptionService.updateStatut(ins.getId(), "CONFIRMEE"); reloadInscriptions(); refreshPlacesInfo(); updateKpis(masterList); });
-        btnAnnuler.setOnAction(e -> { inscriptionService.updateStatut(ins.getId(), "ANNULEE");   reloadInscriptions(); refreshPlacesInfo(); updateKpis(masterList); });
+        btnConfirm.setOnAction(e -> { inscriptionService.updateStatut(ins.getId(), "CONFIRMEE"); reloadInscriptions(); refreshPlacesInfo(); updateKpis(); });
+        btnAnnuler.setOnAction(e -> { inscriptionService.updateStatut(ins.getId(), "ANNULEE");   reloadInscriptions(); refreshPlacesInfo(); updateKpis(); });
         btnTickets.setOnAction(e -> showPanelTickets(ins));
         btnDel.setOnAction(e -> {
             if (!confirmDelete("Supprimer cette inscription ?")) return;
             inscriptionService.delete(ins.getId());
-            reloadInscriptions(); refreshPlacesInfo(); updateKpis(masterList);
+            reloadInscriptions(); refreshPlacesInfo(); updateKpis();
         });
         HBox actions = new HBox(10, btnConfirm, btnAnnuler, btnTickets, btnDel);
         actions.getStyleClass().add("card-actions");
@@ -1395,7 +1618,7 @@ public class EvenementsAdminController {
             }
             try {
                 inscriptionService.addInscription(currentEvent.getId(), sel.getId(), 0.0f);
-                reloadInscriptions(); refreshPlacesInfo(); updateKpis(masterList);
+                reloadInscriptions(); refreshPlacesInfo(); updateKpis();
                 dialog.close();
             } catch (IllegalStateException ex) { showWarning(ex.getMessage()); }
             catch (Exception ex) { showError("Erreur", "Inscription impossible", ex.getMessage()); }
@@ -1410,6 +1633,91 @@ public class EvenementsAdminController {
         dialog.showAndWait();
     }
 
+    /**
+     * Exporte dans un ZIP les tickets PDF des inscriptions payées de l'événement.
+     * Rendu parallèle en arrière-plan ; affiche le débit (tickets/s) et les inscriptions écartées.
+     */
+    @FXML
+    public void onExportTicketsZip() {
+        if (currentEvent == null) { showWarning("Aucun événement sélectionné."); return; }
+        Evenement ev = currentEvent;
+
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Exporter les tickets (.zip)");
+        fc.setInitialFileName("Tickets_evenement_" + ev.getId() + ".zip");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Archive ZIP (*.zip)", "*.zip"));
+        File file = fc.showSaveDialog(panelInscriptions.getScene().getWindow());
+        if (file == null) return;
+
+        String lieuName = ev.getLieuId() != null ? resolveLieuName(ev.getLieuId()) : null;
+        Map<Integer, User> usersById = allUsers.stream()
+                .collect(Collectors.toMap(User::getId, u -> u, (a, b) -> a));
+
+        // Écriture : l'archive est menée à terme même si l'on quitte l'onglet
+        tasks.write(() -> {
+            TicketExport export = buildTicketJobs(ev, usersById);
+            if (export.jobs().isEmpty()) return export;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+                return export.withResult(TicketBatchPdfGenerator.generateZip(out, ev, lieuName, export.jobs(), 0));
+            }
+        }, done -> {
+            String skippedNote = done.skipped() > 0
+                    ? "\n" + done.skipped() + " inscription(s) sans paiement confirmé ou sans ticket écartée(s)."
+                    : "";
+            TicketBatchPdfGenerator.BatchResult r = done.result();
+            if (r == null) {
+                showWarning("Aucune inscription payée avec ticket pour cet événement." + skippedNote);
+                return;
+            }
+            showInfo("Export tickets",
+                    "✅ " + r.tickets() + " ticket(s) exporté(s)",
+                    "Fichier : " + file.getAbsolutePath()
+                            + String.format(Locale.ROOT, "\n\n%d ms — %.1f tickets/s — %d Ko",
+                            r.elapsedMs(), r.ticketsPerSecond(), r.zipBytes() / 1024)
+                            + skippedNote);
+        }, ex -> showError("Export tickets", "Erreur d'export", ex.getMessage()));
+    }
+
+    /**
+     * Tickets à exporter, nombre d'inscriptions actives écartées (non payées ou sans ticket)
+     * et, une fois le ZIP écrit, le résultat du lot.
+     */
+    private record TicketExport(List<TicketBatchPdfGenerator.TicketJob> jobs, int skipped,
+                                TicketBatchPdfGenerator.BatchResult result) {
+        TicketExport withResult(TicketBatchPdfGenerator.BatchResult r) {
+            return new TicketExport(jobs, skipped, r);
+        }
+    }
+
+    /**
+     * Un job par inscription active dont le dernier paiement est PAYE et qui a une ligne ticket :
+     * pas de ticket d'apparence valide pour une place non payée.
+     * Paiements et tickets chargés en une requête chacun.
+     */
+    private TicketExport buildTicketJobs(Evenement ev, Map<Integer, User> usersById) {
+        Map<Integer, Paiement> paiements = paiementService.getLatestByEventId(ev.getId());
+        Map<Integer, Integer> firstTicketByInscription = new HashMap<>();
+        for (Ticket t : ticketService.getByEventId(ev.getId())) {
+            firstTicketByInscription.merge(t.getInscriptionId(), t.getId(), Math::min);
+        }
+
+        List<TicketBatchPdfGenerator.TicketJob> jobs = new ArrayList<>();
+        int skipped = 0;
+        for (Inscription ins : inscriptionService.getByEventId(ev.getId())) {
+            if ("ANNULEE".equalsIgnoreCase(ins.getStatut())) continue;
+            Paiement p = paiements.get(ins.getId());
+            Integer ticketId = firstTicketByInscription.get(ins.getId());
+            if (p == null || !PaiementService.STATUT_PAYE.equals(p.getStatut())
+                    || p.getReferenceCode() == null || ticketId == null) {
+                skipped++;
+                continue;
+            }
+            jobs.add(new TicketBatchPdfGenerator.TicketJob(ins, p, usersById.get(ins.getUserId()),
+                    TicketPdfGenerator.ticketCode(ticketId, p)));
+        }
+        return new TicketExport(jobs, skipped, null);
+    }
+
     private void refreshPlacesInfo() {
         if (currentEvent == null) { placesInfo.setText(""); return; }
         // ✅ Places = capaciteMax − total tickets (pas inscriptions)
@@ -1588,6 +1896,14 @@ public class EvenementsAdminController {
     }
 
     private void loadStatsData() {
+        loadStatsData(false);
+    }
+
+    /**
+     * @param forceRebuild true pour recalculer le snapshot des intérêts (batch fork-join),
+     *                     false pour relire le dernier snapshot persisté.
+     */
+    private void loadStatsData(boolean forceRebuild) {
         if (statsContainer == null) return;
         statsContainer.getChildren().clear();
 
@@ -1596,58 +1912,63 @@ public class EvenementsAdminController {
         loadingLabel.setStyle("-fx-text-fill: #1a4a7a; -fx-font-size: 14px; -fx-font-weight: 800;");
         statsContainer.getChildren().add(loadingLabel);
 
-        new Thread(() -> {
-            try {
-                // Analyser les intérêts de tous les users
-                java.util.Map<String, Integer> globalInterests =
-                        recommendationService.analyzeAllUsersInterests(allUsers);
-
-                // Stats sur les inscriptions par événement
-                java.util.Map<String, Integer> eventPopularity = new java.util.LinkedHashMap<>();
-                for (Evenement ev : masterList) {
-                    int count = inscriptionService.countByEvent(ev.getId());
-                    if (count > 0) {
-                        eventPopularity.put(truncateText(safeStr(ev.getTitre()), 25), count);
-                    }
+        tasks.load(() -> {
+            // Intérêts de tous les users : lus depuis le snapshot, recalculés en batch si absent
+            java.time.LocalDateTime snapshotAt = interestSnapshotService.getComputedAt();
+            if (forceRebuild || snapshotAt == null) {
+                snapshotAt = interestSnapshotService.rebuild(allUsers);
+            }
+            java.util.Map<String, Integer> globalInterests = interestSnapshotService.getGlobalInterests(15);
+            final java.time.LocalDateTime computedAt = snapshotAt;
+
+            // Stats sur les inscriptions par événement
+            java.util.Map<String, Integer> eventPopularity = new java.util.LinkedHashMap<>();
+            java.util.Map<Integer, EventStatsService.EventStats> stats = eventStatsService.getAll();
+            List<Evenement> allEvents = evenementService.getAll();
+            for (Evenement ev : allEvents) {
+                EventStatsService.EventStats st = stats.get(ev.getId());
+                int count = st == null ? 0 : st.actives();
+                if (count > 0) {
+                    eventPopularity.put(truncateText(safeStr(ev.getTitre()), 25), count);
                 }
-                // Trier par popularité
-                java.util.Map<String, Integer> sortedPopularity = eventPopularity.entrySet().stream()
-                        .sorted(java.util.Map.Entry.<String, Integer>comparingByValue().reversed())
-                        .limit(10)
-                        .collect(java.util.stream.Collectors.toMap(
-                                java.util.Map.Entry::getKey, java.util.Map.Entry::getValue,
-                                (a, b) -> a, java.util.LinkedHashMap::new));
-
-                // Stats générales
-                int totalUsers = allUsers.size();
-                int totalEvents = masterList.size();
-                int totalInscriptions = masterList.stream()
-                        .mapToInt(e -> inscriptionService.countByEvent(e.getId())).sum();
-                long usersWithInscriptions = allUsers.stream()
-                        .filter(u -> masterList.stream()
-                                .anyMatch(ev -> inscriptionService.existsForUser(ev.getId(), u.getId())))
-                        .count();
-                double engagementRate = totalUsers > 0
-                        ? (double) usersWithInscriptions / totalUsers * 100 : 0;
-
-                javafx.application.Platform.runLater(() ->
-                        renderStats(globalInterests, sortedPopularity,
-                                totalUsers, totalEvents, totalInscriptions, engagementRate));
-            } catch (Exception e) {
-                javafx.application.Platform.runLater(() -> {
-                    statsContainer.getChildren().clear();
-                    Label err = new Label("❌ Erreur: " + e.getMessage());
-                    err.setStyle("-fx-text-fill: #e53e3e; -fx-font-weight: 800;");
-                    statsContainer.getChildren().add(err);
-                });
             }
-        }).start();
+            // Trier par popularité
+            java.util.Map<String, Integer> sortedPopularity = eventPopularity.entrySet().stream()
+                    .sorted(java.util.Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(10)
+                    .collect(java.util.stream.Collectors.toMap(
+                            java.util.Map.Entry::getKey, java.util.Map.Entry::getValue,
+                            (a, b) -> a, java.util.LinkedHashMap::new));
+
+            // Stats générales
+            int totalUsers = allUsers.size();
+            int totalEvents = allEvents.size();
+            int totalInscriptions = allEvents.stream()
+                    .map(e -> stats.get(e.getId()))
+                    .filter(Objects::nonNull)
+                    .mapToInt(EventStatsService.EventStats::actives).sum();
+            java.util.Set<Integer> inscribedUserIds = inscriptionService.getEventIdsGroupedByUser().keySet();
+            long usersWithInscriptions = allUsers.stream()
+                    .filter(u -> inscribedUserIds.contains(u.getId()))
+                    .count();
+            double engagementRate = totalUsers > 0
+                    ? (double) usersWithInscriptions / totalUsers * 100 : 0;
+
+            return (Runnable) () -> renderStats(globalInterests, sortedPopularity,
+                    totalUsers, totalEvents, totalInscriptions, engagementRate, computedAt);
+        }, Runnable::run, e -> {
+            statsContainer.getChildren().clear();
+            Label err = new Label("❌ Erreur: " + e.getMessage());
+            err.setStyle("-fx-text-fill: #e53e3e; -fx-font-weight: 800;");
+            statsContainer.getChildren().add(err);
+        });
     }
 
     private void renderStats(java.util.Map<String, Integer> interests,
                              java.util.Map<String, Integer> popularity,
                              int totalUsers, int totalEvents,
-                             int totalInscriptions, double engagementRate) {
+                             int totalInscriptions, double engagementRate,
+                             java.time.LocalDateTime interestsComputedAt) {
         statsContainer.getChildren().clear();
 
         // ═══ KPI Cards ═══
@@ -1669,6 +1990,18 @@ public class EvenementsAdminController {
         interestsTitle.setStyle("-fx-font-size: 16px; -fx-font-weight: 900; -fx-text-fill: #163a5c;");
         interestsSection.getChildren().add(interestsTitle);
 
+        HBox snapshotRow = new HBox(10);
+        snapshotRow.setAlignment(Pos.CENTER_LEFT);
+        Label snapshotInfo = new Label(interestsComputedAt == null ? "Snapshot : —"
+                : "Snapshot du " + interestsComputedAt.format(
+                        java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        snapshotInfo.setStyle("-fx-text-fill: #64748b; -fx-font-weight: 700; -fx-font-size: 11px;");
+        Button refreshSnapshot = new Button("↻ Recalculer");
+        refreshSnapshot.setStyle("-fx-font-size: 11px; -fx-font-weight: 800; -fx-cursor: hand;");
+        refreshSnapshot.setOnAction(ev -> loadStatsData(true));
+        snapshotRow.getChildren().addAll(snapshotInfo, refreshSnapshot);
+        interestsSection.getChildren().add(snapshotRow);
+
         if (interests.isEmpty()) {
             Label noData = new Label("Pas encore assez de données d'inscriptions pour analyser les intérêts.");
             noData.setStyle("-fx-text-fill: #94a3b8; -fx-font-weight: 700; -fx-font-size: 12px;");
@@ -1793,7 +2126,8 @@ public class EvenementsAdminController {
      */
     @FXML
     public void onExportAllIcs() {
-        List<Evenement> events = new ArrayList<>(masterList);
+        // Export complet : lu en base, la liste à l'écran ne contient que les pages parcourues
+        List<Evenement> events = evenementService.getAll();
         if (events.isEmpty()) {
             showWarning("Aucun événement à exporter.");
             return;
@@ -1824,6 +2158,33 @@ public class EvenementsAdminController {
         }
     }
 
+    /**
+     * Démarre le flux d'abonnement local et copie son URL : le calendrier abonné
+     * se met à jour tout seul, sans ré-exporter de fichier.
+     */
+    @FXML
+    public void onIcsSubscribe() {
+        IcsFeedServer feed = IcsFeedServer.getInstance();
+        try {
+            try {
+                feed.start(IcsFeedServer.DEFAULT_PORT);
+            } catch (java.net.BindException busy) {
+                feed.start(0);
+            }
+        } catch (IOException ex) {
+            showError("Abonnement ICS", "Serveur de flux indisponible", ex.getMessage());
+            return;
+        }
+        String url = feed.feedUrl(null);
+        javafx.scene.input.ClipboardContent content = new javafx.scene.input.ClipboardContent();
+        content.putString(url);
+        javafx.scene.input.Clipboard.getSystemClipboard().setContent(content);
+        showInfo("Abonnement ICS",
+                "📡 URL d'abonnement copiée",
+                url + "\n\nAjoutez-la dans votre calendrier (« S'abonner à un calendrier »)."
+                + "\nFlux d'un participant : " + IcsFeedServer.getInstance().getBaseUrl() + "/calendar/user/{id}.ics");
+    }
+
     /**
      * Exporter les événements du MOIS affiché au format ICS.
      */
@@ -1832,13 +2193,7 @@ public class EvenementsAdminController {
         LocalDateTime monthStart = calCurrentMonth.atDay(1).atStartOfDay();
         LocalDateTime monthEnd = calCurrentMonth.atEndOfMonth().atTime(23, 59, 59);
 
-        List<Evenement> monthEvents = masterList.stream()
-                .filter(e -> {
-                    if (e.getDateDebut() == null) return false;
-                    LocalDateTime d = e.getDateDebut();
-                    LocalDateTime fin = e.getDateFin() != null ? e.getDateFin() : d;
-                    return !(fin.isBefore(monthStart) || d.isAfter(monthEnd));
-                })
+        List<Evenement> monthEvents = evenementService.findBetween(monthStart, monthEnd).stream()
                 .collect(Collectors.toList());
 
         if (monthEvents.isEmpty()) {
@@ -1987,7 +2342,7 @@ public class EvenementsAdminController {
                 statusLabel.setText("❌ Erreur: " + testTask.getException().getMessage());
                 statusLabel.setStyle("-fx-font-size: 13px; -fx-text-fill: #EA4335;");
             });
-            new Thread(testTask).start();
+            tasks.execute(UiTasks.Priority.USER_VISIBLE, testTask);
         });
 
         btnSave.setOnAction(ev -> {
@@ -2033,7 +2388,7 @@ public class EvenementsAdminController {
             return;
         }
 
-        List<Evenement> events = new ArrayList<>(masterList);
+        List<Evenement> events = evenementService.getAll();
         if (events.isEmpty()) {
             showWarning("Aucun événement à synchroniser.");
             return;
@@ -2047,8 +2402,17 @@ public class EvenementsAdminController {
                 + "• Nouveaux → créés\n"
                 + "• Modifiés → mis à jour\n"
                 + "• Supprimés → retirés de Notion\n"
-                + "Aucun doublon ne sera créé.");
-        if (!confirm.showAndWait().map(r -> r == ButtonType.OK).orElse(false)) return;
+                + "Aucun doublon ne sera créé.\n\n"
+                + "« Depuis la dernière synchro » n'envoie que ce qui a changé ;\n"
+                + "« Complète » relit d'abord toute la base Notion.");
+        ButtonType btnDelta = new ButtonType("Depuis la dernière synchro", ButtonBar.ButtonData.OK_DONE);
+        ButtonType btnFull = new ButtonType("Complète", ButtonBar.ButtonData.OTHER);
+        confirm.getButtonTypes().setAll(btnDelta, btnFull, ButtonType.CANCEL);
+        ButtonType choice = confirm.showAndWait().orElse(ButtonType.CANCEL);
+        if (choice != btnDelta && choice != btnFull) return;
+        NotionCalendarService.SyncMode mode = choice == btnFull
+                ? NotionCalendarService.SyncMode.FULL
+                : NotionCalendarService.SyncMode.INCREMENTAL;
 
         // Show a progress alert
         Alert progressAlert = new Alert(Alert.AlertType.INFORMATION);
@@ -2058,8 +2422,8 @@ public class EvenementsAdminController {
         progressAlert.getButtonTypes().setAll(ButtonType.CANCEL);
         progressAlert.show();
 
-        // ALL Notion work happens in the background thread
-        Thread syncThread = new Thread(() -> {
+        // ALL Notion work happens in the background (write: never dropped on navigation)
+        tasks.write(() -> {
             try {
                 // Step 1: Test connection + prepare DB schema
                 System.out.println("[Notion] === SYNC THREAD START ===");
@@ -2076,7 +2440,10 @@ public class EvenementsAdminController {
 
                 // Step 2: Sync
                 System.out.println("[Notion] === Connection OK, starting sync ===");
-                NotionCalendarService.SyncResult result = notionService.syncAll(events, lieuId -> resolveLieuName(lieuId));
+                NotionCalendarService.SyncResult result = notionService.sync(events,
+                        lieuId -> resolveLieuName(lieuId), mode,
+                        (done, total, current) -> javafx.application.Platform.runLater(() ->
+                                progressAlert.setContentText(done + " / " + total + "  —  " + current)));
                 System.out.println("[Notion] === SYNC THREAD DONE: " + result + " ===");
 
                 javafx.application.Platform.runLater(() -> {
@@ -2090,6 +2457,8 @@ public class EvenementsAdminController {
                         msg.append("🗑️ ").append(result.deleted).append(" orphelin(s) supprimé(s) de Notion\n");
                     if (result.created == 0 && result.updated == 0 && result.deleted == 0 && result.failed == 0)
                         msg.append("✅ Tout est déjà à jour — aucun changement\n");
+                    if (result.skipped > 0)
+                        msg.append("⏭ ").append(result.skipped).append(" événement(s) inchangé(s), non renvoyé(s)\n");
                     if (result.failed > 0) {
                         msg.append("\n❌ ").append(result.failed).append(" échec(s)\n");
                         if (!result.errors.isEmpty()) {
@@ -2099,6 +2468,7 @@ public class EvenementsAdminController {
                             }
                         }
                     }
+                    msg.append("\n⏱ ").append(result.durationMs / 1000.0).append(" s");
                     msg.append("\n📋 Retrouvez vos événements sur notion.so");
                     showInfo("Synchronisation Notion", result.toString(), msg.toString());
                 });
@@ -2112,8 +2482,6 @@ public class EvenementsAdminController {
                 });
             }
         });
-        syncThread.setDaemon(true);
-        syncThread.start();
     }
     /**
      * Vider la base Notion (archiver toutes les pages).
@@ -2132,15 +2500,9 @@ public class EvenementsAdminController {
             return;
         }
 
-        javafx.concurrent.Task<Integer> clearTask = new javafx.concurrent.Task<>() {
-            @Override protected Integer call() { return notionService.clearAll(); }
-        };
-        clearTask.setOnSucceeded(e -> {
-            showInfo("Notion", "Base vidée",
-                    "🗑️ " + clearTask.getValue() + " événement(s) archivé(s) dans Notion.");
-        });
-        clearTask.setOnFailed(e -> showError("Notion", "Erreur", "Impossible de vider la base."));
-        new Thread(clearTask).start();
+        tasks.write(notionService::clearAll,
+                n -> showInfo("Notion", "Base vidée", "🗑️ " + n + " événement(s) archivé(s) dans Notion."),
+                e -> showError("Notion", "Erreur", "Impossible de vider la base."));
     }
 
     // -- Persistence locale de la config Notion --
@@ -2206,14 +2568,21 @@ public class EvenementsAdminController {
         monthName = monthName.substring(0, 1).toUpperCase() + monthName.substring(1);
         calMonthLabel.setText(monthName + " " + calCurrentMonth.getYear());
 
-        // Assign stable color to each event by id
+        // Only the displayed month (plus the edge days of the week view) is loaded
+        LocalDateTime rangeStart = calCurrentMonth.atDay(1).minusDays(7).atStartOfDay();
+        LocalDateTime rangeEnd = calCurrentMonth.atEndOfMonth().plusDays(7).atTime(23, 59, 59);
+        try {
+            calendarEvents = evenementService.findBetween(rangeStart, rangeEnd);
+            loadStatsFor(calendarEvents);
+        } catch (Exception ex) {
+            calendarEvents = List.of();
+            System.err.println("[EvenementsAdmin] Calendrier: " + ex.getMessage());
+        }
+
+        // Assign stable color to each event by id (same color whatever the month shown)
         java.util.Map<Integer, Integer> eventColorMap = new java.util.HashMap<>();
-        int colorIdx = 0;
-        for (Evenement ev : masterList) {
-            if (!eventColorMap.containsKey(ev.getId())) {
-                eventColorMap.put(ev.getId(), colorIdx % CAL_COLORS.length);
-                colorIdx++;
-            }
+        for (Evenement ev : calendarEvents) {
+            eventColorMap.put(ev.getId(), Math.floorMod(ev.getId(), CAL_COLORS.length));
         }
 
         switch (calViewMode) {
@@ -2298,7 +2667,7 @@ public class EvenementsAdminController {
         // Collect month events
         LocalDateTime monthStart = calCurrentMonth.atDay(1).atStartOfDay();
         LocalDateTime monthEnd = calCurrentMonth.atEndOfMonth().atTime(23, 59, 59);
-        List<Evenement> monthEvents = masterList.stream()
+        List<Evenement> monthEvents = calendarEvents.stream()
                 .filter(e -> {
                     if (e.getDateDebut() == null) return false;
                     LocalDateTime d = e.getDateDebut();
@@ -2525,7 +2894,7 @@ public class EvenementsAdminController {
             dayBox.getChildren().add(dayHeader);
 
             // Events for this day
-            List<Evenement> dayEvs = masterList.stream()
+            List<Evenement> dayEvs = calendarEvents.stream()
                     .filter(e -> {
                         if (e.getDateDebut() == null) return false;
                         LocalDate s = e.getDateDebut().toLocalDate();
@@ -2631,7 +3000,7 @@ public class EvenementsAdminController {
         dayContainer.getChildren().add(dayTitleRow);
 
         // Events for this day
-        List<Evenement> dayEvs = masterList.stream()
+        List<Evenement> dayEvs = calendarEvents.stream()
                 .filter(e -> {
                     if (e.getDateDebut() == null) return false;
                     LocalDate s = e.getDateDebut().toLocalDate();
@@ -2710,8 +3079,7 @@ public class EvenementsAdminController {
                 Label cardLoc = new Label("📍 " + resolveLieuName(ev.getLieuId()));
                 cardLoc.setStyle("-fx-font-size: 12px; -fx-text-fill: " + textColor + "; -fx-opacity: 0.8;");
 
-                int nbInsc = 0;
-                try { nbInsc = inscriptionService.countByEvent(ev.getId()); } catch (Exception ignored) {}
+                int nbInsc = statsOf(ev.getId()).actives();
                 Label cardInfo = new Label("👥 " + nbInsc + "/" + ev.getCapaciteMax() + " inscrit(s)  •  💰 " + ev.getPrix() + " TND");
                 cardInfo.setStyle("-fx-font-size: 11px; -fx-text-fill: " + textColor + "; -fx-opacity: 0.7;");
 
@@ -2782,9 +3150,10 @@ public class EvenementsAdminController {
         addDetailRow(calDetailPanel, "💰 Prix", ev.getPrix() + " TND");
         addDetailRow(calDetailPanel, "👥 Capacité", String.valueOf(ev.getCapaciteMax()));
 
-        int nbInsc = 0;
-        try { nbInsc = inscriptionService.countByEvent(ev.getId()); } catch (Exception ignored) {}
-        addDetailRow(calDetailPanel, "📝 Inscrits", String.valueOf(nbInsc));
+        EventStatsService.EventStats evStats = statsOf(ev.getId());
+        addDetailRow(calDetailPanel, "📝 Inscrits", String.valueOf(evStats.actives()));
+        addDetailRow(calDetailPanel, "🎟 Tickets", String.valueOf(evStats.tickets()));
+        addDetailRow(calDetailPanel, "💵 Revenu", String.format(LOCALE_FR, "%.2f TND", evStats.revenu()));
 
         // Description
         String desc = safeStr(ev.getDescription());
@@ -2923,12 +3292,9 @@ public class EvenementsAdminController {
             }
 
             // Inscriptions count
-            try {
-                int nbInsc = inscriptionService.countByEvent(ev.getId());
-                Label inscLabel = new Label("📝 " + nbInsc + " inscription(s)");
-                inscLabel.getStyleClass().add("card-muted");
-                card.getChildren().add(inscLabel);
-            } catch (Exception ignored) {}
+            Label inscLabel = new Label("📝 " + statsOf(ev.getId()).actives() + " inscription(s)");
+            inscLabel.getStyleClass().add("card-muted");
+            card.getChildren().add(inscLabel);
 
             // Button to open inscriptions panel
             Button btnOpen = new Button("Voir inscriptions →");
@@ -1,7 +1,6 @@
 package controllers.back.shell;
 
 import controllers.front.shell.FrontDashboardController;
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Insets;
@@ -23,6 +22,7 @@ import models.users.User;
 import services.sorties.AnnonceSortieService;
 import services.sorties.ParticipationSortieService;
 import services.users.UserService;
+import utils.ui.UiTasks;
 import utils.ui.ViewPaths;
 
 import java.io.IOException;
@@ -63,6 +63,9 @@ public class BackDashboardController {
     private Stage primaryStage;
     private User currentUser;
 
+    // Chargements de la section affichée : annulés quand on change de section
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("BackDashboard");
+
     private final Map<String, Node> viewCache = new HashMap<>();
     private final Map<String, Object> controllerCache = new HashMap<>();
 
@@ -78,6 +81,7 @@ public class BackDashboardController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(dynamicContent);
         refreshHeaderUser();
         showDashboard();
     }
@@ -271,53 +275,42 @@ public class BackDashboardController {
     // ===== Dashboard stats =====
 
     private void loadDashboardStatsWithFallback() {
-        new Thread(() -> {
-            try {
-                UserService userService = new UserService();
-                List<User> users = userService.obtenirTous();
-
-                long totalUsers = users.size();
-                long nbAdmins = users.stream().filter(u -> "admin".equalsIgnoreCase(safe(u.getRole()))).count();
-                long nbPartenaires = users.stream().filter(u -> "partenaire".equalsIgnoreCase(safe(u.getRole()))).count();
-                long nbAbonnes = users.stream().filter(u -> "abonne".equalsIgnoreCase(safe(u.getRole()))).count();
-
-                // Sorties & participations
-                AnnonceSortieService annonceService = new AnnonceSortieService();
-                ParticipationSortieService participationService = new ParticipationSortieService();
-
-                List<AnnonceSortie> sorties = annonceService.getAll();
-                long totalSorties = sorties.size();
-                long nbOuvertes = sorties.stream().filter(a -> "OUVERTE".equalsIgnoreCase(safe(a.getStatut()))).count();
-                long nbAnnulees = sorties.stream().filter(a -> "ANNULEE".equalsIgnoreCase(safe(a.getStatut()))).count();
-                long nbFermees = sorties.stream().filter(a -> "FERMEE".equalsIgnoreCase(safe(a.getStatut()))).count();
-                long nbAvenir = sorties.stream().filter(a -> a.getDateSortie() != null && a.getDateSortie().isAfter(java.time.LocalDateTime.now())).count();
-
-                long partTotal = participationService.countAll();
-                long partPending = participationService.countByStatus("EN_ATTENTE");
-                long partConfirmed = participationService.countByStatuses("CONFIRMEE", "ACCEPTEE");
-                long partRefused = participationService.countByStatus("REFUSEE");
-
-                Platform.runLater(() -> {
-                    VBox statsContainer = buildDashboardWithStats(
-                            totalUsers, nbAdmins, nbPartenaires, nbAbonnes,
-                            totalSorties, nbOuvertes, nbAvenir, nbAnnulees, nbFermees,
-                            partTotal, partPending, partConfirmed, partRefused
-                    );
-                    setContent(statsContainer);
-                });
-
-            } catch (SQLException e) {
-                Platform.runLater(() -> {
-                    loadAndSetCachedView("dashboard", DASHBOARD_VIEW_PATH);
-                    showError("Erreur", "Impossible de charger les statistiques", e.getMessage());
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    loadAndSetCachedView("dashboard", DASHBOARD_VIEW_PATH);
-                    showError("Erreur", "Erreur Dashboard", e.getMessage());
-                });
-            }
-        }).start();
+        tasks.load(() -> {
+            UserService userService = new UserService();
+            List<User> users = userService.obtenirTous();
+
+            long totalUsers = users.size();
+            long nbAdmins = users.stream().filter(u -> "admin".equalsIgnoreCase(safe(u.getRole()))).count();
+            long nbPartenaires = users.stream().filter(u -> "partenaire".equalsIgnoreCase(safe(u.getRole()))).count();
+            long nbAbonnes = users.stream().filter(u -> "abonne".equalsIgnoreCase(safe(u.getRole()))).count();
+
+            // Sorties & participations
+            AnnonceSortieService annonceService = new AnnonceSortieService();
+            ParticipationSortieService participationService = new ParticipationSortieService();
+
+            List<AnnonceSortie> sorties = annonceService.getAll();
+            long totalSorties = sorties.size();
+            long nbOuvertes = sorties.stream().filter(a -> "OUVERTE".equalsIgnoreCase(safe(a.getStatut()))).count();
+            long nbAnnulees = sorties.stream().filter(a -> "ANNULEE".equalsIgnoreCase(safe(a.getStatut()))).count();
+            long nbFermees = sorties.stream().filter(a -> "FERMEE".equalsIgnoreCase(safe(a.getStatut()))).count();
+            long nbAvenir = sorties.stream().filter(a -> a.getDateSortie() != null && a.getDateSortie().isAfter(java.time.LocalDateTime.now())).count();
+
+            long partTotal = participationService.countAll();
+            long partPending = participationService.countByStatus("EN_ATTENTE");
+            long partConfirmed = participationService.countByStatuses("CONFIRMEE", "ACCEPTEE");
+            long partRefused = participationService.countByStatus("REFUSEE");
+
+            // Construit sur le thread JavaFX à la livraison
+            return (Runnable) () -> setContent(buildDashboardWithStats(
+                    totalUsers, nbAdmins, nbPartenaires, nbAbonnes,
+                    totalSorties, nbOuvertes, nbAvenir, nbAnnulees, nbFermees,
+                    partTotal, partPending, partConfirmed, partRefused
+            ));
+        }, Runnable::run, e -> {
+            loadAndSetCachedView("dashboard", DASHBOARD_VIEW_PATH);
+            if (e instanceof SQLException) showError("Erreur", "Impossible de charger les statistiques", e.getMessage());
+            else showError("Erreur", "Erreur Dashboard", e.getMessage());
+        });
     }
 
     private VBox buildDashboardWithStats(
@@ -465,6 +458,7 @@ public class BackDashboardController {
     }
 
     private void setActive(Button activeBtn) {
+        tasks.cancelAll();
         Button[] all = {btnDashboard, btnUtilisateurs, btnSorties, btnLieux, btnOffres, btnEvents, btnAnalytics, btnGoFront};
         for (Button b : all) {
             if (b == null) continue;
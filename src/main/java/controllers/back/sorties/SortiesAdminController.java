@@ -4,7 +4,6 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.animation.PauseTransition;
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.geometry.Bounds;
@@ -41,6 +40,7 @@ import utils.files.UploadStore;
 import utils.geo.TunisiaGeo;
 import utils.json.JsonStringArray;
 import utils.sorties.SortieActivities;
+import utils.ui.UiTasks;
 
 import java.io.File;
 import java.text.DecimalFormat;
@@ -92,6 +92,7 @@ public class SortiesAdminController {
 
     private final Map<Integer, List<Label>> chatBadgesByAnnonceId = new HashMap<>();
     private volatile long chatUnreadRefreshToken = 0;
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("SortiesAdmin");
 
     private static final DateTimeFormatter DT_FMT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DecimalFormat MONEY_FMT = new DecimalFormat("0.##");
@@ -106,6 +107,7 @@ public class SortiesAdminController {
 
     @FXML
     public void initialize() {
+        tasks.bindTo(cardsPane);
         setupFilterCombo();
         setupSearchFilter();
         setupSortControls();
@@ -312,25 +314,23 @@ public class SortiesAdminController {
         final int uid = currentUser.getId();
         final Map<Integer, List<Label>> snapshot = new HashMap<>(chatBadgesByAnnonceId);
 
-        new Thread(() -> {
+        tasks.background(() -> {
             try { chatService.ensureSchema(); } catch (Exception ignored) {}
+            try {
+                // Tous les badges de la page en une requête
+                return chatService.getUnreadCounts(uid, snapshot.keySet());
+            } catch (Exception ex) {
+                return Map.<Integer, Long>of();
+            }
+        }, counts -> {
+            if (token != chatUnreadRefreshToken) return;
             for (Map.Entry<Integer, List<Label>> e : snapshot.entrySet()) {
-                if (token != chatUnreadRefreshToken) return;
-                int annonceId = e.getKey();
                 List<Label> badges = e.getValue();
-                long count;
-                try {
-                    count = chatService.getUnreadCount(annonceId, uid);
-                } catch (Exception ex) {
-                    count = 0;
-                }
-                long finalCount = count;
-                Platform.runLater(() -> {
-                    if (badges == null) return;
-                    for (Label b : badges) setChatBadgeValue(b, finalCount);
-                });
+                if (badges == null) continue;
+                long count = counts.getOrDefault(e.getKey(), 0L);
+                for (Label b : badges) setChatBadgeValue(b, count);
             }
-        }, "back-chat-unread-refresh").start();
+        });
     }
 
     private StackPane wrapChatButtonWithBadge(Button chatButton, int annonceId) {
@@ -505,14 +505,14 @@ public class SortiesAdminController {
         int annonceId = a.getId();
         int uid = currentUser.getId();
         if (annonceId > 0 && uid > 0) {
-            new Thread(() -> {
+            tasks.write(() -> {
                 try {
                     chatService.ensureSchema();
                     chatService.markAllRead(annonceId, uid);
                 } catch (Exception ignored) {
                 }
-                Platform.runLater(this::refreshChatUnreadBadgesAsync);
-            }, "back-chat-mark-read").start();
+                return null;
+            }, done -> refreshChatUnreadBadgesAsync(), null);
         }
 
         try {
@@ -19,6 +19,7 @@ import javafx.stage.Stage;
 import models.users.User;
 import services.users.UserService;
 import utils.PasswordUtil;
+import utils.ui.UiTasks;
 
 import java.net.URL;
 import java.sql.SQLException;
@@ -50,12 +51,15 @@ public class UserDashboardController {
 
     private final int pageSize = 3;
 
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("UserDashboard");
+
     private User selectedUser;
     private Parent selectedCard;
 
     @FXML
     public void initialize() {
         userService = new UserService();
+        tasks.bindTo(usersRow);
 
         usersPagination.currentPageIndexProperty().addListener((obs, oldVal, newVal) -> updateListViewPage(newVal.intValue()));
         searchField.textProperty().addListener((obs, o, n) -> filterUsers(n));
@@ -69,34 +73,27 @@ public class UserDashboardController {
 
     @FXML
     public void loadUsers() {
-        new Thread(() -> {
-            try {
-                List<User> users = userService.obtenirTous();
-                ObservableList<User> all = FXCollections.observableArrayList(users);
-
-                long nbAdmins = users.stream().filter(u -> "admin".equalsIgnoreCase(u.getRole())).count();
-                long nbVisiteurs = users.stream().filter(u -> "visiteur".equalsIgnoreCase(u.getRole())).count();
-
-                Platform.runLater(() -> {
-                    usersList.setAll(all);
-                    filteredUsersList.setAll(all);
-
-                    totalUsersLabel.setText(String.valueOf(users.size()));
-                    activeUsersLabel.setText(String.valueOf(nbAdmins));
-                    adminsLabel.setText(String.valueOf(nbVisiteurs));
-
-                    selectedUser = null;
-                    selectedCard = null;
-                    if (editBtn != null) editBtn.setDisable(true);
-                    if (deleteBtn != null) deleteBtn.setDisable(true);
-
-                    updatePagination();
-                    updateListViewPage(0);
-                });
-            } catch (SQLException e) {
-                showError("Erreur", "Impossible de charger les utilisateurs:\n" + e.getMessage());
-            }
-        }).start();
+        tasks.load(() -> userService.obtenirTous(), users -> {
+            ObservableList<User> all = FXCollections.observableArrayList(users);
+
+            long nbAdmins = users.stream().filter(u -> "admin".equalsIgnoreCase(u.getRole())).count();
+            long nbVisiteurs = users.stream().filter(u -> "visiteur".equalsIgnoreCase(u.getRole())).count();
+
+            usersList.setAll(all);
+            filteredUsersList.setAll(all);
+
+            totalUsersLabel.setText(String.valueOf(users.size()));
+            activeUsersLabel.setText(String.valueOf(nbAdmins));
+            adminsLabel.setText(String.valueOf(nbVisiteurs));
+
+            selectedUser = null;
+            selectedCard = null;
+            if (editBtn != null) editBtn.setDisable(true);
+            if (deleteBtn != null) deleteBtn.setDisable(true);
+
+            updatePagination();
+            updateListViewPage(0);
+        }, e -> showError("Erreur", "Impossible de charger les utilisateurs:\n" + e.getMessage()));
     }
 
     private void filterUsers(String query) {
@@ -52,6 +52,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import java.util.prefs.Preferences;
 import utils.PasswordUtil;
+import utils.ui.UiTasks;
 
 public class LoginController {
     private static final Pattern SUCCESS_TRUE_PATTERN = Pattern.compile("\\\"success\\\"\\s*:\\s*true", Pattern.CASE_INSENSITIVE);
@@ -62,6 +63,7 @@ public class LoginController {
     private final Preferences preferences = Preferences.userNodeForPackage(LoginController.class);
     private final OtpMemoryService otpService = OtpMemoryService.getInstance();
     private final GmailOtpMailService otpMailService = new GmailOtpMailService();
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("Login");
 
     // IMPORTANT: fx:id="root" et fx:id="bgImage" existent déjà dans Login.fxml
     @FXML private StackPane root;
@@ -91,6 +93,7 @@ public class LoginController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(root);
 
         // ✅ Fix principal: l’image de fond couvre TOUJOURS toute la fenêtre
         if (root != null) {
@@ -307,9 +310,7 @@ public class LoginController {
             showAlert("Erreur", "Erreur lors de la reconnaissance faciale: " + message);
         });
 
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
+        tasks.execute(UiTasks.Priority.USER_VISIBLE, task);
     }
 
     private void doGoogleLogin() {
@@ -363,9 +364,7 @@ public class LoginController {
             showAlert("Erreur", "Connexion Google impossible: " + message);
         });
 
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
+        tasks.execute(UiTasks.Priority.USER_VISIBLE, task);
     }
 
     private GoogleLoginResult findOrCreateUserFromGoogle(GoogleOAuthService.GoogleUserProfile profile) throws SQLException {
@@ -530,9 +529,7 @@ public class LoginController {
             showAlert("Erreur", "Impossible d'envoyer OTP: " + message);
         });
 
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
+        tasks.execute(UiTasks.Priority.USER_VISIBLE, task);
     }
 
     private BufferedImage captureWebcamWithPreview() throws Exception {
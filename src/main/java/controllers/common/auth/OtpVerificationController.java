@@ -27,6 +27,7 @@ import org.bytedeco.javacv.OpenCVFrameGrabber;
 import services.common.auth.GmailOtpMailService;
 import services.common.auth.OtpMemoryService;
 import services.users.UserService;
+import utils.ui.UiTasks;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
@@ -61,6 +62,7 @@ public class OtpVerificationController {
     private Stage primaryStage;
     private String email;
     private Timeline countdownTimeline;
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("OtpVerification");
 
     public void setPrimaryStage(Stage stage) {
         this.primaryStage = stage;
@@ -77,6 +79,7 @@ public class OtpVerificationController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(verifyBtn);
         verifyBtn.setOnAction(e -> onVerifyOtp());
         resendBtn.setOnAction(e -> onResendOtp());
         backLoginLink.setOnAction(e -> {
@@ -162,9 +165,7 @@ public class OtpVerificationController {
             showAlert("Erreur envoi OTP", message);
         });
 
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
+        tasks.execute(UiTasks.Priority.USER_VISIBLE, task);
     }
 
     private void triggerFaceVerification() {
@@ -203,9 +204,7 @@ public class OtpVerificationController {
             showAlert("Erreur Face ID", message + "\nNouveau blocage de " + BLOCK_SECONDS + " secondes.");
         });
 
-        Thread thread = new Thread(task);
-        thread.setDaemon(true);
-        thread.start();
+        tasks.execute(UiTasks.Priority.USER_VISIBLE, task);
     }
 
     private boolean verifyFaceForCurrentEmail() throws Exception {
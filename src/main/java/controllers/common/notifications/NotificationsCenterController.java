@@ -194,6 +194,7 @@ public class NotificationsCenterController {
             case PARTICIPATION_CANCELLED -> "Annulée";
             case CHAT_MESSAGE -> "Chat";
             case SORTIE_UPDATED, SORTIE_CANCELLED, SORTIE_DELETED, SORTIE_RECAP_UPDATED -> "Sortie";
+            case PAYMENT_CONFIRMED, PAYMENT_FAILED -> "Paiement";
         };
     }
 
@@ -212,6 +213,8 @@ public class NotificationsCenterController {
             case SORTIE_CANCELLED -> "-fx-background-color: rgba(245,158,11,0.14); -fx-text-fill: rgba(22,58,92,0.92); -fx-font-weight: 900; -fx-background-radius: 12; -fx-padding: 3 10;";
             case SORTIE_DELETED -> "-fx-background-color: rgba(239,68,68,0.10); -fx-text-fill: rgba(22,58,92,0.92); -fx-font-weight: 900; -fx-background-radius: 12; -fx-padding: 3 10;";
             case SORTIE_RECAP_UPDATED -> "-fx-background-color: rgba(15,23,42,0.06); -fx-text-fill: rgba(22,58,92,0.88); -fx-font-weight: 900; -fx-background-radius: 12; -fx-padding: 3 10;";
+            case PAYMENT_CONFIRMED -> "-fx-background-color: rgba(34,197,94,0.14); -fx-text-fill: rgba(22,58,92,0.92); -fx-font-weight: 900; -fx-background-radius: 12; -fx-padding: 3 10;";
+            case PAYMENT_FAILED -> "-fx-background-color: rgba(239,68,68,0.12); -fx-text-fill: rgba(22,58,92,0.92); -fx-font-weight: 900; -fx-background-radius: 12; -fx-padding: 3 10;";
         };
     }
 
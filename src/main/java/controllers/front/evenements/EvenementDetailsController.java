@@ -19,6 +19,7 @@ import services.evenements.PaiementService;
 import services.evenements.WeatherService;
 import services.lieux.LieuService;
 import utils.ui.ShellNavigator;
+import utils.ui.UiTasks;
 
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
@@ -83,6 +84,7 @@ public class EvenementDetailsController {
     private final InscriptionService inscriptionService = new InscriptionService();
     private final PaiementService paiementService       = new PaiementService();
     private final WeatherService weatherService         = new WeatherService();
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("EvenementDetails");
     private LieuService lieuService;
     {
         try { lieuService = new LieuService(); }
@@ -118,7 +120,10 @@ public class EvenementDetailsController {
     }
 
     @FXML
-    private void initialize() { /* tout se charge via setEvenementId */ }
+    private void initialize() {
+        // tout se charge via setEvenementId
+        tasks.bindTo(weatherCard);
+    }
 
     // ── NAVIGATION ──
 
@@ -150,9 +155,8 @@ public class EvenementDetailsController {
         if (userInscription != null) return;
 
         try {
-            // Vérif capacité
-            int used = inscriptionService.countByEvent(evenementId);
-            int remaining = current.getCapaciteMax() - used;
+            // Vérif capacité (compteur de places, en tickets)
+            int remaining = inscriptionService.getPlacesRestantes(evenementId);
             if (remaining <= 0) {
                 showMessage("Désolé, l'événement est complet !", false);
                 return;
@@ -511,80 +515,73 @@ public class EvenementDetailsController {
         weatherCard.setVisible(false);
         weatherCard.setManaged(false);
 
-        // Charger en arrière-plan pour ne pas bloquer l'UI
-        new Thread(() -> {
-            try {
-                // Récupérer le lieu pour les coordonnées GPS
-                // Valeurs par défaut : Tunis
-                double lat = 36.8065;
-                double lon = 10.1815;
-
-                if (current.getLieuId() != null && current.getLieuId() > 0 && lieuService != null) {
-                    try {
-                        Lieu lieu = lieuService.getById(current.getLieuId());
-                        if (lieu != null && lieu.getLatitude() != null && lieu.getLongitude() != null
-                                && lieu.getLatitude() != 0 && lieu.getLongitude() != 0) {
-                            lat = lieu.getLatitude();
-                            lon = lieu.getLongitude();
-                        }
-                    } catch (Exception ignored) { /* garde les coords par défaut */ }
-                }
-
-                // Déterminer si l'événement est en extérieur
-                boolean isOutdoor = current.getType() != null &&
-                        (current.getType().toLowerCase().contains("plein air")
-                                || current.getType().toLowerCase().contains("outdoor")
-                                || current.getType().toLowerCase().contains("extérieur")
-                                || current.getType().toLowerCase().contains("ext")
-                                || "PUBLIC".equalsIgnoreCase(current.getType()));
-
-                // Appel API météo
-                WeatherService.WeatherResult weather = weatherService.getWeather(
-                        lat, lon,
-                        current.getDateDebut(), isOutdoor);
-
-                if (weather == null) return;
-
-                // Mettre à jour l'UI sur le thread JavaFX
-                javafx.application.Platform.runLater(() -> {
-                    weatherCard.setVisible(true);
-                    weatherCard.setManaged(true);
-
-                    if (weatherIcon != null)
-                        weatherIcon.setText(weather.icon);
-                    if (weatherDesc != null)
-                        weatherDesc.setText(weather.description);
-                    if (weatherTemp != null)
-                        weatherTemp.setText(String.format("%.0f°", weather.temperature));
-                    if (weatherWind != null)
-                        weatherWind.setText(String.format("Vent  %.0f km/h", weather.windSpeed));
-                    if (weatherPrecip != null)
-                        weatherPrecip.setText(weather.precipitation > 0
-                                ? String.format("Pluie  %.1f mm", weather.precipitation)
-                                : "Pas de pluie");
-
-                    if (weatherAdvice != null) {
-                        // Short advice text for the pill
-                        String shortAdvice;
-                        if (weather.attendancePercent >= 75) shortAdvice = "✓ Idéal";
-                        else if (weather.attendancePercent >= 50) shortAdvice = "⚠ Mitigé";
-                        else shortAdvice = "✗ Défavorable";
-                        weatherAdvice.setText(shortAdvice);
-                        weatherAdvice.getStyleClass().removeAll(
-                                "evWeatherAdviceGood", "evWeatherAdviceCaution", "evWeatherAdviceBad");
-                        if (weather.attendancePercent >= 75) {
-                            weatherAdvice.getStyleClass().add("evWeatherAdviceGood");
-                        } else if (weather.attendancePercent >= 50) {
-                            weatherAdvice.getStyleClass().add("evWeatherAdviceCaution");
-                        } else {
-                            weatherAdvice.getStyleClass().add("evWeatherAdviceBad");
-                        }
+        // Chargement secondaire : passe après le contenu de la page
+        Evenement ev = current;
+        tasks.submit(UiTasks.Priority.BACKGROUND, false, () -> {
+            // Récupérer le lieu pour les coordonnées GPS
+            // Valeurs par défaut : Tunis
+            double lat = 36.8065;
+            double lon = 10.1815;
+
+            if (ev.getLieuId() != null && ev.getLieuId() > 0 && lieuService != null) {
+                try {
+                    Lieu lieu = lieuService.getById(ev.getLieuId());
+                    if (lieu != null && lieu.getLatitude() != null && lieu.getLongitude() != null
+                            && lieu.getLatitude() != 0 && lieu.getLongitude() != 0) {
+                        lat = lieu.getLatitude();
+                        lon = lieu.getLongitude();
                     }
-                });
-            } catch (Exception e) {
-                System.err.println("Erreur chargement météo: " + e.getMessage());
+                } catch (Exception ignored) { /* garde les coords par défaut */ }
+            }
+
+            // Déterminer si l'événement est en extérieur
+            boolean isOutdoor = ev.getType() != null &&
+                    (ev.getType().toLowerCase().contains("plein air")
+                            || ev.getType().toLowerCase().contains("outdoor")
+                            || ev.getType().toLowerCase().contains("extérieur")
+                            || ev.getType().toLowerCase().contains("ext")
+                            || "PUBLIC".equalsIgnoreCase(ev.getType()));
+
+            // Appel API météo
+            return weatherService.getWeather(
+                    lat, lon,
+                    ev.getDateDebut(), isOutdoor);
+        }, weather -> {
+            if (weather == null) return;
+            weatherCard.setVisible(true);
+            weatherCard.setManaged(true);
+
+            if (weatherIcon != null)
+                weatherIcon.setText(weather.icon);
+            if (weatherDesc != null)
+                weatherDesc.setText(weather.description);
+            if (weatherTemp != null)
+                weatherTemp.setText(String.format("%.0f°", weather.temperature));
+            if (weatherWind != null)
+                weatherWind.setText(String.format("Vent  %.0f km/h", weather.windSpeed));
+            if (weatherPrecip != null)
+                weatherPrecip.setText(weather.precipitation > 0
+                        ? String.format("Pluie  %.1f mm", weather.precipitation)
+                        : "Pas de pluie");
+
+            if (weatherAdvice != null) {
+                // Short advice text for the pill
+                String shortAdvice;
+                if (weather.attendancePercent >= 75) shortAdvice = "✓ Idéal";
+                else if (weather.attendancePercent >= 50) shortAdvice = "⚠ Mitigé";
+                else shortAdvice = "✗ Défavorable";
+                weatherAdvice.setText(shortAdvice);
+                weatherAdvice.getStyleClass().removeAll(
+                        "evWeatherAdviceGood", "evWeatherAdviceCaution", "evWeatherAdviceBad");
+                if (weather.attendancePercent >= 75) {
+                    weatherAdvice.getStyleClass().add("evWeatherAdviceGood");
+                } else if (weather.attendancePercent >= 50) {
+                    weatherAdvice.getStyleClass().add("evWeatherAdviceCaution");
+                } else {
+                    weatherAdvice.getStyleClass().add("evWeatherAdviceBad");
+                }
             }
-        }).start();
+        }, e -> System.err.println("Erreur chargement météo: " + e.getMessage()));
     }
 
     // ── CHARGEMENT INSCRIPTION UTILISATEUR ──
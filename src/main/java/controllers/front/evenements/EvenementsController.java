@@ -13,13 +13,21 @@ import javafx.scene.layout.VBox;
 import javafx.scene.shape.Rectangle;
 import models.evenements.Evenement;
 import models.evenements.Inscription;
+import models.lieux.Lieu;
 import models.users.User;
+import services.evenements.EvenementSearchIndex;
 import services.evenements.EvenementService;
+import services.evenements.EventStatsService;
 import services.evenements.InscriptionService;
 import services.evenements.PaiementService;
 import services.evenements.RecommendationService;
+import services.evenements.TrendingService;
+import services.evenements.WeatherPrefetchService;
 import services.evenements.WeatherService;
+import services.lieux.LieuService;
+import services.payment.PaymentTracker;
 import utils.ui.ShellNavigator;
+import utils.ui.UiTasks;
 
 import java.net.URL;
 import java.time.LocalDate;
@@ -44,13 +52,15 @@ import javafx.util.Duration;
  * Adapté aux vrais modèles :
  *  - Evenement : titre, description, dateDebut, dateFin, capaciteMax (int),
  *                statut (OUVERT/FERME/ANNULE), type (PRIVE/PUBLIC), prix (double), imageUrl
- *  - InscriptionService : existsForUser(), addInscription(), delete(), countByEvent(), getByEventId()
+ *  - InscriptionService : existsForUser(), addInscription(), delete(), getByEventId()
+ *  - EventStatsService  : getAll() (compteurs de toutes les cartes en une requête)
  */
 public class EvenementsController {
 
     // ====== FXML ======
     @FXML private HBox typesChips;
     @FXML private HBox statutsChips;
+    @FXML private HBox sortChips;
     @FXML private TextField searchField;
     @FXML private FlowPane cardsPane;
     @FXML private Label countLabel;
@@ -77,14 +87,31 @@ public class EvenementsController {
     private final PaiementService paiementService       = new PaiementService();
     private final RecommendationService recommendationService = new RecommendationService();
     private final WeatherService weatherService         = new WeatherService();
+    private final EventStatsService eventStatsService   = new EventStatsService();
+    private final TrendingService trendingService       = new TrendingService();
+    private final LieuService lieuService               = new LieuService();
 
     // ====== ÉTAT ======
     private ShellNavigator navigator;
     private User currentUser;
 
     private List<Evenement> all = new ArrayList<>();
+    /** Compteurs par événement, lus en une requête avec la liste (pas de COUNT par carte). */
+    private Map<Integer, EventStatsService.EventStats> statsByEvent = Map.of();
     private String selectedType   = null;  // PRIVE / PUBLIC
     private String selectedStatut = null;  // OUVERT / FERME / ANNULE
+    /** Tri de la liste : "date" (date de début, ordre chargé) | "tendance" */
+    private String sortMode = "date";
+    /** Scores tendance (inscriptions récentes, décroissance exponentielle), lus avec la liste. */
+    private Map<Integer, Double> trendByEvent = Map.of();
+    /** Taille d'une page de résultats de recherche texte. */
+    private static final int SEARCH_PAGE_SIZE = 24;
+    /** Suite de la recherche texte en cours (null : dernière page affichée). */
+    private EvenementSearchIndex.Cursor searchCursor;
+    private Button moreResultsButton;
+
+    /** Lieux par id : coordonnées météo des cartes (mêmes points que le préchargement). */
+    private Map<Integer, Lieu> lieuxById = Map.of();
 
     /** Mode d'affichage : "all" | "inscrits" | "recommandes" */
     private String viewMode = "all";
@@ -92,6 +119,7 @@ public class EvenementsController {
     /** Liste des événements recommandés (cache local) */
     private List<Evenement> recommendedEvents = new ArrayList<>();
     private boolean recommendationsLoading = false;
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("Evenements");
 
     private static final DateTimeFormatter FMT_SHORT =
             DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.FRENCH);
@@ -135,8 +163,12 @@ public class EvenementsController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(cardsPane).onCancel(() -> recommendationsLoading = false);
+        WeatherPrefetchService.getInstance().start();
+        PaymentTracker.getInstance().start();
         buildTypeChips();
         buildStatutChips();
+        buildSortChips();
         loadData();
         wireSearch();
     }
@@ -144,6 +176,15 @@ public class EvenementsController {
     private void loadData() {
         try {
             all = evenementService.getAll();
+            try { statsByEvent = eventStatsService.getAll(); } catch (Exception e) { statsByEvent = Map.of(); }
+            try { trendByEvent = trendingService.getScores(); } catch (Exception e) { trendByEvent = Map.of(); }
+            try {
+                Map<Integer, Lieu> byId = new HashMap<>();
+                for (Lieu l : lieuService.getAll()) byId.put(l.getId(), l);
+                lieuxById = byId;
+            } catch (Exception e) {
+                lieuxById = Map.of();
+            }
             applyFilters();
         } catch (Exception e) {
             showState("Erreur chargement événements : " + safe(e.getMessage()));
@@ -162,9 +203,13 @@ public class EvenementsController {
         selectedType   = null;
         selectedStatut = null;
         viewMode       = "all";
+        sortMode       = "date";
         if (searchField != null) searchField.setText("");
         clearChipSelection(typesChips);
         clearChipSelection(statutsChips);
+        if (sortChips != null && !sortChips.getChildren().isEmpty()) {
+            markSelected(sortChips, (Button) sortChips.getChildren().get(0));
+        }
         updateModeButtons();
         applyFilters();
     }
@@ -217,28 +262,24 @@ public class EvenementsController {
         recommendationsLoading = true;
         showState("🤖 Analyse de vos intérêts en cours...");
 
-        new Thread(() -> {
-            try {
-                List<Evenement> recs = recommendationService.getRecommendations(currentUser.getId());
-                String analysis = recommendationService.getLastInterestsAnalysis();
-                javafx.application.Platform.runLater(() -> {
-                    recommendedEvents = recs;
-                    recommendationsLoading = false;
-                    if (recs.isEmpty()) {
-                        showState("Aucune recommandation disponible. Inscrivez-vous à des événements pour améliorer les suggestions !");
-                        renderCards(Collections.emptyList());
-                    } else {
-                        hideState();
-                        renderRecommendedCards(recs, analysis);
-                    }
-                });
-            } catch (Exception e) {
-                javafx.application.Platform.runLater(() -> {
-                    recommendationsLoading = false;
-                    showState("Erreur lors du chargement des recommandations: " + safe(e.getMessage()));
-                });
+        tasks.load(() -> {
+            List<Evenement> recs = recommendationService.getRecommendations(currentUser.getId());
+            return Map.entry(recs, safe(recommendationService.getLastInterestsAnalysis()));
+        }, r -> {
+            List<Evenement> recs = r.getKey();
+            recommendedEvents = recs;
+            recommendationsLoading = false;
+            if (recs.isEmpty()) {
+                showState("Aucune recommandation disponible. Inscrivez-vous à des événements pour améliorer les suggestions !");
+                renderCards(Collections.emptyList());
+            } else {
+                hideState();
+                renderRecommendedCards(recs, r.getValue());
             }
-        }).start();
+        }, e -> {
+            recommendationsLoading = false;
+            showState("Erreur lors du chargement des recommandations: " + safe(e.getMessage()));
+        });
     }
 
     private void renderRecommendedCards(List<Evenement> recs, String analysis) {
@@ -313,6 +354,19 @@ public class EvenementsController {
         }
     }
 
+    private void buildSortChips() {
+        if (sortChips == null) return;
+        sortChips.getChildren().clear();
+        String[][] tris = {{"date", "📅 Date"}, {"tendance", "🔥 Tendance"}};
+        for (String[] t : tris) {
+            final String val = t[0];
+            Button b = chipButton(t[1]);
+            b.setOnAction(e -> { sortMode = val; markSelected(sortChips, b); applyFilters(); });
+            sortChips.getChildren().add(b);
+            if (val.equals(sortMode)) b.getStyleClass().add("evChipSelected");
+        }
+    }
+
     private Button chipButton(String label) {
         Button b = new Button(label);
         b.getStyleClass().add("evChip");
@@ -359,8 +413,68 @@ public class EvenementsController {
             return;
         }
 
+        // Recherche texte : ordre de pertinence de l'index plein texte, page par page
+        List<Evenement> source = all;
+        searchCursor = null;
+        if (!q.isEmpty()) {
+            try {
+                source = searchHits(evenementService.searchPage(q, selectedType, selectedStatut, null, SEARCH_PAGE_SIZE));
+            } catch (Exception ex) {
+                showState("Erreur recherche : " + safe(ex.getMessage()));
+                return;
+            }
+        }
+
+        renderCards(filterForView(source));
+        if (searchCursor != null) showMoreResultsButton(q);
+        refreshStats();
+    }
+
+    /** Événements d'une page de résultats (limités à ceux chargés) ; retient le curseur de la suite. */
+    private List<Evenement> searchHits(EvenementSearchIndex.Page page) {
+        Set<Integer> loadedIds = new HashSet<>();
+        for (Evenement ev : all) loadedIds.add(ev.getId());
+        List<Evenement> hits = new ArrayList<>();
+        for (EvenementSearchIndex.Hit h : page.hits()) {
+            if (loadedIds.contains(h.evenement().getId())) hits.add(h.evenement());
+        }
+        searchCursor = page.next();
+        return hits;
+    }
+
+    /** Ajoute la page de résultats suivante sous les cartes déjà affichées. */
+    private void appendSearchPage(String q) {
+        if (searchCursor == null) return;
+        List<Evenement> next;
+        try {
+            next = filterForView(searchHits(
+                    evenementService.searchPage(q, selectedType, selectedStatut, searchCursor, SEARCH_PAGE_SIZE)));
+        } catch (Exception ex) {
+            showState("Erreur recherche : " + safe(ex.getMessage()));
+            return;
+        }
+        cardsPane.getChildren().remove(moreResultsButton);
+        for (Evenement ev : next) cardsPane.getChildren().add(buildCard(ev));
+        int shown = cardsPane.getChildren().size();
+        if (countLabel != null) countLabel.setText(shown + (searchCursor != null ? "+" : "") + " événement(s)");
+        if (searchCursor != null) showMoreResultsButton(q);
+    }
+
+    private void showMoreResultsButton(String q) {
+        if (moreResultsButton == null) {
+            moreResultsButton = new Button("Plus de résultats");
+            moreResultsButton.getStyleClass().add("evChip");
+        }
+        moreResultsButton.setOnAction(e -> appendSearchPage(q));
+        cardsPane.getChildren().remove(moreResultsButton);
+        cardsPane.getChildren().add(moreResultsButton);
+        if (countLabel != null) countLabel.setText((cardsPane.getChildren().size() - 1) + "+ événement(s)");
+    }
+
+    /** Filtres de la vue (mes inscriptions, type, statut) et tri tendance. */
+    private List<Evenement> filterForView(List<Evenement> source) {
         List<Evenement> filtered = new ArrayList<>();
-        for (Evenement ev : all) {
+        for (Evenement ev : source) {
             // Mode mes inscriptions
             if ("inscrits".equals(viewMode) && currentUser != null) {
                 try {
@@ -371,16 +485,15 @@ public class EvenementsController {
             if (selectedType != null && !selectedType.equalsIgnoreCase(safe(ev.getType()))) continue;
             if (selectedStatut != null && !selectedStatut.equalsIgnoreCase(safe(ev.getStatut()))) continue;
 
-            if (!q.isEmpty()) {
-                String blob = (safe(ev.getTitre()) + " " + safe(ev.getDescription())).toLowerCase(Locale.ROOT);
-                if (!blob.contains(q)) continue;
-            }
-
             filtered.add(ev);
         }
 
-        renderCards(filtered);
-        refreshStats();
+        // Tri stable : à score égal, l'ordre d'origine (date ou pertinence) est conservé
+        if ("tendance".equals(sortMode)) {
+            filtered.sort(Comparator.comparingDouble(
+                    (Evenement ev) -> trendByEvent.getOrDefault(ev.getId(), 0.0)).reversed());
+        }
+        return filtered;
     }
 
     // ====== RENDU CARDS ======
@@ -451,8 +564,7 @@ public class EvenementsController {
         prixLabel.setPadding(new javafx.geometry.Insets(0, 14, 0, 14));
 
         // ── PLACES ──
-        int inscrits = 0;
-        try { inscrits = inscriptionService.countByEvent(ev.getId()); } catch (Exception ignored) {}
+        int inscrits = activeInscriptions(ev.getId());
         int restantes = Math.max(0, ev.getCapaciteMax() - inscrits);
         Label places = new Label("👥 " + inscrits + "/" + ev.getCapaciteMax()
                 + "  ·  " + restantes + " place(s) restante(s)");
@@ -464,39 +576,38 @@ public class EvenementsController {
         weatherAdvice.getStyleClass().add("evWeatherAdvicePill");
         weatherAdvice.setPadding(new javafx.geometry.Insets(0, 14, 0, 14));
 
-        // Charger la météo en arrière-plan
+        // Charger la météo (préchargée si possible, sinon en arrière-plan)
         if (ev.getDateDebut() != null) {
-            new Thread(() -> {
-                try {
-                    WeatherService.WeatherResult wr = weatherService.getWeather(
-                            36.8065, 10.1815, ev.getDateDebut(),
-                            "PUBLIC".equalsIgnoreCase(ev.getType()));
-                    if (wr != null) {
-                        javafx.application.Platform.runLater(() -> {
-                            if (wr.attendancePercent >= 75) {
-                                weatherAdvice.setText(wr.icon + "  Météo idéale");
-                                weatherAdvice.getStyleClass().add("evAdviceGood");
-                            } else if (wr.attendancePercent >= 50) {
-                                weatherAdvice.setText(wr.icon + "  Météo incertaine");
-                                weatherAdvice.getStyleClass().add("evAdviceCaution");
-                            } else {
-                                weatherAdvice.setText(wr.icon + "  Météo défavorable");
-                                weatherAdvice.getStyleClass().add("evAdviceBad");
-                            }
-                        });
-                    } else {
-                        javafx.application.Platform.runLater(() -> {
-                            weatherAdvice.setText("⛅  Météo indisponible");
-                            weatherAdvice.getStyleClass().add("evAdviceNeutral");
-                        });
-                    }
-                } catch (Exception ex) {
-                    javafx.application.Platform.runLater(() -> {
-                        weatherAdvice.setText("⛅  Météo indisponible");
-                        weatherAdvice.getStyleClass().add("evAdviceNeutral");
-                    });
+            boolean outdoor = "PUBLIC".equalsIgnoreCase(ev.getType());
+            java.util.function.Consumer<WeatherService.WeatherResult> showAdvice = wr -> {
+                if (wr == null) {
+                    weatherAdvice.setText("⛅  Météo indisponible");
+                    weatherAdvice.getStyleClass().add("evAdviceNeutral");
+                } else if (wr.attendancePercent >= 75) {
+                    weatherAdvice.setText(wr.icon + "  Météo idéale");
+                    weatherAdvice.getStyleClass().add("evAdviceGood");
+                } else if (wr.attendancePercent >= 50) {
+                    weatherAdvice.setText(wr.icon + "  Météo incertaine");
+                    weatherAdvice.getStyleClass().add("evAdviceCaution");
+                } else {
+                    weatherAdvice.setText(wr.icon + "  Météo défavorable");
+                    weatherAdvice.getStyleClass().add("evAdviceBad");
                 }
-            }).start();
+            };
+            double[] point = WeatherService.coordinatesOf(ev.getLieuId() != null ? lieuxById.get(ev.getLieuId()) : null);
+            WeatherService.WeatherResult cached = weatherService.peekWeather(
+                    point[0], point[1], ev.getDateDebut(), outdoor);
+            if (cached != null) {
+                showAdvice.accept(cached);
+            } else {
+                tasks.background(() -> {
+                    try {
+                        return weatherService.getWeather(point[0], point[1], ev.getDateDebut(), outdoor);
+                    } catch (Exception ignored) {
+                        return null; // météo indisponible
+                    }
+                }, showAdvice);
+            }
         } else {
             weatherAdvice.setText("⛅  Date inconnue");
             weatherAdvice.getStyleClass().add("evAdviceNeutral");
@@ -547,7 +658,7 @@ public class EvenementsController {
                         });
             } else {
                 // Inscrire
-                int used = inscriptionService.countByEvent(ev.getId());
+                int used = eventStatsService.get(ev.getId()).actives();
                 if (used >= ev.getCapaciteMax()) { showState("Événement complet !"); return; }
                 inscriptionService.addInscription(ev.getId(), currentUser.getId(), (float) ev.getPrix());
                 inscritRef[0] = true;
@@ -557,6 +668,7 @@ public class EvenementsController {
                 btn.getStyleClass().add("evInscritBtn");
                 updatePlacesLabel(placesLabel, inscritsRef[0], ev.getCapaciteMax());
             }
+            refreshEventStats(ev.getId());
             refreshStats();
         } catch (Exception ex) {
             showState("Erreur : " + safe(ex.getMessage()));
@@ -569,6 +681,18 @@ public class EvenementsController {
         lbl.setText("👥 " + inscrits + "/" + max + "  ·  " + restantes + " place(s) restante(s)");
     }
 
+    /** Relit le compteur d'un seul événement après une (dés)inscription. */
+    private void refreshEventStats(int eventId) {
+        Map<Integer, EventStatsService.EventStats> copy = new HashMap<>(statsByEvent);
+        copy.put(eventId, eventStatsService.get(eventId));
+        statsByEvent = copy;
+    }
+
+    private int activeInscriptions(int eventId) {
+        EventStatsService.EventStats st = statsByEvent.get(eventId);
+        return st == null ? 0 : st.actives();
+    }
+
     // ====== ÉTAT D'INSCRIPTION SUR LA CARTE ======
 
     /**
@@ -585,8 +709,7 @@ public class EvenementsController {
                 "evAPayerTag", "evPayeTag", "evAnnuleTag", "evCompletTag");
 
         if (insc == null) {
-            boolean complet = false;
-            try { complet = inscriptionService.countByEvent(ev.getId()) >= ev.getCapaciteMax(); } catch (Exception ignored) {}
+            boolean complet = activeInscriptions(ev.getId()) >= ev.getCapaciteMax();
             boolean annule = "ANNULE".equalsIgnoreCase(ev.getStatut());
             boolean ferme  = "FERME".equalsIgnoreCase(ev.getStatut());
 
@@ -24,15 +24,20 @@ import services.evenements.PaiementService;
 import services.evenements.TicketService;
 import services.lieux.LieuService;
 import services.payment.CryptoPaymentService;
+import services.payment.CryptoRateCache;
 import services.payment.FlouciPaymentService;
+import services.payment.PaymentTracker;
 import services.payment.StripePaymentService;
 import utils.payment.PaymentConfig;
 import utils.payment.TicketPdfGenerator;
 import utils.ui.ShellNavigator;
+import utils.ui.UiTasks;
 
 import javafx.util.Duration;
 
 import java.io.File;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
@@ -51,6 +56,10 @@ import java.util.concurrent.CompletableFuture;
  *
  * <p>Quand les clés API ne sont pas configurées dans {@link PaymentConfig},
  * le système bascule automatiquement en mode simulation (aucun appel externe).</p>
+ *
+ * <p>Stripe et Flouci : le paiement est enregistré EN_ATTENTE dès la création de la
+ * session puis confirmé en arrière-plan par {@link PaymentTracker} ; le reçu
+ * s'affiche quand le tracker signale le paiement comme PAYE.</p>
  */
 public class PaiementController {
 
@@ -132,6 +141,9 @@ public class PaiementController {
     private final StripePaymentService stripeService      = new StripePaymentService();
     private final FlouciPaymentService flouciService      = new FlouciPaymentService();
     private final CryptoPaymentService cryptoService      = new CryptoPaymentService();
+    private final PaymentTracker paymentTracker           = PaymentTracker.getInstance();
+    // Devis crypto annulés avec la vue ; sessions Stripe/Flouci et annulations menées à terme
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("Paiement");
 
     // ═══════════════════════════════════════════════════════════
     //  ÉTAT
@@ -143,8 +155,10 @@ public class PaiementController {
     private Evenement evenement;
     private String selectedMethode = null;
 
-    // Flouci
-    private String flouciPaymentId = null;
+    // Stripe / Flouci : paiement EN_ATTENTE suivi par le tracker
+    private volatile int pendingPaiementId = -1;
+    private final PaymentTracker.SettlementListener settlementListener =
+            s -> Platform.runLater(() -> onPaymentSettled(s));
 
     // Crypto
     private String selectedCrypto = null;
@@ -228,6 +242,14 @@ public class PaiementController {
 
         // ── Adapter l'UI selon la configuration API ──
         configureApiMode();
+
+        // ── Suivi des paiements en ligne (reprise après redémarrage incluse) ──
+        paymentTracker.start();
+        paymentTracker.addListener(settlementListener);
+        mainScroll.sceneProperty().addListener((obs, oldScene, newScene) -> {
+            if (newScene == null) paymentTracker.removeListener(settlementListener);
+        });
+        tasks.bindTo(mainScroll);
     }
 
     /**
@@ -301,6 +323,14 @@ public class PaiementController {
                 return;
             }
             fillRecap();
+
+            // Paiement en ligne déjà lancé (ex. avant un redémarrage) : on attend sa confirmation
+            Paiement last = paiementService.getByInscriptionId(inscriptionId);
+            if (last != null && PaiementService.STATUT_EN_ATTENTE.equals(last.getStatut())) {
+                pendingPaiementId = last.getId();
+                showAwaitingConfirmation();
+                paymentTracker.checkNow(pendingPaiementId);
+            }
         } catch (Exception e) {
             showError("Erreur de chargement : " + e.getMessage());
         }
@@ -391,25 +421,23 @@ public class PaiementController {
 
         String productName = evenement.getTitre() + " × " + inscription.getNbTickets() + " ticket(s)";
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return stripeService.createCheckoutSession(productName, totalTND, 1);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).thenAccept(url -> Platform.runLater(() -> {
+        // Écriture : la session et la ligne EN_ATTENTE sont créées même si l'on quitte la page
+        tasks.write(() -> {
+            StripePaymentService.CheckoutSession session =
+                    stripeService.createSession(productName, totalTND, 1);
+            startTracking("CARTE_BANCAIRE", totalTND, session.id(),
+                    PaymentTracker.STRIPE_DEADLINE);
+            return session.url();
+        }, url -> {
             if (url != null && !url.isBlank()) {
                 openWebView(url, "CARTE_BANCAIRE");
             } else {
                 showLayer(mainScroll);
                 showError("Impossible de créer la session Stripe.");
             }
-        })).exceptionally(ex -> {
-            Platform.runLater(() -> {
-                showLayer(mainScroll);
-                showError("Erreur Stripe : " + rootMessage(ex));
-            });
-            return null;
+        }, ex -> {
+            showLayer(mainScroll);
+            showError("Erreur Stripe : " + rootMessage(ex));
         });
     }
 
@@ -421,21 +449,14 @@ public class PaiementController {
         showLayer(loadingPane);
         setLoadingText("Connexion à Flouci...");
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return flouciService.generatePayment(totalTND);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }).thenAccept(result -> Platform.runLater(() -> {
-            flouciPaymentId = result.paymentId();
-            openWebView(result.link(), "FLOUCI");
-        })).exceptionally(ex -> {
-            Platform.runLater(() -> {
-                showLayer(mainScroll);
-                showError("Erreur Flouci : " + rootMessage(ex));
-            });
-            return null;
+        tasks.write(() -> {
+            FlouciPaymentService.FlouciPayment payment = flouciService.generatePayment(totalTND);
+            startTracking("FLOUCI", totalTND, payment.paymentId(),
+                    PaymentTracker.FLOUCI_DEADLINE);
+            return payment;
+        }, result -> openWebView(result.link(), "FLOUCI"), ex -> {
+            showLayer(mainScroll);
+            showError("Erreur Flouci : " + rootMessage(ex));
         });
     }
 
@@ -469,8 +490,7 @@ public class PaiementController {
                 if (success) {
                     handleWebPaymentSuccess(methode);
                 } else {
-                    showLayer(mainScroll);
-                    showError("Paiement annulé.");
+                    cancelPendingPayment();
                 }
             }
         };
@@ -487,42 +507,92 @@ public class PaiementController {
             webLocationListener = null;
         }
         engine.loadContent("");
-        flouciPaymentId = null;
-        showLayer(mainScroll);
+        cancelPendingPayment();
+    }
+
+    /**
+     * Annulation confirmée par le fournisseur avant d'être écrite (voir {@link PaymentTracker#cancel}).
+     * ANNULE ou PAYE arrivent par {@link #onPaymentSettled} ; si la session reste payable,
+     * le suivi continue et un paiement tardif affichera encore le reçu.
+     */
+    private void cancelPendingPayment() {
+        int paiementId = pendingPaiementId;
+        if (paiementId <= 0) {
+            showLayer(mainScroll);
+            return;
+        }
+        showLayer(loadingPane);
+        setLoadingText("Annulation auprès du fournisseur…");
+        // Le tracker mène l'annulation ; le scope n'en attend que la réponse pour l'afficher
+        tasks.write(() -> paymentTracker.cancel(paiementId).get(), result -> {
+            if (paiementId != pendingPaiementId) return;
+            switch (result) {
+                case STILL_PENDING -> {
+                    showLayer(mainScroll);
+                    showError("Annulation non confirmée par le fournisseur : le paiement reste en attente "
+                            + "et sera annulé à son échéance s'il n'est pas réglé.");
+                }
+                case NOT_TRACKED -> {
+                    pendingPaiementId = -1;
+                    showLayer(mainScroll);
+                }
+                default -> { } // PAYE / ANNULE : onPaymentSettled
+            }
+        }, ex -> {
+            showLayer(mainScroll);
+            showError("Annulation impossible : " + rootMessage(ex));
+        });
     }
 
     /**
      * Appelé quand le WebView détecte un redirect vers success_url.
-     * Vérifie le paiement (Flouci) puis enregistre en BDD.
+     * La redirection seule ne prouve rien : on demande au tracker de vérifier
+     * tout de suite auprès du fournisseur, le reçu suit dans {@link #onPaymentSettled}.
      */
     private void handleWebPaymentSuccess(String methode) {
-        showLayer(loadingPane);
-        setLoadingText("Vérification du paiement...");
+        showAwaitingConfirmation();
+        paymentTracker.checkNow(pendingPaiementId);
+    }
 
-        double total = evenement.getPrix() * inscription.getNbTickets();
+    /** Crée la ligne paiement EN_ATTENTE et la confie au tracker (thread de fond). */
+    private void startTracking(String methode, double total, String providerRef, java.time.Duration deadline) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(deadline);
+        int paiementId = paiementService.addPending(inscriptionId, total, methode, providerRef, expiresAt);
+        if (paiementId <= 0) throw new IllegalStateException("Enregistrement du paiement impossible.");
+        pendingPaiementId = paiementId;
+        paymentTracker.track(new PaiementService.PendingPayment(paiementId, inscriptionId, total, methode,
+                providerRef, 0, LocalDateTime.now(), expiresAt));
+    }
+
+    private void showAwaitingConfirmation() {
+        showLayer(loadingPane);
+        setLoadingText("Vérification du paiement…\n"
+                + "Vous pouvez quitter cette page : vous serez notifié dès la confirmation.");
+    }
 
-        CompletableFuture<Boolean> verifyFuture;
+    private void onPaymentSettled(PaymentTracker.Settlement s) {
+        if (s.paiementId() != pendingPaiementId) return;
+        pendingPaiementId = -1;
 
-        if ("FLOUCI".equals(methode) && flouciPaymentId != null) {
-            verifyFuture = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return flouciService.verifyPayment(flouciPaymentId);
-                } catch (Exception e) {
-                    return true; // En cas d'erreur de vérification, on accepte
-                }
+        if (!s.isPaid()) {
+            showLayer(mainScroll);
+            showError(switch (s.statut()) {
+                case PaiementService.STATUT_EXPIRE -> "Paiement non confirmé dans les délais. Veuillez réessayer.";
+                case PaiementService.STATUT_ANNULE -> "Paiement annulé.";
+                default -> "Paiement refusé par " + formatMethode(s.methode()) + ". Veuillez réessayer.";
             });
-        } else {
-            verifyFuture = CompletableFuture.completedFuture(true);
+            return;
+        }
+        try {
+            Paiement p = paiementService.getById(s.paiementId());
+            models.evenements.Ticket first = ticketService.getByInscriptionId(inscriptionId);
+            lastPaiement   = p;
+            lastTicketCode = TicketPdfGenerator.ticketCode(first != null ? first.getId() : 0, p);
+            showRecu(p, p.getMontant());
+        } catch (Exception ex) {
+            showLayer(mainScroll);
+            showError("Paiement confirmé, mais le reçu n'a pas pu être chargé : " + ex.getMessage());
         }
-
-        verifyFuture.thenAccept(verified -> Platform.runLater(() -> {
-            if (verified) {
-                savePaiementAndShowRecu(methode, total, null, null);
-            } else {
-                showLayer(mainScroll);
-                showError("Paiement non vérifié par Flouci. Veuillez réessayer.");
-            }
-        }));
     }
 
     // ═══════════════════════════════════════════════════════════
@@ -538,39 +608,66 @@ public class PaiementController {
 
         double total = evenement.getPrix() * inscription.getNbTickets();
 
-        CompletableFuture.supplyAsync(() -> {
-            try {
-                return cryptoService.getQuote(total);
-            } catch (Exception e) {
-                // Fallback si CoinGecko est down
-                return cryptoService.getFallbackQuote(total * PaymentConfig.TND_TO_USD);
-            }
-        }).thenAccept(quote -> Platform.runLater(() -> {
-            currentQuote = quote;
-            if (cryptoLoadingLabel != null) {
-                cryptoLoadingLabel.setVisible(false);
-                cryptoLoadingLabel.setManaged(false);
-            }
+        // getQuote lit le cache partagé et n'attend jamais plus de QUOTE_MAX_WAIT
+        tasks.load(() -> cryptoService.getQuote(total),
+                quote -> onCryptoQuote(quote, total),
+                e -> onCryptoQuote(cryptoService.getFallbackQuote(total * PaymentConfig.TND_TO_USD), total));
+    }
 
-            if (quote != null) {
-                if ("BTC".equals(selectedCrypto)) {
-                    if (cryptoAddress != null) cryptoAddress.setText(quote.btcAddress());
-                    if (cryptoAmount != null)
-                        cryptoAmount.setText(String.format("%.8f BTC", quote.btcAmount()));
-                    if (cryptoRate != null)
-                        cryptoRate.setText(String.format("≈ %.2f USD  ·  1 BTC = %.2f USD",
-                                quote.usdAmount(), quote.btcPriceUSD()));
-                } else {
-                    if (cryptoAddress != null) cryptoAddress.setText(quote.ethAddress());
-                    if (cryptoAmount != null)
-                        cryptoAmount.setText(String.format("%.8f ETH", quote.ethAmount()));
-                    if (cryptoRate != null)
-                        cryptoRate.setText(String.format("≈ %.2f USD  ·  1 ETH = %.2f USD",
-                                quote.usdAmount(), quote.ethPriceUSD()));
-                }
-                setFormVisible(cryptoDetails, true);
-            }
-        }));
+    private void onCryptoQuote(CryptoPaymentService.CryptoQuote quote, double total) {
+        if (cryptoLoadingLabel != null) {
+            cryptoLoadingLabel.setVisible(false);
+            cryptoLoadingLabel.setManaged(false);
+        }
+        showCryptoQuote(quote);
+        watchCryptoRefresh(quote, total);
+    }
+
+    private void showCryptoQuote(CryptoPaymentService.CryptoQuote quote) {
+        currentQuote = quote;
+        if (quote == null) return;
+
+        String age = formatQuoteAge(quote, Instant.now());
+        if ("BTC".equals(selectedCrypto)) {
+            if (cryptoAddress != null) cryptoAddress.setText(quote.btcAddress());
+            if (cryptoAmount != null)
+                cryptoAmount.setText(String.format("%.8f BTC", quote.btcAmount()));
+            if (cryptoRate != null)
+                cryptoRate.setText(String.format("≈ %.2f USD  ·  1 BTC = %.2f USD  ·  %s",
+                        quote.usdAmount(), quote.btcPriceUSD(), age));
+        } else {
+            if (cryptoAddress != null) cryptoAddress.setText(quote.ethAddress());
+            if (cryptoAmount != null)
+                cryptoAmount.setText(String.format("%.8f ETH", quote.ethAmount()));
+            if (cryptoRate != null)
+                cryptoRate.setText(String.format("≈ %.2f USD  ·  1 ETH = %.2f USD  ·  %s",
+                        quote.usdAmount(), quote.ethPriceUSD(), age));
+        }
+        setFormVisible(cryptoDetails, true);
+    }
+
+    /**
+     * Devis servi depuis un taux périmé ou de secours : dès que le rafraîchissement
+     * en arrière-plan aboutit, on recalcule le devis affiché.
+     */
+    private void watchCryptoRefresh(CryptoPaymentService.CryptoQuote quote, double total) {
+        if (quote == null) return;
+        if (!quote.estimated() && quote.age(Instant.now()).compareTo(CryptoRateCache.FRESH_TTL) <= 0) return;
+
+        CompletableFuture<CryptoRateCache.Rates> refresh = CryptoRateCache.getInstance().refreshAsync();
+        if (refresh == null) return; // disjoncteur ouvert : on garde le devis affiché
+        tasks.background(refresh::get, rates -> {
+            if (selectedCrypto == null || currentQuote != quote) return;
+            showCryptoQuote(cryptoService.getQuote(total));
+        });
+    }
+
+    static String formatQuoteAge(CryptoPaymentService.CryptoQuote quote, Instant now) {
+        if (quote.estimated()) return "taux estimé (service indisponible)";
+        long s = quote.age(now).getSeconds();
+        if (s < 5) return "taux à l'instant";
+        if (s < 60) return "taux d'il y a " + s + " s";
+        return "taux d'il y a " + (s / 60) + " min";
     }
 
     @FXML
@@ -625,10 +722,8 @@ public class PaiementController {
                 }
 
                 // ── Générer un code unique pour le PDF ──
-                String ticketCode = "TIK-" + String.format("%06d", firstTicketId)
-                        + "-" + p.getReferenceCode().replace("PAY-", "");
                 lastPaiement   = p;
-                lastTicketCode = ticketCode;
+                lastTicketCode = TicketPdfGenerator.ticketCode(firstTicketId, p);
 
                 showRecu(p, total);
             } else {
@@ -35,6 +35,7 @@ import services.gamification.GamificationService;
 import services.weather.WeatherService;
 import services.language.LanguageToolService;
 import utils.ui.ShellNavigator;
+import utils.ui.UiTasks;
 import utils.ui.FrontOfferContext;
 import utils.ui.SpellCheckTextArea;
 import services.offres.OffreService;
@@ -155,6 +156,7 @@ public class LieuDetailsController {
     private int currentImageIndex = 0;
 
     private final LieuService lieuService = new LieuService();
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("LieuDetails");
     private final EvaluationLieuService evalService = new EvaluationLieuService();
     private final ModerationService moderationService = new ModerationService();
     private final AvisSuggestionService suggestionService = new AvisSuggestionService();
@@ -260,6 +262,7 @@ public class LieuDetailsController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(galeriePane);
         if (avisSearchField != null) {
             avisSearchField.textProperty().addListener((obs, o, n) -> renderAvis(filterAvis(n)));
         }
@@ -2075,26 +2078,13 @@ public class LieuDetailsController {
             weatherCard.setManaged(false);
         }
 
-        // Appel asynchrone (ne bloque pas l'UI)
-        javafx.concurrent.Task<services.weather.WeatherService.WeatherData> task = 
-            new javafx.concurrent.Task<>() {
-                @Override
-                protected services.weather.WeatherService.WeatherData call() throws Exception {
-                    return WeatherService.getWeather(current.getLatitude(), current.getLongitude());
-                }
-            };
-
-        task.setOnSucceeded(e -> {
-            services.weather.WeatherService.WeatherData weather = task.getValue();
-            Platform.runLater(() -> displayWeather(weather));
-        });
-
-        task.setOnFailed(e -> {
-            System.err.println("Erreur météo: " + task.getException().getMessage());
-            // Silencieusement ignored, la météo n'est pas critiques
-        });
-
-        new Thread(task, "weather-loader").start();
+        // Appel asynchrone, en dessous des chargements visibles ; la météo n'est pas critique
+        double lat = current.getLatitude();
+        double lon = current.getLongitude();
+        tasks.submit(UiTasks.Priority.BACKGROUND, false,
+                () -> WeatherService.getWeather(lat, lon),
+                this::displayWeather,
+                e -> System.err.println("Erreur météo: " + e.getMessage()));
     }
 
     /**
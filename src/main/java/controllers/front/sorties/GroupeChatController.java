@@ -23,14 +23,17 @@ import models.sorties.ChatMessage;
 import models.sorties.PollSnapshot;
 import models.sorties.TaskSnapshot;
 import models.users.User;
+import services.sorties.ChatHub;
 import services.sorties.ChatService;
 import services.sorties.PollService;
 import services.sorties.TaskService;
+import utils.ui.UiTasks;
 
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,8 +44,7 @@ public class GroupeChatController {
     // ── FXML ──────────────────────────────────────────────────────────
     @FXML private Label   lblTitre;
     @FXML private Label   lblMembers;
-    @FXML private VBox    messagesBox;
-    @FXML private ScrollPane scrollPane;
+    @FXML private ListView<ChatMessage> messagesList;
     @FXML private TextField  tfMessage;
     @FXML private Button     btnSend;
     @FXML private Label      lblAccess;
@@ -56,12 +58,34 @@ public class GroupeChatController {
     private final ChatService chatService = new ChatService();
     private final PollService pollService = new PollService();
     private final TaskService taskService = new TaskService();
-    private int lastMessageId = 0;
-    private Timeline pollTimeline;
+    // Écrit sur le thread FX, lu par le rattrapage lancé depuis le thread du hub
+    private volatile int lastMessageId = 0;
+
+    // Historique paginé : on charge la dernière page, puis les plus anciennes en remontant
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_ROWS = 5;   // lignes restantes au-dessus desquelles on charge la page précédente
+    private int oldestLoadedId = Integer.MAX_VALUE;
+    private boolean hasOlder = false;
+    private boolean loadingOlder = false;
+    private int localNoticeId = 0;                // ids négatifs : erreurs affichées localement
+    private ChatHub.Subscription hubSubscription;
+    // Le relais est local à la machine : les écritures d'autres postes arrivent par ce rattrapage lent
+    private static final Duration CATCH_UP_INTERVAL = Duration.seconds(30);
+    private Timeline catchUpPoll;
     private boolean canWrite = false;
+    // Lectures annulées à la fermeture du chat ; envois et votes vont toujours au bout
+    private final UiTasks.Scope uiTasks = UiTasks.getInstance().newScope("GroupeChat");
+
+    // Ids déjà affichés (un message peut arriver par le hub ET par l'envoi local)
+    private final Set<Integer> shownMessageIds = new HashSet<>();
+    private volatile Set<Integer> pinnedPollIds = Set.of();
 
     // pollId -> PollCard
     private final Map<Integer, PollCard> pollCards = new ConcurrentHashMap<>();
+    // Cartes créées en attente de leur premier instantané (thread FX uniquement)
+    private final Set<Integer> pendingCardLoads = new LinkedHashSet<>();
+
+    private static final String LOCAL_ERROR = "LOCAL_ERROR";
 
     private static final DateTimeFormatter TIME_FMT =
             DateTimeFormatter.ofPattern("dd/MM HH:mm");
@@ -70,10 +94,13 @@ public class GroupeChatController {
 
     @FXML
     public void initialize() {
+        uiTasks.bindTo(messagesList).onCancel(() -> loadingOlder = false);
         chatService.ensureSchema();
         pollService.ensureSchema();
         taskService.ensureSchema();
 
+        setupMessagesList();
+
         tfMessage.setOnAction(e -> sendMessage());
         btnSend.setOnAction(e -> sendMessage());
 
@@ -162,117 +189,182 @@ public class GroupeChatController {
 
     // ── Messages ──────────────────────────────────────────────────────
 
+    private void setupMessagesList() {
+        messagesList.setFocusTraversable(false);
+        messagesList.setCellFactory(lv -> new ListCell<>() {
+            // Conteneur recyclé avec la cellule : la largeur n'est liée qu'une fois
+            private final StackPane holder = new StackPane();
+            {
+                holder.prefWidthProperty().bind(lv.widthProperty().subtract(20));
+                setPrefWidth(0);
+            }
+
+            @Override
+            protected void updateItem(ChatMessage m, boolean empty) {
+                super.updateItem(m, empty);
+                if (empty || m == null) {
+                    holder.getChildren().clear();
+                    setGraphic(null);
+                    return;
+                }
+                holder.getChildren().setAll(buildRow(m));
+                setGraphic(holder);
+                if (getIndex() <= PREFETCH_ROWS) loadOlderPage();
+            }
+        });
+    }
+
     private void loadMessages() {
         if (annonce == null) return;
         try {
-            List<ChatMessage> msgs = chatService.getMessages(annonce.getId());
-            messagesBox.getChildren().clear();
+            ChatService.MessagePage page = chatService.getLatestPage(annonce.getId(), PAGE_SIZE);
             pollCards.clear();
-            for (ChatMessage m : msgs) {
-                messagesBox.getChildren().add(buildBubble(m));
+            shownMessageIds.clear();
+            for (ChatMessage m : page.messages()) {
+                shownMessageIds.add(m.getId());
                 lastMessageId = Math.max(lastMessageId, m.getId());
             }
-            updateMembersLabel(msgs);
-            scrollToBottom();
+            oldestLoadedId = page.oldestId();
+            hasOlder = page.hasMore();
+            messagesList.getItems().setAll(page.messages());
+            // Avant la première mise en page : on part du bas, la page précédente n'est pas chargée d'office
+            if (!page.messages().isEmpty()) messagesList.scrollTo(page.messages().size() - 1);
+            updateMembersLabel(chatService.countSenders(annonce.getId()));
             markReadAsync();
         } catch (Exception e) {
             System.err.println("[Chat] loadMessages: " + e.getMessage());
         }
     }
 
-    private void pollNewMessages() {
-        if (annonce == null) return;
-        try {
-            List<ChatMessage> newMsgs = chatService.getMessagesAfter(annonce.getId(), lastMessageId);
-            if (!newMsgs.isEmpty()) {
-                Platform.runLater(() -> {
-                    for (ChatMessage m : newMsgs) {
-                        messagesBox.getChildren().add(buildBubble(m));
-                        lastMessageId = Math.max(lastMessageId, m.getId());
-                    }
-                    scrollToBottom();
-                    markReadAsync();
-                });
+    /** Page précédente quand on remonte près du haut de la liste (curseur = plus petit id chargé). */
+    private void loadOlderPage() {
+        if (!hasOlder || loadingOlder || annonce == null) return;
+        loadingOlder = true;
+        int annonceId = annonce.getId();
+        int before = oldestLoadedId;
+        uiTasks.load(() -> chatService.getPageBefore(annonceId, before, PAGE_SIZE), page -> {
+            List<ChatMessage> older = new ArrayList<>();
+            for (ChatMessage m : page.messages()) {
+                if (shownMessageIds.add(m.getId())) older.add(m);
             }
-        } catch (Exception e) {
-            System.err.println("[Chat] poll: " + e.getMessage());
+            messagesList.getItems().addAll(0, older);
+            oldestLoadedId = Math.min(oldestLoadedId, page.oldestId());
+            hasOlder = page.hasMore();
+            loadingOlder = false;
+            // Garde à l'écran le message qui était en haut
+            messagesList.scrollTo(older.size());
+        }, e -> {
+            loadingOlder = false;
+            System.err.println("[Chat] loadOlderPage: " + e.getMessage());
+        });
+    }
+
+    /** Rattrapage (relais rétabli ou tic périodique) : seule relecture des nouveaux messages. */
+    private void catchUpMessages() {
+        if (annonce == null) return;
+        int annonceId = annonce.getId();
+        int after = lastMessageId;
+        uiTasks.background(() -> chatService.getMessagesAfter(annonceId, after), newMsgs -> {
+            if (!newMsgs.isEmpty()) appendMessages(newMsgs);
+        });
+    }
+
+    /** Thread FX. Ignore les messages déjà affichés. */
+    private void appendMessages(List<ChatMessage> msgs) {
+        boolean added = false;
+        for (ChatMessage m : msgs) {
+            if (m == null || !shownMessageIds.add(m.getId())) continue;
+            messagesList.getItems().add(m);
+            lastMessageId = Math.max(lastMessageId, m.getId());
+            added = true;
         }
+        if (!added) return;
+        scrollToBottom();
+        markReadAsync();
     }
 
     private void markReadAsync() {
         if (currentUser == null || annonce == null) return;
         int upTo = lastMessageId;
         if (upTo <= 0) return;
-        new Thread(() -> {
-            try {
-                chatService.markReadUpTo(annonce.getId(), currentUser.getId(), upTo);
-            } catch (Exception ignored) {
-            }
-        }, "chat-mark-read").start();
+        // Tamponné en mémoire (écriture groupée par ChatService) : pas besoin de thread
+        chatService.markReadUpTo(annonce.getId(), currentUser.getId(), upTo);
     }
 
     private void refreshPollCardsAsync() {
         if (currentUser == null) return;
         if (pollCards.isEmpty()) return;
-        new Thread(() -> {
-            try {
-                Map<Integer, PollSnapshot> snaps = new HashMap<>();
-                for (Integer pollId : pollCards.keySet()) {
-                    PollSnapshot s = pollService.getSnapshot(pollId, currentUser.getId());
-                    if (s != null) snaps.put(pollId, s);
-                }
-                if (!snaps.isEmpty()) {
-                    Platform.runLater(() -> {
-                        for (var e : snaps.entrySet()) {
-                            PollCard c = pollCards.get(e.getKey());
-                            if (c != null) c.applySnapshot(e.getValue());
-                        }
-                    });
-                }
-            } catch (Exception ignored) {}
-        }).start();
+        List<Integer> ids = new ArrayList<>(pollCards.keySet());
+        int userId = currentUser.getId();
+        // Toutes les cartes en une lecture groupée
+        uiTasks.background(() -> pollService.getSnapshots(ids, userId), this::applySnapshots);
+    }
+
+    /**
+     * Chargement initial des cartes créées pendant une même passe de rendu :
+     * regroupées et lues en un seul {@code getSnapshots} au pulse suivant.
+     */
+    private void requestCardLoad(int pollId) {
+        boolean first = pendingCardLoads.isEmpty();
+        pendingCardLoads.add(pollId);
+        if (first) Platform.runLater(this::loadPendingCards);
+    }
+
+    private void loadPendingCards() {
+        if (currentUser == null || pendingCardLoads.isEmpty()) return;
+        List<Integer> ids = new ArrayList<>(pendingCardLoads);
+        pendingCardLoads.clear();
+        int userId = currentUser.getId();
+        uiTasks.load(() -> pollService.getSnapshots(ids, userId), this::applySnapshots);
+    }
+
+    private void applySnapshots(Map<Integer, PollSnapshot> snaps) {
+        for (var e : snaps.entrySet()) {
+            PollCard c = pollCards.get(e.getKey());
+            if (c != null) c.applySnapshot(e.getValue());
+        }
     }
 
     private void refreshPinnedAsync() {
         if (annonce == null || currentUser == null) return;
-        new Thread(() -> {
-            try {
-                List<Integer> ids = pollService.listPinnedPollIds(annonce.getId());
-                List<PollSnapshot> snaps = new ArrayList<>();
-                for (Integer id : ids) {
-                    PollSnapshot s = pollService.getSnapshot(id, currentUser.getId());
-                    if (s != null) snaps.add(s);
-                }
-                Platform.runLater(() -> renderPinned(snaps));
-            } catch (Exception ignored) {}
-        }).start();
+        int annonceId = annonce.getId();
+        int userId = currentUser.getId();
+        uiTasks.load(() -> {
+            List<Integer> ids = pollService.listPinnedPollIds(annonceId);
+            return new ArrayList<>(pollService.getSnapshots(ids, userId).values());
+        }, this::renderPinned, e -> {});
     }
 
     private void refreshTaskBadgeAsync() {
         if (annonce == null || currentUser == null) return;
         if (btnTasks == null) return;
 
-        new Thread(() -> {
-            try {
-                TaskService.TaskStats stats = taskService.getStats(annonce.getId());
-                long mine = taskService.countMyOpenTasks(annonce.getId(), currentUser.getId());
-
-                String base = "🧩 Tâches";
-                String suffix;
-                if (stats.total <= 0) {
-                    suffix = "";
-                } else {
-                    suffix = "  " + stats.done + "/" + stats.total;
-                }
-                String mineBadge = (mine > 0) ? "  •" + mine : "";
+        int annonceId = annonce.getId();
+        int userId = currentUser.getId();
+        uiTasks.background(() -> {
+            TaskService.TaskStats stats = taskService.getStats(annonceId);
+            long mine = taskService.countMyOpenTasks(annonceId, userId);
+            return (Runnable) () -> renderTaskBadge(stats, mine);
+        }, Runnable::run);
+    }
 
-                Platform.runLater(() -> btnTasks.setText(base + suffix + mineBadge));
-            } catch (Exception ignored) {
-            }
-        }, "tasks-badge").start();
+    private void renderTaskBadge(TaskService.TaskStats stats, long mine) {
+        if (btnTasks == null || stats == null) return;
+        String base = "🧩 Tâches";
+        String suffix;
+        if (stats.total <= 0) {
+            suffix = "";
+        } else {
+            suffix = "  " + stats.done + "/" + stats.total;
+        }
+        String mineBadge = (mine > 0) ? "  •" + mine : "";
+        btnTasks.setText(base + suffix + mineBadge);
     }
 
     private void renderPinned(List<PollSnapshot> pinned) {
+        Set<Integer> ids = new HashSet<>();
+        if (pinned != null) for (PollSnapshot s : pinned) ids.add(s.getId());
+        pinnedPollIds = ids;
         if (pinnedBox == null) return;
         pinnedBox.getChildren().clear();
 
@@ -341,25 +433,16 @@ public class GroupeChatController {
         tfMessage.clear();
         tfMessage.setDisable(true);
 
-        new Thread(() -> {
-            try {
-                ChatMessage sent = chatService.send(annonce.getId(), currentUser.getId(), text);
-                Platform.runLater(() -> {
-                    if (sent != null) {
-                        messagesBox.getChildren().add(buildBubble(sent));
-                        lastMessageId = Math.max(lastMessageId, sent.getId());
-                        scrollToBottom();
-                    }
-                    tfMessage.setDisable(false);
-                    tfMessage.requestFocus();
-                });
-            } catch (Exception e) {
-                Platform.runLater(() -> {
-                    tfMessage.setDisable(false);
-                    showError("Envoi impossible : " + e.getMessage());
-                });
-            }
-        }).start();
+        int annonceId = annonce.getId();
+        int userId = currentUser.getId();
+        uiTasks.write(() -> chatService.send(annonceId, userId, text), sent -> {
+            if (sent != null) appendMessages(List.of(sent));
+            tfMessage.setDisable(false);
+            tfMessage.requestFocus();
+        }, e -> {
+            tfMessage.setDisable(false);
+            showError("Envoi impossible : " + e.getMessage());
+        });
     }
 
     // ── Bulle de message ──────────────────────────────────────────────
@@ -375,9 +458,11 @@ public class GroupeChatController {
 
         Node messageContent;
         if (isPoll) {
-            PollCard card = new PollCard(m.getPollId());
-            pollCards.put(m.getPollId(), card);
-            card.refresh();
+            // Carte conservée entre recyclages de cellule (état de sélection, pas de relecture)
+            PollCard card = pollCards.computeIfAbsent(m.getPollId(), id -> {
+                requestCardLoad(id);
+                return new PollCard(id);
+            });
             messageContent = card;
         } else {
             Label contentLbl = new Label(safe(m.getContent()));
@@ -497,40 +582,85 @@ public class GroupeChatController {
         return row;
     }
 
-    // ── Polling auto ──────────────────────────────────────────────────
+    // ── Temps réel (ChatHub) ──────────────────────────────────────────
 
     private void startPolling() {
-        pollTimeline = new Timeline(new KeyFrame(Duration.seconds(3), e -> {
-            new Thread(() -> {
-                pollNewMessages();
-                refreshPollCardsAsync();
-                refreshPinnedAsync();
-                refreshTaskBadgeAsync();
-            }).start();
-        }));
-        pollTimeline.setCycleCount(Timeline.INDEFINITE);
-        pollTimeline.play();
+        stopPolling();
+        if (annonce == null) return;
+        hubSubscription = ChatHub.getInstance().subscribe(annonce.getId(), this::onHubEvent);
+        catchUpPoll = new Timeline(new KeyFrame(CATCH_UP_INTERVAL, ev -> catchUp()));
+        catchUpPoll.setCycleCount(Timeline.INDEFINITE);
+        catchUpPoll.play();
     }
 
+    /**
+     * Ferme l'abonnement au hub et écrit l'état de lecture en attente
+     * (nom conservé : appelé à la fermeture de la fenêtre).
+     */
     public void stopPolling() {
-        if (pollTimeline != null) pollTimeline.stop();
+        if (catchUpPoll != null) catchUpPoll.stop();
+        catchUpPoll = null;
+        if (hubSubscription != null) {
+            hubSubscription.close();
+            chatService.flushReadState();
+        }
+        hubSubscription = null;
+    }
+
+    // Thread du hub : les lectures ciblées partent en arrière-plan, l'UI via runLater
+    private void onHubEvent(ChatHub.ChatEvent e) {
+        switch (e.type()) {
+            case MESSAGE -> Platform.runLater(() -> appendMessages(List.of(e.message())));
+            case POLL_UPDATED -> {
+                PollCard card = pollCards.get(e.refId());
+                if (card != null) Platform.runLater(card::refresh);
+                if (pinnedPollIds.contains(e.refId())) refreshPinnedAsync();
+            }
+            case PINS_CHANGED -> refreshPinnedAsync();
+            case TASKS_CHANGED -> refreshTaskBadgeAsync();
+            case RESYNC -> catchUp();
+        }
+    }
+
+    /** Relit depuis la base ce qui a pu être manqué (messages, sondages, épinglés, tâches). */
+    private void catchUp() {
+        catchUpMessages();
+        refreshPollCardsAsync();
+        refreshPinnedAsync();
+        refreshTaskBadgeAsync();
     }
 
     // ── Helpers ───────────────────────────────────────────────────────
 
     private void scrollToBottom() {
-        Platform.runLater(() -> scrollPane.setVvalue(1.0));
+        Platform.runLater(() -> {
+            int n = messagesList.getItems().size();
+            if (n > 0) messagesList.scrollTo(n - 1);
+        });
     }
 
-    private void updateMembersLabel(List<ChatMessage> msgs) {
-        long unique = msgs.stream().mapToInt(ChatMessage::getSenderId).distinct().count();
+    private void updateMembersLabel(int unique) {
         lblMembers.setText(unique + " participant(s) actif(s)");
     }
 
+    /** Erreur affichée dans le fil, non persistée (id négatif, jamais envoyée). */
     private void showError(String msg) {
-        Label err = new Label("⚠ " + msg);
-        err.setStyle("-fx-text-fill: #e74c3c; -fx-padding: 4 12;");
-        messagesBox.getChildren().add(err);
+        ChatMessage notice = new ChatMessage();
+        notice.setId(--localNoticeId);
+        notice.setMessageType(LOCAL_ERROR);
+        notice.setContent(msg);
+        messagesList.getItems().add(notice);
+        scrollToBottom();
+    }
+
+    private Node buildRow(ChatMessage m) {
+        if (LOCAL_ERROR.equals(m.getMessageType())) {
+            Label err = new Label("⚠ " + safe(m.getContent()));
+            err.setWrapText(true);
+            err.setStyle("-fx-text-fill: #e74c3c; -fx-padding: 4 12;");
+            return err;
+        }
+        return buildBubble(m);
     }
 
     private static String safe(String s) {
@@ -685,31 +815,22 @@ public class GroupeChatController {
         });
 
         dlg.showAndWait().ifPresent(draft -> {
-            new Thread(() -> {
-                try {
-                    int pollId = pollService.createPoll(
-                            annonce.getId(),
-                            currentUser.getId(),
-                            draft.question,
-                            draft.allowMulti,
-                            draft.allowAddOptions,
-                            draft.pinned,
-                            draft.options
-                    );
-
-                    ChatMessage msg = chatService.sendPoll(annonce.getId(), currentUser.getId(), pollId, draft.question);
-
-                    Platform.runLater(() -> {
-                        messagesBox.getChildren().add(buildBubble(msg));
-                        lastMessageId = Math.max(lastMessageId, msg.getId());
-                        scrollToBottom();
-                        refreshPinnedAsync();
-                        refreshTaskBadgeAsync();
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Sondage impossible : " + safe(ex.getMessage())));
-                }
-            }).start();
+            int annonceId = annonce.getId();
+            int userId = currentUser.getId();
+            uiTasks.write(() -> {
+                int pollId = pollService.createPoll(
+                        annonceId,
+                        userId,
+                        draft.question,
+                        draft.allowMulti,
+                        draft.allowAddOptions,
+                        draft.pinned,
+                        draft.options
+                );
+
+                return chatService.sendPoll(annonceId, userId, pollId, draft.question);
+            }, msg -> appendMessages(List.of(msg)),
+                    ex -> showError("Sondage impossible : " + safe(ex.getMessage())));
         });
     }
 
@@ -747,18 +868,11 @@ public class GroupeChatController {
         String c = safe(content).trim();
         if (c.isEmpty()) return;
 
-        new Thread(() -> {
-            try {
-                ChatMessage msg = chatService.sendSystem(annonce.getId(), currentUser.getId(), c);
-                if (msg != null) {
-                    Platform.runLater(() -> {
-                        messagesBox.getChildren().add(buildBubble(msg));
-                        lastMessageId = Math.max(lastMessageId, msg.getId());
-                        scrollToBottom();
-                    });
-                }
-            } catch (Exception ignored) {}
-        }, "chat-system-msg").start();
+        int annonceId = annonce.getId();
+        int userId = currentUser.getId();
+        uiTasks.write(() -> chatService.sendSystem(annonceId, userId, c), msg -> {
+            if (msg != null) appendMessages(List.of(msg));
+        }, e -> {});
     }
 
     private class TaskBoard extends VBox {
@@ -772,6 +886,7 @@ public class GroupeChatController {
         private final TextField tfTitle = new TextField();
         private final TextArea  taDesc  = new TextArea();
         private final ComboBox<TaskService.Assignee> cbAssign = new ComboBox<>();
+        private final Spinner<Integer> spEffort = effortSpinner(TaskService.DEFAULT_EFFORT);
 
         private final Button btnAdd = new Button("+ Ajouter");
         private final Button btnAuto = new Button("⚙ Auto-répartir");
@@ -781,7 +896,7 @@ public class GroupeChatController {
         private final VBox doingList = new VBox(10);
         private final VBox doneList  = new VBox(10);
 
-        private Timeline auto;
+        private ChatHub.Subscription hubSubscription;
 
         private List<TaskService.Assignee> cachedAssignees = List.of();
 
@@ -814,7 +929,7 @@ public class GroupeChatController {
             btnAuto.setOnAction(e -> autoAssign());
             btnRefresh.setOnAction(e -> refreshAsync());
 
-            HBox row1 = new HBox(10, tfTitle, cbAssign, btnAdd);
+            HBox row1 = new HBox(10, tfTitle, cbAssign, spEffort, btnAdd);
             row1.getStyleClass().add("taskCreateRow");
             HBox.setHgrow(tfTitle, Priority.ALWAYS);
 
@@ -894,36 +1009,38 @@ public class GroupeChatController {
             return col;
         }
 
+        // Rafraîchi sur changement poussé par le hub (y compris ses propres actions)
         void startAutoRefresh() {
             stopAutoRefresh();
-            auto = new Timeline(new KeyFrame(Duration.seconds(3), e -> refreshAsync()));
-            auto.setCycleCount(Timeline.INDEFINITE);
-            auto.play();
+            if (annonce == null) return;
+            hubSubscription = ChatHub.getInstance().subscribe(annonce.getId(), e -> {
+                if (e.type() == ChatHub.Type.TASKS_CHANGED || e.type() == ChatHub.Type.RESYNC) refreshAsync();
+            });
         }
 
         void stopAutoRefresh() {
-            if (auto != null) auto.stop();
-            auto = null;
+            if (hubSubscription != null) hubSubscription.close();
+            hubSubscription = null;
         }
 
         private void refreshAsync() {
             if (annonce == null) return;
-            new Thread(() -> {
-                try {
-                    List<TaskSnapshot> tasks = taskService.listTasks(annonce.getId());
-                    List<TaskService.Assignee> assignees = taskService.listEligibleAssignees(annonce.getId());
-                    TaskService.TaskStats stats = taskService.getStats(annonce.getId());
-
-                    final long myOpen = (currentUser != null)
-                            ? taskService.countMyOpenTasks(annonce.getId(), currentUser.getId())
-                            : 0;
-
-                    Platform.runLater(() -> {
-                        renderAssignees(assignees);
-                        renderTasks(tasks, stats, myOpen);
-                    });
-                } catch (Exception ignored) {}
-            }, "tasks-refresh").start();
+            int annonceId = annonce.getId();
+            Integer userId = currentUser != null ? currentUser.getId() : null;
+            uiTasks.load(() -> {
+                List<TaskSnapshot> tasks = taskService.listTasks(annonceId);
+                List<TaskService.Assignee> assignees = taskService.listEligibleAssignees(annonceId);
+                TaskService.TaskStats stats = taskService.getStats(annonceId);
+
+                final long myOpen = (userId != null)
+                        ? taskService.countMyOpenTasks(annonceId, userId)
+                        : 0;
+
+                return (Runnable) () -> {
+                    renderAssignees(assignees);
+                    renderTasks(tasks, stats, myOpen);
+                };
+            }, Runnable::run, e -> {});
         }
 
         private void renderAssignees(List<TaskService.Assignee> assignees) {
@@ -968,7 +1085,7 @@ public class GroupeChatController {
             String mineStr = (myOpen > 0) ? (" · Mes tâches ouvertes: " + myOpen) : "";
             sub.setText(doneCount + "/" + Math.max(total, 0) + " terminée(s)" + mineStr);
 
-            refreshTaskBadgeAsync();
+            renderTaskBadge(stats, myOpen);
         }
 
         private void setBadgeCount(String status, int count) {
@@ -1058,15 +1175,10 @@ public class GroupeChatController {
                 if (!assignmentAllowed) return;
                 TaskService.Assignee a = cb.getValue();
                 Integer uid = (a == null || a.userId <= 0) ? null : a.userId;
-                new Thread(() -> {
-                    try {
-                        taskService.assignTask(t.getId(), uid, currentUser.getId(), canManage);
-                        pushSystemMessageAsync("👤 Tâche #" + t.getId() + " assignée à " + (a == null ? "" : a.name));
-                        refreshAsync();
-                    } catch (Exception ex) {
-                        Platform.runLater(() -> showError("Assignation impossible: " + safe(ex.getMessage())));
-                    }
-                }, "task-assign").start();
+                uiTasks.write(() -> {
+                    taskService.assignTask(t.getId(), uid, currentUser.getId(), canManage);
+                    pushSystemMessageAsync("👤 Tâche #" + t.getId() + " assignée à " + (a == null ? "" : a.name));
+                }, ex -> showError("Assignation impossible: " + safe(ex.getMessage())));
             });
 
             Button b1 = new Button();
@@ -1109,15 +1221,10 @@ public class GroupeChatController {
                 a.setContentText("Cette action est définitive.");
                 a.showAndWait().ifPresent(bt -> {
                     if (bt == ButtonType.OK) {
-                        new Thread(() -> {
-                            try {
-                                taskService.deleteTask(t.getId());
-                                pushSystemMessageAsync("🗑 Tâche #" + t.getId() + " supprimée");
-                                refreshAsync();
-                            } catch (Exception ex) {
-                                Platform.runLater(() -> showError("Suppression impossible: " + safe(ex.getMessage())));
-                            }
-                        }, "task-del").start();
+                        uiTasks.write(() -> {
+                            taskService.deleteTask(t.getId());
+                            pushSystemMessageAsync("🗑 Tâche #" + t.getId() + " supprimée");
+                        }, ex -> showError("Suppression impossible: " + safe(ex.getMessage())));
                     }
                 });
             });
@@ -1153,18 +1260,13 @@ public class GroupeChatController {
         }
 
         private void changeStatusById(int taskId, String newStatus) {
-            new Thread(() -> {
-                try {
-                    if (currentUser == null) {
-                        Platform.runLater(() -> showError("Vous devez être connecté."));
-                        return;
-                    }
-                    taskService.setStatus(taskId, newStatus, currentUser.getId());
-                    refreshAsync();
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Changement impossible: " + safe(ex.getMessage())));
-                }
-            }, "task-status-dnd").start();
+            if (currentUser == null) {
+                showError("Vous devez être connecté.");
+                return;
+            }
+            int userId = currentUser.getId();
+            uiTasks.write(() -> taskService.setStatus(taskId, newStatus, userId),
+                    ex -> showError("Changement impossible: " + safe(ex.getMessage())));
         }
 
         private void editTask(TaskSnapshot t) {
@@ -1183,7 +1285,10 @@ public class GroupeChatController {
             dd.setWrapText(true);
             dd.getStyleClass().add("taskField");
 
-            VBox root = new VBox(10, new Label("Titre"), tt, new Label("Détails"), dd);
+            Spinner<Integer> effort = effortSpinner(t.getEffort());
+
+            VBox root = new VBox(10, new Label("Titre"), tt, new Label("Détails"), dd,
+                    new Label("Effort (points)"), effort);
             root.setPadding(new Insets(10));
             dlg.getDialogPane().setContent(root);
 
@@ -1195,38 +1300,34 @@ public class GroupeChatController {
             // ✅ ICI : bt est ButtonType (pas Void)
             dlg.showAndWait().ifPresent(bt -> {
                 if (bt != ButtonType.OK) return;
-                new Thread(() -> {
-                    try {
-                        taskService.updateTask(t.getId(), tt.getText(), dd.getText());
-                        pushSystemMessageAsync("✏ Tâche #" + t.getId() + " modifiée");
-                        refreshAsync();
-                    } catch (Exception ex) {
-                        Platform.runLater(() -> showError("Modification impossible: " + safe(ex.getMessage())));
-                    }
-                }, "task-edit").start();
+                String title = tt.getText();
+                String desc = dd.getText();
+                int newEffort = effort.getValue();
+                int userId = currentUser.getId();
+                uiTasks.write(() -> {
+                    taskService.updateTask(t.getId(), title, desc);
+                    if (newEffort != t.getEffort()) taskService.setEffort(t.getId(), newEffort, userId, canEdit);
+                    pushSystemMessageAsync("✏ Tâche #" + t.getId() + " modifiée");
+                }, ex -> showError("Modification impossible: " + safe(ex.getMessage())));
             });
         }
 
         private void changeStatus(TaskSnapshot t, String newStatus) {
-            new Thread(() -> {
-                try {
-                    if (currentUser == null) {
-                        Platform.runLater(() -> showError("Vous devez être connecté."));
-                        return;
-                    }
-                    taskService.setStatus(t.getId(), newStatus, currentUser.getId());
-                    if ("DONE".equalsIgnoreCase(newStatus)) {
-                        pushSystemMessageAsync("✅ Tâche #" + t.getId() + " terminée : " + safe(t.getTitle()));
-                    } else if ("DOING".equalsIgnoreCase(newStatus)) {
-                        pushSystemMessageAsync("▶ Tâche #" + t.getId() + " en cours : " + safe(t.getTitle()));
-                    } else {
-                        pushSystemMessageAsync("↺ Tâche #" + t.getId() + " repassée en TODO : " + safe(t.getTitle()));
-                    }
-                    refreshAsync();
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Changement impossible: " + safe(ex.getMessage())));
+            if (currentUser == null) {
+                showError("Vous devez être connecté.");
+                return;
+            }
+            int userId = currentUser.getId();
+            uiTasks.write(() -> {
+                taskService.setStatus(t.getId(), newStatus, userId);
+                if ("DONE".equalsIgnoreCase(newStatus)) {
+                    pushSystemMessageAsync("✅ Tâche #" + t.getId() + " terminée : " + safe(t.getTitle()));
+                } else if ("DOING".equalsIgnoreCase(newStatus)) {
+                    pushSystemMessageAsync("▶ Tâche #" + t.getId() + " en cours : " + safe(t.getTitle()));
+                } else {
+                    pushSystemMessageAsync("↺ Tâche #" + t.getId() + " repassée en TODO : " + safe(t.getTitle()));
                 }
-            }, "task-status").start();
+            }, ex -> showError("Changement impossible: " + safe(ex.getMessage())));
         }
 
         private void createTask() {
@@ -1236,28 +1337,23 @@ public class GroupeChatController {
             TaskService.Assignee a = cbAssign.getValue();
             Integer uid = (a == null || a.userId <= 0) ? null : a.userId;
             String desc = safe(taDesc.getText()).trim();
+            int effort = spEffort.getValue();
 
             btnAdd.setDisable(true);
-            new Thread(() -> {
-                try {
-                    int id = taskService.createTask(annonce.getId(), currentUser.getId(), title, desc, uid);
-                    pushSystemMessageAsync("🧩 Nouvelle tâche #" + id + " : " + title);
-
-                    Platform.runLater(() -> {
-                        tfTitle.clear();
-                        taDesc.clear();
-                        cbAssign.getSelectionModel().selectFirst();
-                        btnAdd.setDisable(false);
-                    });
-
-                    refreshAsync();
-                } catch (Exception ex) {
-                    Platform.runLater(() -> {
-                        btnAdd.setDisable(false);
-                        showError("Création impossible: " + safe(ex.getMessage()));
-                    });
-                }
-            }, "task-create").start();
+            uiTasks.write(() -> {
+                int id = taskService.createTask(annonce.getId(), currentUser.getId(), title, desc, uid, effort);
+                pushSystemMessageAsync("🧩 Nouvelle tâche #" + id + " : " + title);
+                return id;
+            }, id -> {
+                tfTitle.clear();
+                taDesc.clear();
+                cbAssign.getSelectionModel().selectFirst();
+                spEffort.getValueFactory().setValue(TaskService.DEFAULT_EFFORT);
+                btnAdd.setDisable(false);
+            }, ex -> {
+                btnAdd.setDisable(false);
+                showError("Création impossible: " + safe(ex.getMessage()));
+            });
         }
 
         private void autoAssign() {
@@ -1268,19 +1364,14 @@ public class GroupeChatController {
             }
 
             btnAuto.setDisable(true);
-            new Thread(() -> {
-                try {
-                    int changed = taskService.autoAssignBalanced(annonce.getId());
-                    if (changed > 0) pushSystemMessageAsync("⚙ Auto-répartition effectuée (" + changed + " tâche(s) assignée(s))");
-                    Platform.runLater(() -> btnAuto.setDisable(false));
-                    refreshAsync();
-                } catch (Exception ex) {
-                    Platform.runLater(() -> {
-                        btnAuto.setDisable(false);
-                        showError("Auto-répartition impossible: " + safe(ex.getMessage()));
-                    });
-                }
-            }, "task-auto").start();
+            uiTasks.write(() -> {
+                int changed = taskService.autoAssignBalanced(annonce.getId());
+                if (changed > 0) pushSystemMessageAsync("⚙ Auto-répartition effectuée (" + changed + " tâche(s) assignée(s))");
+                return changed;
+            }, changed -> btnAuto.setDisable(false), ex -> {
+                btnAuto.setDisable(false);
+                showError("Auto-répartition impossible: " + safe(ex.getMessage()));
+            });
         }
 
         private String buildAssigneeLine(TaskSnapshot t) {
@@ -1288,7 +1379,16 @@ public class GroupeChatController {
             if (assigned.isEmpty()) assigned = "Non assignée";
             String by = safe(t.getCreatedByName()).trim();
             if (by.isEmpty()) by = "Utilisateur #" + t.getCreatedBy();
-            return "Assignée à: " + assigned + " · Créée par: " + by;
+            return "Assignée à: " + assigned + " · Créée par: " + by + " · Effort: " + t.getEffort() + " pt";
+        }
+
+        /** Effort estimé d'une tâche (1 à {@link TaskService#MAX_EFFORT} points), pondère l'auto-répartition. */
+        private Spinner<Integer> effortSpinner(int initial) {
+            Spinner<Integer> sp = new Spinner<>(1, TaskService.MAX_EFFORT, Math.max(1, initial));
+            sp.setPrefWidth(80);
+            sp.getStyleClass().add("taskField");
+            sp.setTooltip(new Tooltip("Effort estimé (points)"));
+            return sp;
         }
 
         private String statusLabel(String status) {
@@ -1415,12 +1515,8 @@ public class GroupeChatController {
 
         void refresh() {
             if (currentUser == null) return;
-            new Thread(() -> {
-                try {
-                    PollSnapshot s = pollService.getSnapshot(pollId, currentUser.getId());
-                    if (s != null) Platform.runLater(() -> applySnapshot(s));
-                } catch (Exception ignored) {}
-            }).start();
+            int userId = currentUser.getId();
+            uiTasks.load(() -> pollService.getSnapshot(pollId, userId), this::applySnapshot, e -> {});
         }
 
         void applySnapshot(PollSnapshot s) {
@@ -1660,43 +1756,33 @@ public class GroupeChatController {
 
             btnVote.setDisable(true);
 
-            new Thread(() -> {
-                try {
-                    PollSnapshot snap = pollService.getSnapshot(pollId, currentUser.getId());
-                    boolean multi = snap != null && snap.isAllowMulti();
-                    pollService.vote(pollId, currentUser.getId(), multi, selected);
-                    PollSnapshot after = pollService.getSnapshot(pollId, currentUser.getId());
-                    Platform.runLater(() -> {
-                        btnVote.setDisable(false);
-                        selectionDirty = false;
-                        if (after != null) applySnapshot(after);
-                        microPulse(this);
-                        refreshPinnedAsync();
-                        refreshTaskBadgeAsync();
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> {
-                        btnVote.setDisable(false);
-                        showError("Vote impossible : " + safe(ex.getMessage()));
-                    });
-                }
-            }).start();
+            int userId = currentUser.getId();
+            uiTasks.write(() -> {
+                PollSnapshot snap = pollService.getSnapshot(pollId, userId);
+                boolean multi = snap != null && snap.isAllowMulti();
+                pollService.vote(pollId, userId, multi, selected);
+                return pollService.getSnapshot(pollId, userId);
+            }, after -> {
+                btnVote.setDisable(false);
+                selectionDirty = false;
+                if (after != null) applySnapshot(after);
+                microPulse(this);
+            }, ex -> {
+                btnVote.setDisable(false);
+                showError("Vote impossible : " + safe(ex.getMessage()));
+            });
         }
 
         private void clearMyVote() {
             if (currentUser == null) return;
-            new Thread(() -> {
-                try {
-                    pollService.clearVote(pollId, currentUser.getId());
-                    PollSnapshot after = pollService.getSnapshot(pollId, currentUser.getId());
-                    Platform.runLater(() -> {
-                        selectionDirty = false;
-                        if (after != null) applySnapshot(after);
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Impossible : " + safe(ex.getMessage())));
-                }
-            }).start();
+            int userId = currentUser.getId();
+            uiTasks.write(() -> {
+                pollService.clearVote(pollId, userId);
+                return pollService.getSnapshot(pollId, userId);
+            }, after -> {
+                selectionDirty = false;
+                if (after != null) applySnapshot(after);
+            }, ex -> showError("Impossible : " + safe(ex.getMessage())));
         }
 
         private void addOptionInline() {
@@ -1706,42 +1792,33 @@ public class GroupeChatController {
             tfAdd.clear();
             btnAdd.setDisable(true);
 
-            new Thread(() -> {
-                try {
-                    if (canManage) pollService.addOptionPrivileged(pollId, currentUser.getId(), v);
-                    else pollService.addOption(pollId, currentUser.getId(), v);
-                    PollSnapshot after = pollService.getSnapshot(pollId, currentUser.getId());
-                    Platform.runLater(() -> {
-                        btnAdd.setDisable(false);
-                        if (after != null) applySnapshot(after);
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> {
-                        btnAdd.setDisable(false);
-                        showError("Ajout impossible : " + safe(ex.getMessage()));
-                    });
-                }
-            }).start();
+            int userId = currentUser.getId();
+            uiTasks.write(() -> {
+                if (canManage) pollService.addOptionPrivileged(pollId, userId, v);
+                else pollService.addOption(pollId, userId, v);
+                return pollService.getSnapshot(pollId, userId);
+            }, after -> {
+                btnAdd.setDisable(false);
+                if (after != null) applySnapshot(after);
+            }, ex -> {
+                btnAdd.setDisable(false);
+                showError("Ajout impossible : " + safe(ex.getMessage()));
+            });
         }
 
         private void togglePin() {
             if (currentUser == null) return;
             boolean next = !pinned;
 
-            new Thread(() -> {
-                try {
-                    if (isAdmin()) pollService.setPinnedAsAdmin(pollId, next);
-                    else pollService.setPinnedAsOwner(pollId, currentUser.getId(), next);
-                    PollSnapshot after = pollService.getSnapshot(pollId, currentUser.getId());
-                    Platform.runLater(() -> {
-                        if (after != null) applySnapshot(after);
-                        refreshPinnedAsync();
-                        refreshTaskBadgeAsync();
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Épinglage impossible : " + safe(ex.getMessage())));
-                }
-            }).start();
+            int userId = currentUser.getId();
+            boolean admin = isAdmin();
+            uiTasks.write(() -> {
+                if (admin) pollService.setPinnedAsAdmin(pollId, next);
+                else pollService.setPinnedAsOwner(pollId, userId, next);
+                return pollService.getSnapshot(pollId, userId);
+            }, after -> {
+                if (after != null) applySnapshot(after);
+            }, ex -> showError("Épinglage impossible : " + safe(ex.getMessage())));
         }
 
         private void closePoll() {
@@ -1754,20 +1831,15 @@ public class GroupeChatController {
             a.setContentText("Les votes resteront visibles, mais plus personne ne pourra voter.");
             if (a.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
 
-            new Thread(() -> {
-                try {
-                    if (isAdmin()) pollService.closePollAsAdmin(pollId);
-                    else pollService.closePollAsOwner(pollId, currentUser.getId());
-                    PollSnapshot after = pollService.getSnapshot(pollId, currentUser.getId());
-                    Platform.runLater(() -> {
-                        if (after != null) applySnapshot(after);
-                        refreshPinnedAsync();
-                        refreshTaskBadgeAsync();
-                    });
-                } catch (Exception ex) {
-                    Platform.runLater(() -> showError("Clôture impossible : " + safe(ex.getMessage())));
-                }
-            }).start();
+            int userId = currentUser.getId();
+            boolean admin = isAdmin();
+            uiTasks.write(() -> {
+                if (admin) pollService.closePollAsAdmin(pollId);
+                else pollService.closePollAsOwner(pollId, userId);
+                return pollService.getSnapshot(pollId, userId);
+            }, after -> {
+                if (after != null) applySnapshot(after);
+            }, ex -> showError("Clôture impossible : " + safe(ex.getMessage())));
         }
     }
 }
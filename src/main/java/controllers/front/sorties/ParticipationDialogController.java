@@ -9,6 +9,7 @@ import javafx.stage.Stage;
 import models.sorties.AnnonceSortie;
 import models.sorties.ParticipationSortie;
 import models.users.User;
+import services.evenements.ScheduleConflictIndex;
 import services.sorties.ParticipationSortieService;
 
 import java.time.format.DateTimeFormatter;
@@ -330,6 +331,7 @@ public class ParticipationDialogController {
                 participationService.updatePendingRequest(p);
                 info("Demande mise à jour", "Ta participation a été mise à jour (EN_ATTENTE).");
             } else {
+                if (!confirmScheduleConflicts()) return;
                 participationService.addRequest(p);
                 info("Demande envoyée", "Ta participation est enregistrée (EN_ATTENTE).");
             }
@@ -369,6 +371,28 @@ public class ParticipationDialogController {
         }
     }
 
+    /** Prévient si la sortie chevauche un événement ou une autre sortie du user ; true = continuer. */
+    private boolean confirmScheduleConflicts() {
+        List<ScheduleConflictIndex.Conflict> conflicts;
+        try {
+            conflicts = participationService.findConflicts(annonce.getId(), currentUser.getId());
+        } catch (Exception e) {
+            // L'avertissement est facultatif : une erreur d'index ne bloque pas la demande
+            System.err.println("[Participation] Vérification agenda: " + e.getMessage());
+            return true;
+        }
+        if (conflicts.isEmpty()) return true;
+
+        StringBuilder msg = new StringBuilder("Cette sortie chevauche :\n");
+        for (ScheduleConflictIndex.Conflict c : conflicts) msg.append("• ").append(c.describe()).append('\n');
+        msg.append("\nEnvoyer la demande quand même ?");
+
+        Alert a = new Alert(Alert.AlertType.CONFIRMATION, msg.toString(), ButtonType.YES, ButtonType.NO);
+        a.setTitle("Conflit d'agenda");
+        a.setHeaderText(null);
+        return a.showAndWait().orElse(ButtonType.NO) == ButtonType.YES;
+    }
+
     private void info(String title, String msg) {
         Alert a = new Alert(Alert.AlertType.INFORMATION);
         a.setTitle(title);
@@ -36,6 +36,7 @@ import services.sorties.ParticipationSortieService;
 import services.users.UserService;
 import services.sorties.ChatService;
 import utils.ui.ShellNavigator;
+import utils.ui.UiTasks;
 
 import java.io.File;
 import java.text.DecimalFormat;
@@ -120,6 +121,7 @@ public class SortieDetailsController {
     private final ChatService chatService = new ChatService();
 
     private Timeline chatUnreadPoller;
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("SortieDetails");
 
     private final Rectangle heroClip = new Rectangle();
 
@@ -179,6 +181,8 @@ public class SortieDetailsController {
 
     @FXML
     private void initialize() {
+        // Quitter la page (menu, retour) coupe aussi le sondage du badge, comme goBack
+        tasks.bindTo(root).onCancel(this::stopChatUnreadPolling);
         try { chatService.ensureSchema(); } catch (Exception ignored) {}
         setupHeroCover();
 
@@ -1116,10 +1120,12 @@ public class SortieDetailsController {
             chatStage.show();
 
             // Consider chat as read when the user opens it.
-            new Thread(() -> {
-                try { chatService.markAllRead(current.getId(), currentUser.getId()); } catch (Exception ignored) {}
-                Platform.runLater(this::updateChatUnreadBadgeAsync);
-            }, "chat-mark-all-read").start();
+            int annonceId = current.getId();
+            int userId = currentUser.getId();
+            tasks.write(() -> {
+                try { chatService.markAllRead(annonceId, userId); } catch (Exception ignored) {}
+                return null;
+            }, done -> updateChatUnreadBadgeAsync(), null);
         } catch (Exception ex) {
             error("Chat", "Ouverture impossible", "Impossible d'ouvrir le chat : " + ex.getMessage());
         }
@@ -1152,16 +1158,13 @@ public class SortieDetailsController {
 
         int annonceId = current.getId();
         int userId = currentUser.getId();
-        new Thread(() -> {
-            long c;
+        tasks.background(() -> {
             try {
-                c = chatService.getUnreadCount(annonceId, userId);
+                return chatService.getUnreadCount(annonceId, userId);
             } catch (Exception e) {
-                c = 0;
+                return 0L;
             }
-            long finalC = c;
-            Platform.runLater(() -> setChatBadgeValue(finalC));
-        }, "chat-unread-poll").start();
+        }, this::setChatBadgeValue);
     }
 
     private void setChatBadgeValue(long count) {
@@ -31,6 +31,7 @@ import services.notifications.NotificationService;
 import services.sorties.ParticipationSortieService;
 import services.sorties.SortieMediaService;
 import services.sorties.SortieRecapService;
+import utils.ui.UiTasks;
 
 import java.awt.Desktop;
 import java.io.*;
@@ -74,6 +75,7 @@ public class AlbumRecapController {
     private final SortieRecapService recapService = new SortieRecapService();
     private final ParticipationSortieService participationService = new ParticipationSortieService();
     private final NotificationService notificationService = new NotificationService();
+    private final UiTasks.Scope tasks = UiTasks.getInstance().newScope("AlbumRecap");
 
     private User currentUser;
     private AnnonceSortie currentSortie;
@@ -98,6 +100,7 @@ public class AlbumRecapController {
 
     @FXML
     private void initialize() {
+        tasks.bindTo(galleryPane);
         refreshUiEmptyState();
         setupRecapPlayerSizing();
         setupGalleryResponsiveLayout();
@@ -716,44 +719,42 @@ public class AlbumRecapController {
 
         setRecapBusy(true);
 
-        new Thread(() -> {
-            try {
-                int sortieId = currentSortie.getId();
-                int version = recapService.nextVersion(sortieId);
-
-                Path outDir = Paths.get(System.getProperty("user.dir"), "outputs", "sorties", String.valueOf(sortieId));
-                Files.createDirectories(outDir);
+        // Écriture : le rendu et l'enregistrement de la version vont au bout même si la vue est quittée
+        int sortieId = currentSortie.getId();
+        tasks.write(() -> {
+            int version = recapService.nextVersion(sortieId);
 
-                String outFile = "recap_v" + version + ".mp4";
-                String inFile = "recap_input_v" + version + ".json";
+            Path outDir = Paths.get(System.getProperty("user.dir"), "outputs", "sorties", String.valueOf(sortieId));
+            Files.createDirectories(outDir);
 
-                Path outAbs = outDir.resolve(outFile).normalize();
-                Path inAbs = outDir.resolve(inFile).normalize();
+            String outFile = "recap_v" + version + ".mp4";
+            String inFile = "recap_input_v" + version + ".json";
 
-                writeInputJson(inAbs, outAbs);
+            Path outAbs = outDir.resolve(outFile).normalize();
+            Path inAbs = outDir.resolve(inFile).normalize();
 
-                RunResult rr = runPython(inAbs, outAbs);
-                if (!rr.ok) {
-                    Platform.runLater(() -> error("Récap IA", "Génération échouée", rr.message));
-                    return;
-                }
+            writeInputJson(inAbs, outAbs);
 
-                String relVideo = portableRel(Paths.get("outputs", "sorties", String.valueOf(sortieId), outFile));
-                recapService.create(sortieId, relVideo, version);
-                notifyRecapUpdated(sortieId, version);
+            RunResult rr = runPython(inAbs, outAbs);
+            if (!rr.ok) return rr;
 
-                Platform.runLater(() -> {
-                    if (tfVideoTitle != null && !rr.title.isBlank()) tfVideoTitle.setText(rr.title);
-                    if (tfMood != null && !rr.mood.isBlank()) tfMood.setText(rr.mood);
-                    refresh();
-                });
-
-            } catch (Exception ex) {
-                Platform.runLater(() -> error("Récap IA", "Impossible de générer", safe(ex.getMessage())));
-            } finally {
-                Platform.runLater(() -> setRecapBusy(false));
+            String relVideo = portableRel(Paths.get("outputs", "sorties", String.valueOf(sortieId), outFile));
+            recapService.create(sortieId, relVideo, version);
+            notifyRecapUpdated(sortieId, version);
+            return rr;
+        }, rr -> {
+            setRecapBusy(false);
+            if (!rr.ok) {
+                error("Récap IA", "Génération échouée", rr.message);
+                return;
             }
-        }, "recap-ai-worker").start();
+            if (tfVideoTitle != null && !rr.title.isBlank()) tfVideoTitle.setText(rr.title);
+            if (tfMood != null && !rr.mood.isBlank()) tfMood.setText(rr.mood);
+            refresh();
+        }, ex -> {
+            setRecapBusy(false);
+            error("Récap IA", "Impossible de générer", safe(ex.getMessage()));
+        });
     }
 
     private void setRecapBusy(boolean busy) {
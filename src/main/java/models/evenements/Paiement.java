@@ -6,7 +6,8 @@ import java.time.LocalDateTime;
  * Modèle Paiement — correspond à la table "paiement" en base.
  *
  * Méthodes possibles : CARTE_BANCAIRE, ESPECES, VIREMENT, FLOUCI
- * Statuts possibles  : PAYE, REMBOURSE
+ * Statuts possibles  : PAYE, REMBOURSE ; paiements en ligne (Stripe / Flouci) :
+ *                      EN_ATTENTE → PAYE | ECHOUE | EXPIRE | ANNULE
  */
 public class Paiement {
 
@@ -14,7 +15,7 @@ public class Paiement {
     private int inscriptionId;
     private double montant;
     private String methode;         // CARTE_BANCAIRE | ESPECES | VIREMENT | FLOUCI
-    private String statut;          // PAYE | REMBOURSE
+    private String statut;          // PAYE | REMBOURSE | EN_ATTENTE | ECHOUE | EXPIRE | ANNULE
     private String referenceCode;
     private String nomCarte;        // nullable
     private String quatreDerniers;  // nullable — 4 derniers chiffres de la carte
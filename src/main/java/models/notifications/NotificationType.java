@@ -20,5 +20,9 @@ public enum NotificationType {
     SORTIE_RECAP_UPDATED,
 
     // ===== Participation (gestion sortie) =====
-    PARTICIPATION_CANCELLED
+    PARTICIPATION_CANCELLED,
+
+    // ===== Paiements en ligne (événements) =====
+    PAYMENT_CONFIRMED,
+    PAYMENT_FAILED
 }
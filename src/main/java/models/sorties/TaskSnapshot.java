@@ -22,6 +22,9 @@ public class TaskSnapshot {
     /** TODO | DOING | DONE */
     private String status = "TODO";
 
+    /** Effort estimé (points), pris en compte par l'auto-répartition. */
+    private int effort = 1;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private LocalDateTime doneAt;
@@ -98,6 +101,14 @@ public class TaskSnapshot {
         this.status = (status == null || status.isBlank()) ? "TODO" : status.trim().toUpperCase();
     }
 
+    public int getEffort() {
+        return effort;
+    }
+
+    public void setEffort(int effort) {
+        this.effort = effort;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
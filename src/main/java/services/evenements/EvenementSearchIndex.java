@@ -0,0 +1,337 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Index inversé en mémoire pour la recherche plein texte des événements.
+ *
+ * - Tokens normalisés (minuscules, sans accents) : "Fête" et "fete" matchent.
+ * - Classement BM25 ; le titre compte 3x plus que la description.
+ * - Tous les mots de la requête doivent matcher ; le dernier mot matche aussi
+ *   en préfixe (recherche pendant la saisie).
+ * - Pagination keyset sur (score DESC, id DESC) via {@link Cursor}.
+ *
+ * L'index est construit à la première recherche (un seul SELECT) puis maintenu
+ * par EvenementService.add/update/delete. Il garde ses propres copies des événements
+ * et n'en renvoie que des copies : modifier un résultat ne touche pas l'index.
+ */
+public class EvenementSearchIndex {
+
+    private static final EvenementSearchIndex INSTANCE = new EvenementSearchIndex();
+
+    public static EvenementSearchIndex getInstance() {
+        return INSTANCE;
+    }
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+    private static final double PREFIX_PENALTY = 0.8;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPLIT = Pattern.compile("[^a-z0-9]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "le", "la", "les", "de", "des", "du", "un", "une", "et", "en", "au", "aux",
+            "the", "and", "of", "to", "in", "on"
+    );
+
+    /** Position dans un résultat classé : reprendre strictement après (score, id). */
+    public record Cursor(double score, int id) {}
+
+    public record Hit(Evenement evenement, double score) {}
+
+    public record Page(List<Hit> hits, Cursor next) {
+        public boolean hasMore() { return next != null; }
+    }
+
+    private static final class Doc {
+        final Evenement ev;
+        final Map<String, Integer> tf;
+        final int length;
+
+        Doc(Evenement ev, Map<String, Integer> tf, int length) {
+            this.ev = ev;
+            this.tf = tf;
+            this.length = length;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private long totalLength = 0;
+    private volatile boolean loaded = false;
+
+    EvenementSearchIndex() {}
+
+    // ─────────────────────────────────────────────────────────────
+    //  CHARGEMENT / SYNCHRO
+    // ─────────────────────────────────────────────────────────────
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Construit l'index à partir du loader s'il n'est pas encore chargé.
+     */
+    public void ensureLoaded(Supplier<List<Evenement>> loader) {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            rebuildLocked(loader.get());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(Collection<Evenement> events) {
+        lock.writeLock().lock();
+        try {
+            rebuildLocked(events);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildLocked(Collection<Evenement> events) {
+        postings.clear();
+        docs.clear();
+        totalLength = 0;
+        for (Evenement ev : events) {
+            if (ev != null) indexLocked(ev);
+        }
+        loaded = true;
+    }
+
+    public void upsert(Evenement ev) {
+        if (ev == null || ev.getId() <= 0) return;
+        lock.writeLock().lock();
+        try {
+            removeLocked(ev.getId());
+            indexLocked(ev);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int eventId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Vide l'index ; il sera reconstruit à la prochaine recherche. */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            totalLength = 0;
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexLocked(Evenement ev) {
+        Map<String, Integer> tf = new HashMap<>();
+        int length = 0;
+        for (String t : tokenize(ev.getTitre())) {
+            tf.merge(t, TITLE_WEIGHT, Integer::sum);
+            length += TITLE_WEIGHT;
+        }
+        for (String t : tokenize(ev.getDescription())) {
+            tf.merge(t, 1, Integer::sum);
+            length++;
+        }
+        for (Map.Entry<String, Integer> e : tf.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(ev.getId(), e.getValue());
+        }
+        docs.put(ev.getId(), new Doc(copyOf(ev), tf, length));
+        totalLength += length;
+    }
+
+    private void removeLocked(int eventId) {
+        Doc old = docs.remove(eventId);
+        if (old == null) return;
+        totalLength -= old.length;
+        for (String term : old.tf.keySet()) {
+            Map<Integer, Integer> p = postings.get(term);
+            if (p == null) continue;
+            p.remove(eventId);
+            if (p.isEmpty()) postings.remove(term);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  RECHERCHE
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Recherche classée avec filtres optionnels (type, statut) et pagination keyset.
+     *
+     * @param q      texte libre ; vide = tous les événements (classés par id décroissant) ;
+     *               sans terme exploitable (mots vides, lettres isolées) = aucun résultat
+     * @param after  curseur de la page précédente, ou null pour la première page
+     * @param limit  taille de page (> 0)
+     */
+    public Page search(String q, String type, String statut, Cursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit doit être > 0.");
+        List<String> terms = tokenize(q);
+        // « de la », « a » : une saisie qui ne filtre rien ne doit pas renvoyer tout le catalogue
+        if (terms.isEmpty() && q != null && !q.isBlank()) return new Page(List.of(), null);
+        String typeF = blankToNull(type);
+        String statutF = blankToNull(statut);
+
+        // Min-heap borné sur l'ordre (score DESC, id DESC) : la tête est le pire candidat retenu.
+        Comparator<Hit> order = Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(h -> h.evenement().getId(), Comparator.reverseOrder());
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(limit, 1024) + 2, order.reversed());
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = terms.isEmpty() ? null : scoreLocked(terms);
+            Iterable<Integer> candidates = scores == null ? docs.keySet() : scores.keySet();
+
+            for (int id : candidates) {
+                Doc d = docs.get(id);
+                if (d == null) continue;
+                if (typeF != null && !typeF.equalsIgnoreCase(d.ev.getType())) continue;
+                if (statutF != null && !statutF.equalsIgnoreCase(d.ev.getStatut())) continue;
+
+                double score = scores == null ? 0.0 : scores.get(id);
+                if (after != null && !isAfter(score, id, after)) continue;
+
+                top.add(new Hit(d.ev, score));
+                if (top.size() > limit + 1) top.poll();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> sorted = new ArrayList<>(top);
+        sorted.sort(order);
+        Cursor next = null;
+        if (sorted.size() > limit) {
+            sorted = sorted.subList(0, limit);
+            Hit last = sorted.get(limit - 1);
+            next = new Cursor(last.score(), last.evenement().getId());
+        }
+        List<Hit> hits = new ArrayList<>(sorted.size());
+        for (Hit h : sorted) hits.add(new Hit(copyOf(h.evenement()), h.score()));
+        return new Page(hits, next);
+    }
+
+    private static boolean isAfter(double score, int id, Cursor c) {
+        int cmp = Double.compare(score, c.score());
+        return cmp < 0 || (cmp == 0 && id < c.id());
+    }
+
+    /**
+     * Score BM25 des documents qui matchent TOUS les termes (AND).
+     */
+    private Map<Integer, Double> scoreLocked(List<String> terms) {
+        int n = docs.size();
+        if (n == 0) return Collections.emptyMap();
+        double avgLen = Math.max(1.0, (double) totalLength / n);
+
+        Map<Integer, Double> acc = null;
+        for (int i = 0; i < terms.size(); i++) {
+            boolean last = i == terms.size() - 1;
+            Map<Integer, Double> termScores = scoreTermLocked(terms.get(i), last, n, avgLen);
+            if (acc == null) {
+                acc = termScores;
+            } else {
+                Map<Integer, Double> merged = new HashMap<>();
+                Map<Integer, Double> small = acc.size() <= termScores.size() ? acc : termScores;
+                Map<Integer, Double> big = small == acc ? termScores : acc;
+                for (Map.Entry<Integer, Double> e : small.entrySet()) {
+                    Double other = big.get(e.getKey());
+                    if (other != null) merged.put(e.getKey(), e.getValue() + other);
+                }
+                acc = merged;
+            }
+            if (acc.isEmpty()) break;
+        }
+        return acc == null ? Collections.emptyMap() : acc;
+    }
+
+    private Map<Integer, Double> scoreTermLocked(String term, boolean allowPrefix, int n, double avgLen) {
+        Map<Integer, Double> out = new HashMap<>();
+        addPostingScores(term, 1.0, n, avgLen, out);
+        if (allowPrefix) {
+            int expansions = 0;
+            for (String t : postings.subMap(term, false, term + Character.MAX_VALUE, false).keySet()) {
+                if (++expansions > MAX_PREFIX_EXPANSIONS) break;
+                addPostingScores(t, PREFIX_PENALTY, n, avgLen, out);
+            }
+        }
+        return out;
+    }
+
+    private void addPostingScores(String term, double boost, int n, double avgLen, Map<Integer, Double> out) {
+        Map<Integer, Integer> p = postings.get(term);
+        if (p == null || p.isEmpty()) return;
+        int df = p.size();
+        double idf = Math.log(1.0 + (n - df + 0.5) / (df + 0.5));
+        for (Map.Entry<Integer, Integer> e : p.entrySet()) {
+            Doc d = docs.get(e.getKey());
+            if (d == null) continue;
+            double tf = e.getValue();
+            double norm = tf + BM25_K1 * (1 - BM25_B + BM25_B * d.length / avgLen);
+            double s = boost * idf * (tf * (BM25_K1 + 1)) / norm;
+            out.merge(e.getKey(), s, Math::max);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  NORMALISATION
+    // ─────────────────────────────────────────────────────────────
+
+    static String normalize(String s) {
+        if (s == null || s.isEmpty()) return "";
+        String noAccents = DIACRITICS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return noAccents.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String s) {
+        String norm = normalize(s);
+        if (norm.isBlank()) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String t : SPLIT.split(norm)) {
+            if (t.length() >= 2 && !STOP_WORDS.contains(t)) out.add(t);
+        }
+        return out;
+    }
+
+    private static Evenement copyOf(Evenement e) {
+        return new Evenement(e.getId(), e.getDateCreation(), e.getTitre(), e.getDescription(),
+                e.getDateDebut(), e.getDateFin(), e.getCapaciteMax(), e.getLieuId(),
+                e.getStatut(), e.getType(), e.getImageUrl(), e.getPrix());
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+}
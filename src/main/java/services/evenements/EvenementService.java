@@ -6,9 +6,40 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class EvenementService {
 
+    // ========== PAGINATION (keyset) ==========
+
+    /** Tri de la liste paginée ; l'id départage les ex æquo pour que le curseur soit stable. */
+    public enum SortOrder { DATE_DESC, DATE_ASC, TITRE_ASC }
+
+    /** Colonne filtrée par le texte de recherche (sous-chaîne, insensible à la casse). */
+    public enum FilterField { TITRE, STATUT, TYPE }
+
+    /** Filtre + tri. {@code text} null ou vide = pas de filtre. */
+    public record PageQuery(FilterField field, String text, SortOrder sort) {
+        public static PageQuery all() {
+            return new PageQuery(FilterField.TITRE, null, SortOrder.DATE_DESC);
+        }
+    }
+
+    /** Clé de tri de la dernière ligne d'une page (dateDebut ou titre selon le tri) + id. */
+    public record PageCursor(LocalDateTime dateDebut, String titre, int id) {}
+
+    public record EventPage(List<Evenement> items, PageCursor next) {
+        public boolean hasMore() { return next != null; }
+    }
+
+    /** Compteurs des KPI, calculés en SQL sur le même filtre que la liste. */
+    public record Summary(int total, int ouverts) {}
+
+    private static volatile boolean pagingIndexesReady = false;
+
+    private final EvenementSearchIndex searchIndex = EvenementSearchIndex.getInstance();
+    private final ScheduleConflictIndex conflictIndex = ScheduleConflictIndex.getInstance();
+
     // ✅ ADAPTE ICI selon ton template:
     private Connection getConnection() throws SQLException {
         // exemple 1: return utils.Mydb.getInstance().getConnection();
@@ -111,29 +142,33 @@ public class EvenementService {
             VALUES (NOW(), ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
         """;
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-            ps.setString(1, e.getTitre());
-            ps.setString(2, e.getDescription());
-            ps.setTimestamp(3, Timestamp.valueOf(e.getDateDebut()));
-            ps.setTimestamp(4, Timestamp.valueOf(e.getDateFin()));
-            ps.setInt(5, e.getCapaciteMax());
-
-            if (e.getLieuId() == null) ps.setNull(6, Types.INTEGER);
-            else ps.setInt(6, e.getLieuId());
-
-            ps.setString(7, e.getStatut());
-            ps.setString(8, e.getType());
-            ps.setString(9, e.getImageUrl());
-            ps.setDouble(10, e.getPrix());
-
-            ps.executeUpdate();
-
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) return keys.getInt(1);
-            }
-            return 0;
+        try {
+            int newId = utils.Mydb.getInstance().inTransaction(cn -> {
+                ensureLieuDisponible(cn, e, 0);
+                try (PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, e.getTitre());
+                    ps.setString(2, e.getDescription());
+                    ps.setTimestamp(3, Timestamp.valueOf(e.getDateDebut()));
+                    ps.setTimestamp(4, Timestamp.valueOf(e.getDateFin()));
+                    ps.setInt(5, e.getCapaciteMax());
+
+                    if (e.getLieuId() == null) ps.setNull(6, Types.INTEGER);
+                    else ps.setInt(6, e.getLieuId());
+
+                    ps.setString(7, e.getStatut());
+                    ps.setString(8, e.getType());
+                    ps.setString(9, e.getImageUrl());
+                    ps.setDouble(10, e.getPrix());
+
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        return keys.next() ? keys.getInt(1) : 0;
+                    }
+                }
+            });
+            if (newId > 0 && searchIndex.isLoaded()) searchIndex.upsert(getById(newId));
+            conflictIndex.upsertEvent(newId, e);
+            return newId;
 
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur add Evenement: " + ex.getMessage(), ex);
@@ -152,25 +187,29 @@ public class EvenementService {
             WHERE id=?
         """;
 
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-
-            ps.setString(1, e.getTitre());
-            ps.setString(2, e.getDescription());
-            ps.setTimestamp(3, Timestamp.valueOf(e.getDateDebut()));
-            ps.setTimestamp(4, Timestamp.valueOf(e.getDateFin()));
-            ps.setInt(5, e.getCapaciteMax());
-
-            if (e.getLieuId() == null) ps.setNull(6, Types.INTEGER);
-            else ps.setInt(6, e.getLieuId());
-
-            ps.setString(7, e.getStatut());
-            ps.setString(8, e.getType());
-            ps.setString(9, e.getImageUrl());
-            ps.setDouble(10, e.getPrix());
-            ps.setInt(11, e.getId());
-
-            ps.executeUpdate();
+        try {
+            utils.Mydb.getInstance().inTransaction(cn -> {
+                if (movesLieuSlot(cn, e)) ensureLieuDisponible(cn, e, e.getId());
+                try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                    ps.setString(1, e.getTitre());
+                    ps.setString(2, e.getDescription());
+                    ps.setTimestamp(3, Timestamp.valueOf(e.getDateDebut()));
+                    ps.setTimestamp(4, Timestamp.valueOf(e.getDateFin()));
+                    ps.setInt(5, e.getCapaciteMax());
+
+                    if (e.getLieuId() == null) ps.setNull(6, Types.INTEGER);
+                    else ps.setInt(6, e.getLieuId());
+
+                    ps.setString(7, e.getStatut());
+                    ps.setString(8, e.getType());
+                    ps.setString(9, e.getImageUrl());
+                    ps.setDouble(10, e.getPrix());
+                    ps.setInt(11, e.getId());
+                    return ps.executeUpdate();
+                }
+            });
+            if (searchIndex.isLoaded()) searchIndex.upsert(getById(e.getId()));
+            conflictIndex.upsertEvent(e.getId(), e);
 
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur update Evenement: " + ex.getMessage(), ex);
@@ -186,70 +225,354 @@ public class EvenementService {
 
             ps.setInt(1, id);
             ps.executeUpdate();
+            searchIndex.remove(id);
+            conflictIndex.removeEvent(id);
 
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur delete Evenement: " + ex.getMessage(), ex);
         }
     }
 
-    // ========== SEARCH / FILTER (DB) ==========
+    // ========== SEARCH / FILTER ==========
+
+    /** Plafond de {@link #search} en mode texte ; les écrans paginent avec {@link #searchPage}. */
+    static final int SEARCH_MAX_RESULTS = 200;
+
+    /**
+     * Recherche classée par pertinence (index plein texte en mémoire, insensible aux accents),
+     * limitée aux {@link #SEARCH_MAX_RESULTS} meilleurs résultats.
+     * Sans texte, ne filtre que par type/statut en SQL (date_debut DESC).
+     */
     public List<Evenement> search(String q, String type, String statut) {
-        // q peut matcher titre/description
-        String sql = """
+        if (q != null && !q.isBlank()) {
+            List<Evenement> list = new ArrayList<>();
+            for (EvenementSearchIndex.Hit h : searchPage(q, type, statut, null, SEARCH_MAX_RESULTS).hits()) {
+                list.add(h.evenement());
+            }
+            return list;
+        }
+
+        // Prédicats construits dynamiquement : pas de "? IS NULL OR" qui empêche l'usage des index
+        StringBuilder sql = new StringBuilder("""
             SELECT id, date_creation, titre, description, date_debut, date_fin,
                    capacite_max, lieu_id, statut, type, image_url, prix
             FROM evenement
-            WHERE (? IS NULL OR titre LIKE ? OR description LIKE ?)
-              AND (? IS NULL OR type = ?)
-              AND (? IS NULL OR statut = ?)
-            ORDER BY date_debut DESC
-        """;
+            WHERE 1=1
+        """);
+        List<String> params = new ArrayList<>();
+        if (type != null && !type.isBlank()) { sql.append(" AND type = ?"); params.add(type); }
+        if (statut != null && !statut.isBlank()) { sql.append(" AND statut = ?"); params.add(statut); }
+        sql.append(" ORDER BY date_debut DESC");
 
         List<Evenement> list = new ArrayList<>();
-        String like = (q == null || q.isBlank()) ? null : "%" + q.trim() + "%";
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql.toString())) {
+
+            for (int i = 0; i < params.size(); i++) ps.setString(i + 1, params.get(i));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
 
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur search Evenement: " + ex.getMessage(), ex);
+        }
+        return list;
+    }
+
+    /**
+     * Événements auxquels un utilisateur est inscrit (inscriptions non annulées).
+     */
+    public List<Evenement> getByParticipant(int userId) {
+        String sql = """
+            SELECT e.id, e.date_creation, e.titre, e.description, e.date_debut, e.date_fin,
+                   e.capacite_max, e.lieu_id, e.statut, e.type, e.image_url, e.prix
+            FROM evenement e
+            JOIN inscription i ON i.event_id = e.id
+            WHERE i.user_id = ? AND i.statut <> 'ANNULEE'
+            GROUP BY e.id
+            ORDER BY e.date_debut DESC
+        """;
+        List<Evenement> list = new ArrayList<>();
         try (Connection cn = getConnection();
              PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getByParticipant: " + ex.getMessage(), ex);
+        }
+        return list;
+    }
 
-            ps.setString(1, like);
-            ps.setString(2, like);
-            ps.setString(3, like);
+    /**
+     * Une page de la liste admin : filtre et tri en SQL, pagination par curseur
+     * (WHERE clé < dernière clé vue) plutôt qu'OFFSET, pour un coût constant
+     * quelle que soit la profondeur.
+     *
+     * @param after curseur de la page précédente ({@code next()}), null pour la première
+     */
+    public EventPage findPage(PageQuery query, PageCursor after, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("Taille de page invalide.");
+        ensurePagingIndexes();
+        List<Object> params = new ArrayList<>();
+        String sql = pageSql(query, after, limit + 1, params);
 
-            ps.setString(4, (type == null || type.isBlank()) ? null : type);
-            ps.setString(5, (type == null || type.isBlank()) ? null : type);
+        List<Evenement> list = new ArrayList<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            bind(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur findPage Evenement: " + ex.getMessage(), ex);
+        }
 
-            ps.setString(6, (statut == null || statut.isBlank()) ? null : statut);
-            ps.setString(7, (statut == null || statut.isBlank()) ? null : statut);
+        // limit + 1 lignes lues : la dernière indique seulement qu'il y a une suite
+        if (list.size() <= limit) return new EventPage(list, null);
+        List<Evenement> items = new ArrayList<>(list.subList(0, limit));
+        Evenement last = items.get(items.size() - 1);
+        return new EventPage(items, new PageCursor(last.getDateDebut(), last.getTitre(), last.getId()));
+    }
 
+    /** Total et nombre d'événements OUVERT correspondant au filtre, en une requête. */
+    public Summary summary(PageQuery query) {
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*), COALESCE(SUM(statut = 'OUVERT'), 0) FROM evenement WHERE 1=1"
+                + filterSql(query, params);
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            bind(ps, params);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Evenement e = new Evenement();
-                    e.setId(rs.getInt("id"));
-                    e.setDateCreation(toLDT(rs.getTimestamp("date_creation")));
-                    e.setTitre(rs.getString("titre"));
-                    e.setDescription(rs.getString("description"));
-                    e.setDateDebut(toLDT(rs.getTimestamp("date_debut")));
-                    e.setDateFin(toLDT(rs.getTimestamp("date_fin")));
-                    e.setCapaciteMax(rs.getInt("capacite_max"));
-
-                    int lieu = rs.getInt("lieu_id");
-                    e.setLieuId(rs.wasNull() ? null : lieu);
-
-                    e.setStatut(rs.getString("statut"));
-                    e.setType(rs.getString("type"));
-                    e.setImageUrl(rs.getString("image_url"));
-                    e.setPrix(rs.getDouble("prix"));
-                    list.add(e);
-                }
+                rs.next();
+                return new Summary(rs.getInt(1), rs.getInt(2));
             }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur summary Evenement: " + ex.getMessage(), ex);
+        }
+    }
 
+    /**
+     * Événements qui chevauchent [from, to] (calendrier : un mois et ses bords).
+     */
+    public List<Evenement> findBetween(LocalDateTime from, LocalDateTime to) {
+        ensurePagingIndexes();
+        String sql = """
+            SELECT id, date_creation, titre, description, date_debut, date_fin,
+                   capacite_max, lieu_id, statut, type, image_url, prix
+            FROM evenement
+            WHERE date_debut <= ? AND COALESCE(date_fin, date_debut) >= ?
+            ORDER BY date_debut, id
+        """;
+        List<Evenement> list = new ArrayList<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(to));
+            ps.setTimestamp(2, Timestamp.valueOf(from));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(mapRow(rs));
+            }
         } catch (SQLException ex) {
-            throw new RuntimeException("Erreur search Evenement: " + ex.getMessage(), ex);
+            throw new RuntimeException("Erreur findBetween Evenement: " + ex.getMessage(), ex);
         }
         return list;
     }
 
+    /**
+     * SQL d'une page. Les paramètres sont ajoutés à {@code params} dans l'ordre des '?'.
+     */
+    static String pageSql(PageQuery query, PageCursor after, int limit, List<Object> params) {
+        SortOrder sort = query == null || query.sort() == null ? SortOrder.DATE_DESC : query.sort();
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, date_creation, titre, description, date_debut, date_fin,
+                   capacite_max, lieu_id, statut, type, image_url, prix
+            FROM evenement
+            WHERE 1=1""");
+        sql.append(filterSql(query, params));
+
+        if (after != null) {
+            // Comparaison de tuple développée : (k, id) < (k0, id0) ⇔ k < k0 OR (k = k0 AND id < id0)
+            switch (sort) {
+                case DATE_DESC -> {
+                    sql.append(" AND (date_debut < ? OR (date_debut = ? AND id < ?))");
+                    params.add(Timestamp.valueOf(after.dateDebut()));
+                    params.add(Timestamp.valueOf(after.dateDebut()));
+                }
+                case DATE_ASC -> {
+                    sql.append(" AND (date_debut > ? OR (date_debut = ? AND id > ?))");
+                    params.add(Timestamp.valueOf(after.dateDebut()));
+                    params.add(Timestamp.valueOf(after.dateDebut()));
+                }
+                case TITRE_ASC -> {
+                    sql.append(" AND (titre > ? OR (titre = ? AND id > ?))");
+                    params.add(after.titre());
+                    params.add(after.titre());
+                }
+            }
+            params.add(after.id());
+        }
+
+        sql.append(switch (sort) {
+            case DATE_DESC -> " ORDER BY date_debut DESC, id DESC";
+            case DATE_ASC  -> " ORDER BY date_debut ASC, id ASC";
+            case TITRE_ASC -> " ORDER BY titre ASC, id ASC";
+        });
+        sql.append(" LIMIT ").append(limit);
+        return sql.toString();
+    }
+
+    private static String filterSql(PageQuery query, List<Object> params) {
+        if (query == null || query.text() == null || query.text().isBlank()) return "";
+        String column = switch (query.field() == null ? FilterField.TITRE : query.field()) {
+            case STATUT -> "statut";
+            case TYPE   -> "type";
+            case TITRE  -> "titre";
+        };
+        params.add("%" + escapeLike(query.text().trim().toLowerCase()) + "%");
+        return " AND LOWER(" + column + ") LIKE ?";
+    }
+
+    /** Échappe les jokers LIKE (l'antislash est le caractère d'échappement par défaut de MySQL). */
+    static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object v = params.get(i);
+            if (v instanceof Integer n) ps.setInt(i + 1, n);
+            else if (v instanceof Timestamp t) ps.setTimestamp(i + 1, t);
+            else ps.setString(i + 1, (String) v);
+        }
+    }
+
+    /** Index des clés de tri (date_debut, id) et (titre, id), créés s'ils manquent. */
+    private void ensurePagingIndexes() {
+        if (pagingIndexesReady) return;
+        try (Connection cn = getConnection()) {
+            ensureIndex(cn, "idx_evenement_debut_id",
+                    "ALTER TABLE evenement ADD KEY idx_evenement_debut_id (date_debut, id)");
+            ensureIndex(cn, "idx_evenement_titre_id",
+                    "ALTER TABLE evenement ADD KEY idx_evenement_titre_id (titre, id)");
+            pagingIndexesReady = true;
+        } catch (SQLException e) {
+            System.err.println("[EvenementService] Index init failed: " + e.getMessage());
+        }
+    }
+
+    private void ensureIndex(Connection cn, String indexName, String alterSql) {
+        try {
+            DatabaseMetaData meta = cn.getMetaData();
+            try (ResultSet rs = meta.getIndexInfo(null, null, "evenement", false, false)) {
+                while (rs.next()) {
+                    String idx = rs.getString("INDEX_NAME");
+                    if (idx != null && idx.equalsIgnoreCase(indexName)) return;
+                }
+            }
+            try (Statement st = cn.createStatement()) {
+                st.execute(alterSql);
+            }
+        } catch (SQLException ignored) {
+            // on reste tolérant : la pagination fonctionne aussi sans index
+        }
+    }
+
+    /**
+     * Page de résultats classés (score DESC, id DESC). Passer le {@code next()} de la page
+     * précédente comme {@code after} pour obtenir la suivante.
+     */
+    public EvenementSearchIndex.Page searchPage(String q, String type, String statut,
+                                                EvenementSearchIndex.Cursor after, int limit) {
+        searchIndex.ensureLoaded(this::getAll);
+        return searchIndex.search(q, type, statut, after, limit);
+    }
+
+    private Evenement mapRow(ResultSet rs) throws SQLException {
+        Evenement e = new Evenement();
+        e.setId(rs.getInt("id"));
+        e.setDateCreation(toLDT(rs.getTimestamp("date_creation")));
+        e.setTitre(rs.getString("titre"));
+        e.setDescription(rs.getString("description"));
+        e.setDateDebut(toLDT(rs.getTimestamp("date_debut")));
+        e.setDateFin(toLDT(rs.getTimestamp("date_fin")));
+        e.setCapaciteMax(rs.getInt("capacite_max"));
+
+        int lieu = rs.getInt("lieu_id");
+        e.setLieuId(rs.wasNull() ? null : lieu);
+
+        e.setStatut(rs.getString("statut"));
+        e.setType(rs.getString("type"));
+        e.setImageUrl(rs.getString("image_url"));
+        e.setPrix(rs.getDouble("prix"));
+        return e;
+    }
+
     // ========== VALIDATION ==========
+
+    /**
+     * Refuse un créneau qui chevauche un autre événement non annulé du même lieu.
+     * Vérifié en base dans la transaction d'écriture : l'index en mémoire ({@link ScheduleConflictIndex})
+     * peut être en retard sur un autre poste et ne sert que d'indication à l'interface.
+     * La ligne du lieu est verrouillée pour que deux réservations simultanées passent l'une après l'autre.
+     */
+    /**
+     * Vrai si la modification occupe un créneau de lieu qu'elle n'occupait pas : autre lieu,
+     * autres dates ou réouverture d'un événement annulé. Les autres modifications (titre, prix…)
+     * restent possibles sur un événement déjà en double réservation.
+     */
+    private boolean movesLieuSlot(Connection cn, Evenement e) throws SQLException {
+        String sql = "SELECT lieu_id, date_debut, date_fin, statut FROM evenement WHERE id = ? FOR UPDATE";
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, e.getId());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return true;
+                int lieu = rs.getInt("lieu_id");
+                Integer oldLieu = rs.wasNull() ? null : lieu;
+                return !Objects.equals(oldLieu, e.getLieuId())
+                        || !Objects.equals(toLDT(rs.getTimestamp("date_debut")), e.getDateDebut())
+                        || !Objects.equals(toLDT(rs.getTimestamp("date_fin")), e.getDateFin())
+                        || "ANNULE".equalsIgnoreCase(rs.getString("statut"));
+            }
+        }
+    }
+
+    private void ensureLieuDisponible(Connection cn, Evenement e, int excludeEventId) throws SQLException {
+        if (e.getLieuId() == null || "ANNULE".equalsIgnoreCase(e.getStatut())) return;
+        try (PreparedStatement ps = cn.prepareStatement("SELECT id FROM lieu WHERE id = ? FOR UPDATE")) {
+            ps.setInt(1, e.getLieuId());
+            ps.executeQuery().close();
+        }
+        // Même créneau minimal que l'index (événement sans durée)
+        LocalDateTime minFin = e.getDateDebut().plus(ScheduleConflictIndex.MIN_SLOT);
+        LocalDateTime fin = e.getDateFin().isBefore(minFin) ? minFin : e.getDateFin();
+        String sql = """
+            SELECT id, titre, date_debut, COALESCE(date_fin, date_debut) AS date_fin FROM evenement
+            WHERE lieu_id = ? AND id <> ? AND date_debut < ?
+              AND GREATEST(COALESCE(date_fin, date_debut), date_debut + INTERVAL 1 MINUTE) > ?
+              AND UPPER(statut) <> 'ANNULE'
+            ORDER BY date_debut
+        """;
+        List<ScheduleConflictIndex.Conflict> conflicts = new ArrayList<>();
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, e.getLieuId());
+            ps.setInt(2, excludeEventId);
+            ps.setTimestamp(3, Timestamp.valueOf(fin));
+            ps.setTimestamp(4, Timestamp.valueOf(e.getDateDebut()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    conflicts.add(new ScheduleConflictIndex.Conflict(ScheduleConflictIndex.Kind.EVENEMENT,
+                            rs.getInt("id"), rs.getString("titre"),
+                            toLDT(rs.getTimestamp("date_debut")), toLDT(rs.getTimestamp("date_fin"))));
+                }
+            }
+        }
+        if (conflicts.isEmpty()) return;
+        String more = conflicts.size() > 1 ? " (+" + (conflicts.size() - 1) + " autre(s))" : "";
+        throw new IllegalStateException("Lieu déjà réservé sur ce créneau : " + conflicts.get(0).describe() + more + ".");
+    }
+
     private void validateEvenement(Evenement e) {
         if (e.getTitre() == null || e.getTitre().isBlank())
             throw new IllegalArgumentException("Titre obligatoire.");
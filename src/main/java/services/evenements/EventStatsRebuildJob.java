@@ -0,0 +1,93 @@
+package services.evenements;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réconciliation périodique des compteurs matérialisés (evenement_stats et
+ * evenement_places) avec les tables sources.
+ *
+ * Les compteurs sont tenus à jour transactionnellement ; ce job rattrape ce que
+ * les deltas ne voient pas (écritures SQL manuelles, événements supprimés,
+ * statuts ajoutés hors application).
+ */
+public class EventStatsRebuildJob {
+
+    static final long INITIAL_DELAY_MINUTES = 1;
+    static final long PERIOD_HOURS = 6;
+
+    private static volatile EventStatsRebuildJob instance;
+
+    private final EventStatsService eventStats;
+    private final SeatInventoryService seatInventory;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
+    private volatile LocalDateTime lastRunAt;
+
+    public static EventStatsRebuildJob getInstance() {
+        if (instance == null) {
+            synchronized (EventStatsRebuildJob.class) {
+                if (instance == null) {
+                    instance = new EventStatsRebuildJob(new EventStatsService(), new SeatInventoryService());
+                }
+            }
+        }
+        return instance;
+    }
+
+    EventStatsRebuildJob(EventStatsService eventStats, SeatInventoryService seatInventory) {
+        this.eventStats = eventStats;
+        this.seatInventory = seatInventory;
+    }
+
+    /** Démarre le job (après 1 min puis toutes les 6 h). Sans effet s'il tourne déjà. */
+    public synchronized void start() {
+        if (task != null && !task.isDone()) return;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "event-stats-rebuild");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        task = scheduler.scheduleWithFixedDelay(this::runSafely,
+                TimeUnit.MINUTES.toMillis(INITIAL_DELAY_MINUTES), TimeUnit.HOURS.toMillis(PERIOD_HOURS),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) task.cancel(false);
+        if (scheduler != null) scheduler.shutdownNow();
+        task = null;
+        scheduler = null;
+    }
+
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            // Une exception ne doit pas annuler les exécutions suivantes
+            System.err.println("[EventStatsRebuild] Échec: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Une passe de réconciliation.
+     *
+     * @return nombre de lignes evenement_stats créées ou corrigées
+     */
+    public int runOnce() {
+        seatInventory.rebuildAll();
+        int changed = eventStats.rebuildAll();
+        lastRunAt = LocalDateTime.now();
+        System.out.println("[EventStatsRebuild] " + changed + " ligne(s) de compteurs recalculée(s)");
+        return changed;
+    }
+}
@@ -0,0 +1,362 @@
+package services.evenements;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compteurs matérialisés par événement (listes admin / cartes front).
+ *
+ * Table auto-créée au premier appel :
+ *   evenement_stats (event_id, nb_en_attente, nb_confirmees, nb_annulees,
+ *                    tickets_emis, revenu_paye, updated_at)
+ *
+ * Les compteurs sont mis à jour dans la même transaction que l'écriture qui les
+ * fait bouger (inscription, ticket, paiement) via {@link #ensureRow} puis
+ * {@link #applyDelta}. {@link #rebuildAll()} les recalcule depuis les tables
+ * sources (job de réconciliation).
+ *
+ * Statuts d'inscription : CONFIRMEE et ANNULEE ont leur colonne, tout autre
+ * statut compte comme en attente. Le revenu ne compte que les paiements PAYE.
+ */
+public class EventStatsService {
+
+    public record EventStats(int eventId, int enAttente, int confirmees, int annulees,
+                             int tickets, double revenu) {
+        public static EventStats empty(int eventId) {
+            return new EventStats(eventId, 0, 0, 0, 0, 0);
+        }
+
+        /** Inscriptions non annulées (ancien countByEvent). */
+        public int actives() {
+            return enAttente + confirmees;
+        }
+    }
+
+    /**
+     * Variation à appliquer aux compteurs d'un événement.
+     */
+    public record Delta(int enAttente, int confirmees, int annulees, int tickets, double revenu) {
+        public static final Delta NONE = new Delta(0, 0, 0, 0, 0);
+
+        /** +n inscriptions dans {@code statut} (n négatif pour retirer). */
+        public static Delta statut(String statut, int n) {
+            if (statut != null && statut.equalsIgnoreCase("ANNULEE")) return new Delta(0, 0, n, 0, 0);
+            if (statut != null && statut.equalsIgnoreCase("CONFIRMEE")) return new Delta(0, n, 0, 0, 0);
+            return new Delta(n, 0, 0, 0, 0);
+        }
+
+        /** Une inscription passe de {@code from} à {@code to}. */
+        public static Delta move(String from, String to) {
+            return statut(from, -1).plus(statut(to, 1));
+        }
+
+        public static Delta tickets(int n) {
+            return new Delta(0, 0, 0, n, 0);
+        }
+
+        public static Delta revenu(double montant) {
+            return new Delta(0, 0, 0, 0, montant);
+        }
+
+        public Delta plus(Delta o) {
+            return new Delta(enAttente + o.enAttente, confirmees + o.confirmees, annulees + o.annulees,
+                    tickets + o.tickets, revenu + o.revenu);
+        }
+
+        public Delta negate() {
+            return new Delta(-enAttente, -confirmees, -annulees, -tickets, -revenu);
+        }
+
+        public boolean isEmpty() {
+            return enAttente == 0 && confirmees == 0 && annulees == 0 && tickets == 0 && revenu == 0;
+        }
+    }
+
+    /**
+     * Agrégats recalculés depuis les tables sources. {@code %s} = filtre sur e.id.
+     */
+    private static final String AGGREGATE = """
+            SELECT e.id,
+                   (SELECT COUNT(*) FROM inscription i
+                     WHERE i.event_id = e.id AND i.statut NOT IN ('CONFIRMEE', 'ANNULEE')),
+                   (SELECT COUNT(*) FROM inscription i
+                     WHERE i.event_id = e.id AND i.statut = 'CONFIRMEE'),
+                   (SELECT COUNT(*) FROM inscription i
+                     WHERE i.event_id = e.id AND i.statut = 'ANNULEE'),
+                   (SELECT COUNT(*) FROM ticket t JOIN inscription i ON i.id = t.inscription_id
+                     WHERE i.event_id = e.id),
+                   (SELECT COALESCE(SUM(p.montant), 0) FROM paiement p JOIN inscription i ON i.id = p.inscription_id
+                     WHERE i.event_id = e.id AND p.statut = 'PAYE')
+            FROM evenement e
+            %s
+            """;
+
+    private static final String COLUMNS =
+            "(event_id, nb_en_attente, nb_confirmees, nb_annulees, tickets_emis, revenu_paye)";
+
+    private static volatile boolean schemaReady = false;
+
+    private Connection getConnection() throws SQLException {
+        return utils.Mydb.getInstance().getConnection();
+    }
+
+    public void ensureSchema() {
+        if (schemaReady) return;
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS evenement_stats (
+                    event_id       INT           NOT NULL,
+                    nb_en_attente  INT           NOT NULL DEFAULT 0,
+                    nb_confirmees  INT           NOT NULL DEFAULT 0,
+                    nb_annulees    INT           NOT NULL DEFAULT 0,
+                    tickets_emis   INT           NOT NULL DEFAULT 0,
+                    revenu_paye    DECIMAL(12,3) NOT NULL DEFAULT 0,
+                    updated_at     TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                    PRIMARY KEY (event_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        try (Connection cn = getConnection();
+             Statement st = cn.createStatement()) {
+            st.execute(ddl);
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[EventStats] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  LECTURE
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Compteurs de tous les événements en une requête (eventId → stats).
+     * Les événements encore sans ligne de compteurs sont initialisés au passage
+     * (une seule fois : la lecture suivante n'a plus besoin que du SELECT).
+     */
+    public Map<Integer, EventStats> getAll() {
+        ensureSchema();
+        String fillMissing = "INSERT IGNORE INTO evenement_stats " + COLUMNS + "\n"
+                + AGGREGATE.formatted("WHERE NOT EXISTS (SELECT 1 FROM evenement_stats s WHERE s.event_id = e.id)");
+        Map<Integer, EventStats> map = new LinkedHashMap<>();
+        try (Connection cn = getConnection()) {
+            if (readAll(cn, map)) {
+                try (Statement st = cn.createStatement()) {
+                    st.executeUpdate(fillMissing);
+                }
+                map.clear();
+                readAll(cn, map);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getAll evenement_stats: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
+    /** @return true si au moins un événement n'avait pas encore de ligne de compteurs */
+    private boolean readAll(Connection cn, Map<Integer, EventStats> into) throws SQLException {
+        String sql = """
+                SELECT e.id, s.nb_en_attente, s.nb_confirmees, s.nb_annulees, s.tickets_emis, s.revenu_paye,
+                       s.event_id IS NULL AS missing
+                FROM evenement e
+                LEFT JOIN evenement_stats s ON s.event_id = e.id
+                """;
+        boolean missing = false;
+        try (PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                EventStats s = mapRow(rs);
+                into.put(s.eventId(), s);
+                missing |= rs.getBoolean("missing");
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Compteurs d'un lot d'événements (une page de la liste admin, un mois du
+     * calendrier) en une requête. Les lignes manquantes sont créées au passage.
+     */
+    public Map<Integer, EventStats> getByIds(Collection<Integer> eventIds) {
+        Map<Integer, EventStats> map = new LinkedHashMap<>();
+        if (eventIds == null || eventIds.isEmpty()) return map;
+        ensureSchema();
+        String in = eventIds.stream().map(id -> "?").collect(Collectors.joining(","));
+        String sql = """
+                SELECT event_id, nb_en_attente, nb_confirmees, nb_annulees, tickets_emis, revenu_paye
+                FROM evenement_stats
+                WHERE event_id IN (%s)
+                """.formatted(in);
+        try (Connection cn = getConnection()) {
+            readByIds(cn, sql, eventIds, map);
+            if (map.size() < eventIds.size()) {
+                for (Integer id : eventIds) {
+                    if (!map.containsKey(id)) ensureRow(cn, id);
+                }
+                map.clear();
+                readByIds(cn, sql, eventIds, map);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getByIds evenement_stats: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
+    private void readByIds(Connection cn, String sql, Collection<Integer> ids,
+                           Map<Integer, EventStats> into) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            int i = 1;
+            for (Integer id : ids) ps.setInt(i++, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    EventStats s = mapRow(rs);
+                    into.put(s.eventId(), s);
+                }
+            }
+        }
+    }
+
+    /** Total des inscriptions actives (en attente + confirmées), tous événements confondus. */
+    public int totalActives() {
+        ensureSchema();
+        String sql = "SELECT COALESCE(SUM(nb_en_attente + nb_confirmees), 0) FROM evenement_stats";
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur totalActives evenement_stats: " + ex.getMessage(), ex);
+        }
+    }
+
+    public EventStats get(int eventId) {
+        ensureSchema();
+        String sql = """
+                SELECT event_id, nb_en_attente, nb_confirmees, nb_annulees, tickets_emis, revenu_paye
+                FROM evenement_stats
+                WHERE event_id = ?
+                """;
+        try (Connection cn = getConnection()) {
+            ensureRow(cn, eventId);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                ps.setInt(1, eventId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? mapRow(rs) : EventStats.empty(eventId);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur get evenement_stats: " + ex.getMessage(), ex);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  ÉCRITURE (dans la transaction de l'appelant)
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Crée la ligne de compteurs depuis les tables sources si elle n'existe pas.
+     * À appeler AVANT de modifier les tables sources, sinon la modification serait
+     * comptée deux fois (une fois par l'agrégat, une fois par le delta).
+     * Le DDL provoquant un commit implicite sous MySQL, l'appelant fait {@link #ensureSchema()}
+     * avant d'ouvrir sa transaction.
+     */
+    public void ensureRow(Connection cn, int eventId) throws SQLException {
+        String sql = "INSERT IGNORE INTO evenement_stats " + COLUMNS + "\n" + AGGREGATE.formatted("WHERE e.id = ?");
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, eventId);
+            ps.executeUpdate();
+        }
+    }
+
+    public void applyDelta(Connection cn, int eventId, Delta d) throws SQLException {
+        if (d == null || d.isEmpty()) return;
+        String sql = """
+                UPDATE evenement_stats
+                SET nb_en_attente = GREATEST(0, nb_en_attente + ?),
+                    nb_confirmees = GREATEST(0, nb_confirmees + ?),
+                    nb_annulees   = GREATEST(0, nb_annulees + ?),
+                    tickets_emis  = GREATEST(0, tickets_emis + ?),
+                    revenu_paye   = GREATEST(0, revenu_paye + ?)
+                WHERE event_id = ?
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, d.enAttente());
+            ps.setInt(2, d.confirmees());
+            ps.setInt(3, d.annulees());
+            ps.setInt(4, d.tickets());
+            ps.setDouble(5, d.revenu());
+            ps.setInt(6, eventId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Événement d'une inscription, ou -1 si elle n'existe pas. */
+    public int eventIdOfInscription(Connection cn, int inscriptionId) throws SQLException {
+        try (PreparedStatement ps = cn.prepareStatement("SELECT event_id FROM inscription WHERE id = ?")) {
+            ps.setInt(1, inscriptionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Ce qu'une inscription apporte aux compteurs (statut, tickets, paiements PAYE),
+     * à retirer quand elle est supprimée (tickets et paiements partent en cascade).
+     */
+    public Delta contributionOf(Connection cn, int inscriptionId, String statut) throws SQLException {
+        String sql = """
+                SELECT (SELECT COUNT(*) FROM ticket WHERE inscription_id = ?),
+                       (SELECT COALESCE(SUM(montant), 0) FROM paiement WHERE inscription_id = ? AND statut = 'PAYE')
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, inscriptionId);
+            ps.setInt(2, inscriptionId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return Delta.statut(statut, 1).plus(Delta.tickets(rs.getInt(1))).plus(Delta.revenu(rs.getDouble(2)));
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  RÉCONCILIATION
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Recalcule tous les compteurs depuis les tables sources.
+     *
+     * @return nombre de lignes de compteurs créées ou corrigées
+     */
+    public int rebuildAll() {
+        ensureSchema();
+        String sql = "INSERT INTO evenement_stats " + COLUMNS + "\n" + AGGREGATE.formatted("") + """
+                ON DUPLICATE KEY UPDATE
+                    nb_en_attente = VALUES(nb_en_attente),
+                    nb_confirmees = VALUES(nb_confirmees),
+                    nb_annulees   = VALUES(nb_annulees),
+                    tickets_emis  = VALUES(tickets_emis),
+                    revenu_paye   = VALUES(revenu_paye)
+                """;
+        try {
+            // Connexion dédiée : le job de fond ne partage pas la session de l'interface
+            return utils.Mydb.getInstance().inTransaction(cn -> {
+                try (Statement st = cn.createStatement()) {
+                    // MySQL : 1 par ligne insérée, 2 par ligne modifiée, 0 si inchangée
+                    int affected = st.executeUpdate(sql);
+                    st.executeUpdate("DELETE s FROM evenement_stats s LEFT JOIN evenement e ON e.id = s.event_id WHERE e.id IS NULL");
+                    return affected;
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur rebuildAll evenement_stats: " + ex.getMessage(), ex);
+        }
+    }
+
+    private EventStats mapRow(ResultSet rs) throws SQLException {
+        // Colonnes NULL (LEFT JOIN sans ligne) → 0
+        return new EventStats(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                rs.getInt(5), rs.getDouble(6));
+    }
+}
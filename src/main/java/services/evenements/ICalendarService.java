@@ -3,11 +3,16 @@ package services.evenements;
 import models.evenements.Evenement;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * ICalendarService — Export d'événements au format ICS (iCalendar RFC 5545).
@@ -66,9 +71,7 @@ public class ICalendarService {
      */
     public boolean exportEvent(Evenement ev, String lieuName, File file) {
         try {
-            String ics = buildIcsCalendar(List.of(ev), lieuName != null ? 
-                    id -> lieuName : id -> "");
-            writeToFile(ics, file);
+            writeToFile(List.of(ev), lieuName != null ? id -> lieuName : id -> "", file);
             return true;
         } catch (Exception e) {
             System.err.println("[ICalendar] Erreur export: " + e.getMessage());
@@ -89,12 +92,11 @@ public class ICalendarService {
      * @return résultat de l'export
      */
     public ExportResult exportEvents(List<Evenement> events,
-                                     java.util.function.Function<Integer, String> lieuResolver,
+                                     Function<Integer, String> lieuResolver,
                                      File file) {
         ExportResult result = new ExportResult();
         try {
-            String ics = buildIcsCalendar(events, lieuResolver);
-            writeToFile(ics, file);
+            writeToFile(events, lieuResolver, file);
             result.exported = events.size();
             result.filePath = file.getAbsolutePath();
             result.success = true;
@@ -107,121 +109,152 @@ public class ICalendarService {
     }
 
     // ─────────────────────────────────────────────────────────────
-    //  GÉNÉRER LE CONTENU ICS (String)
+    //  GÉNÉRER LE CONTENU ICS (flux)
     // ─────────────────────────────────────────────────────────────
 
     /**
-     * Génère le contenu ICS complet pour une liste d'événements.
+     * Génère le contenu ICS complet en mémoire.
+     * Préférer {@link #writeCalendar} pour les gros calendriers.
      */
     public String buildIcsCalendar(List<Evenement> events,
-                                   java.util.function.Function<Integer, String> lieuResolver) {
-        StringBuilder sb = new StringBuilder();
+                                   Function<Integer, String> lieuResolver) {
+        StringWriter sw = new StringWriter();
+        try {
+            writeCalendar(events, lieuResolver, new IcsWriter(sw), LocalDateTime.now());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // impossible avec un StringWriter
+        }
+        return sw.toString();
+    }
 
+    /**
+     * Écrit le calendrier événement par événement dans {@code w} (non fermé, mais vidé).
+     *
+     * @param dtstamp valeur de DTSTAMP pour tous les VEVENT
+     */
+    public void writeCalendar(Iterable<Evenement> events,
+                              Function<Integer, String> lieuResolver,
+                              IcsWriter w, LocalDateTime dtstamp) throws IOException {
         // En-tête iCalendar
-        sb.append("BEGIN:VCALENDAR\r\n");
-        sb.append("VERSION:2.0\r\n");
-        sb.append("PRODID:").append(PRODID).append("\r\n");
-        sb.append("CALSCALE:GREGORIAN\r\n");
-        sb.append("METHOD:PUBLISH\r\n");
-        sb.append("X-WR-CALNAME:FinTokhrej - Événements\r\n");
-        sb.append("X-WR-TIMEZONE:Africa/Tunis\r\n");
+        w.begin("VCALENDAR")
+                .raw("VERSION", "2.0")
+                .raw("PRODID", PRODID)
+                .raw("CALSCALE", "GREGORIAN")
+                .raw("METHOD", "PUBLISH")
+                .text("X-WR-CALNAME", "FinTokhrej - Événements")
+                .raw("X-WR-TIMEZONE", "Africa/Tunis");
 
         // Timezone definition
-        sb.append("BEGIN:VTIMEZONE\r\n");
-        sb.append("TZID:Africa/Tunis\r\n");
-        sb.append("BEGIN:STANDARD\r\n");
-        sb.append("DTSTART:19700101T000000\r\n");
-        sb.append("TZOFFSETFROM:+0100\r\n");
-        sb.append("TZOFFSETTO:+0100\r\n");
-        sb.append("TZNAME:CET\r\n");
-        sb.append("END:STANDARD\r\n");
-        sb.append("END:VTIMEZONE\r\n");
+        w.begin("VTIMEZONE")
+                .raw("TZID", "Africa/Tunis")
+                .begin("STANDARD")
+                .raw("DTSTART", "19700101T000000")
+                .raw("TZOFFSETFROM", "+0100")
+                .raw("TZOFFSETTO", "+0100")
+                .raw("TZNAME", "CET")
+                .end("STANDARD")
+                .end("VTIMEZONE");
 
         // Chaque événement
+        String stamp = formatIcsDate(dtstamp);
         for (Evenement ev : events) {
-            sb.append(buildVEvent(ev, lieuResolver));
+            writeVEvent(ev, lieuResolver, w, stamp);
         }
 
-        sb.append("END:VCALENDAR\r\n");
-        return sb.toString();
+        w.end("VCALENDAR");
+        w.flush();
     }
 
     /**
-     * Construit un bloc VEVENT pour un événement.
+     * Écrit un bloc VEVENT pour un événement.
      */
-    private String buildVEvent(Evenement ev,
-                               java.util.function.Function<Integer, String> lieuResolver) {
-        StringBuilder sb = new StringBuilder();
-
+    private void writeVEvent(Evenement ev, Function<Integer, String> lieuResolver,
+                             IcsWriter w, String stamp) throws IOException {
         String uid = "fintokhrej-event-" + ev.getId() + "@fintokhrej.tn";
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime debut = ev.getDateDebut() != null ? ev.getDateDebut() : now;
+        LocalDateTime debut = ev.getDateDebut() != null ? ev.getDateDebut() : LocalDateTime.now();
         LocalDateTime fin = ev.getDateFin() != null ? ev.getDateFin() : debut.plusHours(2);
         String lieuName = lieuResolver != null ? lieuResolver.apply(ev.getLieuId()) : "";
 
-        sb.append("BEGIN:VEVENT\r\n");
-        sb.append("UID:").append(uid).append("\r\n");
-        sb.append("DTSTAMP:").append(formatIcsDate(now)).append("\r\n");
-        sb.append("DTSTART;TZID=Africa/Tunis:").append(formatIcsDate(debut)).append("\r\n");
-        sb.append("DTEND;TZID=Africa/Tunis:").append(formatIcsDate(fin)).append("\r\n");
-        sb.append("SUMMARY:").append(escapeIcs(safeStr(ev.getTitre()))).append("\r\n");
+        w.begin("VEVENT")
+                .raw("UID", uid)
+                .raw("DTSTAMP", stamp)
+                .raw("DTSTART;TZID=Africa/Tunis", formatIcsDate(debut))
+                .raw("DTEND;TZID=Africa/Tunis", formatIcsDate(fin))
+                .text("SUMMARY", safeStr(ev.getTitre()));
 
         // Description détaillée
         StringBuilder desc = new StringBuilder();
         if (ev.getDescription() != null && !ev.getDescription().isBlank()) {
-            desc.append(ev.getDescription()).append("\\n\\n");
+            desc.append(ev.getDescription()).append("\n\n");
         }
-        desc.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━\\n");
-        desc.append("Statut: ").append(safeStr(ev.getStatut())).append("\\n");
-        desc.append("Type: ").append(safeStr(ev.getType())).append("\\n");
-        desc.append("Capacité: ").append(ev.getCapaciteMax()).append(" places\\n");
+        desc.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
+        desc.append("Statut: ").append(safeStr(ev.getStatut())).append("\n");
+        desc.append("Type: ").append(safeStr(ev.getType())).append("\n");
+        desc.append("Capacité: ").append(ev.getCapaciteMax()).append(" places\n");
         if (ev.getPrix() > 0) {
-            desc.append("Prix: ").append(ev.getPrix()).append(" TND\\n");
+            desc.append("Prix: ").append(ev.getPrix()).append(" TND\n");
         }
-        desc.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━\\n");
+        desc.append("━━━━━━━━━━━━━━━━━━━━━━━━━━━━\n");
         desc.append("Exporté depuis FinTokhrej (ID: ").append(ev.getId()).append(")");
-        sb.append("DESCRIPTION:").append(escapeIcs(desc.toString())).append("\r\n");
+        w.text("DESCRIPTION", desc.toString());
 
         // Lieu
         if (lieuName != null && !lieuName.isBlank() && !lieuName.equals("Sans lieu")) {
-            sb.append("LOCATION:").append(escapeIcs(lieuName)).append("\r\n");
+            w.text("LOCATION", lieuName);
         }
 
         // Catégorie = statut
-        sb.append("CATEGORIES:").append(safeStr(ev.getStatut())).append(",")
-                .append(safeStr(ev.getType())).append("\r\n");
+        w.raw("CATEGORIES", IcsWriter.escape(safeStr(ev.getStatut())) + ","
+                + IcsWriter.escape(safeStr(ev.getType())));
 
         // Statut ICS
         String status = safeStr(ev.getStatut()).toUpperCase();
         switch (status) {
-            case "OUVERT" -> sb.append("STATUS:CONFIRMED\r\n");
-            case "FERME" -> sb.append("STATUS:CONFIRMED\r\n");
-            case "ANNULE" -> sb.append("STATUS:CANCELLED\r\n");
-            default -> sb.append("STATUS:TENTATIVE\r\n");
+            case "OUVERT", "FERME" -> w.raw("STATUS", "CONFIRMED");
+            case "ANNULE" -> w.raw("STATUS", "CANCELLED");
+            default -> w.raw("STATUS", "TENTATIVE");
         }
 
-        // Priorité
-        sb.append("PRIORITY:5\r\n");
+        // Priorité, transparence
+        w.raw("PRIORITY", "5").raw("TRANSP", "OPAQUE");
 
-        // Transparence
-        sb.append("TRANSP:OPAQUE\r\n");
+        // Alarmes : rappel 1h puis 15 min avant
+        w.begin("VALARM").raw("TRIGGER", "-PT1H").raw("ACTION", "DISPLAY")
+                .text("DESCRIPTION", "Rappel: " + safeStr(ev.getTitre())).end("VALARM");
+        w.begin("VALARM").raw("TRIGGER", "-PT15M").raw("ACTION", "DISPLAY")
+                .text("DESCRIPTION", "Bientôt: " + safeStr(ev.getTitre())).end("VALARM");
 
-        // Alarme : rappel 1h avant
-        sb.append("BEGIN:VALARM\r\n");
-        sb.append("TRIGGER:-PT1H\r\n");
-        sb.append("ACTION:DISPLAY\r\n");
-        sb.append("DESCRIPTION:Rappel: ").append(escapeIcs(safeStr(ev.getTitre()))).append("\r\n");
-        sb.append("END:VALARM\r\n");
-
-        // Alarme : rappel 15 min avant
-        sb.append("BEGIN:VALARM\r\n");
-        sb.append("TRIGGER:-PT15M\r\n");
-        sb.append("ACTION:DISPLAY\r\n");
-        sb.append("DESCRIPTION:Bientôt: ").append(escapeIcs(safeStr(ev.getTitre()))).append("\r\n");
-        sb.append("END:VALARM\r\n");
+        w.end("VEVENT");
+    }
 
-        sb.append("END:VEVENT\r\n");
-        return sb.toString();
+    /**
+     * Empreinte du contenu d'un calendrier (sert d'ETag au flux d'abonnement).
+     * Calculée sur les champs exportés uniquement, sans générer le fichier ICS ;
+     * DTSTAMP n'en fait pas partie, donc l'empreinte ne change que si un événement change.
+     */
+    public String fingerprint(List<Evenement> events, Function<Integer, String> lieuResolver) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(PRODID.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(256);
+            for (Evenement ev : events) {
+                sb.setLength(0);
+                sb.append('\u0001').append(ev.getId())
+                        .append('\u0001').append(ev.getTitre())
+                        .append('\u0001').append(ev.getDescription())
+                        .append('\u0001').append(ev.getDateDebut())
+                        .append('\u0001').append(ev.getDateFin())
+                        .append('\u0001').append(ev.getStatut())
+                        .append('\u0001').append(ev.getType())
+                        .append('\u0001').append(ev.getCapaciteMax())
+                        .append('\u0001').append(ev.getPrix())
+                        .append('\u0001').append(lieuResolver != null ? lieuResolver.apply(ev.getLieuId()) : "");
+                md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(md.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -291,30 +324,18 @@ public class ICalendarService {
         return ldt.format(ICS_DATE_FMT);
     }
 
-    /**
-     * Échappe les caractères spéciaux pour le format ICS.
-     * RFC 5545 : les virgules, points-virgules et antislashs doivent être échappés.
-     */
-    private String escapeIcs(String text) {
-        if (text == null) return "";
-        return text
-                .replace("\\", "\\\\")
-                .replace(",", "\\,")
-                .replace(";", "\\;")
-                .replace("\n", "\\n")
-                .replace("\r", "");
-    }
-
-    private void writeToFile(String content, File file) throws IOException {
+    private void writeToFile(List<Evenement> events, Function<Integer, String> lieuResolver,
+                             File file) throws IOException {
         // Créer le répertoire parent si nécessaire
         File parent = file.getParentFile();
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
 
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            writer.write(content);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             IcsWriter w = IcsWriter.to(ch)) {
+            writeCalendar(events, lieuResolver, w, LocalDateTime.now());
         }
     }
 
@@ -0,0 +1,217 @@
+package services.evenements;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import models.evenements.Evenement;
+import models.lieux.Lieu;
+import services.lieux.LieuService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Flux d'abonnement iCalendar servi en local (com.sun.net.httpserver).
+ *
+ *   GET /calendar.ics               → tous les événements
+ *   GET /calendar/user/{id}.ics     → événements auxquels l'utilisateur est inscrit
+ *
+ * Les applications de calendrier s'abonnent à l'URL et la relisent périodiquement.
+ * Chaque réponse porte un ETag (empreinte des événements, voir
+ * {@link ICalendarService#fingerprint}) : si le client renvoie le même ETag dans
+ * If-None-Match, on répond 304 sans générer le calendrier. Sinon le fichier est
+ * écrit en flux (chunked) directement dans la réponse.
+ *
+ * Le serveur n'écoute que sur l'interface loopback.
+ */
+public class IcsFeedServer {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private static IcsFeedServer instance;
+
+    public static synchronized IcsFeedServer getInstance() {
+        if (instance == null) {
+            EvenementService evenementService = new EvenementService();
+            LieuService lieuService = new LieuService();
+            instance = new IcsFeedServer(
+                    evenementService::getAll,
+                    evenementService::getByParticipant,
+                    () -> {
+                        Map<Integer, String> noms = new HashMap<>();
+                        for (Lieu l : lieuService.getAll()) noms.put(l.getId(), l.getNom());
+                        return id -> id == null ? "" : noms.getOrDefault(id, "");
+                    });
+        }
+        return instance;
+    }
+
+    private final Supplier<List<Evenement>> allEvents;
+    private final IntFunction<List<Evenement>> userEvents;
+    private final Supplier<Function<Integer, String>> lieuResolver;
+    private final ICalendarService ics = ICalendarService.getInstance();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    IcsFeedServer(Supplier<List<Evenement>> allEvents,
+                  IntFunction<List<Evenement>> userEvents,
+                  Supplier<Function<Integer, String>> lieuResolver) {
+        this.allEvents = allEvents;
+        this.userEvents = userEvents;
+        this.lieuResolver = lieuResolver;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  CYCLE DE VIE
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Démarre le serveur (no-op s'il tourne déjà).
+     *
+     * @param port port local, 0 = port libre choisi par le système
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) return;
+        HttpServer s = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        s.createContext("/calendar", new FeedHandler());
+        executor = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "ics-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        s.setExecutor(executor);
+        s.start();
+        server = s;
+        System.out.println("[IcsFeed] Flux disponible sur " + getBaseUrl() + "/calendar.ics");
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    public synchronized String getBaseUrl() {
+        if (server == null) return null;
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** URL d'abonnement : globale si {@code userId} est null, sinon celle de l'utilisateur. */
+    public String feedUrl(Integer userId) {
+        String base = getBaseUrl();
+        if (base == null) return null;
+        return userId == null ? base + "/calendar.ics" : base + "/calendar/user/" + userId + ".ics";
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  HANDLER
+    // ─────────────────────────────────────────────────────────────
+
+    private final class FeedHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                serve(exchange);
+            } catch (RuntimeException ex) {
+                System.err.println("[IcsFeed] Erreur: " + ex.getMessage());
+                byte[] msg = "Erreur interne".getBytes(StandardCharsets.UTF_8);
+                try {
+                    exchange.sendResponseHeaders(500, msg.length);
+                    exchange.getResponseBody().write(msg);
+                } catch (IOException ignored) { /* en-têtes déjà envoyés */ }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void serve(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendEmpty(exchange, 405);
+                return;
+            }
+
+            List<Evenement> events;
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/calendar.ics")) {
+                events = allEvents.get();
+            } else if (path.startsWith("/calendar/user/") && path.endsWith(".ics")) {
+                Integer userId = parseId(path.substring("/calendar/user/".length(), path.length() - 4));
+                if (userId == null) { sendEmpty(exchange, 404); return; }
+                events = userEvents.apply(userId);
+            } else {
+                sendEmpty(exchange, 404);
+                return;
+            }
+
+            Function<Integer, String> lieux = lieuResolver.get();
+            String etag = "\"" + ics.fingerprint(events, lieux) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                sendEmpty(exchange, 304);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
+            if (head) {
+                sendEmpty(exchange, 200);
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0); // chunked
+            OutputStream body = exchange.getResponseBody();
+            IcsWriter w = IcsWriter.to(body);
+            ics.writeCalendar(events, lieux, w, LocalDateTime.now());
+            w.close();
+        }
+    }
+
+    /**
+     * If-None-Match : liste d'ETags séparés par des virgules, préfixe faible W/ accepté, ou "*".
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static Integer parseId(String s) {
+        try {
+            int id = Integer.parseInt(s);
+            return id > 0 ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package services.evenements;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Écriture en flux d'un calendrier iCalendar (RFC 5545).
+ *
+ * Chaque propriété est écrite directement dans la destination (fichier, canal,
+ * réponse HTTP), sans construire le calendrier complet en mémoire.
+ * Les lignes sont pliées à 75 octets UTF-8 (CRLF + espace) sans jamais couper
+ * un caractère multi-octets.
+ */
+public final class IcsWriter implements Closeable, Flushable {
+
+    static final int MAX_LINE_OCTETS = 75;
+    private static final String CRLF = "\r\n";
+
+    private final Writer out;
+
+    public IcsWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static IcsWriter to(OutputStream out) {
+        return new IcsWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192));
+    }
+
+    public static IcsWriter to(WritableByteChannel channel) {
+        return new IcsWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+    }
+
+    /** BEGIN:xxx */
+    public IcsWriter begin(String component) throws IOException {
+        return line("BEGIN:" + component);
+    }
+
+    /** END:xxx */
+    public IcsWriter end(String component) throws IOException {
+        return line("END:" + component);
+    }
+
+    /** NOM:valeur — la valeur est échappée (texte iCalendar). */
+    public IcsWriter text(String name, String value) throws IOException {
+        return line(name + ":" + escape(value));
+    }
+
+    /** NOM:valeur — valeur écrite telle quelle (dates, énumérations, listes déjà formatées). */
+    public IcsWriter raw(String name, String value) throws IOException {
+        return line(name + ":" + (value == null ? "" : value));
+    }
+
+    /**
+     * Écrit une ligne de contenu en la pliant si elle dépasse 75 octets.
+     */
+    public IcsWriter line(String content) throws IOException {
+        int octets = 0;
+        int i = 0;
+        int len = content.length();
+        while (i < len) {
+            int cp = content.codePointAt(i);
+            int n = utf8Length(cp);
+            if (octets + n > MAX_LINE_OCTETS) {
+                out.write(CRLF);
+                out.write(' ');
+                octets = 1;
+            }
+            int chars = Character.charCount(cp);
+            out.write(content, i, chars);
+            octets += n;
+            i += chars;
+        }
+        out.write(CRLF);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Échappe un texte iCalendar : antislash, virgule, point-virgule, retours à la ligne.
+     */
+    static String escape(String text) {
+        if (text == null || text.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case ',' -> sb.append("\\,");
+                case ';' -> sb.append("\\;");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> { }
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int utf8Length(int cp) {
+        if (cp < 0x80) return 1;
+        if (cp < 0x800) return 2;
+        if (cp < 0x10000) return 3;
+        return 4;
+    }
+}
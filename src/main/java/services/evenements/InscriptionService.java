@@ -6,17 +6,65 @@ import utils.Mydb;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * InscriptionService — version mise à jour avec nb_tickets et getById
  */
 public class InscriptionService {
 
+    private final SeatInventoryService seatInventory = new SeatInventoryService();
+    private final EventStatsService eventStats = new EventStatsService();
+    private final ScheduleConflictIndex conflictIndex = ScheduleConflictIndex.getInstance();
+    private final TrendingService trending = new TrendingService();
+
+    private static final String STATUT_ANNULEE = "ANNULEE";
+    private static final String DEJA_INSCRIT = "Cet utilisateur est déjà inscrit à cet événement.";
+
+    private static volatile boolean schemaReady = false;
+
     private Connection getConnection() throws SQLException {
         return utils.Mydb.getInstance().getConnection();
     }
 
+    /**
+     * Clé unique (event_id, user_id) : deux demandes simultanées du même user ne peuvent
+     * plus insérer deux lignes. Échoue (log) tant que la table contient des doublons.
+     */
+    public void ensureSchema() {
+        if (schemaReady) return;
+        try (Connection cn = getConnection()) {
+            try (ResultSet rs = cn.getMetaData().getIndexInfo(null, null, "inscription", true, false)) {
+                while (rs.next()) {
+                    if ("uq_inscription_event_user".equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        schemaReady = true;
+                        return;
+                    }
+                }
+            }
+            try (Statement st = cn.createStatement()) {
+                st.execute("ALTER TABLE inscription ADD UNIQUE KEY uq_inscription_event_user (event_id, user_id)");
+            }
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[InscriptionService] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    /** Doublon (clé unique) ou interblocage avec une écriture concurrente : erreur métier, pas technique. */
+    private static RuntimeException writeError(String method, SQLException e) {
+        String state = e.getSQLState();
+        if (e.getErrorCode() == 1062) {
+            return new IllegalStateException(DEJA_INSCRIT, e);
+        }
+        if (e.getErrorCode() == 1213 || e.getErrorCode() == 1205 || "40001".equals(state)) {
+            return new IllegalStateException("Inscription modifiée en même temps ailleurs, veuillez réessayer.", e);
+        }
+        return new RuntimeException("Erreur " + method + ": " + e.getMessage(), e);
+    }
+
     private LocalDateTime toLDT(Timestamp ts) {
         return ts == null ? null : ts.toLocalDateTime();
     }
@@ -76,18 +124,31 @@ public class InscriptionService {
         return list;
     }
 
+    /**
+     * Inscriptions non annulées, lues dans les compteurs matérialisés
+     * (pour une liste d'événements, préférer {@link EventStatsService#getAll()}).
+     */
     public int countByEvent(int eventId) {
-        String sql = "SELECT COUNT(*) FROM inscription WHERE event_id = ? AND statut <> 'ANNULEE'";
+        return eventStats.get(eventId).actives();
+    }
+
+    /**
+     * Toutes les inscriptions en une seule requête, groupées par user (user_id → event_ids).
+     * Sert aux traitements batch (stats admin) à la place des sondes existsForUser par événement.
+     */
+    public Map<Integer, List<Integer>> getEventIdsGroupedByUser() {
+        String sql = "SELECT user_id, event_id FROM inscription ORDER BY user_id, event_id";
+        Map<Integer, List<Integer>> map = new LinkedHashMap<>();
         try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, eventId);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1);
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                map.computeIfAbsent(rs.getInt("user_id"), k -> new ArrayList<>()).add(rs.getInt("event_id"));
             }
         } catch (SQLException ex) {
-            throw new RuntimeException("Erreur countByEvent: " + ex.getMessage(), ex);
+            throw new RuntimeException("Erreur getEventIdsGroupedByUser: " + ex.getMessage(), ex);
         }
+        return map;
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -109,24 +170,15 @@ public class InscriptionService {
     }
 
     public void ensureCapacityAvailable(int eventId) {
-        String sql = """
-            SELECT e.capacite_max,
-                   (SELECT COUNT(*) FROM inscription i WHERE i.event_id = e.id AND i.statut <> 'ANNULEE') AS used_places
-            FROM evenement e
-            WHERE e.id = ?
-        """;
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, eventId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) throw new IllegalArgumentException("Événement introuvable.");
-                int max = rs.getInt("capacite_max");
-                int used = rs.getInt("used_places");
-                if (used >= max) throw new IllegalStateException("Capacité maximale atteinte.");
-            }
-        } catch (SQLException ex) {
-            throw new RuntimeException("Erreur ensureCapacityAvailable: " + ex.getMessage(), ex);
-        }
+        if (seatInventory.getRemaining(eventId) <= 0)
+            throw new IllegalStateException("Capacité maximale atteinte.");
+    }
+
+    /**
+     * Places encore disponibles (capacité - tickets des inscriptions non annulées).
+     */
+    public int getPlacesRestantes(int eventId) {
+        return seatInventory.getRemaining(eventId);
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -137,27 +189,48 @@ public class InscriptionService {
         return addInscription(eventId, userId, paiement, 1);
     }
 
+    /**
+     * Inscription sans survente, en une transaction : le compteur de places de l'événement est
+     * verrouillé et réservé (nb_tickets), puis l'inscription insérée. Capacité atteinte, doublon
+     * ou interblocage annulent le tout, places comprises.
+     */
     public int addInscription(int eventId, int userId, float paiement, int nbTickets) {
+        if (nbTickets <= 0)
+            throw new IllegalArgumentException("Nombre de tickets invalide.");
         if (existsForUser(eventId, userId))
-            throw new IllegalStateException("Cet utilisateur est déjà inscrit à cet événement.");
-        ensureCapacityAvailable(eventId);
+            throw new IllegalStateException(DEJA_INSCRIT);
 
+        // La clé unique (event_id, user_id) tranche entre deux inscriptions simultanées du même user
         String sql = """
             INSERT INTO inscription(event_id, user_id, statut, paiement, nb_tickets, date_creation)
-            VALUES(?, ?, 'EN_ATTENTE', ?, ?, NOW())
+            VALUES (?, ?, 'EN_ATTENTE', ?, ?, NOW())
         """;
-        try (Connection cnx = Mydb.getInstance().getConnection();
-             PreparedStatement ps = cnx.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, eventId);
-            ps.setInt(2, userId);
-            ps.setFloat(3, paiement);
-            ps.setInt(4, nbTickets);
-            ps.executeUpdate();
-            try (var rs = ps.getGeneratedKeys()) {
-                return rs.next() ? rs.getInt(1) : -1;
-            }
+        ensureSchema();
+        seatInventory.ensureSchema();
+        trending.ensureSchema();
+        eventStats.ensureSchema();
+        try {
+            int id = Mydb.getInstance().inTransaction(cnx -> {
+                if (!seatInventory.tryReserve(cnx, eventId, nbTickets))
+                    throw new IllegalStateException("Capacité maximale atteinte.");
+                eventStats.ensureRow(cnx, eventId);
+                try (PreparedStatement ps = cnx.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, eventId);
+                    ps.setInt(2, userId);
+                    ps.setFloat(3, paiement);
+                    ps.setInt(4, nbTickets);
+                    ps.executeUpdate();
+                    eventStats.applyDelta(cnx, eventId, EventStatsService.Delta.statut("EN_ATTENTE", 1));
+                    trending.recordInscription(cnx, eventId);
+                    try (var rs = ps.getGeneratedKeys()) {
+                        return rs.next() ? rs.getInt(1) : -1;
+                    }
+                }
+            });
+            conflictIndex.setInscription(userId, eventId, true);
+            return id;
         } catch (SQLException e) {
-            throw new RuntimeException("Erreur addInscription: " + e.getMessage(), e);
+            throw writeError("addInscription", e);
         }
     }
 
@@ -165,17 +238,59 @@ public class InscriptionService {
     //  UPDATE
     // ─────────────────────────────────────────────────────────────
 
+    /**
+     * Change le statut en gardant le compteur de places cohérent, dans la même transaction :
+     * passer à ANNULEE libère les places, quitter ANNULEE les re-réserve (si disponibles).
+     */
     public void updateStatut(int inscriptionId, String newStatut) {
         if (newStatut == null || newStatut.isBlank())
             throw new IllegalArgumentException("Statut invalide.");
-        String sql = "UPDATE inscription SET statut = ? WHERE id = ?";
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setString(1, newStatut);
-            ps.setInt(2, inscriptionId);
-            ps.executeUpdate();
+        Inscription current = getById(inscriptionId);
+        if (current == null) throw new IllegalArgumentException("Inscription introuvable.");
+        seatInventory.ensureSchema();
+        trending.ensureSchema();
+        eventStats.ensureSchema();
+
+        // event_id ne change jamais : compteur de places verrouillé avant la ligne inscription
+        int eventId = current.getEventId();
+        String lock = "SELECT statut, nb_tickets, date_creation FROM inscription WHERE id = ? FOR UPDATE";
+        try {
+            boolean updated = Mydb.getInstance().inTransaction(cn -> {
+                seatInventory.lockCounter(cn, eventId);
+                String oldStatut;
+                int places;
+                LocalDateTime createdAt;
+                try (PreparedStatement ps = cn.prepareStatement(lock)) {
+                    ps.setInt(1, inscriptionId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) return false;
+                        oldStatut = rs.getString("statut");
+                        places = Math.max(1, rs.getInt("nb_tickets"));
+                        createdAt = toLDT(rs.getTimestamp("date_creation"));
+                    }
+                }
+                boolean wasActive = !STATUT_ANNULEE.equalsIgnoreCase(oldStatut);
+                boolean isActive = !STATUT_ANNULEE.equalsIgnoreCase(newStatut);
+                if (!wasActive && isActive && !seatInventory.tryReserve(cn, eventId, places))
+                    throw new IllegalStateException("Capacité maximale atteinte.");
+
+                eventStats.ensureRow(cn, eventId);
+                try (PreparedStatement ps = cn.prepareStatement("UPDATE inscription SET statut = ? WHERE id = ?")) {
+                    ps.setString(1, newStatut);
+                    ps.setInt(2, inscriptionId);
+                    ps.executeUpdate();
+                }
+                eventStats.applyDelta(cn, eventId, EventStatsService.Delta.move(oldStatut, newStatut));
+                if (wasActive != isActive) trending.updateInscription(cn, eventId, createdAt, isActive);
+                if (wasActive && !isActive) seatInventory.release(cn, eventId, places);
+                return true;
+            });
+            if (updated) {
+                conflictIndex.setInscription(current.getUserId(), eventId,
+                        !STATUT_ANNULEE.equalsIgnoreCase(newStatut));
+            }
         } catch (SQLException ex) {
-            throw new RuntimeException("Erreur updateStatut: " + ex.getMessage(), ex);
+            throw writeError("updateStatut", ex);
         }
     }
 
@@ -209,13 +324,47 @@ public class InscriptionService {
     // ─────────────────────────────────────────────────────────────
 
     public void delete(int inscriptionId) {
-        String sql = "DELETE FROM inscription WHERE id = ?";
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, inscriptionId);
-            ps.executeUpdate();
+        Inscription current = getById(inscriptionId);
+        if (current == null) return;
+        seatInventory.ensureSchema();
+        trending.ensureSchema();
+        eventStats.ensureSchema();
+        try {
+            // Tickets et paiements partent en cascade : on retire aussi leur part des compteurs
+            String statut = Mydb.getInstance().inTransaction(cn -> {
+                seatInventory.lockCounter(cn, current.getEventId());
+                String st;
+                int places;
+                LocalDateTime createdAt;
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "SELECT statut, date_creation, nb_tickets FROM inscription WHERE id = ? FOR UPDATE")) {
+                    ps.setInt(1, inscriptionId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) return null;
+                        st = rs.getString(1);
+                        createdAt = toLDT(rs.getTimestamp(2));
+                        places = Math.max(1, rs.getInt(3));
+                    }
+                }
+                eventStats.ensureRow(cn, current.getEventId());
+                EventStatsService.Delta removed = eventStats.contributionOf(cn, inscriptionId, st);
+                try (PreparedStatement ps = cn.prepareStatement("DELETE FROM inscription WHERE id = ?")) {
+                    ps.setInt(1, inscriptionId);
+                    if (ps.executeUpdate() == 0) return null;
+                }
+                eventStats.applyDelta(cn, current.getEventId(), removed.negate());
+                // Suppression d'une inscription active : ses places reviennent dans la même transaction
+                if (!STATUT_ANNULEE.equalsIgnoreCase(st)) {
+                    trending.updateInscription(cn, current.getEventId(), createdAt, false);
+                    seatInventory.release(cn, current.getEventId(), places);
+                }
+                return st;
+            });
+            if (statut != null && !STATUT_ANNULEE.equalsIgnoreCase(statut)) {
+                conflictIndex.setInscription(current.getUserId(), current.getEventId(), false);
+            }
         } catch (SQLException ex) {
-            throw new RuntimeException("Erreur delete: " + ex.getMessage(), ex);
+            throw writeError("delete", ex);
         }
     }
 
@@ -0,0 +1,152 @@
+package services.evenements;
+
+import models.users.User;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot persistant des profils d'intérêts des users (panneau stats admin).
+ *
+ * Table auto-créée au premier appel :
+ *   user_interest_snapshot (user_id, keyword, weight, computed_at)
+ *
+ * Le calcul (coûteux) est fait en batch par {@link #rebuild(List)} ; l'écran admin
+ * lit ensuite le snapshot via {@link #getGlobalInterests(int)} sans recalculer.
+ */
+public class InterestSnapshotService {
+
+    private final RecommendationService recommendationService = new RecommendationService();
+
+    private Connection getConnection() throws SQLException {
+        return utils.Mydb.getInstance().getConnection();
+    }
+
+    public void ensureSchema() {
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS user_interest_snapshot (
+                    user_id      INT          NOT NULL,
+                    keyword      VARCHAR(100) NOT NULL,
+                    weight       INT          NOT NULL DEFAULT 1,
+                    computed_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    PRIMARY KEY (user_id, keyword),
+                    KEY idx_interest_keyword (keyword)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        try (Connection cn = getConnection();
+             Statement st = cn.createStatement()) {
+            st.execute(ddl);
+        } catch (SQLException e) {
+            System.err.println("[InterestSnapshot] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  BATCH
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Recalcule les profils de tous les users (fork-join) et remplace le snapshot
+     * dans une seule transaction. Retourne la date du snapshot écrit.
+     */
+    public LocalDateTime rebuild(List<User> users) {
+        ensureSchema();
+        Map<Integer, Map<String, Integer>> profiles = recommendationService.computeUserInterestProfiles(users);
+        LocalDateTime computedAt = LocalDateTime.now().withNano(0);
+
+        String sqlInsert = "INSERT INTO user_interest_snapshot (user_id, keyword, weight, computed_at) VALUES (?,?,?,?)";
+
+        try {
+            utils.Mydb.getInstance().inTransaction(cn -> {
+                try (Statement st = cn.createStatement()) {
+                    st.executeUpdate("DELETE FROM user_interest_snapshot");
+                }
+                try (PreparedStatement ps = cn.prepareStatement(sqlInsert)) {
+                    Timestamp ts = Timestamp.valueOf(computedAt);
+                    int pending = 0;
+                    for (Map.Entry<Integer, Map<String, Integer>> profile : profiles.entrySet()) {
+                        for (Map.Entry<String, Integer> kw : profile.getValue().entrySet()) {
+                            ps.setInt(1, profile.getKey());
+                            ps.setString(2, truncate(kw.getKey(), 100));
+                            ps.setInt(3, kw.getValue());
+                            ps.setTimestamp(4, ts);
+                            ps.addBatch();
+                            if (++pending % 500 == 0) ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur rebuild snapshot intérêts: " + ex.getMessage(), ex);
+        }
+        return computedAt;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  READ
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Date du dernier snapshot, ou null si aucun snapshot n'a encore été calculé.
+     */
+    public LocalDateTime getComputedAt() {
+        String sql = "SELECT MAX(computed_at) FROM user_interest_snapshot";
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) return null;
+            Timestamp ts = rs.getTimestamp(1);
+            return ts == null ? null : ts.toLocalDateTime();
+        } catch (SQLException ex) {
+            // Table absente : pas encore de snapshot
+            return null;
+        }
+    }
+
+    /**
+     * Intérêts globaux lus depuis le snapshot : mot-clé → nombre d'utilisateurs.
+     */
+    public Map<String, Integer> getGlobalInterests(int limit) {
+        String sql = """
+                SELECT keyword, COUNT(*) AS nb_users
+                FROM user_interest_snapshot
+                GROUP BY keyword
+                ORDER BY nb_users DESC, keyword
+                LIMIT ?
+                """;
+        Map<String, Integer> map = new LinkedHashMap<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) map.put(rs.getString("keyword"), rs.getInt("nb_users"));
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur lecture snapshot intérêts: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
+    /**
+     * Nombre d'utilisateurs ayant au moins un intérêt dans le snapshot.
+     */
+    public int countProfiledUsers() {
+        String sql = "SELECT COUNT(DISTINCT user_id) FROM user_interest_snapshot";
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException ex) {
+            return 0;
+        }
+    }
+
+    private String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+}
@@ -0,0 +1,153 @@
+package services.evenements;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Arbre d'intervalles [début, fin[ incrémental (treap augmenté du max des fins).
+ *
+ * Chaque intervalle est identifié par une clé unique : {@link #put} remplace
+ * l'intervalle existant de même clé, {@link #remove} le retire en O(log n).
+ * {@link #overlapping} ne descend que dans les sous-arbres dont la fin maximale
+ * dépasse le début cherché : O(log n + nombre de résultats).
+ *
+ * Non thread-safe : l'appelant synchronise (voir {@link ScheduleConflictIndex}).
+ */
+final class IntervalTree<T> {
+
+    private static final class Node<T> {
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final long key;
+        final T value;
+        final int priority;
+        LocalDateTime maxEnd;
+        Node<T> left;
+        Node<T> right;
+
+        Node(LocalDateTime start, LocalDateTime end, long key, T value, int priority) {
+            this.start = start;
+            this.end = end;
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    // Graine fixe : même forme d'arbre à données égales (tests reproductibles)
+    private final Random random = new Random(0x5EEDL);
+    private final Map<Long, LocalDateTime> startByKey = new HashMap<>();
+    private Node<T> root;
+
+    int size() {
+        return startByKey.size();
+    }
+
+    boolean isEmpty() {
+        return startByKey.isEmpty();
+    }
+
+    void put(long key, LocalDateTime start, LocalDateTime end, T value) {
+        if (!end.isAfter(start)) throw new IllegalArgumentException("Intervalle vide : " + start + " → " + end);
+        remove(key);
+        root = insert(root, new Node<>(start, end, key, value, random.nextInt()));
+        startByKey.put(key, start);
+    }
+
+    boolean remove(long key) {
+        LocalDateTime start = startByKey.remove(key);
+        if (start == null) return false;
+        root = delete(root, start, key);
+        return true;
+    }
+
+    /** Valeurs des intervalles qui chevauchent [start, end[, triées par début. */
+    List<T> overlapping(LocalDateTime start, LocalDateTime end) {
+        List<T> out = new ArrayList<>();
+        collect(root, start, end, out);
+        return out;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+
+    private static int compare(LocalDateTime s1, long k1, LocalDateTime s2, long k2) {
+        int c = s1.compareTo(s2);
+        return c != 0 ? c : Long.compare(k1, k2);
+    }
+
+    private Node<T> insert(Node<T> n, Node<T> x) {
+        if (n == null) return x;
+        if (compare(x.start, x.key, n.start, n.key) < 0) {
+            n.left = insert(n.left, x);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, x);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        update(n);
+        return n;
+    }
+
+    private Node<T> delete(Node<T> n, LocalDateTime start, long key) {
+        if (n == null) return null;
+        int c = compare(start, key, n.start, n.key);
+        if (c < 0) {
+            n.left = delete(n.left, start, key);
+        } else if (c > 0) {
+            n.right = delete(n.right, start, key);
+        } else {
+            // Nœud trouvé : on le fait descendre jusqu'à une feuille par rotations
+            if (n.left == null) return n.right;
+            if (n.right == null) return n.left;
+            if (n.left.priority > n.right.priority) {
+                n = rotateRight(n);
+                n.right = delete(n.right, start, key);
+            } else {
+                n = rotateLeft(n);
+                n.left = delete(n.left, start, key);
+            }
+        }
+        update(n);
+        return n;
+    }
+
+    private void collect(Node<T> n, LocalDateTime start, LocalDateTime end, List<T> out) {
+        // Rien dans ce sous-arbre ne finit après le début cherché
+        if (n == null || !n.maxEnd.isAfter(start)) return;
+        collect(n.left, start, end, out);
+        // Les nœuds à droite commencent encore plus tard
+        if (!n.start.isBefore(end)) return;
+        if (n.end.isAfter(start)) out.add(n.value);
+        collect(n.right, start, end, out);
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private void update(Node<T> n) {
+        LocalDateTime max = n.end;
+        if (n.left != null && n.left.maxEnd.isAfter(max)) max = n.left.maxEnd;
+        if (n.right != null && n.right.maxEnd.isAfter(max)) max = n.right.maxEnd;
+        n.maxEnd = max;
+    }
+}
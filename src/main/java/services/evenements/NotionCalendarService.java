@@ -2,15 +2,36 @@ package services.evenements;
 
 import models.evenements.Evenement;
 
+import utils.http.TokenBucketRateLimiter;
+
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -51,11 +72,22 @@ public class NotionCalendarService {
     private static final String NOTION_VERSION = "2022-06-28";
     private static final DateTimeFormatter ISO_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    /** Limite moyenne documentée par Notion : 3 requêtes/s par intégration. */
+    static final double RATE_LIMIT_PER_SECOND = 3.0;
+    /** Requêtes en vol pendant une synchro (le débit reste borné par le limiteur). */
+    static final int SYNC_WORKERS = 3;
+    private static final int MAX_RETRIES = 5;
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 10_000;
+
     private final HttpClient httpClient;
-    private String apiToken;
-    private String databaseId;
-    private boolean configured = false;
-    private String lastError = null;
+    private final String apiUrl;
+    private final TokenBucketRateLimiter rateLimiter;
+    private final NotionSyncStateService syncState;
+    private volatile String apiToken;
+    private volatile String databaseId;
+    private volatile boolean configured = false;
+    private volatile String lastError = null;
     /** The actual name of the title property in the Notion database */
     private String titlePropertyName = "Titre";
 
@@ -73,6 +105,22 @@ public class NotionCalendarService {
     }
 
     private NotionCalendarService() {
+        this(NOTION_API_URL, new TokenBucketRateLimiter(RATE_LIMIT_PER_SECOND, (int) RATE_LIMIT_PER_SECOND),
+                new NotionSyncStateService());
+    }
+
+    /**
+     * Pour les tests : API locale (faux serveur Notion) et limiteur dédié.
+     * {@code syncState} null = pas d'état local (chaque synchro réécrit tout).
+     */
+    NotionCalendarService(String apiUrl, TokenBucketRateLimiter rateLimiter) {
+        this(apiUrl, rateLimiter, null);
+    }
+
+    NotionCalendarService(String apiUrl, TokenBucketRateLimiter rateLimiter, NotionSyncStateService syncState) {
+        this.apiUrl = apiUrl;
+        this.rateLimiter = rateLimiter;
+        this.syncState = syncState;
         this.httpClient = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(15))
                 .build();
@@ -110,7 +158,7 @@ public class NotionCalendarService {
             System.out.println("[Notion] 🔗 Testing connection... DB=" + databaseId + ", Token=" + apiToken.substring(0, Math.min(10, apiToken.length())) + "...");
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId))
+                    .uri(URI.create(apiUrl + "/databases/" + databaseId))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json")
@@ -118,8 +166,7 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(10))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(request);
 
             System.out.println("[Notion] 📥 Test response status: " + response.statusCode());
 
@@ -284,7 +331,7 @@ public class NotionCalendarService {
             System.out.println("[Notion] 📤 Creating missing properties: " + json);
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId))
+                    .uri(URI.create(apiUrl + "/databases/" + databaseId))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json; charset=utf-8")
@@ -292,8 +339,7 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(15))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(request);
 
             if (response.statusCode() == 200) {
                 System.out.println("[Notion] ✅ Database schema updated successfully.");
@@ -334,18 +380,20 @@ public class NotionCalendarService {
      * @return l'ID Notion de la page créée, ou null en cas d'erreur
      */
     public String createEvent(Evenement ev, String lieuName) {
-        if (!configured) {
-            lastError = "Service non configuré.";
-            return null;
-        }
+        Outcome o = createPage(ev, lieuName);
+        lastError = o.error();
+        return o.pageId();
+    }
+
+    private Outcome createPage(Evenement ev, String lieuName) {
+        if (!configured) return Outcome.fail("Service non configuré.");
 
         try {
             String json = buildCreatePageJson(ev, lieuName);
             System.out.println("[Notion] 📤 CREATE request for: " + safeStr(ev.getTitre()) + " (ID=" + ev.getId() + ")");
-            System.out.println("[Notion] 📤 JSON: " + (json.length() > 500 ? json.substring(0, 500) + "..." : json));
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/pages"))
+                    .uri(URI.create(apiUrl + "/pages"))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json; charset=utf-8")
@@ -353,30 +401,26 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(15))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-            System.out.println("[Notion] 📥 Response status: " + response.statusCode());
-            if (response.statusCode() != 200) {
-                System.err.println("[Notion] 📥 Response body: " + response.body());
-            }
+            HttpResponse<String> response = send(request);
 
             if (response.statusCode() == 200) {
                 String pageId = extractJsonField(response.body(), "id");
                 System.out.println("[Notion] ✅ Événement créé: " + safeStr(ev.getTitre()) + " → " + pageId);
-                lastError = null;
-                return pageId;
+                return Outcome.ok(pageId);
             } else {
-                lastError = "Erreur création: " + response.statusCode() + " - " + extractNotionError(response.body());
-                System.err.println("[Notion] ❌ " + lastError);
-                return null;
+                System.err.println("[Notion] 📥 Response body: " + response.body());
+                String err = "Erreur création: " + response.statusCode() + " - " + extractNotionError(response.body());
+                System.err.println("[Notion] ❌ " + err);
+                return Outcome.fail(response.statusCode(), err);
             }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.fail("Interrompu");
         } catch (Exception e) {
-            lastError = "Erreur: " + e.getMessage();
-            System.err.println("[Notion] ❌ " + lastError);
-            e.printStackTrace();
-            return null;
+            String err = "Erreur: " + e.getMessage();
+            System.err.println("[Notion] ❌ " + err);
+            return Outcome.fail(err);
         }
     }
 
@@ -393,17 +437,20 @@ public class NotionCalendarService {
      * @return true si la mise à jour a réussi
      */
     public boolean updateEvent(String notionPageId, Evenement ev, String lieuName) {
-        if (!configured) {
-            lastError = "Service non configuré.";
-            return false;
-        }
+        Outcome o = updatePage(notionPageId, ev, lieuName);
+        lastError = o.error();
+        return o.isOk();
+    }
+
+    private Outcome updatePage(String notionPageId, Evenement ev, String lieuName) {
+        if (!configured) return Outcome.fail("Service non configuré.");
 
         try {
             String json = buildUpdatePageJson(ev, lieuName);
             System.out.println("[Notion] 📤 UPDATE request for: " + safeStr(ev.getTitre()) + " (PageID=" + notionPageId + ")");
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/pages/" + notionPageId))
+                    .uri(URI.create(apiUrl + "/pages/" + notionPageId))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json; charset=utf-8")
@@ -411,32 +458,36 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(15))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-
-            System.out.println("[Notion] 📥 Update response status: " + response.statusCode());
-            if (response.statusCode() != 200) {
-                System.err.println("[Notion] 📥 Update response body: " + response.body());
-            }
+            HttpResponse<String> response = send(request);
 
             if (response.statusCode() == 200) {
                 System.out.println("[Notion] ✏️ Événement mis à jour: " + safeStr(ev.getTitre()));
-                lastError = null;
-                return true;
+                return Outcome.ok(notionPageId);
             } else {
-                lastError = "Erreur update: " + response.statusCode() + " - " + extractNotionError(response.body());
-                System.err.println("[Notion] ❌ " + lastError);
-                return false;
+                System.err.println("[Notion] 📥 Update response body: " + response.body());
+                String err = "Erreur update: " + response.statusCode() + " - " + extractNotionError(response.body());
+                System.err.println("[Notion] ❌ " + err);
+                return Outcome.fail(response.statusCode(), err);
             }
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.fail("Interrompu");
         } catch (Exception e) {
-            lastError = "Erreur: " + e.getMessage();
-            System.err.println("[Notion] ❌ " + lastError);
-            e.printStackTrace();
-            return false;
+            String err = "Erreur: " + e.getMessage();
+            System.err.println("[Notion] ❌ " + err);
+            return Outcome.fail(err);
         }
     }
 
+    /** Résultat d'un appel page (création / mise à jour), sans passer par l'état partagé lastError. */
+    private record Outcome(String pageId, String error, int status) {
+        static Outcome ok(String pageId) { return new Outcome(pageId, null, 200); }
+        static Outcome fail(String error) { return new Outcome(null, error, 0); }
+        static Outcome fail(int status, String error) { return new Outcome(null, error, status); }
+        boolean isOk() { return error == null; }
+    }
+
     /**
      * Archive (supprime) une page Notion par son ID.
      *
@@ -444,11 +495,16 @@ public class NotionCalendarService {
      * @return true si l'archivage a réussi
      */
     public boolean archivePage(String notionPageId) {
-        if (!configured) return false;
+        return archiveStatus(notionPageId) == 200;
+    }
+
+    /** Code HTTP de l'archivage (0 si non configuré ou erreur réseau). */
+    private int archiveStatus(String notionPageId) {
+        if (!configured) return 0;
 
         try {
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/pages/" + notionPageId))
+                    .uri(URI.create(apiUrl + "/pages/" + notionPageId))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json")
@@ -456,12 +512,13 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(10))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
-            return response.statusCode() == 200;
+            return send(request).statusCode();
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
         } catch (Exception e) {
-            return false;
+            return 0;
         }
     }
 
@@ -495,7 +552,7 @@ public class NotionCalendarService {
                 System.out.println("[Notion] 🔍 queryMappings page " + page + "...");
 
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId + "/query"))
+                        .uri(URI.create(apiUrl + "/databases/" + databaseId + "/query"))
                         .header("Authorization", "Bearer " + apiToken)
                         .header("Notion-Version", NOTION_VERSION)
                         .header("Content-Type", "application/json")
@@ -503,8 +560,7 @@ public class NotionCalendarService {
                         .timeout(Duration.ofSeconds(10))
                         .build();
 
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> response = send(request);
 
                 System.out.println("[Notion] 📥 queryMappings response: " + response.statusCode());
 
@@ -526,8 +582,9 @@ public class NotionCalendarService {
                     }
                 }
 
-                Thread.sleep(350);
-
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 System.err.println("[Notion] ❌ Erreur query mappings: " + e.getMessage());
                 e.printStackTrace();
@@ -552,14 +609,7 @@ public class NotionCalendarService {
             if (objIdx == -1) break;
 
             // Trouver l'id de la page (juste avant ou après "object":"page")
-            String pageId = null;
-            int idSearchStart = Math.max(0, objIdx - 200);
-            int idIdx = body.indexOf("\"id\":\"", idSearchStart);
-            if (idIdx != -1 && idIdx < objIdx + 50) {
-                int s = idIdx + 6;
-                int e = body.indexOf("\"", s);
-                if (e != -1) pageId = body.substring(s, e);
-            }
+            String pageId = pageIdNear(body, objIdx);
 
             // Trouver EventID dans les propriétés de cette page
             // On cherche "EventID" suivi de "number": dans un rayon raisonnable
@@ -597,102 +647,253 @@ public class NotionCalendarService {
     //  SYNCHRONISER TOUS — UPSERT + DELETE ORPHELINS
     // ─────────────────────────────────────────────────────────────
 
+    /**
+     * Avancement d'une synchronisation (appelé depuis les threads de travail).
+     */
+    @FunctionalInterface
+    public interface SyncProgressListener {
+        void onProgress(int done, int total, String message);
+    }
+
+    /** FULL : relit toutes les pages Notion avant le diff. INCREMENTAL : se fie au mapping local. */
+    public enum SyncMode { FULL, INCREMENTAL }
+
+    public SyncResult syncAll(List<Evenement> evenements,
+                              Function<Integer, String> lieuResolver) {
+        return syncAll(evenements, lieuResolver, null);
+    }
+
     /**
      * Synchronise intelligemment les événements vers Notion :
      * • Crée les nouveaux événements (absents de Notion)
-     * • Met à jour les événements existants (déjà dans Notion)
+     * • Met à jour les événements dont le contenu a changé depuis la dernière synchro
      * • Archive les pages orphelines (supprimées localement)
      * • Évite toute redondance grâce à la propriété EventID
      *
+     * Le mapping EventID → page est relu dans Notion à chaque appel ; les événements
+     * inchangés (même empreinte de contenu) ne génèrent aucune requête.
+     *
      * @param evenements   liste complète des événements locaux
-     * @param lieuResolver fonction qui résout le nom du lieu
+     * @param lieuResolver fonction qui résout le nom du lieu (appelée sur le thread appelant)
+     * @param progress     avancement (peut être null)
      * @return résultat de la synchronisation
      */
     public SyncResult syncAll(List<Evenement> evenements,
-                              Function<Integer, String> lieuResolver) {
+                              Function<Integer, String> lieuResolver,
+                              SyncProgressListener progress) {
+        return sync(evenements, lieuResolver, SyncMode.FULL, progress);
+    }
+
+    /**
+     * Synchro « depuis la dernière fois » : n'envoie que les créations, modifications et
+     * suppressions, sans relire la base Notion sauf si le mapping local est absent ou
+     * plus vieux que {@link #MAPPINGS_STALE_AFTER}.
+     */
+    public SyncResult syncSinceLastRun(List<Evenement> evenements,
+                                       Function<Integer, String> lieuResolver,
+                                       SyncProgressListener progress) {
+        return sync(evenements, lieuResolver, SyncMode.INCREMENTAL, progress);
+    }
+
+    /**
+     * Diff local ↔ Notion puis écritures en parallèle sur SYNC_WORKERS threads ;
+     * le débit global reste borné par le limiteur (3 req/s) et les 429 sont réessayés.
+     */
+    public SyncResult sync(List<Evenement> evenements,
+                           Function<Integer, String> lieuResolver,
+                           SyncMode mode,
+                           SyncProgressListener progress) {
         SyncResult result = new SyncResult();
+        long start = System.nanoTime();
 
         if (!configured) {
             result.failed = evenements.size();
             result.errors.add("Service non configuré.");
             return result;
         }
+        String dbId = databaseId;
 
-        System.out.println("[Notion] ═══════════════════════════════════════════");
-        System.out.println("[Notion] 🔄 SYNC START — " + evenements.size() + " événement(s) local(s)");
-        System.out.println("[Notion] DB ID: " + databaseId);
-        System.out.println("[Notion] Token: " + apiToken.substring(0, Math.min(10, apiToken.length())) + "...");
+        // ── ÉTAPE 1 : Mapping EventID → page (local, ou relu dans Notion) ──
+        Map<Integer, NotionSyncStateService.Entry> state = loadSyncState(dbId);
+        if (mode == SyncMode.FULL || state.isEmpty() || isMappingStale(dbId)) {
+            state = refreshMappings(dbId, state);
+            result.mappingsRefreshed = true;
+        }
 
-        // ── ÉTAPE 1 : Récupérer les pages existantes dans Notion ──
-        System.out.println("[Notion] 🔍 Récupération des pages existantes...");
-        java.util.Map<Integer, String> existingPages = queryAllEventMappings();
-        System.out.println("[Notion] 📋 Pages existantes: " + existingPages.size() + " → " + existingPages.keySet());
-        java.util.Set<Integer> localIds = new java.util.HashSet<>();
+        // ── ÉTAPE 2 : Diff par empreinte de contenu ──
+        Set<Integer> localIds = new HashSet<>();
+        List<Runnable> tasks = new ArrayList<>();
+        Queue<NotionSyncStateService.Entry> written = new ConcurrentLinkedQueue<>();
+        Queue<Integer> removed = new ConcurrentLinkedQueue<>();
+        AtomicInteger done = new AtomicInteger();
+        int[] total = {0};
 
-        // ── ÉTAPE 2 : Upsert — créer ou mettre à jour ──
-        System.out.println("[Notion] 🔄 STEP 2: Upsert " + evenements.size() + " event(s)...");
-        int idx = 0;
         for (Evenement ev : evenements) {
-            idx++;
             localIds.add(ev.getId());
-            try {
-                String lieuName = lieuResolver.apply(ev.getLieuId());
-                String existingPageId = existingPages.get(ev.getId());
-                System.out.println("[Notion] [" + idx + "/" + evenements.size() + "] Event ID=" + ev.getId()
-                        + " \"" + safeStr(ev.getTitre()) + "\" → " + (existingPageId != null ? "UPDATE" : "CREATE"));
-
-                if (existingPageId != null) {
-                    // L'événement existe déjà → MISE À JOUR
-                    boolean updated = updateEvent(existingPageId, ev, lieuName);
-                    if (updated) {
+            String lieuName = lieuResolver.apply(ev.getLieuId());
+            String hash = contentHash(ev, lieuName);
+            NotionSyncStateService.Entry known = state.get(ev.getId());
+            if (known != null && hash.equals(known.contentHash())) {
+                result.skipped++;
+                continue;
+            }
+            String existingPageId = known != null ? known.pageId() : null;
+            total[0]++;
+            tasks.add(() -> {
+                Outcome o = existingPageId != null
+                        ? updatePage(existingPageId, ev, lieuName)
+                        : createPage(ev, lieuName);
+                boolean recreated = false;
+                if (!o.isOk() && existingPageId != null && o.status() == 404) {
+                    // Page supprimée à la main dans Notion → on la recrée
+                    o = createPage(ev, lieuName);
+                    recreated = true;
+                }
+                synchronized (result) {
+                    if (!o.isOk()) {
+                        result.failed++;
+                        result.errors.add(safeStr(ev.getTitre()) + ": " + o.error());
+                    } else if (existingPageId != null && !recreated) {
                         result.updated++;
-                        System.out.println("[Notion]   → ✅ Updated OK");
                     } else {
-                        result.failed++;
-                        result.errors.add(safeStr(ev.getTitre()) + ": " + lastError);
-                        System.out.println("[Notion]   → ❌ Update FAILED: " + lastError);
-                    }
-                } else {
-                    // Nouveau → CRÉATION
-                    String pageId = createEvent(ev, lieuName);
-                    if (pageId != null) {
                         result.created++;
-                        System.out.println("[Notion]   → ✅ Created OK: " + pageId);
-                    } else {
-                        result.failed++;
-                        result.errors.add(safeStr(ev.getTitre()) + ": " + lastError);
-                        System.out.println("[Notion]   → ❌ Create FAILED: " + lastError);
                     }
                 }
+                if (o.isOk()) {
+                    written.add(new NotionSyncStateService.Entry(ev.getId(), o.pageId(), hash, LocalDateTime.now()));
+                }
+                report(progress, done.incrementAndGet(), total[0], safeStr(ev.getTitre()));
+            });
+        }
 
-                // Rate limit Notion API (3 req/sec)
-                Thread.sleep(350);
+        // ── ÉTAPE 3 : Supprimer les orphelins (événements dans Notion
+        //    qui n'existent plus localement) ──
+        for (NotionSyncStateService.Entry entry : state.values()) {
+            if (localIds.contains(entry.eventId())) continue;
+            total[0]++;
+            tasks.add(() -> {
+                int status = archiveStatus(entry.pageId());
+                if (status == 200) {
+                    synchronized (result) { result.deleted++; }
+                    System.out.println("[Notion] 🗑️ Orphelin archivé: EventID=" + entry.eventId());
+                }
+                if (status == 200 || status == 404) removed.add(entry.eventId());
+                report(progress, done.incrementAndGet(), total[0], "Orphelin #" + entry.eventId());
+            });
+        }
 
-            } catch (Exception e) {
-                result.failed++;
-                result.errors.add(safeStr(ev.getTitre()) + ": " + e.getMessage());
-                System.err.println("[Notion]   → ❌ Exception: " + e.getMessage());
+        runOnWorkers(tasks);
+        saveSyncState(dbId, written, removed);
+
+        result.durationMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("[Notion] ✅ Sync " + mode + " terminée en " + result.durationMs + " ms: " + result);
+        return result;
+    }
+
+    /** Un mapping local plus vieux que ça est relu dans Notion (modifs faites hors de l'app). */
+    static final Duration MAPPINGS_STALE_AFTER = Duration.ofHours(24);
+
+    private Map<Integer, NotionSyncStateService.Entry> loadSyncState(String dbId) {
+        if (syncState == null) return new HashMap<>();
+        try {
+            return syncState.load(dbId);
+        } catch (RuntimeException e) {
+            System.err.println("[Notion] ⚠️ État local illisible, synchro complète: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private boolean isMappingStale(String dbId) {
+        if (syncState == null) return true;
+        try {
+            LocalDateTime refreshedAt = syncState.getMappingsRefreshedAt(dbId);
+            return refreshedAt == null || refreshedAt.isBefore(LocalDateTime.now().minus(MAPPINGS_STALE_AFTER));
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Relit les pages Notion et fusionne avec l'état local : l'empreinte est gardée
+     * si la page est la même, sinon l'événement sera réécrit.
+     */
+    private Map<Integer, NotionSyncStateService.Entry> refreshMappings(
+            String dbId, Map<Integer, NotionSyncStateService.Entry> local) {
+        Map<Integer, String> remote = queryAllEventMappings();
+        Map<Integer, NotionSyncStateService.Entry> merged = new HashMap<>();
+        for (Map.Entry<Integer, String> page : remote.entrySet()) {
+            NotionSyncStateService.Entry known = local.get(page.getKey());
+            merged.put(page.getKey(), known != null && page.getValue().equals(known.pageId())
+                    ? known
+                    : new NotionSyncStateService.Entry(page.getKey(), page.getValue(), null, null));
+        }
+        if (syncState != null) {
+            try {
+                syncState.replaceMappings(dbId, remote, LocalDateTime.now());
+            } catch (RuntimeException e) {
+                System.err.println("[Notion] ⚠️ Sauvegarde du mapping impossible: " + e.getMessage());
             }
         }
+        return merged;
+    }
+
+    private void saveSyncState(String dbId, Collection<NotionSyncStateService.Entry> written,
+                               Collection<Integer> removed) {
+        if (syncState == null) return;
+        try {
+            syncState.saveResults(dbId, written, removed, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            System.err.println("[Notion] ⚠️ Sauvegarde de l'état de synchro impossible: " + e.getMessage());
+        }
+    }
 
-        // ── ÉTAPE 3 : Supprimer les orphelins (événements dans Notion
-        //    qui n'existent plus localement) ──
-        for (java.util.Map.Entry<Integer, String> entry : existingPages.entrySet()) {
-            int notionEventId = entry.getKey();
-            if (!localIds.contains(notionEventId)) {
+    /**
+     * Empreinte SHA-256 du contenu envoyé à Notion pour cet événement.
+     */
+    String contentHash(Evenement ev, String lieuName) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(buildUpdatePageJson(ev, lieuName).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void report(SyncProgressListener progress, int done, int total, String message) {
+        if (progress == null) return;
+        try {
+            progress.onProgress(done, total, message);
+        } catch (RuntimeException e) {
+            System.err.println("[Notion] Erreur listener progression: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exécute les tâches sur un petit pool de threads et attend la fin de toutes.
+     */
+    private void runOnWorkers(List<Runnable> tasks) {
+        if (tasks.isEmpty()) return;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(SYNC_WORKERS, tasks.size()), r -> {
+            Thread t = new Thread(r, "notion-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) futures.add(pool.submit(task));
+            for (Future<?> f : futures) {
                 try {
-                    boolean archived = archivePage(entry.getValue());
-                    if (archived) {
-                        result.deleted++;
-                        System.out.println("[Notion] 🗑️ Orphelin archivé: EventID=" + notionEventId);
-                    }
-                    Thread.sleep(350);
-                } catch (Exception ignored) {}
+                    f.get();
+                } catch (ExecutionException e) {
+                    System.err.println("[Notion] ❌ Tâche en échec: " + e.getCause());
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
         }
-
-        System.out.println("[Notion] ✅ Sync terminée: " + result);
-        return result;
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -711,7 +912,7 @@ public class NotionCalendarService {
             String json = "{\"page_size\": 1}";
 
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId + "/query"))
+                    .uri(URI.create(apiUrl + "/databases/" + databaseId + "/query"))
                     .header("Authorization", "Bearer " + apiToken)
                     .header("Notion-Version", NOTION_VERSION)
                     .header("Content-Type", "application/json")
@@ -719,8 +920,7 @@ public class NotionCalendarService {
                     .timeout(Duration.ofSeconds(10))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = send(request);
 
             if (response.statusCode() == 200) {
                 // Compter le nombre total (pas fiable via une seule query, mais indicatif)
@@ -746,7 +946,7 @@ public class NotionCalendarService {
                         : "{\"page_size\": 100}";
 
                 HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId + "/query"))
+                        .uri(URI.create(apiUrl + "/databases/" + databaseId + "/query"))
                         .header("Authorization", "Bearer " + apiToken)
                         .header("Notion-Version", NOTION_VERSION)
                         .header("Content-Type", "application/json")
@@ -754,8 +954,7 @@ public class NotionCalendarService {
                         .timeout(Duration.ofSeconds(15))
                         .build();
 
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> response = send(request);
 
                 if (response.statusCode() != 200) break;
 
@@ -773,8 +972,9 @@ public class NotionCalendarService {
                     if (startCursor == null) break;
                 }
 
-                Thread.sleep(350);
-
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 break;
             }
@@ -791,7 +991,7 @@ public class NotionCalendarService {
     public int clearAll() {
         if (!configured) return 0;
 
-        int archived = 0;
+        AtomicInteger archived = new AtomicInteger();
         String startCursor = null;
         boolean hasMore = true;
 
@@ -802,7 +1002,7 @@ public class NotionCalendarService {
                         : "{\"page_size\": 100}";
 
                 HttpRequest queryReq = HttpRequest.newBuilder()
-                        .uri(URI.create(NOTION_API_URL + "/databases/" + databaseId + "/query"))
+                        .uri(URI.create(apiUrl + "/databases/" + databaseId + "/query"))
                         .header("Authorization", "Bearer " + apiToken)
                         .header("Notion-Version", NOTION_VERSION)
                         .header("Content-Type", "application/json")
@@ -810,8 +1010,7 @@ public class NotionCalendarService {
                         .timeout(Duration.ofSeconds(15))
                         .build();
 
-                HttpResponse<String> queryResp = httpClient.send(queryReq,
-                        HttpResponse.BodyHandlers.ofString());
+                HttpResponse<String> queryResp = send(queryReq);
 
                 if (queryResp.statusCode() != 200) break;
 
@@ -819,24 +1018,13 @@ public class NotionCalendarService {
                 String body = queryResp.body();
                 List<String> pageIds = extractAllPageIds(body);
 
+                List<Runnable> archives = new ArrayList<>();
                 for (String pid : pageIds) {
-                    try {
-                        HttpRequest archiveReq = HttpRequest.newBuilder()
-                                .uri(URI.create(NOTION_API_URL + "/pages/" + pid))
-                                .header("Authorization", "Bearer " + apiToken)
-                                .header("Notion-Version", NOTION_VERSION)
-                                .header("Content-Type", "application/json")
-                                .method("PATCH", HttpRequest.BodyPublishers.ofString(
-                                        "{\"archived\": true}"))
-                                .timeout(Duration.ofSeconds(10))
-                                .build();
-
-                        HttpResponse<String> archiveResp = httpClient.send(archiveReq,
-                                HttpResponse.BodyHandlers.ofString());
-                        if (archiveResp.statusCode() == 200) archived++;
-                        Thread.sleep(350);
-                    } catch (Exception ignored) {}
+                    archives.add(() -> {
+                        if (archivePage(pid)) archived.incrementAndGet();
+                    });
                 }
+                runOnWorkers(archives);
 
                 hasMore = body.contains("\"has_more\":true");
                 if (hasMore) {
@@ -849,8 +1037,15 @@ public class NotionCalendarService {
             }
         }
 
-        System.out.println("[Notion] 🗑️ " + archived + " page(s) archivée(s).");
-        return archived;
+        if (syncState != null) {
+            try {
+                syncState.clear(databaseId);
+            } catch (RuntimeException e) {
+                System.err.println("[Notion] ⚠️ Réinitialisation de l'état local impossible: " + e.getMessage());
+            }
+        }
+        System.out.println("[Notion] 🗑️ " + archived.get() + " page(s) archivée(s).");
+        return archived.get();
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -862,6 +1057,10 @@ public class NotionCalendarService {
         public int updated;
         public int deleted;
         public int failed;
+        /** Événements inchangés depuis la dernière synchro (aucune requête). */
+        public int skipped;
+        public boolean mappingsRefreshed;
+        public long durationMs;
         public List<String> errors = new ArrayList<>();
 
         @Override
@@ -874,6 +1073,7 @@ public class NotionCalendarService {
             if (sb.toString().endsWith(", ")) sb.setLength(sb.length() - 2);
             if (created == 0 && updated == 0 && deleted == 0 && failed == 0)
                 sb.append("Aucun changement");
+            if (skipped > 0) sb.append(" (").append(skipped).append(" inchangé(s))");
             return sb.toString();
         }
     }
@@ -1041,6 +1241,55 @@ public class NotionCalendarService {
         return sb.toString();
     }
 
+    // ─────────────────────────────────────────────────────────────
+    //  ENVOI HTTP — limiteur de débit + reprise sur 429
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Envoie une requête en respectant le débit Notion.
+     * Sur 429 (ou 502/503/504) : attend Retry-After s'il est fourni, sinon un backoff
+     * exponentiel avec gigue, puis réessaie (au plus MAX_RETRIES fois). Un 429 suspend
+     * le limiteur entier, donc tous les workers ralentissent ensemble.
+     */
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            rateLimiter.acquire();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            int code = response.statusCode();
+            boolean retryable = code == 429 || code == 502 || code == 503 || code == 504;
+            if (!retryable || attempt >= MAX_RETRIES) return response;
+
+            long delay = retryAfterMillis(response.headers().firstValue("Retry-After").orElse(null));
+            if (delay < 0) {
+                delay = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << attempt)
+                        + ThreadLocalRandom.current().nextLong(BACKOFF_BASE_MS / 2 + 1);
+            }
+            System.err.println("[Notion] ⏳ HTTP " + code + " — nouvelle tentative dans " + delay + " ms");
+            if (code == 429) {
+                rateLimiter.pauseFor(delay);
+            } else {
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Retry-After en secondes (entier ou décimal) ou date HTTP ; -1 si absent/illisible.
+     */
+    static long retryAfterMillis(String header) {
+        if (header == null || header.isBlank()) return -1;
+        String v = header.trim();
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(v) * 1000));
+        } catch (NumberFormatException ignored) { }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+        } catch (DateTimeParseException ignored) {
+            return -1;
+        }
+    }
+
     // ─────────────────────────────────────────────────────────────
     //  HELPERS JSON (sans dépendance)
     // ─────────────────────────────────────────────────────────────
@@ -1090,26 +1339,40 @@ public class NotionCalendarService {
             int objIdx = json.indexOf("\"object\":\"page\"", searchFrom);
             if (objIdx == -1) break;
 
-            // Chercher l'id le plus proche avant ou après
-            int idIdx = json.indexOf("\"id\":\"", Math.max(0, objIdx - 100));
-            if (idIdx == -1 || idIdx > objIdx + 200) {
-                searchFrom = objIdx + 1;
-                continue;
-            }
-
-            int start = idIdx + 6; // length of "id":"
-            int end = json.indexOf("\"", start);
-            if (end != -1) {
-                String id = json.substring(start, end);
-                if (id.length() > 10 && !ids.contains(id)) { // Notion IDs are UUID-like
-                    ids.add(id);
-                }
+            String id = pageIdNear(json, objIdx);
+            if (id != null && !ids.contains(id)) {
+                ids.add(id);
             }
             searchFrom = objIdx + 1;
         }
         return ids;
     }
 
+    /**
+     * ID de la page dont le marqueur "object":"page" est à {@code objIdx}.
+     * Notion écrit "id" juste après "object" ; à défaut on prend le plus proche avant.
+     * On ignore les ids courts (ids de propriétés comme "title" ou "%3DqAb").
+     */
+    private static String pageIdNear(String json, int objIdx) {
+        String marker = "\"id\":\"";
+        int after = json.indexOf(marker, objIdx);
+        if (after != -1 && after < objIdx + 50) {
+            String id = readUntilQuote(json, after + marker.length());
+            if (id != null && id.length() > 10) return id;
+        }
+        int before = json.lastIndexOf(marker, objIdx);
+        if (before != -1 && before > objIdx - 100) {
+            String id = readUntilQuote(json, before + marker.length());
+            if (id != null && id.length() > 10) return id;
+        }
+        return null;
+    }
+
+    private static String readUntilQuote(String json, int start) {
+        int end = json.indexOf('"', start);
+        return end == -1 ? null : json.substring(start, end);
+    }
+
     private static String safeStr(Object o) {
         return o == null ? "" : String.valueOf(o);
     }
@@ -0,0 +1,239 @@
+package services.evenements;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * État local de la synchronisation Notion, par base Notion.
+ *
+ * Tables auto-créées au premier appel :
+ *   notion_sync_state (database_id, event_id, page_id, content_hash, synced_at)
+ *   notion_sync_meta  (database_id, mappings_refreshed_at, last_sync_at)
+ *
+ * content_hash = empreinte du contenu envoyé lors de la dernière écriture réussie :
+ * un événement dont l'empreinte n'a pas changé n'est pas renvoyé à Notion.
+ * mappings_refreshed_at = dernière relecture complète des pages Notion
+ * (queryAllEventMappings), pour décider si la table locale est périmée.
+ */
+public class NotionSyncStateService {
+
+    /** Ligne d'état d'un événement. {@code contentHash} null = à réécrire. */
+    public record Entry(int eventId, String pageId, String contentHash, LocalDateTime syncedAt) {}
+
+    private static volatile boolean schemaReady = false;
+
+    private Connection getConnection() throws SQLException {
+        return utils.Mydb.getInstance().getConnection();
+    }
+
+    public void ensureSchema() {
+        if (schemaReady) return;
+        String ddlState = """
+                CREATE TABLE IF NOT EXISTS notion_sync_state (
+                    database_id   VARCHAR(64) NOT NULL,
+                    event_id      INT         NOT NULL,
+                    page_id       VARCHAR(64) NOT NULL,
+                    content_hash  CHAR(64)    NULL,
+                    synced_at     TIMESTAMP   NULL,
+                    PRIMARY KEY (database_id, event_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        String ddlMeta = """
+                CREATE TABLE IF NOT EXISTS notion_sync_meta (
+                    database_id            VARCHAR(64) NOT NULL,
+                    mappings_refreshed_at  TIMESTAMP   NULL,
+                    last_sync_at           TIMESTAMP   NULL,
+                    PRIMARY KEY (database_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        try (Connection cn = getConnection();
+             Statement st = cn.createStatement()) {
+            st.execute(ddlState);
+            st.execute(ddlMeta);
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[NotionSyncState] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  LECTURE
+    // ─────────────────────────────────────────────────────────────
+
+    public Map<Integer, Entry> load(String databaseId) {
+        ensureSchema();
+        String sql = """
+                SELECT event_id, page_id, content_hash, synced_at
+                FROM notion_sync_state
+                WHERE database_id = ?
+                """;
+        Map<Integer, Entry> map = new HashMap<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setString(1, databaseId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp ts = rs.getTimestamp("synced_at");
+                    Entry e = new Entry(rs.getInt("event_id"), rs.getString("page_id"),
+                            rs.getString("content_hash"), ts == null ? null : ts.toLocalDateTime());
+                    map.put(e.eventId(), e);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur load notion_sync_state: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
+    /** Dernière relecture complète des pages Notion, ou null si jamais faite. */
+    public LocalDateTime getMappingsRefreshedAt(String databaseId) {
+        return readMeta(databaseId, "mappings_refreshed_at");
+    }
+
+    public LocalDateTime getLastSyncAt(String databaseId) {
+        return readMeta(databaseId, "last_sync_at");
+    }
+
+    private LocalDateTime readMeta(String databaseId, String column) {
+        ensureSchema();
+        String sql = "SELECT " + column + " FROM notion_sync_meta WHERE database_id = ?";
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setString(1, databaseId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Timestamp ts = rs.getTimestamp(1);
+                return ts == null ? null : ts.toLocalDateTime();
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur readMeta notion_sync_meta: " + ex.getMessage(), ex);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  ÉCRITURE
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Remplace le mapping local par celui lu dans Notion (eventId → pageId).
+     * Les empreintes sont conservées quand la page est la même, effacées sinon
+     * (l'événement sera réécrit au prochain passage).
+     */
+    public void replaceMappings(String databaseId, Map<Integer, String> pages, LocalDateTime refreshedAt) {
+        ensureSchema();
+        Map<Integer, Entry> current = load(databaseId);
+        String upsert = """
+                INSERT INTO notion_sync_state (database_id, event_id, page_id, content_hash, synced_at)
+                VALUES (?, ?, ?, NULL, NULL)
+                ON DUPLICATE KEY UPDATE
+                    content_hash = IF(page_id = VALUES(page_id), content_hash, NULL),
+                    synced_at    = IF(page_id = VALUES(page_id), synced_at, NULL),
+                    page_id      = VALUES(page_id)
+                """;
+        String delete = "DELETE FROM notion_sync_state WHERE database_id = ? AND event_id = ?";
+
+        inTransaction(cn -> {
+            try (PreparedStatement ps = cn.prepareStatement(upsert)) {
+                for (Map.Entry<Integer, String> p : pages.entrySet()) {
+                    ps.setString(1, databaseId);
+                    ps.setInt(2, p.getKey());
+                    ps.setString(3, p.getValue());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = cn.prepareStatement(delete)) {
+                for (Integer eventId : current.keySet()) {
+                    if (pages.containsKey(eventId)) continue;
+                    ps.setString(1, databaseId);
+                    ps.setInt(2, eventId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            upsertMeta(cn, databaseId, "mappings_refreshed_at", refreshedAt);
+        }, "replaceMappings");
+    }
+
+    /**
+     * Enregistre le résultat d'une synchro : écritures réussies et pages archivées.
+     */
+    public void saveResults(String databaseId, Collection<Entry> written, Collection<Integer> removedEventIds,
+                            LocalDateTime syncedAt) {
+        ensureSchema();
+        String upsert = """
+                INSERT INTO notion_sync_state (database_id, event_id, page_id, content_hash, synced_at)
+                VALUES (?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE
+                    page_id = VALUES(page_id),
+                    content_hash = VALUES(content_hash),
+                    synced_at = VALUES(synced_at)
+                """;
+        String delete = "DELETE FROM notion_sync_state WHERE database_id = ? AND event_id = ?";
+
+        inTransaction(cn -> {
+            try (PreparedStatement ps = cn.prepareStatement(upsert)) {
+                for (Entry e : written) {
+                    ps.setString(1, databaseId);
+                    ps.setInt(2, e.eventId());
+                    ps.setString(3, e.pageId());
+                    ps.setString(4, e.contentHash());
+                    ps.setTimestamp(5, e.syncedAt() == null ? null : Timestamp.valueOf(e.syncedAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = cn.prepareStatement(delete)) {
+                for (Integer eventId : removedEventIds) {
+                    ps.setString(1, databaseId);
+                    ps.setInt(2, eventId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            upsertMeta(cn, databaseId, "last_sync_at", syncedAt);
+        }, "saveResults");
+    }
+
+    /** Oublie tout l'état d'une base (après clearAll). */
+    public void clear(String databaseId) {
+        ensureSchema();
+        inTransaction(cn -> {
+            for (String table : new String[]{"notion_sync_state", "notion_sync_meta"}) {
+                try (PreparedStatement ps = cn.prepareStatement("DELETE FROM " + table + " WHERE database_id = ?")) {
+                    ps.setString(1, databaseId);
+                    ps.executeUpdate();
+                }
+            }
+        }, "clear");
+    }
+
+    private void upsertMeta(Connection cn, String databaseId, String column, LocalDateTime value) throws SQLException {
+        String sql = "INSERT INTO notion_sync_meta (database_id, " + column + ") VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE " + column + " = VALUES(" + column + ")";
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setString(1, databaseId);
+            ps.setTimestamp(2, value == null ? null : Timestamp.valueOf(value));
+            ps.executeUpdate();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run(Connection cn) throws SQLException;
+    }
+
+    private void inTransaction(SqlWork work, String op) {
+        try {
+            utils.Mydb.getInstance().inTransaction(cn -> {
+                work.run(cn);
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur " + op + " notion_sync_state: " + ex.getMessage(), ex);
+        }
+    }
+}
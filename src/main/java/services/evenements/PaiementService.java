@@ -5,19 +5,75 @@ import utils.Mydb;
 
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * PaiementService — CRUD et logique métier pour les paiements.
  *
  * Méthodes : CARTE_BANCAIRE | ESPECES | VIREMENT | FLOUCI
+ * Statuts  : PAYE | REMBOURSE, et pour les paiements en ligne suivis par
+ *            {@link services.payment.PaymentTracker} : EN_ATTENTE → PAYE | ECHOUE | EXPIRE | ANNULE
  */
 public class PaiementService {
 
+    public static final String STATUT_PAYE       = "PAYE";
+    public static final String STATUT_EN_ATTENTE = "EN_ATTENTE";
+    public static final String STATUT_ECHOUE     = "ECHOUE";
+    public static final String STATUT_EXPIRE     = "EXPIRE";
+    public static final String STATUT_ANNULE     = "ANNULE";
+
+    /**
+     * Paiement en ligne en attente de confirmation par le fournisseur.
+     *
+     * @param providerRef id de session Stripe ou payment_id Flouci
+     */
+    public record PendingPayment(int paiementId, int inscriptionId, double montant, String methode,
+                                 String providerRef, int attempts, LocalDateTime nextCheckAt,
+                                 LocalDateTime expiresAt) {
+
+        public PendingPayment rescheduled(int attempts, LocalDateTime nextCheckAt) {
+            return new PendingPayment(paiementId, inscriptionId, montant, methode, providerRef,
+                    attempts, nextCheckAt, expiresAt);
+        }
+    }
+
+    private static volatile boolean schemaReady = false;
+
+    private final EventStatsService eventStats = new EventStatsService();
+
     private Connection getConnection() throws SQLException {
         return Mydb.getInstance().getConnection();
     }
 
+    /**
+     * Colonnes de suivi des paiements en ligne, ajoutées si la table
+     * a été créée avant (cf. sql/paiement_table.sql).
+     */
+    public void ensureSchema() {
+        if (schemaReady) return;
+        try (Connection cn = getConnection()) {
+            ensureColumn(cn, "provider_ref",
+                    "ALTER TABLE paiement ADD COLUMN provider_ref VARCHAR(128) NULL AFTER reference_code");
+            ensureColumn(cn, "check_attempts",
+                    "ALTER TABLE paiement ADD COLUMN check_attempts INT NOT NULL DEFAULT 0 AFTER provider_ref");
+            ensureColumn(cn, "next_check_at",
+                    "ALTER TABLE paiement ADD COLUMN next_check_at DATETIME NULL AFTER check_attempts");
+            ensureColumn(cn, "expires_at",
+                    "ALTER TABLE paiement ADD COLUMN expires_at DATETIME NULL AFTER next_check_at");
+            ensureColumn(cn, "last_error",
+                    "ALTER TABLE paiement ADD COLUMN last_error VARCHAR(255) NULL AFTER expires_at");
+            ensureIndex(cn, "idx_paiement_statut_check",
+                    "ALTER TABLE paiement ADD KEY idx_paiement_statut_check (statut, next_check_at)");
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[PaiementService] Schema init failed: " + e.getMessage());
+        }
+    }
+
     private LocalDateTime toLDT(Timestamp ts) {
         return ts == null ? null : ts.toLocalDateTime();
     }
@@ -40,20 +96,171 @@ public class PaiementService {
                                  nom_carte, quatre_derniers, date_paiement)
             VALUES(?, ?, ?, 'PAYE', ?, ?, ?, NOW())
         """;
+        eventStats.ensureSchema();
+        try {
+            return Mydb.getInstance().inTransaction(cn -> {
+                int eventId = eventStats.eventIdOfInscription(cn, inscriptionId);
+                if (eventId > 0) eventStats.ensureRow(cn, eventId);
+                int id;
+                try (PreparedStatement ps = cn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, inscriptionId);
+                    ps.setDouble(2, montant);
+                    ps.setString(3, methode);
+                    ps.setString(4, referenceCode);
+                    ps.setString(5, nomCarte);
+                    ps.setString(6, quatreDerniers);
+                    ps.executeUpdate();
+                    try (var rs = ps.getGeneratedKeys()) {
+                        id = rs.next() ? rs.getInt(1) : -1;
+                    }
+                }
+                if (eventId > 0) eventStats.applyDelta(cn, eventId, EventStatsService.Delta.revenu(montant));
+                return id;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Erreur addPaiement: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Enregistre un paiement en ligne EN_ATTENTE (session Stripe / Flouci créée,
+     * confirmation à venir). Première vérification immédiate.
+     *
+     * @return l'ID du paiement créé, ou -1 en cas d'échec
+     */
+    public int addPending(int inscriptionId, double montant, String methode,
+                          String providerRef, LocalDateTime expiresAt) {
+        ensureSchema();
+        String sql = """
+            INSERT INTO paiement(inscription_id, montant, methode, statut, reference_code,
+                                 provider_ref, check_attempts, next_check_at, expires_at, date_paiement)
+            VALUES(?, ?, ?, 'EN_ATTENTE', ?, ?, 0, NOW(), ?, NOW())
+        """;
         try (Connection cn = getConnection();
              PreparedStatement ps = cn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, inscriptionId);
             ps.setDouble(2, montant);
             ps.setString(3, methode);
-            ps.setString(4, referenceCode);
-            ps.setString(5, nomCarte);
-            ps.setString(6, quatreDerniers);
+            ps.setString(4, generateReferenceCode());
+            ps.setString(5, providerRef);
+            ps.setTimestamp(6, Timestamp.valueOf(expiresAt));
             ps.executeUpdate();
             try (var rs = ps.getGeneratedKeys()) {
                 return rs.next() ? rs.getInt(1) : -1;
             }
         } catch (SQLException e) {
-            throw new RuntimeException("Erreur addPaiement: " + e.getMessage(), e);
+            throw new RuntimeException("Erreur addPending: " + e.getMessage(), e);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  SUIVI DES PAIEMENTS EN LIGNE
+    // ─────────────────────────────────────────────────────────────
+
+    /** Tous les paiements EN_ATTENTE (reprise du suivi au démarrage). */
+    public List<PendingPayment> getPending() {
+        ensureSchema();
+        String sql = """
+            SELECT id, inscription_id, montant, methode, provider_ref, check_attempts,
+                   next_check_at, expires_at
+            FROM paiement
+            WHERE statut = 'EN_ATTENTE' AND provider_ref IS NOT NULL
+            ORDER BY next_check_at
+        """;
+        List<PendingPayment> list = new ArrayList<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(new PendingPayment(rs.getInt("id"), rs.getInt("inscription_id"),
+                        rs.getDouble("montant"), rs.getString("methode"), rs.getString("provider_ref"),
+                        rs.getInt("check_attempts"), toLDT(rs.getTimestamp("next_check_at")),
+                        toLDT(rs.getTimestamp("expires_at"))));
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getPending: " + ex.getMessage(), ex);
+        }
+        return list;
+    }
+
+    /** Enregistre une vérification non concluante et la date de la suivante. */
+    public void scheduleCheck(int paiementId, int attempts, LocalDateTime nextCheckAt, String lastError) {
+        ensureSchema();
+        String sql = """
+            UPDATE paiement SET check_attempts = ?, next_check_at = ?, last_error = ?
+            WHERE id = ? AND statut = 'EN_ATTENTE'
+        """;
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, attempts);
+            ps.setTimestamp(2, Timestamp.valueOf(nextCheckAt));
+            ps.setString(3, lastError == null ? null : lastError.substring(0, Math.min(255, lastError.length())));
+            ps.setInt(4, paiementId);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur scheduleCheck: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Transition EN_ATTENTE → statut final, une seule fois (compare-and-set).
+     * Si PAYE, les tickets de l'inscription sont créés et les compteurs de l'événement
+     * (tickets, revenu) mis à jour dans la même transaction.
+     *
+     * @return true si c'est cet appel qui a effectué la transition
+     */
+    public boolean settlePending(int paiementId, String statut) {
+        ensureSchema();
+        String update = """
+            UPDATE paiement SET statut = ?, next_check_at = NULL, date_paiement = NOW()
+            WHERE id = ? AND statut = 'EN_ATTENTE'
+        """;
+        String nbTickets = """
+            SELECT i.id, i.nb_tickets, i.event_id, p.montant FROM paiement p JOIN inscription i ON i.id = p.inscription_id
+            WHERE p.id = ?
+        """;
+        String insertTicket = "INSERT INTO ticket(inscription_id, date) VALUES(?, CURDATE())";
+
+        eventStats.ensureSchema();
+        try {
+            return Mydb.getInstance().inTransaction(cn -> {
+                int inscriptionId = -1, count = 0, eventId = -1;
+                double montant = 0;
+                if (STATUT_PAYE.equals(statut)) {
+                    try (PreparedStatement ps = cn.prepareStatement(nbTickets)) {
+                        ps.setInt(1, paiementId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (rs.next()) {
+                                inscriptionId = rs.getInt(1);
+                                count = Math.max(1, rs.getInt(2));
+                                eventId = rs.getInt(3);
+                                montant = rs.getDouble(4);
+                            }
+                        }
+                    }
+                    if (eventId > 0) eventStats.ensureRow(cn, eventId);
+                }
+                int rows;
+                try (PreparedStatement ps = cn.prepareStatement(update)) {
+                    ps.setString(1, statut);
+                    ps.setInt(2, paiementId);
+                    rows = ps.executeUpdate();
+                }
+                if (rows == 1 && inscriptionId > 0) {
+                    try (PreparedStatement ins = cn.prepareStatement(insertTicket)) {
+                        for (int i = 0; i < count; i++) {
+                            ins.setInt(1, inscriptionId);
+                            ins.addBatch();
+                        }
+                        ins.executeBatch();
+                    }
+                    eventStats.applyDelta(cn, eventId, EventStatsService.Delta.tickets(count)
+                            .plus(EventStatsService.Delta.revenu(montant)));
+                }
+                return rows == 1;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur settlePending: " + ex.getMessage(), ex);
         }
     }
 
@@ -86,6 +293,34 @@ public class PaiementService {
         }
     }
 
+    /**
+     * Dernier paiement de chaque inscription d'un événement, en une seule requête.
+     * @return inscription_id → Paiement (les inscriptions sans paiement sont absentes)
+     */
+    public Map<Integer, Paiement> getLatestByEventId(int eventId) {
+        String sql = """
+            SELECT p.id, p.inscription_id, p.montant, p.methode, p.statut, p.reference_code,
+                   p.nom_carte, p.quatre_derniers, p.date_paiement
+            FROM paiement p
+            JOIN inscription i ON i.id = p.inscription_id
+            WHERE i.event_id = ?
+            ORDER BY p.inscription_id, p.date_paiement DESC, p.id DESC
+        """;
+        Map<Integer, Paiement> map = new HashMap<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, eventId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    map.putIfAbsent(rs.getInt("inscription_id"), mapRow(rs));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getLatestByEventId: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
     public Paiement getById(int paiementId) {
         String sql = """
             SELECT id, inscription_id, montant, methode, statut, reference_code,
@@ -125,11 +360,33 @@ public class PaiementService {
     // ─────────────────────────────────────────────────────────────
 
     public void delete(int paiementId) {
+        String lookup = """
+            SELECT i.event_id, p.montant, p.statut FROM paiement p JOIN inscription i ON i.id = p.inscription_id
+            WHERE p.id = ?
+        """;
         String sql = "DELETE FROM paiement WHERE id = ?";
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, paiementId);
-            ps.executeUpdate();
+        eventStats.ensureSchema();
+        try {
+            Mydb.getInstance().inTransaction(cn -> {
+                int eventId = -1;
+                double paye = 0;
+                try (PreparedStatement ps = cn.prepareStatement(lookup)) {
+                    ps.setInt(1, paiementId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            eventId = rs.getInt(1);
+                            if (STATUT_PAYE.equals(rs.getString(3))) paye = rs.getDouble(2);
+                        }
+                    }
+                }
+                if (eventId > 0) eventStats.ensureRow(cn, eventId);
+                try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                    ps.setInt(1, paiementId);
+                    if (ps.executeUpdate() == 1 && eventId > 0)
+                        eventStats.applyDelta(cn, eventId, EventStatsService.Delta.revenu(-paye));
+                }
+                return null;
+            });
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur delete paiement: " + ex.getMessage(), ex);
         }
@@ -153,6 +410,36 @@ public class PaiementService {
         return p;
     }
 
+    private void ensureColumn(Connection cn, String column, String alterSql) {
+        try {
+            DatabaseMetaData meta = cn.getMetaData();
+            try (ResultSet rs = meta.getColumns(null, null, "paiement", column)) {
+                if (rs.next()) return; // déjà présent
+            }
+            try (Statement st = cn.createStatement()) {
+                st.execute(alterSql);
+            }
+        } catch (SQLException ignored) {
+            // on reste tolérant : l'app doit continuer.
+        }
+    }
+
+    private void ensureIndex(Connection cn, String indexName, String alterSql) {
+        try {
+            DatabaseMetaData meta = cn.getMetaData();
+            try (ResultSet rs = meta.getIndexInfo(null, null, "paiement", false, false)) {
+                while (rs.next()) {
+                    String idx = rs.getString("INDEX_NAME");
+                    if (idx != null && idx.equalsIgnoreCase(indexName)) return;
+                }
+            }
+            try (Statement st = cn.createStatement()) {
+                st.execute(alterSql);
+            }
+        } catch (SQLException ignored) {
+        }
+    }
+
     /** Génère un code de référence unique : PAY-XXXXXXXX */
     private String generateReferenceCode() {
         return "PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
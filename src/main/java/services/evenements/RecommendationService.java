@@ -8,6 +8,8 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 /**
@@ -45,6 +47,11 @@ public class RecommendationService {
 
     private final EvenementService evenementService = new EvenementService();
     private final InscriptionService inscriptionService = new InscriptionService();
+    private final EventStatsService eventStatsService = new EventStatsService();
+    private final TrendingService trendingService = new TrendingService();
+
+    /** Points par unité de score tendance (≈ une inscription des derniers jours). */
+    static final double TRENDING_WEIGHT = 1.5;
 
     // Cache simple pour éviter les appels API répétés
     private int lastUserId = -1;
@@ -148,29 +155,109 @@ public class RecommendationService {
      * Retourne une map globale : catégorie_d'intérêt → nombre_d'utilisateurs.
      */
     public Map<String, Integer> analyzeAllUsersInterests(List<models.users.User> allUsers) {
-        Map<String, Integer> globalInterests = new LinkedHashMap<>();
+        return aggregateInterests(computeUserInterestProfiles(allUsers), 15);
+    }
 
-        List<Evenement> allEvents = evenementService.getAll();
+    /**
+     * Calcule le profil d'intérêts (mot-clé → poids) de chaque user en batch.
+     *
+     * Les événements et les inscriptions sont chargés une seule fois puis groupés par user ;
+     * l'extraction des mots-clés est ensuite répartie en fork-join. Les users sans inscription
+     * n'apparaissent pas dans le résultat.
+     */
+    public Map<Integer, Map<String, Integer>> computeUserInterestProfiles(List<models.users.User> users) {
+        if (users == null || users.isEmpty()) return Collections.emptyMap();
+
+        Map<Integer, Evenement> eventMap = evenementService.getAll().stream()
+                .collect(Collectors.toMap(Evenement::getId, e -> e, (a, b) -> a));
+        Map<Integer, List<Integer>> eventIdsByUser = inscriptionService.getEventIdsGroupedByUser();
+
+        List<Map.Entry<Integer, List<Evenement>>> work = new ArrayList<>();
+        for (models.users.User user : users) {
+            List<Integer> ids = eventIdsByUser.get(user.getId());
+            if (ids == null || ids.isEmpty()) continue;
+            List<Evenement> userEvents = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                Evenement ev = eventMap.get(id);
+                if (ev != null) userEvents.add(ev);
+            }
+            if (!userEvents.isEmpty()) work.add(Map.entry(user.getId(), userEvents));
+        }
+        return profilesOf(work);
+    }
 
-        for (models.users.User user : allUsers) {
-            List<Evenement> userEvents = getUserInscribedEvents(user.getId(), allEvents);
-            if (userEvents.isEmpty()) continue;
+    /** Profils (user → mots-clés) calculés en fork-join ; l'ordre des users est sans effet. */
+    static Map<Integer, Map<String, Integer>> profilesOf(List<Map.Entry<Integer, List<Evenement>>> work) {
+        if (work.isEmpty()) return Collections.emptyMap();
+        return ForkJoinPool.commonPool().invoke(new InterestProfilesTask(work, 0, work.size()));
+    }
 
-            // Extraire les mots-clés des événements de chaque user
-            Map<String, Integer> userKeywords = extractKeywords(userEvents);
-            for (String keyword : userKeywords.keySet()) {
+    /**
+     * Ordre de classement des mots-clés : poids décroissant, puis mot croissant, comme
+     * la relecture du snapshot — à égalité, le résultat ne dépend pas de l'ordre d'une HashMap.
+     */
+    private static final Comparator<Map.Entry<String, Integer>> BY_WEIGHT_THEN_KEYWORD =
+            Map.Entry.<String, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey());
+
+    /**
+     * Agrège des profils individuels : mot-clé → nombre d'utilisateurs, trié décroissant.
+     */
+    public static Map<String, Integer> aggregateInterests(Map<Integer, Map<String, Integer>> profiles, int limit) {
+        Map<String, Integer> globalInterests = new HashMap<>();
+        for (Map<String, Integer> profile : profiles.values()) {
+            for (String keyword : profile.keySet()) {
                 globalInterests.merge(keyword, 1, Integer::sum);
             }
         }
 
         // Trier par popularité décroissante
         return globalInterests.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(15)
+                .sorted(BY_WEIGHT_THEN_KEYWORD)
+                .limit(limit)
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
                         (a, b) -> a, LinkedHashMap::new));
     }
 
+    /**
+     * Découpe récursive de la liste (user → événements) ; chaque feuille extrait
+     * les mots-clés de ses users, puis les résultats sont fusionnés.
+     * Classe statique : une tâche ne retient pas le service qui l'a lancée.
+     */
+    private static final class InterestProfilesTask extends RecursiveTask<Map<Integer, Map<String, Integer>>> {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 64;
+
+        private final List<Map.Entry<Integer, List<Evenement>>> work;
+        private final int from;
+        private final int to;
+
+        InterestProfilesTask(List<Map.Entry<Integer, List<Evenement>>> work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, Map<String, Integer>> compute() {
+            if (to - from <= THRESHOLD) {
+                Map<Integer, Map<String, Integer>> out = new HashMap<>();
+                for (int i = from; i < to; i++) {
+                    Map.Entry<Integer, List<Evenement>> e = work.get(i);
+                    out.put(e.getKey(), extractKeywords(e.getValue()));
+                }
+                return out;
+            }
+            int mid = (from + to) >>> 1;
+            InterestProfilesTask left = new InterestProfilesTask(work, from, mid);
+            left.fork();
+            Map<Integer, Map<String, Integer>> right = new InterestProfilesTask(work, mid, to).compute();
+            Map<Integer, Map<String, Integer>> merged = left.join();
+            merged.putAll(right);
+            return merged;
+        }
+    }
+
     /**
      * Vide le cache pour forcer un nouvel appel API.
      */
@@ -236,17 +323,21 @@ public class RecommendationService {
         }
 
         sb.append("\n=== ÉVÉNEMENTS DISPONIBLES (à recommander) ===\n");
+        Map<Integer, Double> trending = loadTrending();
         for (Evenement e : available) {
             sb.append("- [").append(e.getId()).append("] ")
               .append(safe(e.getTitre())).append(" : ")
               .append(truncate(safe(e.getDescription()), 150))
               .append(" (type: ").append(safe(e.getType()))
-              .append(", prix: ").append(e.getPrix()).append(" TND)\n");
+              .append(", prix: ").append(e.getPrix()).append(" TND")
+              .append(", tendance: ").append(String.format(Locale.ROOT, "%.1f", trending.getOrDefault(e.getId(), 0.0)))
+              .append(")\n");
         }
 
         sb.append("\n=== INSTRUCTIONS ===\n");
         sb.append("1. Identifie les centres d'intérêt de l'utilisateur (3-5 mots-clés)\n");
-        sb.append("2. Classe les événements disponibles du plus pertinent au moins pertinent\n");
+        sb.append("2. Classe les événements disponibles du plus pertinent au moins pertinent ");
+        sb.append("(à pertinence égale, privilégie la tendance : inscriptions récentes)\n");
         sb.append("3. Réponds EXACTEMENT dans ce format :\n");
         sb.append("INTERETS: mot1, mot2, mot3\n");
         sb.append("RECOMMANDATIONS: id1, id2, id3, id4, ...\n");
@@ -367,14 +458,17 @@ public class RecommendationService {
 
         // Calculer un score pour chaque événement disponible
         Map<Evenement, Double> scores = new LinkedHashMap<>();
+        Map<Integer, EventStatsService.EventStats> stats = loadStats();
+        Map<Integer, Double> trending = loadTrending();
         for (Evenement ev : availableEvents) {
             double score = calculateSimilarityScore(ev, keywords);
 
             // Bonus pour les événements populaires
-            try {
-                int inscCount = inscriptionService.countByEvent(ev.getId());
-                score += inscCount * 0.5;
-            } catch (Exception ignored) {}
+            EventStatsService.EventStats st = stats.get(ev.getId());
+            if (st != null) score += st.actives() * 0.5;
+
+            // Bonus pour les événements en vogue (inscriptions récentes)
+            score += trending.getOrDefault(ev.getId(), 0.0) * TRENDING_WEIGHT;
 
             // Bonus pour les événements gratuits
             if (ev.getPrix() <= 0) score += 1.0;
@@ -394,28 +488,28 @@ public class RecommendationService {
                 .collect(Collectors.toList());
     }
 
+    // Mots vides à ignorer
+    private static final Set<String> STOP_WORDS = Set.of(
+            "le", "la", "les", "de", "des", "du", "un", "une", "et", "en",
+            "à", "au", "aux", "ce", "ces", "cette", "qui", "que", "quoi",
+            "pour", "par", "sur", "dans", "avec", "est", "sont", "a", "ont",
+            "il", "elle", "nous", "vous", "ils", "elles", "ne", "pas", "se",
+            "plus", "très", "bien", "tout", "tous", "toute", "toutes",
+            "the", "and", "or", "is", "are", "was", "were", "be", "been",
+            "of", "in", "to", "for", "with", "on", "at", "from", "by",
+            "événement", "evenement", "event", "notre", "nos", "votre", "vos"
+    );
+
     /**
      * Extraire les mots-clés significatifs des événements.
      */
-    private Map<String, Integer> extractKeywords(List<Evenement> events) {
-        // Mots vides à ignorer
-        Set<String> stopWords = Set.of(
-                "le", "la", "les", "de", "des", "du", "un", "une", "et", "en",
-                "à", "au", "aux", "ce", "ces", "cette", "qui", "que", "quoi",
-                "pour", "par", "sur", "dans", "avec", "est", "sont", "a", "ont",
-                "il", "elle", "nous", "vous", "ils", "elles", "ne", "pas", "se",
-                "plus", "très", "bien", "tout", "tous", "toute", "toutes",
-                "the", "and", "or", "is", "are", "was", "were", "be", "been",
-                "of", "in", "to", "for", "with", "on", "at", "from", "by",
-                "événement", "evenement", "event", "notre", "nos", "votre", "vos"
-        );
-
+    private static Map<String, Integer> extractKeywords(List<Evenement> events) {
         Map<String, Integer> keywords = new LinkedHashMap<>();
         for (Evenement e : events) {
             String text = (safe(e.getTitre()) + " " + safe(e.getDescription())).toLowerCase();
             String[] words = text.split("[^a-zà-ÿ0-9]+");
             for (String word : words) {
-                if (word.length() >= 3 && !stopWords.contains(word)) {
+                if (word.length() >= 3 && !STOP_WORDS.contains(word)) {
                     keywords.merge(word, 1, Integer::sum);
                 }
             }
@@ -423,7 +517,7 @@ public class RecommendationService {
 
         // Garder les 10 mots les plus fréquents
         return keywords.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .sorted(BY_WEIGHT_THEN_KEYWORD)
                 .limit(10)
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
                         (a, b) -> a, LinkedHashMap::new));
@@ -462,19 +556,35 @@ public class RecommendationService {
         return userEvents;
     }
 
-    private List<Evenement> getPopularEvents(List<Evenement> events) {
-        // Trier par nombre d'inscriptions (les plus populaires en premier)
-        Map<Evenement, Integer> popularity = new LinkedHashMap<>();
-        for (Evenement ev : events) {
-            try {
-                popularity.put(ev, inscriptionService.countByEvent(ev.getId()));
-            } catch (Exception e) {
-                popularity.put(ev, 0);
-            }
+    /** Compteurs de tous les événements en une requête (vide si la base est indisponible). */
+    private Map<Integer, EventStatsService.EventStats> loadStats() {
+        try {
+            return eventStatsService.getAll();
+        } catch (Exception e) {
+            return Map.of();
         }
-        return popularity.entrySet().stream()
-                .sorted(Map.Entry.<Evenement, Integer>comparingByValue().reversed())
-                .map(Map.Entry::getKey)
+    }
+
+    /** Scores tendance actuels en une requête (vide si la base est indisponible). */
+    private Map<Integer, Double> loadTrending() {
+        try {
+            return trendingService.getScores();
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    private List<Evenement> getPopularEvents(List<Evenement> events) {
+        // Les événements en vogue d'abord, puis le nombre total d'inscriptions
+        Map<Integer, EventStatsService.EventStats> stats = loadStats();
+        Map<Integer, Double> trending = loadTrending();
+        Comparator<Evenement> byTrend = Comparator.comparingDouble(ev -> trending.getOrDefault(ev.getId(), 0.0));
+        Comparator<Evenement> byActives = Comparator.comparingInt(ev -> {
+            EventStatsService.EventStats st = stats.get(ev.getId());
+            return st == null ? 0 : st.actives();
+        });
+        return events.stream()
+                .sorted(byTrend.reversed().thenComparing(byActives.reversed()))
                 .collect(Collectors.toList());
     }
 
@@ -521,7 +631,7 @@ public class RecommendationService {
         return sb.toString();
     }
 
-    private String safe(String s) { return s == null ? "" : s; }
+    private static String safe(String s) { return s == null ? "" : s; }
 
     private String truncate(String s, int max) {
         return s.length() <= max ? s : s.substring(0, max - 1) + "…";
@@ -0,0 +1,317 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import models.sorties.AnnonceSortie;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index des créneaux occupés de chaque utilisateur (inscriptions non annulées, participations
+ * acceptées aux sorties), pour détecter un chevauchement d'agenda sans parcourir tous les événements.
+ *
+ * Un arbre d'intervalles par utilisateur ({@link IntervalTree}). L'index est
+ * chargé au premier appel (trois SELECT) puis maintenu par EvenementService,
+ * InscriptionService, ParticipationSortieService et AnnonceSortieService. Tant qu'il
+ * n'est pas chargé, les mises à jour sont ignorées : le chargement lira l'état en base.
+ * La double réservation d'un lieu n'est pas suivie ici : elle est vérifiée en base, sous verrou,
+ * au moment de l'écriture (EvenementService).
+ *
+ * Une sortie n'a qu'une date de début : elle occupe {@link #SORTIE_DURATION}.
+ */
+public final class ScheduleConflictIndex {
+
+    public static final Duration SORTIE_DURATION = Duration.ofHours(3);
+    /** Durée minimale d'un créneau (événement dont début = fin). */
+    static final Duration MIN_SLOT = Duration.ofMinutes(1);
+
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
+    public enum Kind { EVENEMENT, SORTIE }
+
+    /** Créneau déjà occupé qui chevauche celui demandé. */
+    public record Conflict(Kind kind, int id, String titre, LocalDateTime debut, LocalDateTime fin) {
+        public String describe() {
+            String what = kind == Kind.EVENEMENT ? "Événement" : "Sortie";
+            return what + " « " + (titre == null ? "#" + id : titre) + " » ("
+                    + debut.format(FMT) + " → " + fin.format(FMT) + ")";
+        }
+    }
+
+    /** Lecture initiale de l'état en base (remplacée dans les tests). */
+    @FunctionalInterface
+    interface Loader {
+        void load(ScheduleConflictIndex into) throws SQLException;
+    }
+
+    private record Slot(Kind kind, int id, String titre,
+                        LocalDateTime debut, LocalDateTime fin, boolean active) {
+        /** Clé unique tous types confondus : id pour un événement, -id pour une sortie. */
+        long key() {
+            return kind == Kind.EVENEMENT ? id : -(long) id;
+        }
+
+        Conflict toConflict() {
+            return new Conflict(kind, id, titre, debut, fin);
+        }
+    }
+
+    private static volatile ScheduleConflictIndex instance;
+
+    private final Loader loader;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Slot> slots = new HashMap<>();
+    private final Map<Long, Set<Integer>> members = new HashMap<>();
+    private final Map<Integer, IntervalTree<Conflict>> byUser = new HashMap<>();
+    private volatile boolean loaded = false;
+
+    public static ScheduleConflictIndex getInstance() {
+        if (instance == null) {
+            synchronized (ScheduleConflictIndex.class) {
+                if (instance == null) {
+                    instance = new ScheduleConflictIndex(ScheduleConflictIndex::loadFromDb);
+                }
+            }
+        }
+        return instance;
+    }
+
+    ScheduleConflictIndex(Loader loader) {
+        this.loader = loader;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  REQUÊTES
+    // ─────────────────────────────────────────────────────────────
+
+    /** Engagements de l'utilisateur (inscriptions, sorties acceptées) qui chevauchent [debut, fin[. */
+    public List<Conflict> userConflicts(int userId, LocalDateTime debut, LocalDateTime fin) {
+        if (debut == null) return List.of();
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            IntervalTree<Conflict> tree = byUser.get(userId);
+            return tree == null ? List.of() : tree.overlapping(debut, slotEnd(debut, fin));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Conflits d'agenda si l'utilisateur rejoint cette sortie (la sortie elle-même exclue). */
+    public List<Conflict> sortieConflicts(int userId, AnnonceSortie a) {
+        if (a == null || a.getDateSortie() == null) return List.of();
+        List<Conflict> out = new ArrayList<>();
+        for (Conflict c : userConflicts(userId, a.getDateSortie(), a.getDateSortie().plus(SORTIE_DURATION))) {
+            if (!(c.kind() == Kind.SORTIE && c.id() == a.getId())) out.add(c);
+        }
+        return out;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  MISES À JOUR INCRÉMENTALES
+    // ─────────────────────────────────────────────────────────────
+
+    /** Création / modification d'un événement : déplace aussi le créneau de ses inscrits. */
+    public void upsertEvent(int eventId, Evenement e) {
+        if (e == null || eventId <= 0 || e.getDateDebut() == null) return;
+        write(() -> putSlot(eventSlot(eventId, e)));
+    }
+
+    public void removeEvent(int eventId) {
+        write(() -> removeSlot((long) eventId));
+    }
+
+    /** Inscription créée (active = true), annulée ou supprimée (false). */
+    public void setInscription(int userId, int eventId, boolean active) {
+        write(() -> setMember((long) eventId, userId, active));
+    }
+
+    /** Participation acceptée (true) ou refusée / annulée / supprimée (false). */
+    public void setParticipation(int userId, AnnonceSortie a, boolean accepted) {
+        if (a == null || a.getId() <= 0) return;
+        write(() -> {
+            long key = -(long) a.getId();
+            if (accepted && !slots.containsKey(key) && a.getDateSortie() != null) putSlot(sortieSlot(a));
+            setMember(key, userId, accepted);
+        });
+    }
+
+    /** Sortie modifiée : seules les sorties ayant des participants acceptés sont indexées. */
+    public void upsertSortie(AnnonceSortie a) {
+        if (a == null || a.getDateSortie() == null) return;
+        write(() -> {
+            if (slots.containsKey(-(long) a.getId())) putSlot(sortieSlot(a));
+        });
+    }
+
+    public void removeSortie(int annonceId) {
+        write(() -> removeSlot(-(long) annonceId));
+    }
+
+    /** Recharge tout depuis la base au prochain appel. */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void ensureLoaded() {
+        if (loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) return;
+            slots.clear();
+            members.clear();
+            byUser.clear();
+            loader.load(this);
+            loaded = true;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur chargement index des créneaux: " + ex.getMessage(), ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  INTERNE (sous le verrou d'écriture)
+    // ─────────────────────────────────────────────────────────────
+
+    private void write(Runnable change) {
+        if (!loaded) return;
+        lock.writeLock().lock();
+        try {
+            if (loaded) change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putSlot(Slot s) {
+        Slot old = slots.put(s.key(), s);
+        if (old != null) detach(old);
+        attach(s);
+    }
+
+    private void removeSlot(long key) {
+        Slot old = slots.remove(key);
+        if (old != null) detach(old);
+        members.remove(key);
+    }
+
+    private void setMember(long key, int userId, boolean member) {
+        Set<Integer> users = members.computeIfAbsent(key, k -> new HashSet<>());
+        Slot s = slots.get(key);
+        if (member) {
+            users.add(userId);
+            if (s != null && s.active()) tree(byUser, userId).put(key, s.debut(), s.fin(), s.toConflict());
+        } else {
+            users.remove(userId);
+            removeFrom(byUser, userId, key);
+        }
+    }
+
+    private void attach(Slot s) {
+        if (!s.active()) return;
+        Conflict c = s.toConflict();
+        for (int userId : members.getOrDefault(s.key(), Set.of())) {
+            tree(byUser, userId).put(s.key(), s.debut(), s.fin(), c);
+        }
+    }
+
+    private void detach(Slot s) {
+        for (int userId : members.getOrDefault(s.key(), Set.of())) {
+            removeFrom(byUser, userId, s.key());
+        }
+    }
+
+    private static IntervalTree<Conflict> tree(Map<Integer, IntervalTree<Conflict>> trees, int owner) {
+        return trees.computeIfAbsent(owner, k -> new IntervalTree<>());
+    }
+
+    private static void removeFrom(Map<Integer, IntervalTree<Conflict>> trees, int owner, long key) {
+        IntervalTree<Conflict> t = trees.get(owner);
+        if (t != null && t.remove(key) && t.isEmpty()) trees.remove(owner);
+    }
+
+    private static Slot eventSlot(int eventId, Evenement e) {
+        return new Slot(Kind.EVENEMENT, eventId, e.getTitre(),
+                e.getDateDebut(), slotEnd(e.getDateDebut(), e.getDateFin()),
+                !"ANNULE".equalsIgnoreCase(e.getStatut()));
+    }
+
+    private static Slot sortieSlot(AnnonceSortie a) {
+        return new Slot(Kind.SORTIE, a.getId(), a.getTitre(),
+                a.getDateSortie(), a.getDateSortie().plus(SORTIE_DURATION),
+                !"ANNULEE".equalsIgnoreCase(a.getStatut()));
+    }
+
+    private static LocalDateTime slotEnd(LocalDateTime debut, LocalDateTime fin) {
+        LocalDateTime min = debut.plus(MIN_SLOT);
+        return fin == null || fin.isBefore(min) ? min : fin;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  CHARGEMENT
+    // ─────────────────────────────────────────────────────────────
+
+    private static void loadFromDb(ScheduleConflictIndex into) throws SQLException {
+        Connection cn = utils.Mydb.getInstance().getConnection();
+
+        try (PreparedStatement ps = cn.prepareStatement(
+                "SELECT id, titre, date_debut, date_fin, statut FROM evenement WHERE date_debut IS NOT NULL");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Evenement e = new Evenement();
+                e.setId(rs.getInt("id"));
+                e.setTitre(rs.getString("titre"));
+                e.setDateDebut(rs.getTimestamp("date_debut").toLocalDateTime());
+                Timestamp fin = rs.getTimestamp("date_fin");
+                e.setDateFin(fin == null ? null : fin.toLocalDateTime());
+                e.setStatut(rs.getString("statut"));
+                into.putSlot(eventSlot(e.getId(), e));
+            }
+        }
+
+        try (PreparedStatement ps = cn.prepareStatement(
+                "SELECT user_id, event_id FROM inscription WHERE statut <> 'ANNULEE'");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) into.setMember(rs.getInt("event_id"), rs.getInt("user_id"), true);
+        }
+
+        String sorties = """
+                SELECT p.user_id, a.id, a.titre, a.date_sortie, a.statut
+                FROM participation_annonce p
+                JOIN annonce_sortie a ON a.id = p.annonce_id
+                WHERE UPPER(p.statut) IN ('CONFIRMEE','ACCEPTEE') AND a.date_sortie IS NOT NULL
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sorties);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                AnnonceSortie a = new AnnonceSortie();
+                a.setId(rs.getInt("id"));
+                a.setTitre(rs.getString("titre"));
+                a.setDateSortie(rs.getTimestamp("date_sortie").toLocalDateTime());
+                a.setStatut(rs.getString("statut"));
+                long key = -(long) a.getId();
+                if (!into.slots.containsKey(key)) into.putSlot(sortieSlot(a));
+                into.setMember(key, rs.getInt("user_id"), true);
+            }
+        }
+    }
+}
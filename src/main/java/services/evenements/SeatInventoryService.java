@@ -0,0 +1,264 @@
+package services.evenements;
+
+import utils.Mydb;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inventaire des places par événement (compteur atomique en base).
+ *
+ * Table auto-créée au premier appel :
+ *   evenement_places (event_id, places_reservees, updated_at)
+ *
+ * places_reservees = somme des nb_tickets des inscriptions non annulées.
+ * Toute variation passe par la ligne du compteur prise {@code FOR UPDATE}, dans la
+ * transaction qui écrit l'inscription ({@link #tryReserve(Connection, int, int)},
+ * {@link #release(Connection, int, int)}) : la place et l'inscription sont validées
+ * ou annulées ensemble, et la réconciliation ({@link #rebuildAll()}), qui prend le
+ * même verrou, ne voit jamais une place comptée dont l'inscription n'est pas validée.
+ */
+public class SeatInventoryService {
+
+    private static volatile boolean schemaReady = false;
+
+    private Connection getConnection() throws SQLException {
+        return utils.Mydb.getInstance().getConnection();
+    }
+
+    public void ensureSchema() {
+        if (schemaReady) return;
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS evenement_places (
+                    event_id          INT       NOT NULL,
+                    places_reservees  INT       NOT NULL DEFAULT 0,
+                    updated_at        TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                    PRIMARY KEY (event_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        try (Connection cn = getConnection();
+             Statement st = cn.createStatement()) {
+            st.execute(ddl);
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[SeatInventory] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  RÉSERVATION / LIBÉRATION
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Réserve {@code nbPlaces} places de façon atomique (transaction propre).
+     *
+     * @return true si les places ont été réservées, false si la capacité serait dépassée
+     * @throws IllegalArgumentException si l'événement n'existe pas
+     */
+    public boolean tryReserve(int eventId, int nbPlaces) {
+        if (nbPlaces <= 0) throw new IllegalArgumentException("Nombre de places invalide.");
+        ensureSchema();
+        try {
+            return Mydb.getInstance().inTransaction(cn -> tryReserve(cn, eventId, nbPlaces));
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur tryReserve: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Réserve dans la transaction de l'appelant ({@link #ensureSchema()} appelé avant) :
+     * la ligne du compteur reste verrouillée jusqu'au commit de l'inscription.
+     */
+    boolean tryReserve(Connection cn, int eventId, int nbPlaces) throws SQLException {
+        if (nbPlaces <= 0) throw new IllegalArgumentException("Nombre de places invalide.");
+        int[] counter = lockCounter(cn, eventId);
+        if (counter == null) throw new IllegalArgumentException("Événement introuvable.");
+        if (counter[0] + nbPlaces > counter[1]) return false;
+        try (PreparedStatement ps = cn.prepareStatement(
+                "UPDATE evenement_places SET places_reservees = places_reservees + ? WHERE event_id = ?")) {
+            ps.setInt(1, nbPlaces);
+            ps.setInt(2, eventId);
+            ps.executeUpdate();
+        }
+        return true;
+    }
+
+    /**
+     * Rend {@code nbPlaces} places (transaction propre).
+     */
+    public void release(int eventId, int nbPlaces) {
+        if (nbPlaces <= 0) return;
+        ensureSchema();
+        try {
+            Mydb.getInstance().inTransaction(cn -> {
+                release(cn, eventId, nbPlaces);
+                return null;
+            });
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur release: " + ex.getMessage(), ex);
+        }
+    }
+
+    /** Rend des places dans la transaction de l'appelant (annulation, suppression). */
+    void release(Connection cn, int eventId, int nbPlaces) throws SQLException {
+        if (nbPlaces <= 0) return;
+        String sql = """
+                UPDATE evenement_places
+                SET places_reservees = GREATEST(0, places_reservees - ?)
+                WHERE event_id = ?
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, nbPlaces);
+            ps.setInt(2, eventId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Verrouille le compteur de l'événement (créé au besoin) jusqu'à la fin de la transaction.
+     * Les écritures d'inscription le prennent en premier : ordre de verrouillage unique.
+     *
+     * @return {places_reservees, capacite_max}, ou null si l'événement n'existe pas
+     */
+    int[] lockCounter(Connection cn, int eventId) throws SQLException {
+        initCounter(cn, eventId);
+        String sql = """
+                SELECT ep.places_reservees, e.capacite_max
+                FROM evenement_places ep
+                JOIN evenement e ON e.id = ep.event_id
+                WHERE ep.event_id = ?
+                FOR UPDATE
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, eventId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new int[]{rs.getInt(1), rs.getInt(2)} : null;
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  LECTURE
+    // ─────────────────────────────────────────────────────────────
+
+    public int getReserved(int eventId) {
+        ensureSchema();
+        try (Connection cn = getConnection()) {
+            initCounter(cn, eventId);
+            try (PreparedStatement ps = cn.prepareStatement(
+                    "SELECT places_reservees FROM evenement_places WHERE event_id = ?")) {
+                ps.setInt(1, eventId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getReserved: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Places restantes (capacite_max - places_reservees), jamais négatif.
+     */
+    public int getRemaining(int eventId) {
+        ensureSchema();
+        String sql = """
+                SELECT e.capacite_max - COALESCE(ep.places_reservees, 0)
+                FROM evenement e
+                LEFT JOIN evenement_places ep ON ep.event_id = e.id
+                WHERE e.id = ?
+                """;
+        try (Connection cn = getConnection()) {
+            initCounter(cn, eventId);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                ps.setInt(1, eventId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new IllegalArgumentException("Événement introuvable.");
+                    return Math.max(0, rs.getInt(1));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getRemaining: " + ex.getMessage(), ex);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  RÉCONCILIATION
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Recalcule tous les compteurs depuis la table inscription (job de réconciliation).
+     * Un événement à la fois, compteur verrouillé : une réservation en cours est soit
+     * déjà validée (comptée), soit attend la fin du recalcul.
+     *
+     * @return nombre de compteurs corrigés
+     */
+    public int rebuildAll() {
+        ensureSchema();
+        String count = """
+                SELECT COALESCE(SUM(GREATEST(nb_tickets, 1)), 0)
+                FROM inscription
+                WHERE event_id = ? AND statut <> 'ANNULEE'
+                LOCK IN SHARE MODE
+                """;
+        try {
+            List<Integer> eventIds = new ArrayList<>();
+            try (Connection cn = getConnection();
+                 Statement st = cn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT id FROM evenement")) {
+                while (rs.next()) eventIds.add(rs.getInt(1));
+            }
+            int changed = 0;
+            for (int eventId : eventIds) {
+                boolean fixed = Mydb.getInstance().inTransaction(cn -> {
+                    int[] counter = lockCounter(cn, eventId);
+                    if (counter == null) return false;
+                    int actual;
+                    try (PreparedStatement ps = cn.prepareStatement(count)) {
+                        ps.setInt(1, eventId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            actual = rs.next() ? rs.getInt(1) : 0;
+                        }
+                    }
+                    if (actual == counter[0]) return false;
+                    try (PreparedStatement ps = cn.prepareStatement(
+                            "UPDATE evenement_places SET places_reservees = ? WHERE event_id = ?")) {
+                        ps.setInt(1, actual);
+                        ps.setInt(2, eventId);
+                        ps.executeUpdate();
+                    }
+                    return true;
+                });
+                if (fixed) changed++;
+            }
+            try (Connection cn = getConnection();
+                 Statement st = cn.createStatement()) {
+                st.executeUpdate("DELETE ep FROM evenement_places ep LEFT JOIN evenement e ON e.id = ep.event_id WHERE e.id IS NULL");
+            }
+            return changed;
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur rebuildAll: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Crée le compteur d'un événement à partir des inscriptions existantes (no-op s'il existe).
+     *
+     * @return true si une ligne vient d'être créée
+     */
+    private boolean initCounter(Connection cn, int eventId) throws SQLException {
+        String sql = """
+                INSERT IGNORE INTO evenement_places (event_id, places_reservees)
+                SELECT e.id,
+                       COALESCE((SELECT SUM(GREATEST(i.nb_tickets, 1)) FROM inscription i
+                                 WHERE i.event_id = e.id AND i.statut <> 'ANNULEE'), 0)
+                FROM evenement e
+                WHERE e.id = ?
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, eventId);
+            return ps.executeUpdate() == 1;
+        }
+    }
+}
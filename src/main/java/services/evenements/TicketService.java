@@ -1,6 +1,7 @@
 package services.evenements;
 
 import models.evenements.Ticket;
+import utils.Mydb;
 
 import java.sql.*;
 import java.time.LocalDate;
@@ -27,10 +28,15 @@ import java.util.List;
  *  4. createForInscription() — blocage "1 ticket max" SUPPRIMÉ
  *     On peut maintenant créer plusieurs tickets par inscription
  *     La limite est la capaciteMax de l'événement (vérifiée dans le controller)
+ *
+ *  5. create / delete tiennent à jour evenement_stats (tickets_emis) dans
+ *     la même transaction ; countByEventId lit ce compteur
  * ═══════════════════════════════════════════════════════
  */
 public class TicketService {
 
+    private final EventStatsService eventStats = new EventStatsService();
+
     private Connection getConnection() throws SQLException {
         return utils.Mydb.getInstance().getConnection();
     }
@@ -100,22 +106,7 @@ public class TicketService {
      * Utilisé pour : places disponibles = capaciteMax − countByEventId(eventId)
      */
     public int countByEventId(int eventId) {
-        String sql = """
-            SELECT COUNT(*)
-            FROM ticket t
-            JOIN inscription i ON i.id = t.inscription_id
-            WHERE i.event_id = ?
-        """;
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, eventId);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1);
-            }
-        } catch (SQLException ex) {
-            throw new RuntimeException("Erreur countByEventId: " + ex.getMessage(), ex);
-        }
+        return eventStats.get(eventId).tickets();
     }
 
     public List<Ticket> getByEventId(int eventId) {
@@ -158,15 +149,23 @@ public class TicketService {
      */
     public int createForInscription(int inscriptionId) {
         String sql = "INSERT INTO ticket(inscription_id, date) VALUES(?, ?)";
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, inscriptionId);
-            ps.setDate(2, Date.valueOf(LocalDate.now()));
-            ps.executeUpdate();
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) return keys.getInt(1);
-            }
-            return 0;
+        eventStats.ensureSchema();
+        try {
+            return Mydb.getInstance().inTransaction(cn -> {
+                int eventId = eventStats.eventIdOfInscription(cn, inscriptionId);
+                if (eventId > 0) eventStats.ensureRow(cn, eventId);
+                int id = 0;
+                try (PreparedStatement ps = cn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, inscriptionId);
+                    ps.setDate(2, Date.valueOf(LocalDate.now()));
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (keys.next()) id = keys.getInt(1);
+                    }
+                }
+                if (eventId > 0) eventStats.applyDelta(cn, eventId, EventStatsService.Delta.tickets(1));
+                return id;
+            });
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur createForInscription: " + ex.getMessage(), ex);
         }
@@ -177,11 +176,29 @@ public class TicketService {
     // ─────────────────────────────────────────────────────────────
 
     public void delete(int ticketId) {
+        String lookup = """
+            SELECT i.event_id FROM ticket t JOIN inscription i ON i.id = t.inscription_id
+            WHERE t.id = ?
+        """;
         String sql = "DELETE FROM ticket WHERE id = ?";
-        try (Connection cn = getConnection();
-             PreparedStatement ps = cn.prepareStatement(sql)) {
-            ps.setInt(1, ticketId);
-            ps.executeUpdate();
+        eventStats.ensureSchema();
+        try {
+            Mydb.getInstance().inTransaction(cn -> {
+                int eventId = -1;
+                try (PreparedStatement ps = cn.prepareStatement(lookup)) {
+                    ps.setInt(1, ticketId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) eventId = rs.getInt(1);
+                    }
+                }
+                if (eventId > 0) eventStats.ensureRow(cn, eventId);
+                try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                    ps.setInt(1, ticketId);
+                    if (ps.executeUpdate() == 1 && eventId > 0)
+                        eventStats.applyDelta(cn, eventId, EventStatsService.Delta.tickets(-1));
+                }
+                return null;
+            });
         } catch (SQLException ex) {
             throw new RuntimeException("Erreur delete Ticket: " + ex.getMessage(), ex);
         }
@@ -0,0 +1,147 @@
+package services.evenements;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Score « tendance » par événement : nombre d'inscriptions actives, chacune pondérée
+ * par exp(-λ·âge) (demi-vie {@link #HALF_LIFE}).
+ *
+ * Table auto-créée au premier appel :
+ *   evenement_trending (event_id, score, updated_at)
+ *
+ * Le score stocké vaut à {@code updated_at} ; il est mis à jour en O(1) à chaque
+ * inscription (score·exp(-λ·Δt) + poids) dans la transaction de l'inscription,
+ * et décru à la lecture. Aucun recalcul périodique : une annulation retire
+ * exactement la contribution actuelle de l'inscription (d'après sa date de création).
+ */
+public class TrendingService {
+
+    /** Une inscription d'il y a {@code HALF_LIFE} compte pour moitié. */
+    public static final Duration HALF_LIFE = Duration.ofDays(3);
+    /** Taux de décroissance, par seconde. */
+    static final double LAMBDA = Math.log(2) / HALF_LIFE.toSeconds();
+
+    private static volatile boolean schemaReady = false;
+
+    private Connection getConnection() throws SQLException {
+        return utils.Mydb.getInstance().getConnection();
+    }
+
+    public void ensureSchema() {
+        if (schemaReady) return;
+        String ddl = """
+                CREATE TABLE IF NOT EXISTS evenement_trending (
+                    event_id    INT      NOT NULL,
+                    score       DOUBLE   NOT NULL DEFAULT 0,
+                    updated_at  DATETIME NOT NULL,
+                    PRIMARY KEY (event_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+        // Amorçage unique depuis les inscriptions existantes (table vide = jamais amorcée)
+        String seed = """
+                INSERT IGNORE INTO evenement_trending (event_id, score, updated_at)
+                SELECT event_id, SUM(EXP(-? * GREATEST(0, TIMESTAMPDIFF(SECOND, date_creation, NOW())))), NOW()
+                FROM inscription
+                WHERE statut <> 'ANNULEE' AND date_creation IS NOT NULL
+                GROUP BY event_id
+                """;
+        try (Connection cn = getConnection();
+             Statement st = cn.createStatement()) {
+            st.execute(ddl);
+            boolean empty;
+            try (ResultSet rs = st.executeQuery("SELECT 1 FROM evenement_trending LIMIT 1")) {
+                empty = !rs.next();
+            }
+            if (empty) {
+                try (PreparedStatement ps = cn.prepareStatement(seed)) {
+                    ps.setDouble(1, LAMBDA);
+                    ps.executeUpdate();
+                }
+            }
+            schemaReady = true;
+        } catch (SQLException e) {
+            System.err.println("[Trending] Schema init failed: " + e.getMessage());
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  LECTURE
+    // ─────────────────────────────────────────────────────────────
+
+    /** Scores actuels (décrus à maintenant) de tous les événements qui en ont un, en une requête. */
+    public Map<Integer, Double> getScores() {
+        ensureSchema();
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Double> map = new HashMap<>();
+        try (Connection cn = getConnection();
+             PreparedStatement ps = cn.prepareStatement(
+                     "SELECT event_id, score, updated_at FROM evenement_trending WHERE score > 0");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                double s = decay(rs.getDouble("score"), rs.getTimestamp("updated_at").toLocalDateTime(), now);
+                map.put(rs.getInt("event_id"), s);
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Erreur getScores evenement_trending: " + ex.getMessage(), ex);
+        }
+        return map;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  ÉCRITURE (dans la transaction de l'appelant)
+    // ─────────────────────────────────────────────────────────────
+
+    // ensureSchema() doit avoir été appelé AVANT la transaction : un CREATE TABLE
+    // la validerait implicitement (MySQL).
+
+    /** Nouvelle inscription (poids 1 à l'instant présent). */
+    public void recordInscription(Connection cn, int eventId) throws SQLException {
+        add(cn, eventId, 1.0, LocalDateTime.now());
+    }
+
+    /**
+     * Inscription qui quitte (active = false) ou retrouve (true) le décompte :
+     * on retire / rajoute ce qu'elle vaut aujourd'hui.
+     */
+    public void updateInscription(Connection cn, int eventId, LocalDateTime createdAt, boolean active) throws SQLException {
+        if (createdAt == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        double w = contribution(createdAt, now);
+        add(cn, eventId, active ? w : -w, now);
+    }
+
+    private void add(Connection cn, int eventId, double weight, LocalDateTime at) throws SQLException {
+        // Affectations évaluées dans l'ordre : score lit encore l'ancien updated_at
+        String sql = """
+                INSERT INTO evenement_trending (event_id, score, updated_at) VALUES (?, ?, ?)
+                ON DUPLICATE KEY UPDATE
+                    score = GREATEST(0, score * EXP(-? * GREATEST(0, TIMESTAMPDIFF(SECOND, updated_at, VALUES(updated_at)))) + ?),
+                    updated_at = GREATEST(updated_at, VALUES(updated_at))
+                """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setInt(1, eventId);
+            ps.setDouble(2, Math.max(0, weight));
+            ps.setTimestamp(3, Timestamp.valueOf(at));
+            ps.setDouble(4, LAMBDA);
+            ps.setDouble(5, weight);
+            ps.executeUpdate();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+
+    /** Score valant {@code score} à {@code at}, ramené à {@code now}. */
+    static double decay(double score, LocalDateTime at, LocalDateTime now) {
+        long seconds = Math.max(0, Duration.between(at, now).toSeconds());
+        return score * Math.exp(-LAMBDA * seconds);
+    }
+
+    /** Poids actuel d'une inscription créée à {@code createdAt}. */
+    static double contribution(LocalDateTime createdAt, LocalDateTime now) {
+        return decay(1.0, createdAt, now);
+    }
+}
@@ -0,0 +1,160 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import models.lieux.Lieu;
+import services.lieux.LieuService;
+import services.weather.WeatherGateway;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Préchargement périodique des prévisions pour les événements des 16 prochains jours.
+ *
+ * Les événements sont regroupés par lieu (coordonnées arrondies à 0.01°, comme le cache
+ * de {@link WeatherGateway}) et chaque lieu fait UN appel Open-Meteo couvrant toute sa plage
+ * de dates. Les pages événement lisent ensuite la météo via
+ * {@link WeatherService#peekWeather} sans attente.
+ */
+public class WeatherPrefetchService {
+
+    /** Plus court que la durée de vie du cache (1 h) : les prévisions restent fraîches. */
+    static final long PERIOD_MINUTES = 30;
+
+    /** Un appel de préchargement : un point, une plage de dates. */
+    public record RangeRequest(double lat, double lon, LocalDate from, LocalDate to, int eventCount) {}
+
+    private static volatile WeatherPrefetchService instance;
+
+    /** Événements qui chevauchent [from, to] ({@link EvenementService#findBetween}). */
+    private final BiFunction<LocalDateTime, LocalDateTime, List<Evenement>> events;
+    private final Supplier<List<Lieu>> lieux;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
+    private volatile LocalDateTime lastRunAt;
+
+    public static WeatherPrefetchService getInstance() {
+        if (instance == null) {
+            synchronized (WeatherPrefetchService.class) {
+                if (instance == null) {
+                    EvenementService evenementService = new EvenementService();
+                    LieuService lieuService = new LieuService();
+                    instance = new WeatherPrefetchService(evenementService::findBetween, lieuService::getAll);
+                }
+            }
+        }
+        return instance;
+    }
+
+    WeatherPrefetchService(BiFunction<LocalDateTime, LocalDateTime, List<Evenement>> events,
+                           Supplier<List<Lieu>> lieux) {
+        this.events = events;
+        this.lieux = lieux;
+    }
+
+    /** Démarre le job (immédiatement puis toutes les 30 min). Sans effet s'il tourne déjà. */
+    public synchronized void start() {
+        if (task != null && !task.isDone()) return;
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "weather-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        task = scheduler.scheduleWithFixedDelay(this::runSafely, 0, PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stop() {
+        if (task != null) task.cancel(false);
+        if (scheduler != null) scheduler.shutdownNow();
+        task = null;
+        scheduler = null;
+    }
+
+    public LocalDateTime getLastRunAt() {
+        return lastRunAt;
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            // Une exception ne doit pas annuler les exécutions suivantes
+            System.err.println("[WeatherPrefetch] Échec: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Une passe de préchargement.
+     *
+     * @return nombre de lieux préchargés avec succès
+     */
+    public int runOnce() {
+        LocalDate today = LocalDate.now();
+        Map<Integer, Lieu> lieuxById = new LinkedHashMap<>();
+        for (Lieu l : lieux.get()) lieuxById.put(l.getId(), l);
+
+        // Seulement la fenêtre des prévisions, pas tout l'historique
+        List<Evenement> window = events.apply(today.atStartOfDay(),
+                today.plusDays(WeatherService.FORECAST_DAYS + 1).atStartOfDay());
+        List<RangeRequest> plan = plan(window, lieuxById::get, today);
+        WeatherGateway gateway = WeatherGateway.getInstance();
+        int ok = 0;
+        for (RangeRequest r : plan) {
+            try {
+                gateway.prefetchDailyRange(r.lat(), r.lon(), r.from(), r.to());
+                ok++;
+            } catch (Exception e) {
+                System.err.println("[WeatherPrefetch] " + r + " : " + e.getMessage());
+            }
+        }
+        lastRunAt = LocalDateTime.now();
+        return ok;
+    }
+
+    /**
+     * Regroupe les événements à venir (aujourd'hui → +16 j) par point arrondi et calcule
+     * la plage de dates de chaque point. Sans coordonnées → Tunis (comme {@link WeatherService}).
+     */
+    static List<RangeRequest> plan(List<Evenement> evenements, Function<Integer, Lieu> lieuResolver, LocalDate today) {
+        LocalDate horizon = today.plusDays(WeatherService.FORECAST_DAYS);
+        Map<Long, RangeRequest> byPoint = new LinkedHashMap<>();
+
+        for (Evenement ev : evenements) {
+            if (ev.getDateDebut() == null) continue;
+            LocalDate day = ev.getDateDebut().toLocalDate();
+            if (day.isBefore(today) || day.isAfter(horizon)) continue;
+
+            Lieu lieu = ev.getLieuId() != null && ev.getLieuId() > 0 ? lieuResolver.apply(ev.getLieuId()) : null;
+            double[] coords = WeatherService.coordinatesOf(lieu);
+            double lat = coords[0];
+            double lon = coords[1];
+
+            long latE2 = Math.round(lat * 100);
+            long lonE2 = Math.round(lon * 100);
+            long point = latE2 * 100_000L + lonE2;
+            RangeRequest prev = byPoint.get(point);
+            if (prev == null) {
+                byPoint.put(point, new RangeRequest(latE2 / 100.0, lonE2 / 100.0, day, day, 1));
+            } else {
+                byPoint.put(point, new RangeRequest(prev.lat(), prev.lon(),
+                        day.isBefore(prev.from()) ? day : prev.from(),
+                        day.isAfter(prev.to()) ? day : prev.to(),
+                        prev.eventCount() + 1));
+            }
+        }
+        return new ArrayList<>(byPoint.values());
+    }
+}
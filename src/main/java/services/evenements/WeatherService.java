@@ -1,18 +1,16 @@
 package services.evenements;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import models.lieux.Lieu;
+import services.weather.WeatherGateway;
+
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.stream.Collectors;
 
 /**
  * Service météo utilisant l'API gratuite Open-Meteo (https://open-meteo.com).
  * ✅ 100% gratuit, sans clé API, sans inscription.
  * Supporte les prévisions jusqu'à 16 jours.
+ * Les appels passent par {@link WeatherGateway} (cache mémoire + disque, requêtes fusionnées).
  */
 public class WeatherService {
 
@@ -42,8 +40,22 @@ public class WeatherService {
     }
 
     // ── Coordonnées par défaut (Tunis) si pas de lieu ──────────
-    private static final double DEFAULT_LAT = 36.8065;
-    private static final double DEFAULT_LON = 10.1815;
+    static final double DEFAULT_LAT = 36.8065;
+    static final double DEFAULT_LON = 10.1815;
+    /** Horizon des prévisions Open-Meteo. */
+    static final int FORECAST_DAYS = 16;
+
+    /**
+     * Point météo d'un lieu : ses coordonnées si renseignées (non nulles), sinon Tunis.
+     * Même règle pour le préchargement et les écrans, donc mêmes clés de cache.
+     */
+    public static double[] coordinatesOf(Lieu lieu) {
+        if (lieu != null && lieu.getLatitude() != null && lieu.getLongitude() != null
+                && lieu.getLatitude() != 0 && lieu.getLongitude() != 0) {
+            return new double[]{lieu.getLatitude(), lieu.getLongitude()};
+        }
+        return new double[]{DEFAULT_LAT, DEFAULT_LON};
+    }
 
     /**
      * Récupère la météo pour une date et un lieu donné.
@@ -62,86 +74,43 @@ public class WeatherService {
 
         // Open-Meteo supporte max 16 jours de prévisions
         long daysAhead = java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), date);
-        if (daysAhead < 0 || daysAhead > 16) {
+        if (daysAhead < 0 || daysAhead > FORECAST_DAYS) {
             // Si hors portée, retourner une estimation basée sur les moyennes saisonnières
             return getSeasonalEstimate(date, isOutdoor);
         }
 
         try {
-            String urlStr = String.format(
-                    "https://api.open-meteo.com/v1/forecast?"
-                            + "latitude=%.4f&longitude=%.4f"
-                            + "&daily=temperature_2m_max,temperature_2m_min,precipitation_sum,"
-                            + "windspeed_10m_max,weathercode"
-                            + "&start_date=%s&end_date=%s"
-                            + "&timezone=auto",
-                    latitude, longitude, date.toString(), date.toString()
-            );
-
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(10_000);
-            conn.setReadTimeout(10_000);
-            conn.setRequestProperty("User-Agent", "JavaFX-EventApp/1.0");
-
-            if (conn.getResponseCode() != 200) {
-                conn.disconnect();
-                return getSeasonalEstimate(date, isOutdoor);
-            }
-
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-            String json = reader.lines().collect(Collectors.joining());
-            reader.close();
-            conn.disconnect();
-
-            return parseWeatherResponse(json, isOutdoor);
-
+            WeatherGateway.DailyForecast f = WeatherGateway.getInstance().dailyForecast(latitude, longitude, date);
+            return fromForecast(f, isOutdoor);
         } catch (Exception e) {
             System.err.println("WeatherService error: " + e.getMessage());
             return getSeasonalEstimate(date, isOutdoor);
         }
     }
 
-    // ── Parsing JSON (simple, sans dépendance) ─────────────────
-
-    private WeatherResult parseWeatherResponse(String json, boolean isOutdoor) {
-        try {
-            double tempMax = extractFirstDouble(json, "temperature_2m_max");
-            double tempMin = extractFirstDouble(json, "temperature_2m_min");
-            double precip  = extractFirstDouble(json, "precipitation_sum");
-            double wind    = extractFirstDouble(json, "windspeed_10m_max");
-            int wmoCode    = (int) extractFirstDouble(json, "weathercode");
-
-            double avgTemp = (tempMax + tempMin) / 2.0;
-
-            String desc = wmoToDescription(wmoCode);
-            String icon = wmoToIcon(wmoCode);
-            String advice = generateAdvice(avgTemp, precip, wind, wmoCode, isOutdoor);
-            int attendance = estimateAttendance(avgTemp, precip, wind, wmoCode, isOutdoor);
+    /**
+     * Variante non bloquante : résultat immédiat si la prévision du jour est déjà
+     * en cache (préchargée par {@link WeatherPrefetchService}), null sinon.
+     */
+    public WeatherResult peekWeather(Double lat, Double lon, LocalDateTime eventDate, boolean isOutdoor) {
+        if (eventDate == null) return null;
+        WeatherGateway.DailyForecast f = WeatherGateway.getInstance().peekDailyForecast(
+                lat != null ? lat : DEFAULT_LAT, lon != null ? lon : DEFAULT_LON, eventDate.toLocalDate());
+        return f == null ? null : fromForecast(f, isOutdoor);
+    }
 
-            return new WeatherResult(avgTemp, precip, wind, wmoCode, desc, icon, advice, attendance);
+    private WeatherResult fromForecast(WeatherGateway.DailyForecast f, boolean isOutdoor) {
+        double avgTemp = (f.tempMax() + f.tempMin()) / 2.0;
+        double precip = f.precipitation();
+        double wind = f.windMax();
+        int wmoCode = f.weatherCode();
 
-        } catch (Exception e) {
-            System.err.println("Weather parse error: " + e.getMessage());
-            return null;
-        }
-    }
+        String desc = wmoToDescription(wmoCode);
+        String icon = wmoToIcon(wmoCode);
+        String advice = generateAdvice(avgTemp, precip, wind, wmoCode, isOutdoor);
+        int attendance = estimateAttendance(avgTemp, precip, wind, wmoCode, isOutdoor);
 
-    private double extractFirstDouble(String json, String key) {
-        // Cherche "key":[val, ...] et extrait val
-        String search = "\"" + key + "\":[";
-        int idx = json.indexOf(search);
-        if (idx < 0) return 0;
-        int start = idx + search.length();
-        int end = json.indexOf(']', start);
-        if (end < 0) return 0;
-        String arrContent = json.substring(start, end).trim();
-        // Premier élément
-        String first = arrContent.split(",")[0].trim();
-        if (first.equals("null") || first.isEmpty()) return 0;
-        return Double.parseDouble(first);
+        return new WeatherResult(avgTemp, precip, wind, wmoCode, desc, icon, advice, attendance);
     }
 
     // ── WMO Weather Codes → Description FR ─────────────────────
@@ -10,6 +10,9 @@ import java.util.List;
 
 public class NotificationService {
 
+    /** Rows per multi-row insert (8 placeholders each, well under the driver limits). */
+    static final int BATCH_ROWS = 500;
+
     private final Connection cnx;
 
     public NotificationService() {
@@ -93,6 +96,57 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Same as {@link #createOrRefreshNotification} for many receivers at once:
+     * one multi-row INSERT ... ON DUPLICATE KEY UPDATE per chunk of {@value #BATCH_ROWS} rows.
+     * If the same receiver/type/entity appears twice in a batch, the last row wins.
+     */
+    public void createOrRefreshNotifications(List<Notification> batch) {
+        if (batch == null || batch.isEmpty()) return;
+        for (Notification n : batch) validate(n);
+
+        for (int from = 0; from < batch.size(); from += BATCH_ROWS) {
+            List<Notification> chunk = batch.subList(from, Math.min(batch.size(), from + BATCH_ROWS));
+
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO notifications " +
+                    "(receiver_id, sender_id, type, title, body, entity_type, entity_id, metadata_json) VALUES "
+            );
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("(?, ?, ?, ?, ?, ?, ?, ?)");
+            }
+            sql.append("""
+
+                    ON DUPLICATE KEY UPDATE
+                        sender_id=VALUES(sender_id),
+                        title=VALUES(title),
+                        body=VALUES(body),
+                        metadata_json=VALUES(metadata_json),
+                        created_at=NOW(),
+                        read_at=NULL
+                    """);
+
+            try (PreparedStatement ps = cnx.prepareStatement(sql.toString())) {
+                int k = 1;
+                for (Notification n : chunk) {
+                    ps.setInt(k++, n.getReceiverId());
+                    if (n.getSenderId() == null) ps.setNull(k++, Types.INTEGER);
+                    else ps.setInt(k++, n.getSenderId());
+                    ps.setString(k++, n.getType().name());
+                    ps.setString(k++, n.getTitle());
+                    ps.setString(k++, n.getBody());
+                    ps.setString(k++, n.getEntityType());
+                    ps.setInt(k++, n.getEntityId());
+                    ps.setString(k++, emptyToNull(n.getMetadataJson()));
+                }
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("NotificationService.createOrRefreshNotifications: " + e.getMessage(), e);
+            }
+        }
+    }
+
     public List<Notification> listNotifications(int receiverId, Boolean unreadOnly, NotificationType type, int page, int pageSize) {
         if (receiverId <= 0) throw new IllegalArgumentException("receiverId invalide");
         int p = Math.max(1, page);
@@ -8,6 +8,7 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
 
 /**
  * Paiement en crypto-monnaie (Bitcoin / Ethereum).
@@ -22,18 +23,25 @@ import java.time.Duration;
  *     <li>L'utilisateur envoie les fonds et confirme manuellement</li>
  * </ol>
  *
+ * <p>Les taux sont mis en cache par {@link CryptoRateCache} (partagé, stale-while-revalidate
+ * avec disjoncteur) : un devis n'attend jamais l'API plus de {@link #QUOTE_MAX_WAIT}.</p>
+ *
  * <p>Note : la vérification on-chain automatique nécessiterait un nœud complet
  * ou un service comme Blockstream/Etherscan. Pour un projet académique, la
  * confirmation manuelle est suffisante.</p>
  */
 public class CryptoPaymentService {
 
+    /** Attente maximale d'un devis quand aucun taux utilisable n'est en cache. */
+    public static final Duration QUOTE_MAX_WAIT = Duration.ofSeconds(3);
+
     private final HttpClient http = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(15))
+            .connectTimeout(Duration.ofSeconds(5))
             .build();
 
     /**
      * Devis crypto : montants en BTC/ETH pour un prix TND donné.
+     * {@code ratesAt} = date de lecture des taux ; {@code estimated} = taux de secours.
      */
     public record CryptoQuote(
             double btcAmount,
@@ -42,55 +50,59 @@ public class CryptoPaymentService {
             double btcPriceUSD,
             double ethPriceUSD,
             String btcAddress,
-            String ethAddress
-    ) {}
+            String ethAddress,
+            Instant ratesAt,
+            boolean estimated
+    ) {
+        /** Âge des taux au moment {@code now}. */
+        public Duration age(Instant now) {
+            Duration d = Duration.between(ratesAt, now);
+            return d.isNegative() ? Duration.ZERO : d;
+        }
+    }
 
     /**
      * Obtient un devis crypto pour un montant en TND.
      *
+     * <p>Utilise les taux en cache (éventuellement un peu périmés, voir {@link CryptoQuote#ratesAt()}).
+     * Ne bloque jamais plus de {@link #QUOTE_MAX_WAIT} ; au-delà, taux de secours.</p>
+     *
      * @param amountTND Prix total en dinars tunisiens
      * @return Devis avec montants BTC, ETH, adresses et taux
-     * @throws Exception en cas d'erreur réseau ou API
      */
-    public CryptoQuote getQuote(double amountTND) throws Exception {
+    public CryptoQuote getQuote(double amountTND) {
         double amountUSD = amountTND * PaymentConfig.TND_TO_USD;
+        return toQuote(amountUSD, CryptoRateCache.getInstance().get(QUOTE_MAX_WAIT));
+    }
 
+    /**
+     * Lit les taux BTC/ETH auprès de CoinGecko (appel réseau, sans cache).
+     *
+     * @throws Exception en cas d'erreur réseau, de quota (429) ou de réponse invalide
+     */
+    public CryptoRateCache.Rates fetchRates(Instant now) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(PaymentConfig.COINGECKO_API
                         + "/simple/price?ids=bitcoin,ethereum&vs_currencies=usd"))
                 .header("Accept", "application/json")
                 .GET()
-                .timeout(Duration.ofSeconds(15))
+                .timeout(Duration.ofSeconds(5))
                 .build();
 
         HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
 
-        if (resp.statusCode() == 200) {
-            double btcUSD = SimpleJson.extractNestedDouble(resp.body(), "bitcoin", "usd");
-            double ethUSD = SimpleJson.extractNestedDouble(resp.body(), "ethereum", "usd");
-
-            if (btcUSD <= 0 || ethUSD <= 0) {
-                throw new RuntimeException("Taux CoinGecko invalides (BTC="
-                        + btcUSD + ", ETH=" + ethUSD + ").");
-            }
-
-            double btcAmount = amountUSD / btcUSD;
-            double ethAmount = amountUSD / ethUSD;
-
-            return new CryptoQuote(
-                    btcAmount, ethAmount, amountUSD,
-                    btcUSD, ethUSD,
-                    PaymentConfig.CRYPTO_BTC_ADDRESS,
-                    PaymentConfig.CRYPTO_ETH_ADDRESS
-            );
+        if (resp.statusCode() != 200) {
+            throw new RuntimeException("CoinGecko " + resp.statusCode());
         }
 
-        // Fallback : taux approximatifs (si CoinGecko est down)
-        if (resp.statusCode() == 429) {
-            return getFallbackQuote(amountUSD);
-        }
+        double btcUSD = SimpleJson.extractNestedDouble(resp.body(), "bitcoin", "usd");
+        double ethUSD = SimpleJson.extractNestedDouble(resp.body(), "ethereum", "usd");
 
-        throw new RuntimeException("CoinGecko " + resp.statusCode());
+        if (btcUSD <= 0 || ethUSD <= 0) {
+            throw new RuntimeException("Taux CoinGecko invalides (BTC="
+                    + btcUSD + ", ETH=" + ethUSD + ").");
+        }
+        return new CryptoRateCache.Rates(btcUSD, ethUSD, now, false);
     }
 
     /**
@@ -98,13 +110,17 @@ public class CryptoPaymentService {
      * Taux approximatifs hardcodés — à jour au moment du développement.
      */
     public CryptoQuote getFallbackQuote(double amountUSD) {
-        double btcUSD = 95_000;  // ≈ prix BTC 2025-2026
-        double ethUSD = 3_200;   // ≈ prix ETH 2025-2026
+        return toQuote(amountUSD, new CryptoRateCache.Rates(
+                CryptoRateCache.FALLBACK_BTC_USD, CryptoRateCache.FALLBACK_ETH_USD, Instant.now(), true));
+    }
+
+    static CryptoQuote toQuote(double amountUSD, CryptoRateCache.Rates rates) {
         return new CryptoQuote(
-                amountUSD / btcUSD, amountUSD / ethUSD,
-                amountUSD, btcUSD, ethUSD,
+                amountUSD / rates.btcUSD(), amountUSD / rates.ethUSD(),
+                amountUSD, rates.btcUSD(), rates.ethUSD(),
                 PaymentConfig.CRYPTO_BTC_ADDRESS,
-                PaymentConfig.CRYPTO_ETH_ADDRESS
+                PaymentConfig.CRYPTO_ETH_ADDRESS,
+                rates.fetchedAt(), rates.fallback()
         );
     }
 }
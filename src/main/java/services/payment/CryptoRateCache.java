@@ -0,0 +1,209 @@
+package services.payment;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache partagé des taux BTC/ETH (USD), en stale-while-revalidate.
+ *
+ * <ul>
+ *     <li>Taux de moins de {@link #FRESH_TTL} → servis tels quels.</li>
+ *     <li>Taux plus vieux mais de moins de {@link #MAX_STALE} → servis immédiatement,
+ *         et UN rafraîchissement part en arrière-plan (les appels concurrents le partagent).</li>
+ *     <li>Rien d'utilisable → on attend le rafraîchissement au plus {@code maxWait},
+ *         puis on se rabat sur les taux de secours.</li>
+ * </ul>
+ *
+ * Un disjoncteur coupe les appels à l'API après {@link #FAILURE_THRESHOLD} échecs
+ * consécutifs (timeouts, 429, 5xx) pendant {@link #OPEN_DURATION} : le dialogue de
+ * paiement n'attend alors plus du tout le réseau.
+ */
+public final class CryptoRateCache {
+
+    public static final Duration FRESH_TTL = Duration.ofSeconds(60);
+    static final Duration MAX_STALE = Duration.ofMinutes(15);
+    static final int FAILURE_THRESHOLD = 3;
+    static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    /** Taux de secours — approximatifs, à jour au moment du développement. */
+    static final double FALLBACK_BTC_USD = 95_000;
+    static final double FALLBACK_ETH_USD = 3_200;
+
+    /** Appel réseau qui lit les taux (CoinGecko en production). */
+    @FunctionalInterface
+    public interface RateFetcher {
+        Rates fetch(Instant now) throws Exception;
+    }
+
+    /**
+     * Taux USD d'une unité de BTC / ETH.
+     *
+     * @param fetchedAt instant de lecture auprès de l'API
+     * @param fallback  true = taux de secours codés en dur (API indisponible)
+     */
+    public record Rates(double btcUSD, double ethUSD, Instant fetchedAt, boolean fallback) {
+        public Duration ageAt(Instant now) {
+            Duration d = Duration.between(fetchedAt, now);
+            return d.isNegative() ? Duration.ZERO : d;
+        }
+    }
+
+    public enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private static volatile CryptoRateCache instance;
+
+    private final RateFetcher fetcher;
+    private final LongSupplier clock;
+    private final ExecutorService executor;
+
+    private volatile Rates cached;
+    private CompletableFuture<Rates> inFlight;
+
+    // Disjoncteur (protégé par this)
+    private BreakerState breaker = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMs;
+
+    public static CryptoRateCache getInstance() {
+        if (instance == null) {
+            synchronized (CryptoRateCache.class) {
+                if (instance == null) {
+                    CryptoPaymentService service = new CryptoPaymentService();
+                    instance = new CryptoRateCache(service::fetchRates, System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    CryptoRateCache(RateFetcher fetcher, LongSupplier clock) {
+        this.fetcher = fetcher;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "crypto-rates");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Taux à utiliser pour un devis, sans jamais bloquer plus de {@code maxWait}.
+     */
+    public Rates get(Duration maxWait) {
+        Instant now = now();
+        Rates snapshot = cached;
+        if (snapshot != null) {
+            Duration age = snapshot.ageAt(now);
+            if (age.compareTo(FRESH_TTL) <= 0) return snapshot;
+            if (age.compareTo(MAX_STALE) <= 0) {
+                refreshAsync();
+                return snapshot;
+            }
+        }
+
+        CompletableFuture<Rates> refresh = refreshAsync();
+        if (refresh == null) return fallback(now);
+        try {
+            return refresh.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Le rafraîchissement continue et remplira le cache pour le prochain devis
+            return fallback(now);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback(now);
+        } catch (ExecutionException e) {
+            return fallback(now);
+        }
+    }
+
+    /** Derniers taux connus (éventuellement périmés), sans appel réseau. */
+    public Rates peek() {
+        return cached;
+    }
+
+    /**
+     * Lance un rafraîchissement s'il n'y en a pas déjà un en cours.
+     *
+     * @return le rafraîchissement en cours, ou null si le disjoncteur est ouvert
+     */
+    public synchronized CompletableFuture<Rates> refreshAsync() {
+        if (inFlight != null) return inFlight;
+        if (!allowRequest()) return null;
+
+        CompletableFuture<Rates> f = new CompletableFuture<>();
+        inFlight = f;
+        executor.execute(() -> {
+            // inFlight est libéré AVANT de compléter f : un callback qui relance
+            // refreshAsync() obtient un nouvel appel, pas le futur déjà terminé.
+            try {
+                Rates r = fetcher.fetch(now());
+                cached = r;
+                onSuccess();
+                f.complete(r);
+            } catch (Exception e) {
+                onFailure();
+                System.err.println("[CryptoRates] Échec rafraîchissement: " + e.getMessage());
+                f.completeExceptionally(e);
+            }
+        });
+        return f;
+    }
+
+    public synchronized BreakerState getBreakerState() {
+        if (breaker == BreakerState.OPEN && clock.getAsLong() - openedAtMs >= OPEN_DURATION.toMillis()) {
+            return BreakerState.HALF_OPEN;
+        }
+        return breaker;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Disjoncteur
+    // ─────────────────────────────────────────────────────────────
+
+    /** Appelé sous le verrou. En HALF_OPEN, un seul appel d'essai passe (inFlight est null). */
+    private boolean allowRequest() {
+        BreakerState state = getBreakerState();
+        if (state == BreakerState.OPEN) return false;
+        if (state == BreakerState.HALF_OPEN) breaker = BreakerState.HALF_OPEN;
+        return true;
+    }
+
+    private synchronized void onSuccess() {
+        inFlight = null;
+        consecutiveFailures = 0;
+        breaker = BreakerState.CLOSED;
+    }
+
+    private synchronized void onFailure() {
+        inFlight = null;
+        consecutiveFailures++;
+        if (breaker == BreakerState.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+            breaker = BreakerState.OPEN;
+            openedAtMs = clock.getAsLong();
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+
+    /** Derniers taux réels s'ils existent (même très vieux), sinon taux codés en dur. */
+    private Rates fallback(Instant now) {
+        Rates last = cached;
+        if (last != null) return last;
+        return new Rates(FALLBACK_BTC_USD, FALLBACK_ETH_USD, now, true);
+    }
+
+    private Instant now() {
+        return Instant.ofEpochMilli(clock.getAsLong());
+    }
+}
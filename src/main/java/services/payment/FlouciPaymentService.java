@@ -28,6 +28,16 @@ public class FlouciPaymentService {
     private final HttpClient http = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(15))
             .build();
+    private final String apiBase;
+
+    public FlouciPaymentService() {
+        this(PaymentConfig.FLOUCI_API_BASE);
+    }
+
+    /** Pour les tests : API locale (faux fournisseur). */
+    FlouciPaymentService(String apiBase) {
+        this.apiBase = apiBase;
+    }
 
     /**
      * Résultat de la génération d'un paiement Flouci.
@@ -60,7 +70,7 @@ public class FlouciPaymentService {
         );
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PaymentConfig.FLOUCI_API_BASE + "/generate_payment"))
+                .uri(URI.create(apiBase + "/generate_payment"))
                 .header("Content-Type", "application/json")
                 .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                 .timeout(Duration.ofSeconds(20))
@@ -88,8 +98,21 @@ public class FlouciPaymentService {
      * @return true si le paiement est confirmé (statut SUCCESS)
      */
     public boolean verifyPayment(String paymentId) throws Exception {
+        try {
+            return "SUCCESS".equalsIgnoreCase(getPaymentStatus(paymentId));
+        } catch (IllegalStateException httpError) {
+            return false;
+        }
+    }
+
+    /**
+     * Statut brut d'un paiement Flouci (SUCCESS, PENDING, FAILURE, EXPIRED…).
+     *
+     * @throws IllegalStateException si Flouci ne répond pas 200
+     */
+    public String getPaymentStatus(String paymentId) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PaymentConfig.FLOUCI_API_BASE + "/verify_payment/" + paymentId))
+                .uri(URI.create(apiBase + "/verify_payment/" + paymentId))
                 .header("apppublic", PaymentConfig.FLOUCI_APP_TOKEN)
                 .header("appsecret", PaymentConfig.FLOUCI_APP_SECRET)
                 .GET()
@@ -99,9 +122,8 @@ public class FlouciPaymentService {
         HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
 
         if (resp.statusCode() == 200) {
-            String status = SimpleJson.extractString(resp.body(), "status");
-            return "SUCCESS".equalsIgnoreCase(status);
+            return SimpleJson.extractString(resp.body(), "status");
         }
-        return false;
+        throw new IllegalStateException("Flouci " + resp.statusCode());
     }
 }
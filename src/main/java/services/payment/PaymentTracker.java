@@ -0,0 +1,400 @@
+package services.payment;
+
+import models.evenements.Inscription;
+import models.notifications.Notification;
+import models.notifications.NotificationType;
+import services.evenements.InscriptionService;
+import services.evenements.PaiementService;
+import services.evenements.PaiementService.PendingPayment;
+import services.notifications.NotificationService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suivi asynchrone des paiements en ligne (Stripe Checkout, Flouci).
+ *
+ * Chaque paiement EN_ATTENTE est vérifié auprès du fournisseur sur un thread de fond :
+ * 2 s, 4 s, 8 s… jusqu'à 60 s entre deux essais, et jusqu'à son échéance
+ * ({@code expires_at}) au-delà de laquelle il passe EXPIRE.
+ * Chaque transition est écrite dans la table paiement ; au redémarrage,
+ * {@link #start()} reprend tous les paiements encore EN_ATTENTE.
+ * Une annulation n'est écrite qu'une fois le fournisseur d'accord ({@link #cancel}).
+ * Les écrans s'abonnent via {@link #addListener} (appel sur le thread de fond).
+ */
+public final class PaymentTracker {
+
+    public enum CheckResult { PAID, PENDING, FAILED }
+
+    /** Interroge le fournisseur pour une référence (session Stripe, payment_id Flouci). */
+    @FunctionalInterface
+    public interface StatusChecker {
+        CheckResult check(String providerRef) throws Exception;
+    }
+
+    /** Ferme la session chez le fournisseur pour qu'elle ne puisse plus être payée (expire Stripe). */
+    @FunctionalInterface
+    public interface SessionCloser {
+        void close(String providerRef) throws Exception;
+    }
+
+    /** Issue d'une demande d'annulation. */
+    public enum CancelResult {
+        /** Fournisseur : non payé et fermé → ANNULE. */
+        CANCELLED,
+        /** Payé entre-temps → PAYE. */
+        PAID,
+        /** Encore payable ou fournisseur injoignable : le suivi continue jusqu'à l'échéance. */
+        STILL_PENDING,
+        /** Paiement non suivi (déjà soldé). */
+        NOT_TRACKED
+    }
+
+    /** Paiement arrivé à un statut final (PAYE, ECHOUE, EXPIRE, ANNULE). */
+    public record Settlement(int paiementId, int inscriptionId, String methode, String statut) {
+        public boolean isPaid() { return PaiementService.STATUT_PAYE.equals(statut); }
+    }
+
+    @FunctionalInterface
+    public interface SettlementListener {
+        void onSettled(Settlement settlement);
+    }
+
+    /** Persistance des transitions (table paiement ; en mémoire dans les tests). */
+    public interface Store {
+        List<PendingPayment> loadPending();
+        void reschedule(PendingPayment payment, String lastError);
+        /** @return true si la transition EN_ATTENTE → statut a eu lieu ici */
+        boolean settle(PendingPayment payment, String statut);
+    }
+
+    /** Session Stripe Checkout : on suit le paiement au plus 30 min. */
+    public static final Duration STRIPE_DEADLINE = Duration.ofMinutes(30);
+    /** = session_timeout_secs envoyé à Flouci (1200 s). */
+    public static final Duration FLOUCI_DEADLINE = Duration.ofMinutes(20);
+
+    static final Duration INITIAL_DELAY = Duration.ofSeconds(2);
+    static final Duration MAX_DELAY = Duration.ofSeconds(60);
+
+    private static volatile PaymentTracker instance;
+
+    private final Store store;
+    private final Map<String, StatusChecker> checkers;
+    private final Map<String, SessionCloser> closers;
+    private final Duration initialDelay;
+    private final Duration maxDelay;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<Integer, PendingPayment> tracked = new ConcurrentHashMap<>();
+    private final Map<Integer, ScheduledFuture<?>> futures = new ConcurrentHashMap<>();
+    private final List<SettlementListener> listeners = new CopyOnWriteArrayList<>();
+    private boolean started;
+
+    public static PaymentTracker getInstance() {
+        if (instance == null) {
+            synchronized (PaymentTracker.class) {
+                if (instance == null) {
+                    StripePaymentService stripe = new StripePaymentService();
+                    FlouciPaymentService flouci = new FlouciPaymentService();
+                    instance = new PaymentTracker(new DbStore(), Map.of(
+                            "CARTE_BANCAIRE", ref -> fromStripe(stripe.getSession(ref)),
+                            "FLOUCI", ref -> fromFlouci(flouci.getPaymentStatus(ref))),
+                            // Flouci n'expose pas d'annulation : la session court jusqu'à son échéance
+                            Map.of("CARTE_BANCAIRE", stripe::expireSession),
+                            INITIAL_DELAY, MAX_DELAY);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Pour les tests : stockage et fournisseurs dédiés, délais courts. */
+    PaymentTracker(Store store, Map<String, StatusChecker> checkers, Duration initialDelay, Duration maxDelay) {
+        this(store, checkers, Map.of(), initialDelay, maxDelay);
+    }
+
+    PaymentTracker(Store store, Map<String, StatusChecker> checkers, Map<String, SessionCloser> closers,
+                   Duration initialDelay, Duration maxDelay) {
+        this.store = store;
+        this.checkers = checkers;
+        this.closers = closers;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "payment-tracker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  API
+    // ─────────────────────────────────────────────────────────────
+
+    /** Reprend le suivi des paiements EN_ATTENTE en base. Sans effet après le premier appel. */
+    public void start() {
+        synchronized (this) {
+            if (started) return;
+            started = true;
+        }
+        try {
+            List<PendingPayment> pending = store.loadPending();
+            for (PendingPayment p : pending) {
+                schedule(p, delayUntil(p.nextCheckAt()));
+            }
+            if (!pending.isEmpty()) {
+                System.out.println("[PaymentTracker] " + pending.size() + " paiement(s) en attente repris");
+            }
+        } catch (Exception e) {
+            System.err.println("[PaymentTracker] Reprise impossible: " + e.getMessage());
+            synchronized (this) { started = false; }
+        }
+    }
+
+    /** Suit un paiement qui vient d'être créé EN_ATTENTE (première vérification immédiate). */
+    public void track(PendingPayment payment) {
+        start();
+        schedule(payment, Duration.ZERO);
+    }
+
+    /** Avance la prochaine vérification (ex. redirection success_url détectée). */
+    public void checkNow(int paiementId) {
+        PendingPayment p = tracked.get(paiementId);
+        if (p != null) schedule(p, Duration.ZERO);
+    }
+
+    /**
+     * L'utilisateur a abandonné. Sur le thread du tracker (pas de course avec une vérification) :
+     * dernier contrôle chez le fournisseur, fermeture de la session si elle est encore payable,
+     * puis nouveau contrôle. ANNULE seulement si le fournisseur confirme « non payé et fermé » ;
+     * payé entre-temps → PAYE ; sinon le suivi continue jusqu'à l'échéance (EXPIRE).
+     */
+    public CompletableFuture<CancelResult> cancel(int paiementId) {
+        return CompletableFuture.supplyAsync(() -> confirmCancel(paiementId), scheduler);
+    }
+
+    public boolean isTracking(int paiementId) {
+        return tracked.containsKey(paiementId);
+    }
+
+    public void addListener(SettlementListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SettlementListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Boucle de vérification
+    // ─────────────────────────────────────────────────────────────
+
+    private synchronized void schedule(PendingPayment p, Duration delay) {
+        tracked.put(p.paiementId(), p);
+        ScheduledFuture<?> next = scheduler.schedule(() -> poll(p.paiementId()),
+                Math.max(0, delay.toMillis()), TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = futures.put(p.paiementId(), next);
+        if (previous != null) previous.cancel(false);
+    }
+
+    /** Replanifie seulement si le paiement n'a pas été soldé entre-temps (ex. annulation). */
+    private synchronized void reschedule(PendingPayment expected, PendingPayment updated, Duration delay) {
+        if (tracked.get(expected.paiementId()) == expected) schedule(updated, delay);
+    }
+
+    private void poll(int paiementId) {
+        PendingPayment p = tracked.get(paiementId);
+        if (p == null) return;
+
+        CheckResult result = null;
+        String error = null;
+        StatusChecker checker = checkers.get(p.methode());
+        if (checker == null) {
+            error = "Aucun fournisseur pour la méthode " + p.methode();
+        } else {
+            try {
+                result = checker.check(p.providerRef());
+            } catch (Exception e) {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (result == CheckResult.PAID) {
+                finish(p, PaiementService.STATUT_PAYE);
+            } else if (result == CheckResult.FAILED) {
+                finish(p, PaiementService.STATUT_ECHOUE);
+            } else if (p.expiresAt() != null && !now.isBefore(p.expiresAt())) {
+                finish(p, PaiementService.STATUT_EXPIRE);
+            } else {
+                int attempts = p.attempts() + 1;
+                Duration delay = backoff(attempts, initialDelay, maxDelay);
+                LocalDateTime next = now.plus(delay);
+                // Dernière vérification pile à l'échéance
+                if (p.expiresAt() != null && next.isAfter(p.expiresAt())) next = p.expiresAt();
+                PendingPayment updated = p.rescheduled(attempts, next);
+                store.reschedule(updated, error);
+                reschedule(p, updated, delayUntil(next));
+            }
+        } catch (Exception e) {
+            // Base indisponible : on réessaie plus tard sans perdre le paiement
+            System.err.println("[PaymentTracker] Paiement #" + paiementId + ": " + e.getMessage());
+            reschedule(p, p, maxDelay);
+        }
+    }
+
+    private CancelResult confirmCancel(int paiementId) {
+        PendingPayment p = tracked.get(paiementId);
+        if (p == null) return CancelResult.NOT_TRACKED;
+        StatusChecker checker = checkers.get(p.methode());
+        if (checker == null) return CancelResult.STILL_PENDING;
+
+        CheckResult result;
+        try {
+            result = checker.check(p.providerRef());
+            SessionCloser closer = closers.get(p.methode());
+            if (result == CheckResult.PENDING && closer != null) {
+                try {
+                    closer.close(p.providerRef());
+                } catch (Exception e) {
+                    // Refus si la session vient d'être payée : le contrôle suivant le dira
+                    System.err.println("[PaymentTracker] Fermeture #" + paiementId + ": " + e.getMessage());
+                }
+                result = checker.check(p.providerRef());
+            }
+        } catch (Exception e) {
+            System.err.println("[PaymentTracker] Annulation #" + paiementId + " non confirmée: " + e.getMessage());
+            return CancelResult.STILL_PENDING;
+        }
+
+        try {
+            if (result == CheckResult.PAID) {
+                return finish(p, PaiementService.STATUT_PAYE) ? CancelResult.PAID : CancelResult.NOT_TRACKED;
+            }
+            if (result == CheckResult.FAILED) {
+                return finish(p, PaiementService.STATUT_ANNULE) ? CancelResult.CANCELLED : CancelResult.NOT_TRACKED;
+            }
+        } catch (Exception e) {
+            System.err.println("[PaymentTracker] Paiement #" + paiementId + ": " + e.getMessage());
+        }
+        return CancelResult.STILL_PENDING;
+    }
+
+    private boolean finish(PendingPayment p, String statut) {
+        boolean transitioned = store.settle(p, statut);
+        synchronized (this) {
+            tracked.remove(p.paiementId());
+            ScheduledFuture<?> f = futures.remove(p.paiementId());
+            if (f != null) f.cancel(false);
+        }
+        if (transitioned) {
+            System.out.println("[PaymentTracker] Paiement #" + p.paiementId() + " → " + statut);
+            Settlement s = new Settlement(p.paiementId(), p.inscriptionId(), p.methode(), statut);
+            for (SettlementListener l : listeners) {
+                try {
+                    l.onSettled(s);
+                } catch (Exception e) {
+                    System.err.println("[PaymentTracker] Listener: " + e.getMessage());
+                }
+            }
+        }
+        return transitioned;
+    }
+
+    /** initial × 2^(n-1), plafonné à max. */
+    static Duration backoff(int attempts, Duration initial, Duration max) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        long millis = initial.toMillis() << shift;
+        return Duration.ofMillis(Math.min(millis, max.toMillis()));
+    }
+
+    private static Duration delayUntil(LocalDateTime when) {
+        if (when == null) return Duration.ZERO;
+        Duration d = Duration.between(LocalDateTime.now(), when);
+        return d.isNegative() ? Duration.ZERO : d;
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Statuts fournisseurs
+    // ─────────────────────────────────────────────────────────────
+
+    static CheckResult fromStripe(StripePaymentService.CheckoutSession session) {
+        if (session == null) throw new IllegalStateException("Session Stripe illisible");
+        String paymentStatus = session.paymentStatus();
+        if ("paid".equals(paymentStatus) || "no_payment_required".equals(paymentStatus)) return CheckResult.PAID;
+        if ("expired".equals(session.status())) return CheckResult.FAILED;
+        return CheckResult.PENDING;
+    }
+
+    static CheckResult fromFlouci(String status) {
+        if (status == null) return CheckResult.PENDING;
+        return switch (status.toUpperCase(Locale.ROOT)) {
+            case "SUCCESS" -> CheckResult.PAID;
+            case "FAILURE", "FAILED", "EXPIRED", "CANCELED", "CANCELLED" -> CheckResult.FAILED;
+            default -> CheckResult.PENDING;
+        };
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Stockage en base
+    // ─────────────────────────────────────────────────────────────
+
+    /** Table paiement + notification de l'utilisateur (visible même si l'écran est fermé). */
+    private static final class DbStore implements Store {
+        private final PaiementService paiementService = new PaiementService();
+        private final InscriptionService inscriptionService = new InscriptionService();
+
+        @Override
+        public List<PendingPayment> loadPending() {
+            return paiementService.getPending();
+        }
+
+        @Override
+        public void reschedule(PendingPayment p, String lastError) {
+            paiementService.scheduleCheck(p.paiementId(), p.attempts(), p.nextCheckAt(), lastError);
+        }
+
+        @Override
+        public boolean settle(PendingPayment p, String statut) {
+            boolean done = paiementService.settlePending(p.paiementId(), statut);
+            if (done && !PaiementService.STATUT_ANNULE.equals(statut)) notifyUser(p, statut);
+            return done;
+        }
+
+        private void notifyUser(PendingPayment p, String statut) {
+            try {
+                Inscription ins = inscriptionService.getById(p.inscriptionId());
+                if (ins == null) return;
+                boolean paid = PaiementService.STATUT_PAYE.equals(statut);
+                Notification n = new Notification();
+                n.setReceiverId(ins.getUserId());
+                n.setType(paid ? NotificationType.PAYMENT_CONFIRMED : NotificationType.PAYMENT_FAILED);
+                n.setTitle(paid ? "Paiement confirmé" : "Paiement non abouti");
+                n.setBody(paid
+                        ? String.format(Locale.FRENCH, "Votre paiement de %.2f TND est confirmé : vos tickets sont disponibles.", p.montant())
+                        : String.format(Locale.FRENCH, "Votre paiement de %.2f TND n'a pas abouti (%s).", p.montant(),
+                                PaiementService.STATUT_EXPIRE.equals(statut) ? "délai dépassé" : "refusé"));
+                n.setEntityType("paiement");
+                n.setEntityId(p.paiementId());
+                new NotificationService().createNotification(n);
+            } catch (Exception e) {
+                System.err.println("[PaymentTracker] Notification non créée: " + e.getMessage());
+            }
+        }
+    }
+}
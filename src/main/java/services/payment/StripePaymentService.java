@@ -33,6 +33,24 @@ public class StripePaymentService {
     private final HttpClient http = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(15))
             .build();
+    private final String apiBase;
+
+    /**
+     * Session Checkout.
+     *
+     * @param status        open | complete | expired
+     * @param paymentStatus paid | unpaid | no_payment_required
+     */
+    public record CheckoutSession(String id, String url, String status, String paymentStatus) {}
+
+    public StripePaymentService() {
+        this(PaymentConfig.STRIPE_API_BASE);
+    }
+
+    /** Pour les tests : API locale (faux fournisseur). */
+    StripePaymentService(String apiBase) {
+        this.apiBase = apiBase;
+    }
 
     /**
      * Crée une session Stripe Checkout.
@@ -45,6 +63,15 @@ public class StripePaymentService {
      */
     public String createCheckoutSession(String productName, double amountTND, int quantity)
             throws Exception {
+        return createSession(productName, amountTND, quantity).url();
+    }
+
+    /**
+     * Comme {@link #createCheckoutSession} mais renvoie aussi l'id de session,
+     * nécessaire au suivi asynchrone du paiement.
+     */
+    public CheckoutSession createSession(String productName, double amountTND, int quantity)
+            throws Exception {
 
         // TND → EUR → centimes (Stripe attend le montant en plus petite unité)
         long amountCents = Math.round(amountTND * PaymentConfig.TND_TO_EUR * 100);
@@ -62,7 +89,7 @@ public class StripePaymentService {
         params.put("cancel_url", PaymentConfig.STRIPE_CANCEL_URL);
 
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PaymentConfig.STRIPE_API_BASE + "/checkout/sessions"))
+                .uri(URI.create(apiBase + "/checkout/sessions"))
                 .header("Authorization", "Bearer " + PaymentConfig.STRIPE_SECRET_KEY)
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(HttpRequest.BodyPublishers.ofString(encodeForm(params)))
@@ -72,8 +99,8 @@ public class StripePaymentService {
         HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
 
         if (resp.statusCode() == 200) {
-            String url = SimpleJson.extractString(resp.body(), "url");
-            if (url != null) return url;
+            CheckoutSession session = parseSession(resp.body());
+            if (session.url() != null && session.id() != null) return session;
             throw new RuntimeException("Réponse Stripe sans URL de checkout.");
         }
 
@@ -88,8 +115,16 @@ public class StripePaymentService {
      * @return "paid", "unpaid", ou "no_payment_required"
      */
     public String getSessionPaymentStatus(String sessionId) throws Exception {
+        CheckoutSession session = getSession(sessionId);
+        return session != null ? session.paymentStatus() : null;
+    }
+
+    /**
+     * @return la session, ou null si Stripe ne répond pas 200
+     */
+    public CheckoutSession getSession(String sessionId) throws Exception {
         HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(PaymentConfig.STRIPE_API_BASE + "/checkout/sessions/" + sessionId))
+                .uri(URI.create(apiBase + "/checkout/sessions/" + sessionId))
                 .header("Authorization", "Bearer " + PaymentConfig.STRIPE_SECRET_KEY)
                 .GET()
                 .timeout(Duration.ofSeconds(15))
@@ -98,13 +133,46 @@ public class StripePaymentService {
         HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
 
         if (resp.statusCode() == 200) {
-            return SimpleJson.extractString(resp.body(), "payment_status");
+            return parseSession(resp.body());
         }
         return null;
     }
 
+    /**
+     * Expire une session Checkout encore ouverte : elle ne peut plus être payée.
+     * Stripe refuse (400) si la session est déjà complète ou expirée.
+     *
+     * @return la session expirée
+     * @throws Exception en cas d'erreur réseau ou API
+     */
+    public CheckoutSession expireSession(String sessionId) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(apiBase + "/checkout/sessions/" + sessionId + "/expire"))
+                .header("Authorization", "Bearer " + PaymentConfig.STRIPE_SECRET_KEY)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(15))
+                .build();
+
+        HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (resp.statusCode() == 200) {
+            return parseSession(resp.body());
+        }
+        String msg = SimpleJson.extractString(resp.body(), "message");
+        throw new RuntimeException("Stripe " + resp.statusCode()
+                + " : " + (msg != null ? msg : resp.body().substring(0, Math.min(200, resp.body().length()))));
+    }
+
     // ── helpers ──
 
+    private CheckoutSession parseSession(String json) {
+        return new CheckoutSession(
+                SimpleJson.extractString(json, "id"),
+                SimpleJson.extractString(json, "url"),
+                SimpleJson.extractString(json, "status"),
+                SimpleJson.extractString(json, "payment_status"));
+    }
+
     private String encodeForm(Map<String, String> params) {
         StringJoiner sj = new StringJoiner("&");
         params.forEach((k, v) -> sj.add(
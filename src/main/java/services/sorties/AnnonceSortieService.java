@@ -3,6 +3,7 @@ package services.sorties;
 import models.sorties.AnnonceSortie;
 import models.notifications.Notification;
 import models.notifications.NotificationType;
+import services.evenements.ScheduleConflictIndex;
 import services.notifications.NotificationService;
 import utils.Mydb;
 import utils.json.JsonStringArray;
@@ -183,6 +184,8 @@ public class AnnonceSortieService implements CrudService<AnnonceSortie, Integer>
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             bind(ps, a, true);
             ps.executeUpdate();
+            // Date ou statut changés : les participants acceptés suivent
+            ScheduleConflictIndex.getInstance().upsertSortie(a);
 
             // Non-bloquant: si notif échoue, on ne casse pas l'update.
             notifyParticipantsOnUpdate(before, a);
@@ -213,6 +216,7 @@ public class AnnonceSortieService implements CrudService<AnnonceSortie, Integer>
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, id);
             ps.executeUpdate();
+            ScheduleConflictIndex.getInstance().removeSortie(id);
         } catch (SQLException e) {
             throw new RuntimeException("AnnonceSortieService.delete: " + e.getMessage(), e);
         }
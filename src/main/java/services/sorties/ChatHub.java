@@ -0,0 +1,168 @@
+package services.sorties;
+
+import models.sorties.ChatMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Bus de diffusion du chat de groupe, par annonce.
+ *
+ * Les services publient après chaque écriture (message, sondage, tâche) ; les fenêtres
+ * de chat s'abonnent à leur annonce et reçoivent les changements sans interroger la base.
+ * La livraison se fait sur un unique thread démon (ordre de publication conservé) ;
+ * l'écouteur qui veut toucher l'UI passe lui-même par {@code Platform.runLater}.
+ *
+ * Entre plusieurs clients desktop, les événements transitent par {@link ChatRelay}
+ * (TCP local, authentifié). Quand le relais est perdu, les abonnés reçoivent {@link Type#RESYNC}
+ * et rattrapent depuis la base une seule fois. Le relais ne franchit pas la machine :
+ * les fenêtres gardent un rattrapage périodique lent pour les clients d'autres postes.
+ */
+public final class ChatHub {
+
+    public enum Type {
+        /** Nouveau message (TEXT, POLL ou SYSTEM), porté par l'événement. */
+        MESSAGE,
+        /** Votes / options / clôture d'un sondage ({@code refId} = pollId). */
+        POLL_UPDATED,
+        /** Épinglage modifié ou nouveau sondage épinglé. */
+        PINS_CHANGED,
+        /** Une tâche de l'annonce a changé ({@code refId} = taskId, 0 si plusieurs). */
+        TASKS_CHANGED,
+        /** Événements possiblement manqués : l'abonné doit se resynchroniser. */
+        RESYNC
+    }
+
+    public record ChatEvent(Type type, int annonceId, ChatMessage message, int refId) {
+        public static ChatEvent message(ChatMessage m) {
+            return new ChatEvent(Type.MESSAGE, m.getAnnonceId(), m, m.getId());
+        }
+
+        public static ChatEvent of(Type type, int annonceId, int refId) {
+            return new ChatEvent(type, annonceId, null, refId);
+        }
+    }
+
+    /** Abonnement à une annonce ; {@link #close()} le retire (idempotent). */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static volatile ChatHub instance;
+
+    public static ChatHub getInstance() {
+        if (instance == null) {
+            synchronized (ChatHub.class) {
+                if (instance == null) {
+                    ChatHub hub = new ChatHub(Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "chat-hub");
+                        t.setDaemon(true);
+                        return t;
+                    }));
+                    hub.relay = ChatRelay.fromEnvironment(hub);
+                    instance = hub;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final Map<Integer, List<Consumer<ChatEvent>>> listeners = new ConcurrentHashMap<>();
+    // Caches des services à invalider quand un autre client écrit (toutes annonces)
+    private final List<Consumer<ChatEvent>> remoteObservers = new CopyOnWriteArrayList<>();
+    private final Executor dispatcher;
+    private volatile ChatRelay relay;
+
+    ChatHub(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public Subscription subscribe(int annonceId, Consumer<ChatEvent> listener) {
+        // Ajout et retrait atomiques par annonce (la liste vide est retirée de la map)
+        listeners.compute(annonceId, (k, v) -> {
+            List<Consumer<ChatEvent>> list = (v == null) ? new CopyOnWriteArrayList<>() : v;
+            list.add(listener);
+            return list;
+        });
+        ChatRelay r = relay;
+        if (r != null) r.start();
+        return () -> listeners.computeIfPresent(annonceId, (k, v) -> {
+            v.remove(listener);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    /** Publie un événement local : livré aux abonnés de ce processus et relayé aux autres. */
+    public void publish(ChatEvent event) {
+        if (event == null || event.annonceId() <= 0) return;
+        deliver(event);
+        ChatRelay r = relay;
+        if (r != null) r.send(event);
+    }
+
+    /** Livré aux abonnés de ce processus seulement (l'écriture n'est pas encore visible des autres). */
+    void publishLocal(ChatEvent event) {
+        if (event == null || event.annonceId() <= 0) return;
+        deliver(event);
+    }
+
+    /**
+     * Observe les événements venus des autres clients, avant leur livraison aux abonnés
+     * (appel synchrone, sur le thread du relais). RESYNC est signalé avec l'annonce 0.
+     */
+    void observeRemote(Consumer<ChatEvent> observer) {
+        remoteObservers.add(observer);
+    }
+
+    /** Événement reçu du relais : livré localement seulement (pas de réémission). */
+    void deliverRemote(ChatEvent event) {
+        if (event == null || event.annonceId() <= 0) return;
+        notifyRemoteObservers(event);
+        deliver(event);
+    }
+
+    /** Relais coupé puis rétabli : chaque annonce suivie doit rattraper. */
+    void resyncAll() {
+        notifyRemoteObservers(ChatEvent.of(Type.RESYNC, 0, 0));
+        for (Integer annonceId : listeners.keySet()) {
+            deliver(ChatEvent.of(Type.RESYNC, annonceId, 0));
+        }
+    }
+
+    private void notifyRemoteObservers(ChatEvent event) {
+        for (Consumer<ChatEvent> o : remoteObservers) {
+            try {
+                o.accept(event);
+            } catch (Exception ex) {
+                System.err.println("[ChatHub] observer " + event.type() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    int subscriberCount(int annonceId) {
+        List<Consumer<ChatEvent>> list = listeners.get(annonceId);
+        return list == null ? 0 : list.size();
+    }
+
+    // Les écouteurs sont lus au moment de la livraison : un abonnement fermé entre-temps ne reçoit plus rien
+    private void deliver(ChatEvent event) {
+        List<Consumer<ChatEvent>> list = listeners.get(event.annonceId());
+        if (list == null || list.isEmpty()) return;
+        dispatcher.execute(() -> {
+            for (Consumer<ChatEvent> l : list) {
+                try {
+                    l.accept(event);
+                } catch (Exception ex) {
+                    // Un écouteur défaillant ne doit pas priver les autres
+                    System.err.println("[ChatHub] listener " + event.type() + ": " + ex.getMessage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package services.sorties;
+
+import models.notifications.Notification;
+import models.notifications.NotificationType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Diffusion des notifications « Nouveau message » hors du chemin d'envoi.
+ *
+ * {@link #submit} ne fait qu'enregistrer le message (O(1), indépendant de la taille du groupe) ;
+ * un thread de fond lit les destinataires et écrit toutes les notifications d'une vague
+ * en un seul INSERT multi-lignes ({@code NotificationService.createOrRefreshNotifications}).
+ *
+ * Coalescence : la notification est unique par (destinataire, type, annonce), donc seul le
+ * dernier message d'une annonce compte — sauf pour son propre expéditeur, qui doit garder
+ * le dernier message d'un autre. On conserve donc au plus deux messages par annonce en attente.
+ */
+final class ChatNotificationDispatcher {
+
+    record Job(int annonceId, int senderId, int messageId, String senderName, String content, boolean poll) {}
+
+    /** Destinataires potentiels du chat (créateur + membres acceptés). */
+    interface ReceiverLoader {
+        Set<Integer> load(int annonceId) throws Exception;
+    }
+
+    // Dernier message de l'annonce + dernier message d'un autre expéditeur (pour l'auteur de `last`)
+    private record Pending(Job last, Job previousOtherSender) {}
+
+    private final ReceiverLoader receivers;
+    private final Consumer<List<Notification>> sink;
+    private final Executor worker;
+    private final Map<Integer, Pending> pending = new LinkedHashMap<>();
+    private boolean scheduled = false;
+
+    ChatNotificationDispatcher(ReceiverLoader receivers, Consumer<List<Notification>> sink, Executor worker) {
+        this.receivers = receivers;
+        this.sink = sink;
+        this.worker = worker;
+    }
+
+    static ChatNotificationDispatcher create(ReceiverLoader receivers, Consumer<List<Notification>> sink) {
+        return new ChatNotificationDispatcher(receivers, sink, Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "chat-notify");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    void submit(Job job) {
+        boolean start;
+        synchronized (pending) {
+            Pending p = pending.remove(job.annonceId());
+            if (p == null) {
+                p = new Pending(job, null);
+            } else if (p.last().senderId() != job.senderId()) {
+                p = new Pending(job, p.last());
+            } else {
+                p = new Pending(job, p.previousOtherSender());
+            }
+            pending.put(job.annonceId(), p);
+            start = !scheduled;
+            scheduled = true;
+        }
+        if (start) worker.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            List<Pending> wave;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+                wave = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            List<Notification> batch = new ArrayList<>();
+            for (Pending p : wave) {
+                try {
+                    batch.addAll(notificationsFor(p, receivers.load(p.last().annonceId())));
+                } catch (Exception ex) {
+                    System.err.println("[ChatNotify] destinataires " + p.last().annonceId() + ": " + ex.getMessage());
+                }
+            }
+            try {
+                // Tolérant : une erreur de notif ne remet pas en cause les messages
+                if (!batch.isEmpty()) sink.accept(batch);
+            } catch (Exception ex) {
+                System.err.println("[ChatNotify] écriture: " + ex.getMessage());
+            }
+        }
+    }
+
+    /** Une notification par destinataire : le dernier message qu'il n'a pas envoyé lui-même. */
+    private static List<Notification> notificationsFor(Pending p, Set<Integer> members) {
+        Map<Integer, Notification> byReceiver = new LinkedHashMap<>();
+        for (Job job : new Job[]{p.previousOtherSender(), p.last()}) {
+            if (job == null) continue;
+            for (int rid : members) {
+                if (rid == job.senderId()) continue;
+                byReceiver.put(rid, build(job, rid));
+            }
+        }
+        return new ArrayList<>(byReceiver.values());
+    }
+
+    private static Notification build(Job job, int receiverId) {
+        String name = job.senderName() == null || job.senderName().isBlank()
+                ? "Utilisateur #" + job.senderId()
+                : job.senderName().trim();
+        String body = job.poll()
+                ? name + " a partagé un sondage: " + excerpt(job.content(), 80)
+                : name + " : " + excerpt(job.content(), 90);
+
+        Notification n = new Notification();
+        n.setReceiverId(receiverId);
+        n.setSenderId(job.senderId());
+        n.setType(NotificationType.CHAT_MESSAGE);
+        n.setTitle("Nouveau message");
+        n.setBody(body);
+        n.setEntityType("chat");
+        n.setEntityId(job.annonceId());
+        n.setMetadataJson("{\"sortieId\":" + job.annonceId() + ",\"chatMessageId\":" + job.messageId() + "}");
+        return n;
+    }
+
+    private static String excerpt(String s, int max) {
+        String t = (s == null ? "" : s).replaceAll("\\s+", " ").trim();
+        if (t.length() <= max) return t;
+        return t.substring(0, Math.max(0, max - 1)).trim() + "…";
+    }
+}
@@ -0,0 +1,100 @@
+package services.sorties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tampon des écritures « lu jusqu'à » du chat.
+ *
+ * Chaque défilement ou message reçu produisait un upsert sur chat_read_state ; ici on ne garde
+ * en mémoire que le plus grand id lu par (annonce, utilisateur) — l'état en base ne fait que
+ * croître, les valeurs intermédiaires sont inutiles — et on écrit le tout en un lot toutes les
+ * {@value #FLUSH_INTERVAL_MS} ms, à la fermeture de la fenêtre ({@link #flushSoon}) et à l'arrêt
+ * de la JVM (hook d'arrêt).
+ *
+ * Un lot en échec est réintégré au tampon et retenté au tick suivant.
+ */
+final class ChatReadStateBuffer {
+
+    static final long FLUSH_INTERVAL_MS = 2_000;
+
+    record ReadKey(int annonceId, int userId) {}
+
+    private final ConcurrentHashMap<ReadKey, Integer> pending = new ConcurrentHashMap<>();
+    private final Consumer<Map<ReadKey, Integer>> writer;
+    private final ScheduledExecutorService scheduler;
+
+    ChatReadStateBuffer(Consumer<Map<ReadKey, Integer>> writer, ScheduledExecutorService scheduler) {
+        this.writer = writer;
+        this.scheduler = scheduler;
+    }
+
+    /** Tampon de production : tick périodique sur un thread démon + vidage à l'arrêt de l'application. */
+    static ChatReadStateBuffer create(Consumer<Map<ReadKey, Integer>> writer) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "chat-read-state");
+            t.setDaemon(true);
+            return t;
+        });
+        ChatReadStateBuffer buffer = new ChatReadStateBuffer(writer, scheduler);
+        scheduler.scheduleWithFixedDelay(buffer::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(buffer::flushSafely, "chat-read-state-shutdown"));
+        return buffer;
+    }
+
+    void record(int annonceId, int userId, int messageId) {
+        if (messageId <= 0) return;
+        pending.merge(new ReadKey(annonceId, userId), messageId, Math::max);
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /** Vidage asynchrone (fermeture de fenêtre) : ne bloque pas le thread appelant. */
+    void flushSoon() {
+        if (pending.isEmpty()) return;
+        try {
+            scheduler.execute(this::flushSafely);
+        } catch (Exception ex) {
+            flushSafely(); // ordonnanceur arrêté
+        }
+    }
+
+    /**
+     * Écrit tout ce qui est en attente, en un appel au writer.
+     * Synchronisé : le tick, un vidage demandé et le hook d'arrêt ne se chevauchent pas.
+     *
+     * @throws RuntimeException si l'écriture échoue (le lot est alors remis en attente)
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) return;
+        Map<ReadKey, Integer> batch = new HashMap<>();
+        for (ReadKey key : pending.keySet()) {
+            // remove() atomique : un record concurrent après ce point reste pour le lot suivant
+            Integer v = pending.remove(key);
+            if (v != null) batch.put(key, v);
+        }
+        if (batch.isEmpty()) return;
+        try {
+            writer.accept(batch);
+        } catch (RuntimeException ex) {
+            batch.forEach((k, v) -> pending.merge(k, v, Math::max));
+            throw ex;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            // Une exception ne doit pas annuler les ticks suivants
+            System.err.println("[ChatReadState] Échec d'écriture: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package services.sorties;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import models.sorties.ChatMessage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntFunction;
+
+/**
+ * Relais TCP local entre les clients desktop (une ligne JSON par événement).
+ *
+ * Le premier processus qui réussit à écouter sur {@code 127.0.0.1:port} devient le relais :
+ * il rediffuse chaque ligne reçue aux autres connexions. Les suivants s'y connectent en client.
+ * Si le relais disparaît, chacun retente (écoute puis connexion) avec un délai croissant ;
+ * à chaque (re)connexion, {@link ChatHub#resyncAll()} déclenche un unique rattrapage en base.
+ *
+ * N'importe quel processus local peut ouvrir le port : chaque connexion commence donc par
+ * un défi-réponse HMAC-SHA256 sur un secret propre à l'installation
+ * ({@code ~/.fintokhrej/chat-relay.key}, créé au premier lancement, lisible du seul
+ * propriétaire). Une trame ne transporte que des identifiants ; le message annoncé est
+ * relu en base par son id, jamais recopié depuis la ligne reçue.
+ *
+ * Port : variable d'environnement {@code CHAT_RELAY_PORT} ({@value #DEFAULT_PORT} par défaut,
+ * {@code 0} désactive le relais — le hub reste alors purement local).
+ */
+final class ChatRelay {
+
+    static final int DEFAULT_PORT = 47310;
+    private static final long MIN_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5_000;
+    private static final int NONCE_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ChatHub hub;
+    private final int port;
+    private final byte[] secret;
+    private final IntFunction<ChatMessage> messageLoader;
+    private final List<PrintWriter> peers = new CopyOnWriteArrayList<>();
+    private volatile boolean started = false;
+
+    ChatRelay(ChatHub hub, int port, byte[] secret, IntFunction<ChatMessage> messageLoader) {
+        this.hub = hub;
+        this.port = port;
+        this.secret = secret.clone();
+        this.messageLoader = messageLoader;
+    }
+
+    static ChatRelay fromEnvironment(ChatHub hub) {
+        int port = DEFAULT_PORT;
+        String env = System.getenv("CHAT_RELAY_PORT");
+        if (env != null && !env.isBlank()) {
+            try {
+                port = Integer.parseInt(env.trim());
+            } catch (NumberFormatException ex) {
+                System.err.println("[ChatRelay] CHAT_RELAY_PORT invalide : " + env);
+            }
+        }
+        if (port <= 0) return null;
+        byte[] secret;
+        try {
+            secret = loadSecret(Paths.get(System.getProperty("user.home"), ".fintokhrej", "chat-relay.key"));
+        } catch (IOException ex) {
+            // Sans secret, pas de relais : chaque client se contente du rattrapage périodique
+            System.err.println("[ChatRelay] secret illisible, relais désactivé : " + ex.getMessage());
+            return null;
+        }
+        // ChatService est créé à la demande : il dépend lui-même de ChatHub.getInstance()
+        return new ChatRelay(hub, port, secret, id -> new ChatService().getMessageById(id));
+    }
+
+    /** Lit le secret de l'installation, ou le crée (32 octets aléatoires, propriétaire seul). */
+    static byte[] loadSecret(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            byte[] fresh = new byte[32];
+            RANDOM.nextBytes(fresh);
+            Path tmp = file.getParent().getFileSystem().supportedFileAttributeViews().contains("posix")
+                    ? Files.createTempFile(file.getParent(), "chat-relay", ".tmp",
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                    : Files.createTempFile(file.getParent(), "chat-relay", ".tmp");
+            try {
+                Files.writeString(tmp, HexFormat.of().formatHex(fresh), StandardCharsets.US_ASCII);
+                Files.move(tmp, file);
+            } catch (FileAlreadyExistsException raced) {
+                // Un autre client l'a créé entre-temps : on garde le sien
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        String hex = Files.readString(file, StandardCharsets.US_ASCII).trim();
+        try {
+            byte[] secret = HexFormat.of().parseHex(hex);
+            if (secret.length < 16) throw new IOException("secret trop court : " + file);
+            return secret;
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("secret invalide : " + file, ex);
+        }
+    }
+
+    /** Démarre la boucle de connexion au premier abonnement (idempotent). */
+    void start() {
+        if (started) return;
+        synchronized (this) {
+            if (started) return;
+            started = true;
+        }
+        Thread t = new Thread(this::runLoop, "chat-relay");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void send(ChatHub.ChatEvent event) {
+        if (peers.isEmpty()) return;
+        String line = encode(event);
+        for (PrintWriter w : peers) {
+            synchronized (w) {
+                w.println(line);
+                if (w.checkError()) peers.remove(w);
+            }
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Connexion
+    // ─────────────────────────────────────────────────────────────
+
+    private void runLoop() {
+        long backoff = MIN_BACKOFF_MS;
+        while (true) {
+            try (ServerSocket server = new ServerSocket()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                // Ce qui a pu être publié pendant la connexion est rattrapé
+                hub.resyncAll();
+                backoff = MIN_BACKOFF_MS;
+                serve(server);
+            } catch (IOException bindFailed) {
+                // Port déjà pris : un autre client est le relais
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                    // Un pair refusé (port squatté) ne remet pas le délai à zéro
+                    if (readPeer(socket, false, hub::resyncAll)) backoff = MIN_BACKOFF_MS;
+                } catch (IOException ignored) {
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+        }
+    }
+
+    private void serve(ServerSocket server) throws IOException {
+        while (!server.isClosed()) {
+            Socket socket = server.accept();
+            Thread t = new Thread(() -> {
+                try (socket) {
+                    readPeer(socket, true, () -> { });
+                } catch (IOException ignored) {
+                }
+            }, "chat-relay-peer");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Authentifie le pair puis lit ses lignes jusqu'à la coupure ; le relais rediffuse aux
+     * autres les trames valides. {@code onAuthenticated} est appelé une fois le pair admis.
+     *
+     * @return false si le pair a été refusé
+     */
+    private boolean readPeer(Socket socket, boolean server, Runnable onAuthenticated) throws IOException {
+        Writer raw = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        PrintWriter out = new PrintWriter(raw, true);
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            if (!handshake(in, out, secret, server)) {
+                System.err.println("[ChatRelay] pair refusé (secret différent)");
+                return false;
+            }
+            socket.setSoTimeout(0);
+            peers.add(out);
+            onAuthenticated.run();
+            String line;
+            while ((line = in.readLine()) != null) {
+                ChatHub.ChatEvent event = resolve(decode(line));
+                if (event == null) continue;
+                hub.deliverRemote(event);
+                if (server) {
+                    // Réencodée : seuls les identifiants vérifiés repartent
+                    String clean = encode(event);
+                    for (PrintWriter w : peers) {
+                        if (w == out) continue;
+                        synchronized (w) {
+                            w.println(clean);
+                        }
+                    }
+                }
+            }
+            return true;
+        } finally {
+            peers.remove(out);
+        }
+    }
+
+    /**
+     * Trame reçue → événement livrable. Un MESSAGE est relu en base : inconnu, ou rattaché
+     * à une autre annonce que celle annoncée, il est ignoré (le rattrapage le reprendra s'il existe).
+     */
+    ChatHub.ChatEvent resolve(ChatHub.ChatEvent frame) {
+        if (frame == null || frame.type() != ChatHub.Type.MESSAGE) return frame;
+        ChatMessage m;
+        try {
+            m = messageLoader.apply(frame.refId());
+        } catch (RuntimeException ex) {
+            System.err.println("[ChatRelay] relecture message " + frame.refId() + " : " + ex.getMessage());
+            return null;
+        }
+        if (m == null || m.getAnnonceId() != frame.annonceId()) return null;
+        return ChatHub.ChatEvent.message(m);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Authentification
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Défi-réponse mutuel : chacun envoie un nonce, puis le HMAC du nonce adverse préfixé
+     * de son rôle (un pair ne peut pas renvoyer la réponse qu'on vient de lui donner).
+     */
+    static boolean handshake(BufferedReader in, PrintWriter out, byte[] secret, boolean server) throws IOException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        String mine = HexFormat.of().formatHex(nonce);
+        out.println("HELLO " + mine);
+        String hello = in.readLine();
+        if (hello == null || !hello.startsWith("HELLO ")) return false;
+        String theirs = hello.substring(6).trim();
+        if (theirs.equals(mine)) return false;
+
+        out.println("AUTH " + proof(secret, server ? "server" : "client", theirs));
+        String auth = in.readLine();
+        if (auth == null || !auth.startsWith("AUTH ")) return false;
+        String expected = proof(secret, server ? "client" : "server", mine);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                auth.substring(5).trim().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String proof(byte[] secret, String role, String nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal((role + ":" + nonce).getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 indisponible", ex);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Format
+    // ─────────────────────────────────────────────────────────────
+
+    /** Une ligne par événement : type, annonce et identifiant, rien du contenu. */
+    static String encode(ChatHub.ChatEvent e) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", e.type().name());
+        o.addProperty("annonceId", e.annonceId());
+        o.addProperty("refId", e.refId());
+        return o.toString();
+    }
+
+    /** Trame brute ; pour un MESSAGE, {@code refId} est l'id à relire ({@link #resolve}). */
+    static ChatHub.ChatEvent decode(String line) {
+        try {
+            JsonObject o = JsonParser.parseString(line).getAsJsonObject();
+            ChatHub.Type type = ChatHub.Type.valueOf(o.get("type").getAsString());
+            return ChatHub.ChatEvent.of(type, o.get("annonceId").getAsInt(), o.get("refId").getAsInt());
+        } catch (RuntimeException ex) {
+            System.err.println("[ChatRelay] ligne ignorée : " + ex.getMessage());
+            return null;
+        }
+    }
+}
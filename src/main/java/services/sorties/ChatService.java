@@ -1,15 +1,20 @@
 package services.sorties;
 
 import models.sorties.ChatMessage;
-import models.notifications.Notification;
-import models.notifications.NotificationType;
 import services.notifications.NotificationService;
+import services.users.UserDirectory;
 import utils.Mydb;
 
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -19,11 +24,19 @@ import java.util.Set;
  *   chat_message (id, annonce_id, sender_id, content, sent_at)
  *
  * Accès autorisé : créateur de l'annonce + participants CONFIRMEE/ACCEPTEE.
+ * Non lus : compteur par (annonce, utilisateur) dans chat_read_state, incrémenté à l'envoi
+ * et recalculé à la lecture — plus de COUNT(*) sur chat_message pour afficher un badge.
+ * Les curseurs de lecture sont tamponnés en mémoire et écrits par lots ({@link ChatReadStateBuffer}).
+ * Chaque message inséré est publié sur {@link ChatHub} (pas de polling côté fenêtres).
  */
 public class ChatService {
 
     private final Connection cnx = Mydb.getInstance().getConnection();
-    private final NotificationService notificationService = new NotificationService();
+    private final ChatHub hub = ChatHub.getInstance();
+    private final UserDirectory users = UserDirectory.getInstance();
+
+    /** Couples (annonce, utilisateur) par upsert multi-lignes de chat_read_state. */
+    static final int READ_STATE_BATCH_ROWS = 200;
 
     // ──────────────────────────────────────────────────────────────────
     //  Init table
@@ -42,6 +55,7 @@ public class ChatService {
                     sent_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
                     PRIMARY KEY (id),
                     KEY idx_chat_annonce (annonce_id, sent_at),
+                    KEY idx_chat_annonce_msg (annonce_id, id),
                     KEY idx_chat_poll (poll_id)
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
                 """;
@@ -51,6 +65,7 @@ public class ChatService {
                     annonce_id            INT       NOT NULL,
                     user_id               INT       NOT NULL,
                     last_read_message_id  INT       NOT NULL DEFAULT 0,
+                    unread_count          INT       NOT NULL DEFAULT 0,
                     updated_at            TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                     PRIMARY KEY (annonce_id, user_id),
                     KEY idx_chat_read_user (user_id)
@@ -69,6 +84,20 @@ public class ChatService {
                     "ALTER TABLE chat_message ADD COLUMN meta_json TEXT NULL AFTER poll_id");
             ensureIndex("chat_message", "idx_chat_poll",
                     "ALTER TABLE chat_message ADD KEY idx_chat_poll (poll_id)");
+            // Pagination par curseur (annonce_id, id) : plus de tri filesort sur sent_at
+            ensureIndex("chat_message", "idx_chat_annonce_msg",
+                    "ALTER TABLE chat_message ADD KEY idx_chat_annonce_msg (annonce_id, id)");
+            if (ensureColumn("chat_read_state", "unread_count",
+                    "ALTER TABLE chat_read_state ADD COLUMN unread_count INT NOT NULL DEFAULT 0 AFTER last_read_message_id")) {
+                // Amorçage unique des compteurs des lignes existantes
+                st.executeUpdate("""
+                        UPDATE chat_read_state rs
+                        SET rs.unread_count = (
+                            SELECT COUNT(*) FROM chat_message cm
+                            WHERE cm.annonce_id = rs.annonce_id AND cm.id > rs.last_read_message_id AND cm.sender_id <> rs.user_id
+                        )
+                        """);
+            }
         } catch (SQLException e) {
             System.err.println("[ChatService] Schema init failed: " + e.getMessage());
         }
@@ -77,34 +106,94 @@ public class ChatService {
     /**
      * Nombre de messages non lus pour un utilisateur dans un chat.
      * Non lus = messages avec id > last_read_message_id et envoyés par quelqu'un d'autre.
+     * Lecture du compteur par clé primaire ; il est amorcé au premier appel pour ce couple.
      */
     public long getUnreadCount(int annonceId, int userId) {
         if (annonceId <= 0) throw new IllegalArgumentException("annonceId invalide");
         if (userId <= 0) throw new IllegalArgumentException("userId invalide");
+        return getUnreadCounts(userId, List.of(annonceId)).getOrDefault(annonceId, 0L);
+    }
 
-        int lastRead = 0;
-        String sqlRead = "SELECT last_read_message_id FROM chat_read_state WHERE annonce_id=? AND user_id=?";
-        try (PreparedStatement ps = cnx.prepareStatement(sqlRead)) {
-            ps.setInt(1, annonceId);
-            ps.setInt(2, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) lastRead = rs.getInt(1);
+    /**
+     * Non lus de l'utilisateur pour chacune des annonces demandées, en une requête
+     * (plus un INSERT d'amorçage pour les couples jamais vus). Les annonces à 0 sont présentes.
+     */
+    public Map<Integer, Long> getUnreadCounts(int userId, Collection<Integer> annonceIds) {
+        if (userId <= 0) throw new IllegalArgumentException("userId invalide");
+        Map<Integer, Long> out = new HashMap<>();
+        if (annonceIds == null || annonceIds.isEmpty()) return out;
+        List<Integer> ids = new ArrayList<>(new HashSet<>(annonceIds));
+        flushPendingReads();
+
+        try {
+            readCounters(userId, ids, out);
+            List<Integer> missing = new ArrayList<>();
+            for (Integer id : ids) if (!out.containsKey(id)) missing.add(id);
+            if (!missing.isEmpty()) {
+                seedCounters(userId, missing);
+                readCounters(userId, missing, out);
             }
-        } catch (SQLException ignored) {
+        } catch (SQLException e) {
+            System.err.println("[ChatService] getUnreadCounts: " + e.getMessage());
         }
+        for (Integer id : ids) out.putIfAbsent(id, 0L);
+        return out;
+    }
 
-        String sqlCount = "SELECT COUNT(*) FROM chat_message WHERE annonce_id=? AND id>? AND sender_id<>?";
-        try (PreparedStatement ps = cnx.prepareStatement(sqlCount)) {
-            ps.setInt(1, annonceId);
-            ps.setInt(2, lastRead);
-            ps.setInt(3, userId);
+    /** Toutes les conversations de l'utilisateur qui ont des non lus (annonce → nombre), en une requête. */
+    public Map<Integer, Long> getUnreadCounts(int userId) {
+        if (userId <= 0) throw new IllegalArgumentException("userId invalide");
+        Map<Integer, Long> out = new HashMap<>();
+        flushPendingReads();
+        String sql = "SELECT annonce_id, unread_count FROM chat_read_state WHERE user_id=? AND unread_count > 0";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, userId);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getLong(1);
+                while (rs.next()) out.put(rs.getInt(1), rs.getLong(2));
             }
         } catch (SQLException e) {
-            System.err.println("[ChatService] getUnreadCount: " + e.getMessage());
+            System.err.println("[ChatService] getUnreadCounts: " + e.getMessage());
+        }
+        return out;
+    }
+
+    private void readCounters(int userId, List<Integer> annonceIds, Map<Integer, Long> out) throws SQLException {
+        String sql = "SELECT annonce_id, unread_count FROM chat_read_state WHERE user_id=? AND annonce_id IN ("
+                + placeholders(annonceIds.size()) + ")";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            for (int i = 0; i < annonceIds.size(); i++) ps.setInt(i + 2, annonceIds.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.put(rs.getInt(1), Math.max(0L, rs.getLong(2)));
+            }
         }
-        return 0;
+    }
+
+    /**
+     * Crée le compteur des couples jamais vus, à partir de l'historique (une fois par couple).
+     * Ensuite seuls les envois l'incrémentent : un utilisateur sans ligne n'est pas compté.
+     */
+    private void seedCounters(int userId, List<Integer> annonceIds) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "INSERT IGNORE INTO chat_read_state (annonce_id, user_id, last_read_message_id, unread_count) VALUES ");
+        for (int i = 0; i < annonceIds.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(?, ?, 0, (SELECT COUNT(*) FROM chat_message WHERE annonce_id=? AND sender_id<>?))");
+        }
+        try (PreparedStatement ps = cnx.prepareStatement(sql.toString())) {
+            int k = 1;
+            for (Integer id : annonceIds) {
+                ps.setInt(k++, id);
+                ps.setInt(k++, userId);
+                ps.setInt(k++, id);
+                ps.setInt(k++, userId);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
     }
 
     public int getLatestMessageId(int annonceId) {
@@ -120,42 +209,125 @@ public class ChatService {
         return 0;
     }
 
+    /**
+     * Lu jusqu'à {@code messageId}. Appelé à chaque défilement / message reçu : l'écriture est
+     * tamponnée ({@link ChatReadStateBuffer}, seul le plus grand id compte) et faite en lot.
+     */
     public void markReadUpTo(int annonceId, int userId, int messageId) {
         if (annonceId <= 0) throw new IllegalArgumentException("annonceId invalide");
         if (userId <= 0) throw new IllegalArgumentException("userId invalide");
         if (messageId <= 0) return;
+        readState().record(annonceId, userId, messageId);
+    }
+
+    /** Demande l'écriture immédiate (en arrière-plan) des états de lecture en attente, p. ex. à la fermeture du chat. */
+    public void flushReadState() {
+        readState().flushSoon();
+    }
+
+    private static volatile ChatReadStateBuffer readState;
+
+    private static ChatReadStateBuffer readState() {
+        if (readState == null) {
+            synchronized (ChatService.class) {
+                if (readState == null) {
+                    readState = ChatReadStateBuffer.create(ChatService::writeReadStates);
+                }
+            }
+        }
+        return readState;
+    }
+
+    /** Lectures des compteurs : les états tamponnés sont d'abord écrits pour rester cohérent. */
+    private static void flushPendingReads() {
+        ChatReadStateBuffer b = readState;
+        if (b == null || b.isEmpty()) return;
+        try {
+            b.flush();
+        } catch (RuntimeException e) {
+            System.err.println("[ChatService] flushPendingReads: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Un upsert multi-lignes pour tout le lot : le compteur repart du nombre de messages d'autrui
+     * postérieurs au curseur (en général zéro, parcours de la seule fin d'index).
+     */
+    private static void writeReadStates(Map<ChatReadStateBuffer.ReadKey, Integer> batch) {
+        List<Map.Entry<ChatReadStateBuffer.ReadKey, Integer>> rows = new ArrayList<>(batch.entrySet());
+        for (int from = 0; from < rows.size(); from += READ_STATE_BATCH_ROWS) {
+            List<Map.Entry<ChatReadStateBuffer.ReadKey, Integer>> chunk =
+                    rows.subList(from, Math.min(rows.size(), from + READ_STATE_BATCH_ROWS));
+
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO chat_read_state (annonce_id, user_id, last_read_message_id, unread_count) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) sql.append(", ");
+                sql.append("(?, ?, ?, (SELECT COUNT(*) FROM chat_message WHERE annonce_id=? AND id>? AND sender_id<>?))");
+            }
+            // unread_count est affecté avant last_read_message_id : il compare encore l'ancienne valeur
+            sql.append("""
+
+                    ON DUPLICATE KEY UPDATE
+                        unread_count = IF(VALUES(last_read_message_id) >= last_read_message_id,
+                                          VALUES(unread_count), unread_count),
+                        last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id))
+                    """);
+
+            Connection c = Mydb.getInstance().getConnection();
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int k = 1;
+                for (Map.Entry<ChatReadStateBuffer.ReadKey, Integer> e : chunk) {
+                    int annonceId = e.getKey().annonceId();
+                    int userId = e.getKey().userId();
+                    ps.setInt(k++, annonceId);
+                    ps.setInt(k++, userId);
+                    ps.setInt(k++, e.getValue());
+                    ps.setInt(k++, annonceId);
+                    ps.setInt(k++, e.getValue());
+                    ps.setInt(k++, userId);
+                }
+                ps.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("ChatService.writeReadStates: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public void markAllRead(int annonceId, int userId) {
+        if (annonceId <= 0) throw new IllegalArgumentException("annonceId invalide");
+        if (userId <= 0) throw new IllegalArgumentException("userId invalide");
 
         String sql = """
-                INSERT INTO chat_read_state (annonce_id, user_id, last_read_message_id)
-                VALUES (?, ?, ?)
+                INSERT INTO chat_read_state (annonce_id, user_id, last_read_message_id, unread_count)
+                SELECT ?, ?, COALESCE(MAX(id), 0), 0 FROM chat_message WHERE annonce_id=?
                 ON DUPLICATE KEY UPDATE
-                    last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id))
+                    last_read_message_id = GREATEST(last_read_message_id, VALUES(last_read_message_id)),
+                    unread_count = 0
                 """;
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, annonceId);
             ps.setInt(2, userId);
-            ps.setInt(3, messageId);
+            ps.setInt(3, annonceId);
             ps.executeUpdate();
         } catch (SQLException ignored) {
         }
     }
 
-    public void markAllRead(int annonceId, int userId) {
-        int latest = getLatestMessageId(annonceId);
-        markReadUpTo(annonceId, userId, latest);
-    }
-
-    private void ensureColumn(String table, String column, String alterSql) {
+    /** @return true si la colonne vient d'être ajoutée. */
+    private boolean ensureColumn(String table, String column, String alterSql) {
         try {
             DatabaseMetaData meta = cnx.getMetaData();
             try (ResultSet rs = meta.getColumns(null, null, table, column)) {
-                if (rs.next()) return; // déjà présent
+                if (rs.next()) return false; // déjà présent
             }
             try (Statement st = cnx.createStatement()) {
                 st.execute(alterSql);
             }
+            return true;
         } catch (SQLException ignored) {
             // on reste tolérant : l'app doit continuer.
+            return false;
         }
     }
 
@@ -223,26 +395,14 @@ public class ChatService {
         if (content == null || content.trim().isEmpty())
             throw new IllegalArgumentException("Message vide");
 
-        String sql = "INSERT INTO chat_message (annonce_id, sender_id, content, message_type) VALUES (?,?,?, 'TEXT')";
-        try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, annonceId);
-            ps.setInt(2, senderId);
-            ps.setString(3, content.trim());
-            ps.executeUpdate();
-
-            ResultSet keys = ps.getGeneratedKeys();
-            if (keys.next()) {
-                int messageId = keys.getInt(1);
-                ChatMessage msg = getById(messageId);
-                if (msg != null) {
-                    createChatMessageNotifications(annonceId, senderId, messageId, msg.getSenderName(), msg.getContent(), false);
-                }
-                return msg;
-            }
+        try {
+            ChatMessage msg = insertMessage(annonceId, senderId, content.trim(), "TEXT", null);
+            notifyMembers(msg, false);
+            hub.publish(ChatHub.ChatEvent.message(msg));
+            return msg;
         } catch (SQLException e) {
             throw new RuntimeException("ChatService.send: " + e.getMessage(), e);
         }
-        throw new RuntimeException("ChatService.send: no generated key");
     }
 
     /**
@@ -253,27 +413,14 @@ public class ChatService {
         String q = (question == null) ? "" : question.trim();
         if (q.isEmpty()) q = "Sondage";
 
-        String sql = "INSERT INTO chat_message (annonce_id, sender_id, content, message_type, poll_id) VALUES (?,?,?, 'POLL', ?)";
-        try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, annonceId);
-            ps.setInt(2, senderId);
-            ps.setString(3, q);
-            ps.setInt(4, pollId);
-            ps.executeUpdate();
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    int messageId = keys.getInt(1);
-                    ChatMessage msg = getById(messageId);
-                    if (msg != null) {
-                        createChatMessageNotifications(annonceId, senderId, messageId, msg.getSenderName(), msg.getContent(), true);
-                    }
-                    return msg;
-                }
-            }
+        try {
+            ChatMessage msg = insertMessage(annonceId, senderId, q, "POLL", pollId);
+            notifyMembers(msg, true);
+            hub.publish(ChatHub.ChatEvent.message(msg));
+            return msg;
         } catch (SQLException e) {
             throw new RuntimeException("ChatService.sendPoll: " + e.getMessage(), e);
         }
-        throw new RuntimeException("ChatService.sendPoll: no generated key");
     }
 
 
@@ -285,164 +432,183 @@ public class ChatService {
         String c = (content == null) ? "" : content.trim();
         if (c.isEmpty()) throw new IllegalArgumentException("Message vide");
 
-        String sql = "INSERT INTO chat_message (annonce_id, sender_id, content, message_type) VALUES (?,?,?, 'SYSTEM')";
+        try {
+            ChatMessage msg = insertMessage(annonceId, senderId, c, "SYSTEM", null);
+            hub.publish(ChatHub.ChatEvent.message(msg));
+            return msg;
+        } catch (SQLException e) {
+            throw new RuntimeException("ChatService.sendSystem: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * INSERT puis message reconstruit en mémoire (pas de relecture) :
+     * sent_at est fixé ici à la seconde, comme le stocke la colonne TIMESTAMP.
+     */
+    private ChatMessage insertMessage(int annonceId, int senderId, String content, String type, Integer pollId) throws SQLException {
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        String sql = "INSERT INTO chat_message (annonce_id, sender_id, content, message_type, poll_id, sent_at) VALUES (?,?,?,?,?,?)";
         try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, annonceId);
             ps.setInt(2, senderId);
-            ps.setString(3, c);
+            ps.setString(3, content);
+            ps.setString(4, type);
+            if (pollId == null) ps.setNull(5, Types.INTEGER);
+            else ps.setInt(5, pollId);
+            ps.setTimestamp(6, Timestamp.valueOf(sentAt));
             ps.executeUpdate();
             try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    int messageId = keys.getInt(1);
-                    return getById(messageId);
-                }
+                if (!keys.next()) throw new SQLException("no generated key");
+                incrementUnread(annonceId, senderId);
+                ChatMessage m = new ChatMessage(annonceId, senderId, content);
+                m.setId(keys.getInt(1));
+                m.setMessageType(type);
+                m.setPollId(pollId);
+                m.setSentAt(sentAt);
+                m.setSenderName(users.displayName(senderId));
+                return m;
             }
+        }
+    }
+
+    /** +1 non lu pour chaque compteur existant de l'annonce, sauf celui de l'expéditeur (préfixe de clé primaire). */
+    private void incrementUnread(int annonceId, int senderId) {
+        String sql = "UPDATE chat_read_state SET unread_count = unread_count + 1 WHERE annonce_id=? AND user_id<>?";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, annonceId);
+            ps.setInt(2, senderId);
+            ps.executeUpdate();
         } catch (SQLException e) {
-            throw new RuntimeException("ChatService.sendSystem: " + e.getMessage(), e);
+            System.err.println("[ChatService] incrementUnread: " + e.getMessage());
         }
-        throw new RuntimeException("ChatService.sendSystem: no generated key");
     }
 
     // ──────────────────────────────────────────────────────────────────
-    //  Notifications
+    //  Notifications (hors du chemin d'envoi, voir ChatNotificationDispatcher)
     // ──────────────────────────────────────────────────────────────────
 
-    private void createChatMessageNotifications(int annonceId, int senderId, int messageId, String senderName, String content, boolean isPoll) {
-        try {
-            Set<Integer> receivers = listChatReceivers(annonceId);
-            receivers.remove(senderId);
-            if (receivers.isEmpty()) return;
-
-            String name = safe(senderName).isBlank() ? resolveUserDisplayName(senderId) : safe(senderName).trim();
-            if (name.isBlank()) name = "Utilisateur #" + senderId;
-
-            String title = "Nouveau message";
-            String body;
-            if (isPoll) {
-                body = name + " a partagé un sondage: " + excerpt(safe(content), 80);
-            } else {
-                body = name + " : " + excerpt(safe(content), 90);
-            }
+    private static volatile ChatNotificationDispatcher notifier;
 
-            String meta = "{\"sortieId\":" + annonceId + ",\"chatMessageId\":" + messageId + "}";
-
-            for (int rid : receivers) {
-                Notification n = new Notification();
-                n.setReceiverId(rid);
-                n.setSenderId(senderId);
-                n.setType(NotificationType.CHAT_MESSAGE);
-                n.setTitle(title);
-                n.setBody(body);
-                n.setEntityType("chat");
-                n.setEntityId(annonceId);
-                n.setMetadataJson(meta);
-
-                notificationService.createOrRefreshNotification(n);
+    private static ChatNotificationDispatcher notifier() {
+        if (notifier == null) {
+            synchronized (ChatService.class) {
+                if (notifier == null) {
+                    NotificationService notifications = new NotificationService();
+                    notifier = ChatNotificationDispatcher.create(
+                            ChatService::listChatReceivers,
+                            notifications::createOrRefreshNotifications);
+                }
             }
-        } catch (Exception ignored) {
-            // Tolérant: une erreur de notif ne doit pas bloquer l'envoi du message.
         }
+        return notifier;
     }
 
-    private Set<Integer> listChatReceivers(int annonceId) {
-        Set<Integer> out = new HashSet<>();
-
-        String sqlOwner = "SELECT user_id FROM annonce_sortie WHERE id=?";
-        try (PreparedStatement ps = cnx.prepareStatement(sqlOwner)) {
-            ps.setInt(1, annonceId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    int oid = rs.getInt(1);
-                    if (!rs.wasNull() && oid > 0) out.add(oid);
-                }
-            }
-        } catch (SQLException ignored) {
-        }
+    private void notifyMembers(ChatMessage msg, boolean isPoll) {
+        notifier().submit(new ChatNotificationDispatcher.Job(
+                msg.getAnnonceId(), msg.getSenderId(), msg.getId(), msg.getSenderName(), msg.getContent(), isPoll));
+    }
 
-        String sqlMembers = """
+    /** Créateur + participants acceptés, en une requête (statut comparé tel quel : colonne indexable). */
+    private static Set<Integer> listChatReceivers(int annonceId) throws SQLException {
+        String sql = """
+                SELECT user_id FROM annonce_sortie WHERE id=?
+                UNION
                 SELECT user_id FROM participation_annonce
-                WHERE annonce_id=?
-                  AND (
-                           UPPER(statut) LIKE 'CONFIRM%'
-                        OR UPPER(statut) LIKE 'ACCEP%'
-                  )
+                WHERE annonce_id=? AND statut IN ('CONFIRMEE','ACCEPTEE')
                 """;
-        try (PreparedStatement ps = cnx.prepareStatement(sqlMembers)) {
+        Set<Integer> out = new HashSet<>();
+        try (PreparedStatement ps = Mydb.getInstance().getConnection().prepareStatement(sql)) {
             ps.setInt(1, annonceId);
+            ps.setInt(2, annonceId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     int uid = rs.getInt(1);
                     if (!rs.wasNull() && uid > 0) out.add(uid);
                 }
             }
-        } catch (SQLException ignored) {
         }
-
         return out;
     }
 
-    private String resolveUserDisplayName(int userId) {
-        if (userId <= 0) return "";
-        String sql = "SELECT prenom, nom FROM user WHERE id=?";
+    // ──────────────────────────────────────────────────────────────────
+    //  Charger les messages d'une annonce (avec nom expéditeur)
+    // ──────────────────────────────────────────────────────────────────
+
+    public List<ChatMessage> getMessages(int annonceId) {
+        String sql = """
+                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at
+                FROM chat_message cm
+                WHERE cm.annonce_id = ?
+                ORDER BY cm.id ASC
+                """;
+        List<ChatMessage> list = new ArrayList<>();
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
-            ps.setInt(1, userId);
+            ps.setInt(1, annonceId);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    String prenom = safe(rs.getString(1)).trim();
-                    String nom = safe(rs.getString(2)).trim();
-                    String full = (prenom + " " + nom).trim();
-                    return full;
-                }
+                while (rs.next()) list.add(readMessage(rs));
             }
-        } catch (SQLException ignored) {
+        } catch (SQLException e) {
+            throw new RuntimeException("ChatService.getMessages: " + e.getMessage(), e);
         }
-        return "";
+        return withSenderNames(list);
     }
 
-    private static String excerpt(String s, int max) {
-        String t = safe(s).replaceAll("\\s+", " ").trim();
-        if (t.length() <= max) return t;
-        return t.substring(0, Math.max(0, max - 1)).trim() + "…";
-    }
-
-    private static String safe(String s) { return s == null ? "" : s; }
-
     // ──────────────────────────────────────────────────────────────────
-    //  Charger les messages d'une annonce (avec nom expéditeur)
+    //  Historique paginé (curseur = id, du plus récent au plus ancien)
     // ──────────────────────────────────────────────────────────────────
 
-    public List<ChatMessage> getMessages(int annonceId) {
+    /**
+     * Une page d'historique, en ordre chronologique.
+     * {@code oldestId} sert de curseur pour {@link #getPageBefore} ; {@code hasMore} = il reste plus ancien.
+     */
+    public record MessagePage(List<ChatMessage> messages, int oldestId, boolean hasMore) {}
+
+    /** Les {@code limit} derniers messages de l'annonce. */
+    public MessagePage getLatestPage(int annonceId, int limit) {
+        return getPageBefore(annonceId, Integer.MAX_VALUE, limit);
+    }
+
+    /** Les {@code limit} messages qui précèdent {@code beforeId} (exclu). */
+    public MessagePage getPageBefore(int annonceId, int beforeId, int limit) {
+        int size = Math.max(1, limit);
         String sql = """
-                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at,
-                       CONCAT(COALESCE(u.prenom,''), ' ', COALESCE(u.nom,'')) AS sender_name
+                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at
                 FROM chat_message cm
-                LEFT JOIN user u ON u.id = cm.sender_id
-                WHERE cm.annonce_id = ?
-                ORDER BY cm.sent_at ASC
+                WHERE cm.annonce_id = ? AND cm.id < ?
+                ORDER BY cm.id DESC
+                LIMIT ?
                 """;
         List<ChatMessage> list = new ArrayList<>();
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, annonceId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                ChatMessage m = new ChatMessage();
-                m.setId(rs.getInt("id"));
-                m.setAnnonceId(rs.getInt("annonce_id"));
-                m.setSenderId(rs.getInt("sender_id"));
-                m.setContent(rs.getString("content"));
-                m.setMessageType(rs.getString("message_type"));
-                int pid = rs.getInt("poll_id");
-                m.setPollId(rs.wasNull() ? null : pid);
-                m.setMetaJson(rs.getString("meta_json"));
-                m.setSentAt(rs.getTimestamp("sent_at").toLocalDateTime());
-                String name = rs.getString("sender_name");
-                m.setSenderName(name == null || name.isBlank() ? "Utilisateur #" + m.getSenderId() : name.trim());
-                list.add(m);
+            ps.setInt(2, beforeId);
+            // Une ligne de plus pour savoir s'il reste une page
+            ps.setInt(3, size + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readMessage(rs));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("ChatService.getMessages: " + e.getMessage(), e);
+            throw new RuntimeException("ChatService.getPageBefore: " + e.getMessage(), e);
         }
-        return list;
+        boolean hasMore = list.size() > size;
+        if (hasMore) list = new ArrayList<>(list.subList(0, size));
+        Collections.reverse(list);
+        int oldest = list.isEmpty() ? beforeId : list.get(0).getId();
+        return new MessagePage(withSenderNames(list), oldest, hasMore);
+    }
+
+    /** Nombre d'expéditeurs distincts du chat (indépendant des pages chargées). */
+    public int countSenders(int annonceId) {
+        String sql = "SELECT COUNT(DISTINCT sender_id) FROM chat_message WHERE annonce_id=?";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, annonceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("[ChatService] countSenders: " + e.getMessage());
+        }
+        return 0;
     }
 
     // ──────────────────────────────────────────────────────────────────
@@ -451,72 +617,72 @@ public class ChatService {
 
     public List<ChatMessage> getMessagesAfter(int annonceId, int lastId) {
         String sql = """
-                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at,
-                       CONCAT(COALESCE(u.prenom,''), ' ', COALESCE(u.nom,'')) AS sender_name
+                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at
                 FROM chat_message cm
-                LEFT JOIN user u ON u.id = cm.sender_id
                 WHERE cm.annonce_id = ? AND cm.id > ?
-                ORDER BY cm.sent_at ASC
+                ORDER BY cm.id ASC
                 """;
         List<ChatMessage> list = new ArrayList<>();
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, annonceId);
             ps.setInt(2, lastId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                ChatMessage m = new ChatMessage();
-                m.setId(rs.getInt("id"));
-                m.setAnnonceId(rs.getInt("annonce_id"));
-                m.setSenderId(rs.getInt("sender_id"));
-                m.setContent(rs.getString("content"));
-                m.setMessageType(rs.getString("message_type"));
-                int pid = rs.getInt("poll_id");
-                m.setPollId(rs.wasNull() ? null : pid);
-                m.setMetaJson(rs.getString("meta_json"));
-                m.setSentAt(rs.getTimestamp("sent_at").toLocalDateTime());
-                String name = rs.getString("sender_name");
-                m.setSenderName(name == null || name.isBlank() ? "Utilisateur #" + m.getSenderId() : name.trim());
-                list.add(m);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(readMessage(rs));
             }
         } catch (SQLException e) {
             System.err.println("[ChatService] getMessagesAfter: " + e.getMessage());
         }
-        return list;
+        return withSenderNames(list);
     }
 
-    // ──────────────────────────────────────────────────────────────────
-    //  Helpers
-    // ──────────────────────────────────────────────────────────────────
-
-    private ChatMessage getById(int id) {
+    /** Un message par son id (null s'il n'existe pas) ; sert au relais à relire ce qu'il annonce. */
+    public ChatMessage getMessageById(int messageId) {
         String sql = """
-                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at,
-                       CONCAT(COALESCE(u.prenom,''), ' ', COALESCE(u.nom,'')) AS sender_name
+                SELECT cm.id, cm.annonce_id, cm.sender_id, cm.content, cm.message_type, cm.poll_id, cm.meta_json, cm.sent_at
                 FROM chat_message cm
-                LEFT JOIN user u ON u.id = cm.sender_id
                 WHERE cm.id = ?
                 """;
+        List<ChatMessage> list = new ArrayList<>();
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                ChatMessage m = new ChatMessage();
-                m.setId(rs.getInt("id"));
-                m.setAnnonceId(rs.getInt("annonce_id"));
-                m.setSenderId(rs.getInt("sender_id"));
-                m.setContent(rs.getString("content"));
-                m.setMessageType(rs.getString("message_type"));
-                int pid = rs.getInt("poll_id");
-                m.setPollId(rs.wasNull() ? null : pid);
-                m.setMetaJson(rs.getString("meta_json"));
-                m.setSentAt(rs.getTimestamp("sent_at").toLocalDateTime());
-                String name = rs.getString("sender_name");
-                m.setSenderName(name == null || name.isBlank() ? "Utilisateur #" + m.getSenderId() : name.trim());
-                return m;
+            ps.setInt(1, messageId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) list.add(readMessage(rs));
             }
         } catch (SQLException e) {
-            System.err.println("[ChatService] getById: " + e.getMessage());
+            throw new RuntimeException("ChatService.getMessageById: " + e.getMessage(), e);
         }
-        return null;
+        List<ChatMessage> named = withSenderNames(list);
+        return named.isEmpty() ? null : named.get(0);
+    }
+
+    // ──────────────────────────────────────────────────────────────────
+    //  Helpers
+    // ──────────────────────────────────────────────────────────────────
+
+    private static ChatMessage readMessage(ResultSet rs) throws SQLException {
+        ChatMessage m = new ChatMessage();
+        m.setId(rs.getInt("id"));
+        m.setAnnonceId(rs.getInt("annonce_id"));
+        m.setSenderId(rs.getInt("sender_id"));
+        m.setContent(rs.getString("content"));
+        m.setMessageType(rs.getString("message_type"));
+        int pid = rs.getInt("poll_id");
+        m.setPollId(rs.wasNull() ? null : pid);
+        m.setMetaJson(rs.getString("meta_json"));
+        m.setSentAt(rs.getTimestamp("sent_at").toLocalDateTime());
+        return m;
+    }
+
+    /** Noms des expéditeurs via l'annuaire partagé (un seul aller-retour pour toute la liste). */
+    private List<ChatMessage> withSenderNames(List<ChatMessage> list) {
+        if (list.isEmpty()) return list;
+        Set<Integer> ids = new HashSet<>();
+        for (ChatMessage m : list) ids.add(m.getSenderId());
+        Map<Integer, UserDirectory.Entry> names = users.getAll(ids);
+        for (ChatMessage m : list) {
+            UserDirectory.Entry e = names.get(m.getSenderId());
+            m.setSenderName(e == null ? "Utilisateur #" + m.getSenderId() : e.label());
+        }
+        return list;
     }
 }
@@ -4,6 +4,7 @@ import models.sorties.ParticipationSortie;
 import models.sorties.AnnonceSortie;
 import models.notifications.Notification;
 import models.notifications.NotificationType;
+import services.evenements.ScheduleConflictIndex;
 import services.notifications.NotificationService;
 import services.common.ServiceBase;
 import utils.Mydb;
@@ -19,6 +20,7 @@ public class ParticipationSortieService implements ServiceBase {
     private final NotificationService notificationService = new NotificationService();
     private final AnnonceSortieService annonceSortieService = new AnnonceSortieService();
     private final NotificationEmailSmsService emailSmsService = new NotificationEmailSmsService();
+    private final ScheduleConflictIndex conflictIndex = ScheduleConflictIndex.getInstance();
 
     // ✅ NOM TABLE EXACT
     private static final String TABLE = "participation_annonce";
@@ -54,6 +56,17 @@ public class ParticipationSortieService implements ServiceBase {
         return 0;
     }
 
+    /**
+     * Engagements du user (inscriptions à des événements, autres sorties acceptées)
+     * qui chevauchent cette sortie. À afficher avant {@link #addRequest} : un conflit
+     * n'empêche pas la demande, le user décide.
+     */
+    public List<ScheduleConflictIndex.Conflict> findConflicts(int annonceId, int userId) {
+        AnnonceSortie annonce = annonceSortieService.getById(annonceId);
+        if (annonce == null) return List.of();
+        return conflictIndex.sortieConflicts(userId, annonce);
+    }
+
     public void addRequest(ParticipationSortie p) {
         ParticipationSortie existing = getByAnnonceAndUser(p.getAnnonceId(), p.getUserId());
         if (existing != null) {
@@ -119,6 +132,9 @@ public class ParticipationSortieService implements ServiceBase {
             if (oldAccepted || newAccepted) {
                 reconcileAnnonceStatusByCapacity(before.getAnnonceId());
             }
+            if (oldAccepted != newAccepted) {
+                syncConflictIndex(before.getUserId(), before.getAnnonceId(), newAccepted);
+            }
 
             // Notifier le participant (accept/refus). senderId est optionnel => null.
             createParticipationDecisionNotification(before, newStatus);
@@ -151,6 +167,16 @@ public class ParticipationSortieService implements ServiceBase {
         }
     }
 
+    private void syncConflictIndex(int userId, int annonceId, boolean accepted) {
+        try {
+            AnnonceSortie annonce = annonceSortieService.getById(annonceId);
+            if (annonce != null) conflictIndex.setParticipation(userId, annonce, accepted);
+        } catch (Exception e) {
+            // Index désynchronisé : on le recharge plutôt que de garder un faux état
+            conflictIndex.invalidate();
+        }
+    }
+
     private boolean isAcceptedStatus(String statut) {
         String s = safeDefault(statut, "").trim().toUpperCase();
         return s.equals("CONFIRMEE") || s.equals("ACCEPTEE");
@@ -328,6 +354,9 @@ public class ParticipationSortieService implements ServiceBase {
         } catch (SQLException e) {
             throw new RuntimeException("ParticipationSortieService.deleteById: " + e.getMessage(), e);
         }
+        if (before != null && isAcceptedStatus(before.getStatut())) {
+            syncConflictIndex(before.getUserId(), before.getAnnonceId(), false);
+        }
 
         // Non-bloquant.
         try {
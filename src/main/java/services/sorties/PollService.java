@@ -2,12 +2,19 @@ package services.sorties;
 
 import models.sorties.PollOptionSnapshot;
 import models.sorties.PollSnapshot;
+import services.users.UserDirectory;
 import utils.Mydb;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -17,10 +24,21 @@ import java.util.Set;
  * - poll
  * - poll_option
  * - poll_vote
+ *
+ * Chaque écriture publie sur {@link ChatHub} : les fenêtres relisent alors le seul
+ * sondage concerné (les instantanés dépendent de l'utilisateur, ils ne sont pas poussés).
+ *
+ * Décomptes matérialisés : poll.voter_count et poll_option.vote_count sont tenus à jour
+ * par l'écriture des votes ; la lecture ne recompte rien.
+ *
+ * Votes des sondages ouverts : décompte en mémoire et écriture différée ({@link PollTallies}).
+ * {@link #vote} répond sans aller-retour base ; les bulletins sont écrits par lots, puis
+ * l'événement est relayé aux autres clients, qui reconstruisent alors leur décompte.
  */
 public class PollService {
 
     private final Connection cnx = Mydb.getInstance().getConnection();
+    private final ChatHub hub = ChatHub.getInstance();
 
     // ──────────────────────────────────────────────────────────────────
     //  Schema
@@ -41,6 +59,7 @@ public class PollService {
                     allow_add_options TINYINT(1)  NOT NULL DEFAULT 1,
                     is_pinned         TINYINT(1)  NOT NULL DEFAULT 0,
                     closed_at         TIMESTAMP   NULL,
+                    voter_count       INT         NOT NULL DEFAULT 0,
                     PRIMARY KEY (id),
                     KEY idx_poll_annonce (annonce_id, created_at),
                     KEY idx_poll_pinned (annonce_id, is_pinned, created_at)
@@ -54,6 +73,7 @@ public class PollService {
                     text       VARCHAR(255) NOT NULL,
                     created_by INT          NOT NULL,
                     created_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    vote_count INT          NOT NULL DEFAULT 0,
                     PRIMARY KEY (id),
                     KEY idx_pollopt_poll (poll_id)
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -85,21 +105,42 @@ public class PollService {
                     "ALTER TABLE poll ADD COLUMN closed_at TIMESTAMP NULL AFTER is_pinned");
             ensureIndex("poll", "idx_poll_pinned",
                     "ALTER TABLE poll ADD KEY idx_poll_pinned (annonce_id, is_pinned, created_at)");
+            ensureIndex("poll_vote", "idx_pollvote_user_poll",
+                    "ALTER TABLE poll_vote ADD KEY idx_pollvote_user_poll (user_id, poll_id)");
+
+            // Décomptes : recalcul unique depuis poll_vote quand la colonne apparaît
+            if (ensureColumn("poll", "voter_count",
+                    "ALTER TABLE poll ADD COLUMN voter_count INT NOT NULL DEFAULT 0")) {
+                st.executeUpdate("""
+                        UPDATE poll p
+                        SET voter_count = (SELECT COUNT(DISTINCT v.user_id) FROM poll_vote v WHERE v.poll_id = p.id)
+                        """);
+            }
+            if (ensureColumn("poll_option", "vote_count",
+                    "ALTER TABLE poll_option ADD COLUMN vote_count INT NOT NULL DEFAULT 0")) {
+                st.executeUpdate("""
+                        UPDATE poll_option o
+                        SET vote_count = (SELECT COUNT(*) FROM poll_vote v WHERE v.poll_id = o.poll_id AND v.option_id = o.id)
+                        """);
+            }
         } catch (SQLException e) {
             System.err.println("[PollService] Schema init failed: " + e.getMessage());
         }
     }
 
-    private void ensureColumn(String table, String column, String alterSql) {
+    /** @return true si la colonne vient d'être ajoutée. */
+    private boolean ensureColumn(String table, String column, String alterSql) {
         try {
             DatabaseMetaData meta = cnx.getMetaData();
             try (ResultSet rs = meta.getColumns(null, null, table, column)) {
-                if (rs.next()) return;
+                if (rs.next()) return false;
             }
             try (Statement st = cnx.createStatement()) {
                 st.execute(alterSql);
             }
+            return true;
         } catch (SQLException ignored) {
+            return false;
         }
     }
 
@@ -149,11 +190,9 @@ public class PollService {
         String sqlOpt = "INSERT INTO poll_option (poll_id, text, created_by) VALUES (?,?,?)";
 
         try {
-            boolean prevAuto = cnx.getAutoCommit();
-            cnx.setAutoCommit(false);
-            try {
-                int pollId;
-                try (PreparedStatement ps = cnx.prepareStatement(sqlPoll, Statement.RETURN_GENERATED_KEYS)) {
+            int pollId = Mydb.getInstance().inTransaction(c -> {
+                int id;
+                try (PreparedStatement ps = c.prepareStatement(sqlPoll, Statement.RETURN_GENERATED_KEYS)) {
                     ps.setInt(1, annonceId);
                     ps.setString(2, q);
                     ps.setInt(3, createdBy);
@@ -163,28 +202,23 @@ public class PollService {
                     ps.executeUpdate();
                     try (ResultSet keys = ps.getGeneratedKeys()) {
                         if (!keys.next()) throw new RuntimeException("PollService.createPoll: no generated key");
-                        pollId = keys.getInt(1);
+                        id = keys.getInt(1);
                     }
                 }
 
-                try (PreparedStatement ps = cnx.prepareStatement(sqlOpt)) {
+                try (PreparedStatement ps = c.prepareStatement(sqlOpt)) {
                     for (String opt : cleanOptions) {
-                        ps.setInt(1, pollId);
+                        ps.setInt(1, id);
                         ps.setString(2, opt);
                         ps.setInt(3, createdBy);
                         ps.addBatch();
                     }
                     ps.executeBatch();
                 }
-
-                cnx.commit();
-                return pollId;
-            } catch (Exception ex) {
-                cnx.rollback();
-                throw ex;
-            } finally {
-                cnx.setAutoCommit(prevAuto);
-            }
+                return id;
+            });
+            if (pinned) hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.PINS_CHANGED, annonceId, pollId));
+            return pollId;
         } catch (Exception e) {
             if (e instanceof RuntimeException re) throw re;
             throw new RuntimeException("PollService.createPoll: " + e.getMessage(), e);
@@ -211,93 +245,115 @@ public class PollService {
 
     public PollSnapshot getSnapshot(int pollId, int currentUserId) {
         if (pollId <= 0) return null;
+        return getSnapshots(List.of(pollId), currentUserId).get(pollId);
+    }
 
-        String sqlPoll = """
+    /**
+     * Instantanés de plusieurs sondages en trois requêtes au total (sondages, options avec
+     * leurs décomptes, votes de l'utilisateur), quel que soit le nombre de cartes affichées.
+     * Clés dans l'ordre demandé ; les sondages introuvables sont absents.
+     */
+    public Map<Integer, PollSnapshot> getSnapshots(Collection<Integer> pollIds, int currentUserId) {
+        Map<Integer, PollSnapshot> out = new LinkedHashMap<>();
+        if (pollIds == null || pollIds.isEmpty()) return out;
+        List<Integer> ids = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(pollIds)) if (id != null && id > 0) ids.add(id);
+        if (ids.isEmpty()) return out;
+        String in = placeholders(ids.size());
+
+        String sqlPolls = """
                 SELECT p.id, p.annonce_id, p.question, p.created_by,
-                       p.is_open, p.allow_multi, p.allow_add_options, p.is_pinned,
-                       CONCAT(COALESCE(u.prenom,''), ' ', COALESCE(u.nom,'')) AS created_by_name
+                       p.is_open, p.allow_multi, p.allow_add_options, p.is_pinned, p.voter_count
                 FROM poll p
-                LEFT JOIN user u ON u.id = p.created_by
-                WHERE p.id = ?
-                """;
+                WHERE p.id IN (%s)
+                """.formatted(in);
 
-        PollSnapshot snap = new PollSnapshot();
-        try (PreparedStatement ps = cnx.prepareStatement(sqlPoll)) {
-            ps.setInt(1, pollId);
+        Map<Integer, PollSnapshot> found = new HashMap<>();
+        try (PreparedStatement ps = cnx.prepareStatement(sqlPolls)) {
+            for (int i = 0; i < ids.size(); i++) ps.setInt(i + 1, ids.get(i));
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return null;
-                snap.setId(rs.getInt("id"));
-                snap.setAnnonceId(rs.getInt("annonce_id"));
-                snap.setQuestion(rs.getString("question"));
-                snap.setCreatedBy(rs.getInt("created_by"));
-                String name = rs.getString("created_by_name");
-                snap.setCreatedByName(name == null || name.isBlank() ? "Utilisateur #" + snap.getCreatedBy() : name.trim());
-                snap.setOpen(rs.getInt("is_open") == 1);
-                snap.setAllowMulti(rs.getInt("allow_multi") == 1);
-                snap.setAllowAddOptions(rs.getInt("allow_add_options") == 1);
-                snap.setPinned(rs.getInt("is_pinned") == 1);
+                while (rs.next()) {
+                    PollSnapshot snap = new PollSnapshot();
+                    snap.setId(rs.getInt("id"));
+                    snap.setAnnonceId(rs.getInt("annonce_id"));
+                    snap.setQuestion(rs.getString("question"));
+                    snap.setCreatedBy(rs.getInt("created_by"));
+                    snap.setOpen(rs.getInt("is_open") == 1);
+                    snap.setAllowMulti(rs.getInt("allow_multi") == 1);
+                    snap.setAllowAddOptions(rs.getInt("allow_add_options") == 1);
+                    snap.setPinned(rs.getInt("is_pinned") == 1);
+                    snap.setTotalVoters(Math.max(0, rs.getInt("voter_count")));
+                    found.put(snap.getId(), snap);
+                }
             }
         } catch (SQLException e) {
-            System.err.println("[PollService] getSnapshot poll: " + e.getMessage());
-            return null;
+            System.err.println("[PollService] getSnapshots poll: " + e.getMessage());
+            return out;
         }
+        if (found.isEmpty()) return out;
 
-        // My votes
-        String sqlMine = "SELECT option_id FROM poll_vote WHERE poll_id=? AND user_id=?";
+        // Mes votes (tous les sondages d'un coup)
+        String sqlMine = "SELECT poll_id, option_id FROM poll_vote WHERE user_id=? AND poll_id IN (" + in + ")";
         try (PreparedStatement ps = cnx.prepareStatement(sqlMine)) {
-            ps.setInt(1, pollId);
-            ps.setInt(2, currentUserId);
+            ps.setInt(1, currentUserId);
+            for (int i = 0; i < ids.size(); i++) ps.setInt(i + 2, ids.get(i));
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) snap.getMyOptionIds().add(rs.getInt(1));
-            }
-        } catch (SQLException ignored) {
-        }
-
-        // Total voters
-        String sqlVoters = "SELECT COUNT(DISTINCT user_id) FROM poll_vote WHERE poll_id=?";
-        try (PreparedStatement ps = cnx.prepareStatement(sqlVoters)) {
-            ps.setInt(1, pollId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) snap.setTotalVoters(rs.getInt(1));
+                while (rs.next()) {
+                    PollSnapshot snap = found.get(rs.getInt(1));
+                    if (snap != null) snap.getMyOptionIds().add(rs.getInt(2));
+                }
             }
         } catch (SQLException ignored) {
         }
 
-        // Options with vote counts
-        String sqlOptions = """
-                SELECT o.id, o.text, COUNT(v.user_id) AS votes
-                FROM poll_option o
-                LEFT JOIN poll_vote v
-                  ON v.poll_id = o.poll_id AND v.option_id = o.id
-                WHERE o.poll_id = ?
-                GROUP BY o.id, o.text
-                ORDER BY o.id ASC
-                """;
-
-        List<PollOptionSnapshot> opts = new ArrayList<>();
-        int totalVotes = 0;
+        // Options avec leur décompte matérialisé
+        String sqlOptions = "SELECT poll_id, id, text, vote_count FROM poll_option WHERE poll_id IN (" + in + ") ORDER BY poll_id, id";
+        Map<Integer, Integer> totalVotes = new HashMap<>();
         try (PreparedStatement ps = cnx.prepareStatement(sqlOptions)) {
-            ps.setInt(1, pollId);
+            for (int i = 0; i < ids.size(); i++) ps.setInt(i + 1, ids.get(i));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String text = rs.getString("text");
-                    int votes = rs.getInt("votes");
-                    totalVotes += votes;
-                    opts.add(new PollOptionSnapshot(id, text, votes, 0d));
+                    PollSnapshot snap = found.get(rs.getInt("poll_id"));
+                    if (snap == null) continue;
+                    int votes = Math.max(0, rs.getInt("vote_count"));
+                    totalVotes.merge(snap.getId(), votes, Integer::sum);
+                    snap.getOptions().add(new PollOptionSnapshot(rs.getInt("id"), rs.getString("text"), votes, 0d));
                 }
             }
         } catch (SQLException e) {
-            System.err.println("[PollService] getSnapshot options: " + e.getMessage());
+            System.err.println("[PollService] getSnapshots options: " + e.getMessage());
         }
 
-        for (PollOptionSnapshot o : opts) {
-            double pct = (totalVotes <= 0) ? 0d : ((double) o.getVotes() / (double) totalVotes);
-            o.setPercent(clamp01(pct));
-            snap.getOptions().add(o);
+        Set<Integer> creators = new HashSet<>();
+        for (PollSnapshot snap : found.values()) creators.add(snap.getCreatedBy());
+        Map<Integer, UserDirectory.Entry> names = UserDirectory.getInstance().getAll(creators);
+
+        for (Integer id : ids) {
+            PollSnapshot snap = found.get(id);
+            if (snap == null) continue;
+            UserDirectory.Entry creator = names.get(snap.getCreatedBy());
+            snap.setCreatedByName(creator == null ? "Utilisateur #" + snap.getCreatedBy() : creator.label());
+            int total = totalVotes.getOrDefault(id, 0);
+
+            // Sondage chaud : la mémoire est en avance sur la base (écriture différée)
+            PollTallies.Tally tally = snap.isOpen() ? hotTally(id) : null;
+            if (tally != null) {
+                total = 0;
+                for (PollOptionSnapshot o : snap.getOptions()) {
+                    o.setVotes(tally.votes(o.getId()));
+                    total += o.getVotes();
+                }
+                snap.setTotalVoters(tally.voters());
+                snap.getMyOptionIds().clear();
+                snap.getMyOptionIds().addAll(tally.ballotOf(currentUserId));
+            }
+            for (PollOptionSnapshot o : snap.getOptions()) {
+                double pct = (total <= 0) ? 0d : ((double) o.getVotes() / (double) total);
+                o.setPercent(clamp01(pct));
+            }
+            out.put(id, snap);
         }
-
-        return snap;
+        return out;
     }
 
     // ──────────────────────────────────────────────────────────────────
@@ -309,70 +365,26 @@ public class PollService {
         if (userId <= 0) throw new IllegalArgumentException("userId invalide");
         if (optionIds == null || optionIds.isEmpty()) throw new IllegalArgumentException("Sélection vide");
 
-        PollMeta meta = getMeta(pollId);
-        if (!meta.open) throw new IllegalStateException("Sondage clôturé");
-
-        // S'aligne sur l'état DB (au cas où le client a un état obsolète)
-        boolean effectiveMulti = meta.allowMulti;
-        if (!effectiveMulti && optionIds.size() > 1) {
-            throw new IllegalArgumentException("Un seul choix possible");
-        }
-        if (effectiveMulti != allowMulti) {
-            // pas bloquant ; l'UI peut être obsolète. On applique la règle DB.
-        }
-
-        Set<Integer> allowed = loadOptionIdsForPoll(pollId);
-        Set<Integer> selected = new HashSet<>();
-        for (Integer id : optionIds) {
-            if (id != null && allowed.contains(id)) selected.add(id);
-        }
-        if (selected.isEmpty()) throw new IllegalArgumentException("Choix invalide");
-
-        String del = "DELETE FROM poll_vote WHERE poll_id=? AND user_id=?";
-        String ins = "INSERT INTO poll_vote (poll_id, option_id, user_id) VALUES (?,?,?)";
-
-        try {
-            boolean prevAuto = cnx.getAutoCommit();
-            cnx.setAutoCommit(false);
-            try {
-                try (PreparedStatement ps = cnx.prepareStatement(del)) {
-                    ps.setInt(1, pollId);
-                    ps.setInt(2, userId);
-                    ps.executeUpdate();
-                }
-
-                try (PreparedStatement ps = cnx.prepareStatement(ins)) {
-                    for (Integer oid : selected) {
-                        ps.setInt(1, pollId);
-                        ps.setInt(2, oid);
-                        ps.setInt(3, userId);
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                }
-
-                cnx.commit();
-            } catch (Exception ex) {
-                cnx.rollback();
-                throw ex;
-            } finally {
-                cnx.setAutoCommit(prevAuto);
-            }
-        } catch (Exception e) {
-            if (e instanceof RuntimeException re) throw re;
-            throw new RuntimeException("PollService.vote: " + e.getMessage(), e);
+        // Règles (ouvert, choix multiple, options) vérifiées sur le décompte en mémoire :
+        // l'UI peut être obsolète, c'est l'état du sondage qui fait foi
+        PollTallies.Tally tally = tallies().tally(pollId);
+        if (tally == null) {
+            getMeta(pollId); // « Sondage introuvable » le cas échéant
+            throw new IllegalStateException("Sondage clôturé");
         }
+        tallies().vote(pollId, userId, optionIds);
+        hub.publishLocal(ChatHub.ChatEvent.of(ChatHub.Type.POLL_UPDATED, tally.annonceId, pollId));
     }
 
     public void clearVote(int pollId, int userId) {
-        String sql = "DELETE FROM poll_vote WHERE poll_id=? AND user_id=?";
-        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
-            ps.setInt(1, pollId);
-            ps.setInt(2, userId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("PollService.clearVote: " + e.getMessage(), e);
+        if (tallies().tally(pollId) == null) {
+            // Sondage clôturé (ou introuvable) : pas de décompte en mémoire, écriture immédiate via la file
+            tallies().clearUntracked(pollId, userId);
+            publishPollChanged(pollId, false);
+            return;
         }
+        PollTallies.Tally tally = tallies().clear(pollId, userId);
+        if (tally != null) hub.publishLocal(ChatHub.ChatEvent.of(ChatHub.Type.POLL_UPDATED, tally.annonceId, pollId));
     }
 
     public void addOption(int pollId, int userId, String text) {
@@ -394,14 +406,19 @@ public class PollService {
         if (v.length() > 255) v = v.substring(0, 255);
 
         String sql = "INSERT INTO poll_option (poll_id, text, created_by) VALUES (?,?,?)";
-        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+        try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, pollId);
             ps.setString(2, v);
             ps.setInt(3, userId);
             ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                PollTallies t = tallies;
+                if (t != null && keys.next()) t.optionAdded(pollId, keys.getInt(1));
+            }
         } catch (SQLException e) {
             throw new RuntimeException("PollService.addOption: " + e.getMessage(), e);
         }
+        publishPollChanged(pollId, false);
     }
 
     public void setPinnedAsAdmin(int pollId, boolean pinned) {
@@ -413,6 +430,7 @@ public class PollService {
         } catch (SQLException e) {
             throw new RuntimeException("PollService.setPinnedAsAdmin: " + e.getMessage(), e);
         }
+        publishPollChanged(pollId, true);
     }
 
     public void setPinnedAsOwner(int pollId, int ownerId, boolean pinned) {
@@ -421,7 +439,7 @@ public class PollService {
             ps.setInt(1, pinned ? 1 : 0);
             ps.setInt(2, pollId);
             ps.setInt(3, ownerId);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) publishPollChanged(pollId, true);
         } catch (SQLException e) {
             throw new RuntimeException("PollService.setPinnedAsOwner: " + e.getMessage(), e);
         }
@@ -435,6 +453,8 @@ public class PollService {
         } catch (SQLException e) {
             throw new RuntimeException("PollService.closePollAsAdmin: " + e.getMessage(), e);
         }
+        forgetTally(pollId);
+        publishPollChanged(pollId, false);
     }
 
     public void closePollAsOwner(int pollId, int ownerId) {
@@ -442,7 +462,10 @@ public class PollService {
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, pollId);
             ps.setInt(2, ownerId);
-            ps.executeUpdate();
+            if (ps.executeUpdate() > 0) {
+                forgetTally(pollId);
+                publishPollChanged(pollId, false);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("PollService.closePollAsOwner: " + e.getMessage(), e);
         }
@@ -470,18 +493,232 @@ public class PollService {
         }
     }
 
-    private Set<Integer> loadOptionIdsForPoll(int pollId) {
-        String sql = "SELECT id FROM poll_option WHERE poll_id=?";
-        Set<Integer> ids = new HashSet<>();
+    /** Notifie les fenêtres de l'annonce du sondage (best-effort : l'écriture est déjà faite). */
+    private void publishPollChanged(int pollId, boolean pinsChanged) {
+        String sql = "SELECT annonce_id FROM poll WHERE id=?";
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, pollId);
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) ids.add(rs.getInt(1));
+                if (!rs.next()) return;
+                int annonceId = rs.getInt(1);
+                hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.POLL_UPDATED, annonceId, pollId));
+                if (pinsChanged) hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.PINS_CHANGED, annonceId, pollId));
             }
         } catch (SQLException e) {
-            throw new RuntimeException("PollService.loadOptionIdsForPoll: " + e.getMessage(), e);
+            System.err.println("[PollService] publish: " + e.getMessage());
         }
-        return ids;
+    }
+
+    // ──────────────────────────────────────────────────────────────────
+    //  Décomptes en mémoire + écriture différée (voir PollTallies)
+    // ──────────────────────────────────────────────────────────────────
+
+    /** Bulletins par transaction d'écriture. */
+    static final int BALLOT_BATCH = 200;
+
+    private static volatile PollTallies tallies;
+
+    private static PollTallies tallies() {
+        if (tallies == null) {
+            synchronized (PollService.class) {
+                if (tallies == null) {
+                    PollTallies t = PollTallies.create(new PollTallies.Store() {
+                        @Override
+                        public PollTallies.Loaded load(int pollId) throws SQLException {
+                            return loadTally(pollId);
+                        }
+
+                        @Override
+                        public void write(Map<PollTallies.BallotKey, PollTallies.Ballot> batch) throws SQLException {
+                            writeBallots(batch);
+                        }
+                    }, PollService::publishWritten);
+                    // Un autre client a écrit : notre décompte sera reconstruit depuis la base
+                    ChatHub.getInstance().observeRemote(e -> {
+                        if (e.type() == ChatHub.Type.POLL_UPDATED) t.evict(e.refId());
+                        else if (e.type() == ChatHub.Type.RESYNC) t.evictAll();
+                    });
+                    tallies = t;
+                }
+            }
+        }
+        return tallies;
+    }
+
+    /** Écrit tout de suite les votes en file (tests, maintenance). */
+    static void flushPendingVotes() {
+        PollTallies t = tallies;
+        if (t != null) t.flush();
+    }
+
+    /** Décompte à utiliser en lecture : déjà en mémoire, ou votes pas encore écrits. */
+    private static PollTallies.Tally hotTally(int pollId) {
+        PollTallies t = tallies;
+        if (t == null) return null;
+        PollTallies.Tally tally = t.peek(pollId);
+        if (tally != null || !t.hasUnwritten(pollId)) return tally;
+        try {
+            return t.tally(pollId);
+        } catch (RuntimeException e) {
+            System.err.println("[PollService] hotTally: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void forgetTally(int pollId) {
+        PollTallies t = tallies;
+        if (t != null) t.evict(pollId);
+    }
+
+    /** Reconstruction d'un décompte : état du sondage, options et tous les bulletins. */
+    private static PollTallies.Loaded loadTally(int pollId) throws SQLException {
+        Connection c = Mydb.getInstance().getConnection();
+        int annonceId;
+        boolean open, multi, add;
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT annonce_id, is_open, allow_multi, allow_add_options FROM poll WHERE id=?")) {
+            ps.setInt(1, pollId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                annonceId = rs.getInt(1);
+                open = rs.getInt(2) == 1;
+                multi = rs.getInt(3) == 1;
+                add = rs.getInt(4) == 1;
+            }
+        }
+
+        Set<Integer> optionIds = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT id FROM poll_option WHERE poll_id=?")) {
+            ps.setInt(1, pollId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) optionIds.add(rs.getInt(1));
+            }
+        }
+
+        Map<Integer, Set<Integer>> ballots = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT user_id, option_id FROM poll_vote WHERE poll_id=?")) {
+            ps.setInt(1, pollId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ballots.computeIfAbsent(rs.getInt(1), k -> new HashSet<>()).add(rs.getInt(2));
+            }
+        }
+        return new PollTallies.Loaded(annonceId, open, multi, add, optionIds, ballots);
+    }
+
+    /**
+     * Écrit des bulletins (remplacement du vote de chaque (sondage, utilisateur)).
+     * Idempotent : les différences sont calculées contre les lignes en base, verrouillées,
+     * et seuls les votes retirés / ajoutés touchent poll_vote et les décomptes matérialisés.
+     */
+    private static void writeBallots(Map<PollTallies.BallotKey, PollTallies.Ballot> batch) throws SQLException {
+        List<Map.Entry<PollTallies.BallotKey, PollTallies.Ballot>> rows = new ArrayList<>(batch.entrySet());
+        for (int from = 0; from < rows.size(); from += BALLOT_BATCH) {
+            List<Map.Entry<PollTallies.BallotKey, PollTallies.Ballot>> chunk =
+                    rows.subList(from, Math.min(rows.size(), from + BALLOT_BATCH));
+            // Connexion dédiée : le thread d'écriture différée ne partage pas la session de l'UI
+            Mydb.getInstance().inTransaction(c -> {
+                Map<PollTallies.BallotKey, Set<Integer>> before = lockBallots(c, chunk);
+                List<int[]> removed = new ArrayList<>();
+                List<int[]> added = new ArrayList<>();
+                Map<Integer, Integer> optionDelta = new HashMap<>();
+                Map<Integer, Integer> voterDelta = new HashMap<>();
+                for (var e : chunk) {
+                    PollTallies.BallotKey k = e.getKey();
+                    Set<Integer> prev = before.getOrDefault(k, Set.of());
+                    Set<Integer> next = e.getValue().optionIds();
+                    for (Integer oid : prev) {
+                        if (next.contains(oid)) continue;
+                        removed.add(new int[]{k.pollId(), oid, k.userId()});
+                        optionDelta.merge(oid, -1, Integer::sum);
+                    }
+                    for (Integer oid : next) {
+                        if (prev.contains(oid)) continue;
+                        added.add(new int[]{k.pollId(), oid, k.userId()});
+                        optionDelta.merge(oid, +1, Integer::sum);
+                    }
+                    if (prev.isEmpty() && !next.isEmpty()) voterDelta.merge(k.pollId(), +1, Integer::sum);
+                    if (!prev.isEmpty() && next.isEmpty()) voterDelta.merge(k.pollId(), -1, Integer::sum);
+                }
+
+                if (!removed.isEmpty()) {
+                    executeRows(c, "DELETE FROM poll_vote WHERE (poll_id, option_id, user_id) IN (",
+                            "(?,?,?)", ")", removed);
+                }
+                if (!added.isEmpty()) {
+                    executeRows(c, "INSERT INTO poll_vote (poll_id, option_id, user_id) VALUES ",
+                            "(?,?,?)", "", added);
+                }
+                applyDeltas(c, "poll_option", "vote_count", optionDelta);
+                applyDeltas(c, "poll", "voter_count", voterDelta);
+                return null;
+            });
+        }
+    }
+
+    private static Map<PollTallies.BallotKey, Set<Integer>> lockBallots(
+            Connection c, List<Map.Entry<PollTallies.BallotKey, PollTallies.Ballot>> chunk) throws SQLException {
+        String sql = "SELECT poll_id, user_id, option_id FROM poll_vote WHERE (poll_id, user_id) IN ("
+                + String.join(",", Collections.nCopies(chunk.size(), "(?,?)")) + ") FOR UPDATE";
+        Map<PollTallies.BallotKey, Set<Integer>> out = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int k = 1;
+            for (var e : chunk) {
+                ps.setInt(k++, e.getKey().pollId());
+                ps.setInt(k++, e.getKey().userId());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.computeIfAbsent(new PollTallies.BallotKey(rs.getInt(1), rs.getInt(2)), x -> new HashSet<>())
+                            .add(rs.getInt(3));
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void executeRows(Connection c, String head, String row, String tail, List<int[]> rows) throws SQLException {
+        String sql = head + String.join(",", Collections.nCopies(rows.size(), row)) + tail;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            int k = 1;
+            for (int[] r : rows) {
+                for (int v : r) ps.setInt(k++, v);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    /** {@code column += delta} par id, en un UPDATE (CASE) ; jamais négatif. */
+    private static void applyDeltas(Connection c, String table, String column, Map<Integer, Integer> deltas) throws SQLException {
+        deltas.values().removeIf(d -> d == 0);
+        if (deltas.isEmpty()) return;
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ").append(column)
+                .append(" = GREATEST(0, ").append(column).append(" + CASE id");
+        for (int i = 0; i < deltas.size(); i++) sql.append(" WHEN ? THEN ?");
+        sql.append(" ELSE 0 END) WHERE id IN (").append(placeholders(deltas.size())).append(")");
+        try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            int k = 1;
+            for (var e : deltas.entrySet()) {
+                ps.setInt(k++, e.getKey());
+                ps.setInt(k++, e.getValue());
+            }
+            for (Integer id : deltas.keySet()) ps.setInt(k++, id);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Lot écrit : les autres clients peuvent maintenant relire ces sondages. */
+    private static void publishWritten(Map<PollTallies.BallotKey, PollTallies.Ballot> batch) {
+        Map<Integer, Integer> annonceByPoll = new HashMap<>();
+        batch.forEach((k, b) -> {
+            if (b.annonceId() > 0) annonceByPoll.put(k.pollId(), b.annonceId());
+        });
+        ChatHub hub = ChatHub.getInstance();
+        annonceByPoll.forEach((pollId, annonceId) ->
+                hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.POLL_UPDATED, annonceId, pollId)));
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
     }
 
     private static double clamp01(double v) {
@@ -0,0 +1,299 @@
+package services.sorties;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Décomptes en mémoire des sondages ouverts, avec écriture différée des votes.
+ *
+ * Pendant une sortie, des dizaines de votes arrivent sur le même sondage en quelques secondes.
+ * {@link #vote} valide contre l'état en mémoire (options, ouvert, choix multiple), met à jour
+ * des compteurs atomiques par option et répond tout de suite ; le bulletin final de chaque
+ * (sondage, utilisateur) est mis en file et écrit par lots toutes les {@value #FLUSH_INTERVAL_MS} ms.
+ *
+ * L'écriture est idempotente : un lot remplace le bulletin de chaque votant par son dernier état,
+ * le rejouer (échec, arrêt) ne change rien. Un lot en échec est remis en file sans écraser
+ * un bulletin plus récent.
+ *
+ * Reconstruction : un décompte absent (démarrage, éviction, changement venu d'un autre client)
+ * est relu depuis poll_vote puis recouvert des bulletins encore en file ou en cours d'écriture ;
+ * le verrou d'écriture garantit qu'aucun lot n'est validé entre ces deux lectures.
+ */
+final class PollTallies {
+
+    static final long FLUSH_INTERVAL_MS = 500;
+    /** Sondages suivis au plus ; au-delà, un décompte est évincé (il sera reconstruit). */
+    static final int MAX_POLLS = 256;
+
+    record BallotKey(int pollId, int userId) {}
+
+    /** Dernier bulletin d'un votant ; vide = vote retiré. */
+    record Ballot(int annonceId, Set<Integer> optionIds) {}
+
+    /** État relu depuis la base pour construire un décompte. */
+    record Loaded(int annonceId, boolean open, boolean allowMulti, boolean allowAddOptions,
+                  Set<Integer> optionIds, Map<Integer, Set<Integer>> ballots) {}
+
+    interface Store {
+        /** @return null si le sondage n'existe pas */
+        Loaded load(int pollId) throws Exception;
+
+        void write(Map<BallotKey, Ballot> batch) throws Exception;
+    }
+
+    /** Décompte d'un sondage ; lectures sans verrou. */
+    static final class Tally {
+        final int pollId;
+        final int annonceId;
+        final boolean allowMulti;
+        final boolean allowAddOptions;
+        private final Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Set<Integer>> ballots = new ConcurrentHashMap<>();
+        private final AtomicInteger voters = new AtomicInteger();
+
+        private Tally(int pollId, Loaded l) {
+            this.pollId = pollId;
+            this.annonceId = l.annonceId();
+            this.allowMulti = l.allowMulti();
+            this.allowAddOptions = l.allowAddOptions();
+            for (Integer oid : l.optionIds()) counts.put(oid, new AtomicInteger());
+        }
+
+        int votes(int optionId) {
+            AtomicInteger c = counts.get(optionId);
+            return c == null ? 0 : c.get();
+        }
+
+        int voters() {
+            return voters.get();
+        }
+
+        Set<Integer> ballotOf(int userId) {
+            return ballots.getOrDefault(userId, Set.of());
+        }
+
+        /**
+         * Remplace le bulletin ; compteurs ajustés atomiquement pour ce votant.
+         * {@code enqueue} s'exécute sous le même verrou : file et mémoire restent dans le même ordre.
+         */
+        private void apply(int userId, Set<Integer> selection, Runnable enqueue) {
+            ballots.compute(userId, (k, prev) -> {
+                enqueue.run();
+                Set<Integer> before = prev == null ? Set.of() : prev;
+                for (Integer oid : before) if (!selection.contains(oid)) counts.get(oid).decrementAndGet();
+                for (Integer oid : selection) if (!before.contains(oid)) counts.get(oid).incrementAndGet();
+                if (before.isEmpty() && !selection.isEmpty()) voters.incrementAndGet();
+                if (!before.isEmpty() && selection.isEmpty()) voters.decrementAndGet();
+                return selection.isEmpty() ? null : selection;
+            });
+        }
+    }
+
+    private final Store store;
+    private final Consumer<Map<BallotKey, Ballot>> onFlushed;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentHashMap<Integer, Tally> tallies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<BallotKey, Ballot> pending = new ConcurrentHashMap<>();
+    // Lot en cours d'écriture (protégé par writeLock) : visible pour les reconstructions
+    private final Map<BallotKey, Ballot> inFlight = new HashMap<>();
+    private final Object writeLock = new Object();
+
+    PollTallies(Store store, Consumer<Map<BallotKey, Ballot>> onFlushed, ScheduledExecutorService scheduler) {
+        this.store = store;
+        this.onFlushed = onFlushed;
+        this.scheduler = scheduler;
+    }
+
+    static PollTallies create(Store store, Consumer<Map<BallotKey, Ballot>> onFlushed) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "poll-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        PollTallies tallies = new PollTallies(store, onFlushed, scheduler);
+        scheduler.scheduleWithFixedDelay(tallies::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(tallies::flushSafely, "poll-write-behind-shutdown"));
+        return tallies;
+    }
+
+    /**
+     * Enregistre le bulletin de l'utilisateur (remplace le précédent).
+     *
+     * @return le décompte mis à jour
+     */
+    Tally vote(int pollId, int userId, Set<Integer> optionIds) {
+        Tally t = tally(pollId);
+        if (t == null) throw new IllegalStateException("Sondage clôturé");
+        if (!t.allowMulti && optionIds.size() > 1) throw new IllegalArgumentException("Un seul choix possible");
+
+        Set<Integer> selected = new HashSet<>();
+        for (Integer id : optionIds) {
+            if (id != null && t.counts.containsKey(id)) selected.add(id);
+        }
+        if (selected.isEmpty()) throw new IllegalArgumentException("Choix invalide");
+
+        record(t, userId, Set.copyOf(selected));
+        return t;
+    }
+
+    /** @return le décompte si l'utilisateur avait voté, null sinon */
+    Tally clear(int pollId, int userId) {
+        Tally t = tally(pollId);
+        if (t == null || t.ballotOf(userId).isEmpty()) return null;
+        record(t, userId, Set.of());
+        return t;
+    }
+
+    /**
+     * Retire le vote sur un sondage sans décompte en mémoire (clôturé, évincé puis fermé).
+     * Le bulletin vide passe par la file : il remplace un bulletin plus ancien encore en attente,
+     * qui sinon réinsérerait le vote au lot suivant ; la file est ensuite écrite tout de suite.
+     *
+     * @throws RuntimeException si l'écriture échoue (le retrait reste en file)
+     */
+    void clearUntracked(int pollId, int userId) {
+        pending.put(new BallotKey(pollId, userId), new Ballot(0, Set.of()));
+        flush();
+    }
+
+    private void record(Tally t, int userId, Set<Integer> selection) {
+        BallotKey key = new BallotKey(t.pollId, userId);
+        Ballot ballot = new Ballot(t.annonceId, selection);
+        t.apply(userId, selection, () -> pending.put(key, ballot));
+    }
+
+    /** Décompte du sondage, reconstruit si absent ; null si le sondage est fermé ou introuvable. */
+    Tally tally(int pollId) {
+        Tally t = tallies.get(pollId);
+        if (t != null) return t;
+        t = rebuild(pollId);
+        if (t == null) return null;
+        if (tallies.size() >= MAX_POLLS) evictOne();
+        Tally prev = tallies.putIfAbsent(pollId, t);
+        return prev != null ? prev : t;
+    }
+
+    /** Décompte déjà en mémoire, sans reconstruction. */
+    Tally peek(int pollId) {
+        return tallies.get(pollId);
+    }
+
+    /** Vrai si des votes de ce sondage ne sont pas encore en base. */
+    boolean hasUnwritten(int pollId) {
+        for (BallotKey k : pending.keySet()) if (k.pollId() == pollId) return true;
+        synchronized (writeLock) {
+            for (BallotKey k : inFlight.keySet()) if (k.pollId() == pollId) return true;
+        }
+        return false;
+    }
+
+    void optionAdded(int pollId, int optionId) {
+        Tally t = tallies.get(pollId);
+        if (t != null) t.counts.putIfAbsent(optionId, new AtomicInteger());
+    }
+
+    /** Oublie le décompte (clôture, changement venu d'ailleurs) ; les votes en file restent à écrire. */
+    void evict(int pollId) {
+        tallies.remove(pollId);
+    }
+
+    void evictAll() {
+        tallies.clear();
+    }
+
+    int size() {
+        return tallies.size();
+    }
+
+    private void evictOne() {
+        for (Integer id : tallies.keySet()) {
+            if (tallies.remove(id) != null) return;
+        }
+    }
+
+    private Tally rebuild(int pollId) {
+        synchronized (writeLock) {
+            Loaded l;
+            try {
+                l = store.load(pollId);
+            } catch (Exception ex) {
+                throw new RuntimeException("PollTallies.rebuild: " + ex.getMessage(), ex);
+            }
+            if (l == null || !l.open()) return null;
+
+            Map<Integer, Set<Integer>> ballots = new HashMap<>(l.ballots());
+            // Bulletins pas encore en base : le lot en cours puis la file (plus récente)
+            for (Map<BallotKey, Ballot> src : List.of(inFlight, pending)) {
+                src.forEach((k, b) -> {
+                    if (k.pollId() == pollId) ballots.put(k.userId(), b.optionIds());
+                });
+            }
+            Tally t = new Tally(pollId, l);
+            ballots.forEach((userId, options) -> {
+                Set<Integer> known = new HashSet<>(options);
+                known.retainAll(t.counts.keySet());
+                t.apply(userId, Set.copyOf(known), () -> {});
+            });
+            return t;
+        }
+    }
+
+    /** Vidage asynchrone de la file. */
+    void flushSoon() {
+        if (pending.isEmpty()) return;
+        try {
+            scheduler.execute(this::flushSafely);
+        } catch (Exception ex) {
+            flushSafely();
+        }
+    }
+
+    /**
+     * Écrit les bulletins en file en un lot.
+     *
+     * @throws RuntimeException si l'écriture échoue (le lot est remis en file)
+     */
+    void flush() {
+        Map<BallotKey, Ballot> batch;
+        synchronized (writeLock) {
+            if (pending.isEmpty()) return;
+            for (BallotKey key : pending.keySet()) {
+                Ballot b = pending.remove(key);
+                if (b != null) inFlight.put(key, b);
+            }
+            batch = new HashMap<>(inFlight);
+            try {
+                store.write(batch);
+            } catch (Exception ex) {
+                // Un bulletin arrivé depuis est plus récent : on ne l'écrase pas
+                batch.forEach(pending::putIfAbsent);
+                throw new RuntimeException("PollTallies.flush: " + ex.getMessage(), ex);
+            } finally {
+                inFlight.clear();
+            }
+        }
+        try {
+            onFlushed.accept(batch);
+        } catch (Exception ex) {
+            System.err.println("[PollTallies] notification: " + ex.getMessage());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            // Une exception ne doit pas annuler les ticks suivants
+            System.err.println("[PollTallies] Échec d'écriture: " + ex.getMessage());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package services.sorties;
 
 import models.sorties.SortieMedia;
+import services.users.UserDirectory;
 import utils.Mydb;
 
 import java.nio.file.Path;
@@ -8,7 +9,10 @@ import java.nio.file.Paths;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class SortieMediaService {
 
@@ -24,10 +28,8 @@ public class SortieMediaService {
 
         String sql = """
                 SELECT m.id, m.sortie_id, m.user_id,
-                       m.file_path, m.media_type, m.uploaded_at,
-                       CONCAT(COALESCE(u.prenom,''), ' ', COALESCE(u.nom,'')) AS author_name
+                       m.file_path, m.media_type, m.uploaded_at
                 FROM sortie_media m
-                LEFT JOIN user u ON u.id = m.user_id
                 WHERE m.sortie_id=?
                 ORDER BY m.uploaded_at DESC, m.id DESC
                 """;
@@ -41,6 +43,15 @@ public class SortieMediaService {
         } catch (SQLException e) {
             throw new RuntimeException("SortieMediaService.listBySortie: " + e.getMessage(), e);
         }
+
+        // Auteurs via l'annuaire partagé, en un seul aller-retour
+        Set<Integer> authorIds = new HashSet<>();
+        for (SortieMedia m : out) authorIds.add(m.getUserId());
+        Map<Integer, UserDirectory.Entry> authors = UserDirectory.getInstance().getAll(authorIds);
+        for (SortieMedia m : out) {
+            UserDirectory.Entry e = authors.get(m.getUserId());
+            m.setAuthorName(e == null ? "Utilisateur #" + m.getUserId() : e.label());
+        }
         return out;
     }
 
@@ -143,9 +154,6 @@ public class SortieMediaService {
 
         Timestamp ts = rs.getTimestamp("uploaded_at");
         m.setUploadedAt(ts == null ? null : ts.toLocalDateTime());
-
-        String author = safe(rs.getString("author_name")).trim();
-        m.setAuthorName(author.isBlank() ? ("Utilisateur #" + m.getUserId()) : author);
         return m;
     }
 
@@ -1,6 +1,7 @@
 package services.sorties;
 
 import models.sorties.TaskSnapshot;
+import services.users.UserDirectory;
 import utils.Mydb;
 
 import java.sql.*;
@@ -12,7 +13,9 @@ import java.util.*;
  * Objectifs:
  * - Répartition (assignation) des responsabilités
  * - Board dynamique (TODO / DOING / DONE)
- * - Auto-répartition équilibrée
+ * - Auto-répartition équilibrée, pondérée par l'effort estimé de chaque tâche
+ *
+ * Chaque écriture publie {@link ChatHub.Type#TASKS_CHANGED} pour l'annonce concernée.
  */
 public class TaskService {
 
@@ -20,7 +23,14 @@ public class TaskService {
     public static final String DOING = "DOING";
     public static final String DONE  = "DONE";
 
+    /** Effort d'une tâche (points) : 1 par défaut, borné à {@link #MAX_EFFORT}. */
+    public static final int DEFAULT_EFFORT = 1;
+    public static final int MAX_EFFORT = 8;
+    private static final int ASSIGN_BATCH = 500;
+
     private final Connection cnx = Mydb.getInstance().getConnection();
+    private final ChatHub hub = ChatHub.getInstance();
+    private final UserDirectory users = UserDirectory.getInstance();
 
     // ──────────────────────────────────────────────────────────────────
     //  Schema
@@ -39,6 +49,7 @@ public class TaskService {
                     created_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
                     updated_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                     done_at     TIMESTAMP    NULL,
+                    effort      TINYINT      NOT NULL DEFAULT 1,
                     PRIMARY KEY (id),
                     KEY idx_task_annonce (annonce_id, status, updated_at),
                     KEY idx_task_assignee (assigned_to, status)
@@ -49,6 +60,8 @@ public class TaskService {
             st.execute(ddl);
             ensureColumn("sortie_task", "done_at",
                     "ALTER TABLE sortie_task ADD COLUMN done_at TIMESTAMP NULL AFTER updated_at");
+            ensureColumn("sortie_task", "effort",
+                    "ALTER TABLE sortie_task ADD COLUMN effort TINYINT NOT NULL DEFAULT 1 AFTER done_at");
         } catch (SQLException e) {
             System.err.println("[TaskService] Schema init failed: " + e.getMessage());
         }
@@ -72,12 +85,16 @@ public class TaskService {
     // ──────────────────────────────────────────────────────────────────
 
     public int createTask(int annonceId, int createdBy, String title, String description, Integer assignedTo) {
+        return createTask(annonceId, createdBy, title, description, assignedTo, DEFAULT_EFFORT);
+    }
+
+    public int createTask(int annonceId, int createdBy, String title, String description, Integer assignedTo, int effort) {
         if (annonceId <= 0) throw new IllegalArgumentException("annonceId invalide");
         if (createdBy <= 0) throw new IllegalArgumentException("createdBy invalide");
         String t = safe(title).trim();
         if (t.isEmpty()) throw new IllegalArgumentException("Titre vide");
 
-        String sql = "INSERT INTO sortie_task (annonce_id, created_by, title, description, status, assigned_to) VALUES (?,?,?,?, 'TODO', ?)";
+        String sql = "INSERT INTO sortie_task (annonce_id, created_by, title, description, status, assigned_to, effort) VALUES (?,?,?,?, 'TODO', ?, ?)";
         try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, annonceId);
             ps.setInt(2, createdBy);
@@ -88,9 +105,14 @@ public class TaskService {
             } else {
                 ps.setInt(5, assignedTo);
             }
+            ps.setInt(6, clampEffort(effort));
             ps.executeUpdate();
             try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) return keys.getInt(1);
+                if (keys.next()) {
+                    int taskId = keys.getInt(1);
+                    hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.TASKS_CHANGED, annonceId, taskId));
+                    return taskId;
+                }
             }
         } catch (SQLException e) {
             throw new RuntimeException("TaskService.createTask: " + e.getMessage(), e);
@@ -112,6 +134,34 @@ public class TaskService {
         } catch (SQLException e) {
             throw new RuntimeException("TaskService.updateTask: " + e.getMessage(), e);
         }
+        publishTaskChanged(findAnnonceId(taskId), taskId);
+    }
+
+    /**
+     * Effort estimé (1 à {@value #MAX_EFFORT} points), utilisé par {@link #autoAssignBalanced}.
+     * Sans droit de gestion, seul l'assigné peut estimer sa tâche.
+     */
+    public void setEffort(int taskId, int effort, int actorUserId, boolean canManage) {
+        if (taskId <= 0) throw new IllegalArgumentException("taskId invalide");
+        if (actorUserId <= 0) throw new IllegalArgumentException("actorUserId invalide");
+
+        if (!canManage) {
+            TaskAuthRow row = getAuthRow(taskId);
+            if (row == null) throw new RuntimeException("Tâche introuvable");
+            if (row.assignedTo == null || row.assignedTo != actorUserId) {
+                throw new SecurityException("Seul l'organisateur ou l'assigné peut estimer l'effort de cette tâche.");
+            }
+        }
+
+        String sql = "UPDATE sortie_task SET effort=? WHERE id=?";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, clampEffort(effort));
+            ps.setInt(2, taskId);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("TaskService.setEffort: " + e.getMessage(), e);
+        }
+        publishTaskChanged(findAnnonceId(taskId), taskId);
     }
 
     public void assignTask(int taskId, Integer assignedTo) {
@@ -157,6 +207,7 @@ public class TaskService {
         } catch (SQLException e) {
             throw new RuntimeException("TaskService.assignTask: " + e.getMessage(), e);
         }
+        publishTaskChanged(findAnnonceId(taskId), taskId);
     }
 
     public void setStatus(int taskId, String status, int actorUserId) {
@@ -194,6 +245,7 @@ public class TaskService {
             }
             throw new RuntimeException("Changement de statut impossible");
         }
+        publishTaskChanged(findAnnonceId(taskId), taskId);
     }
 
     private static final class TaskAuthRow {
@@ -222,6 +274,7 @@ public class TaskService {
 
     public void deleteTask(int taskId) {
         if (taskId <= 0) throw new IllegalArgumentException("taskId invalide");
+        int annonceId = findAnnonceId(taskId);
         String sql = "DELETE FROM sortie_task WHERE id=?";
         try (PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, taskId);
@@ -229,6 +282,24 @@ public class TaskService {
         } catch (SQLException e) {
             throw new RuntimeException("TaskService.deleteTask: " + e.getMessage(), e);
         }
+        publishTaskChanged(annonceId, taskId);
+    }
+
+    private int findAnnonceId(int taskId) {
+        String sql = "SELECT annonce_id FROM sortie_task WHERE id=?";
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, taskId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("[TaskService] findAnnonceId: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    private void publishTaskChanged(int annonceId, int taskId) {
+        if (annonceId > 0) hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.TASKS_CHANGED, annonceId, taskId));
     }
 
     // ──────────────────────────────────────────────────────────────────
@@ -240,12 +311,8 @@ public class TaskService {
 
         String sql = """
                 SELECT t.id, t.annonce_id, t.created_by, t.title, t.description, t.status, t.assigned_to,
-                       t.created_at, t.updated_at, t.done_at,
-                       CONCAT(COALESCE(cu.prenom,''),' ',COALESCE(cu.nom,'')) AS created_by_name,
-                       CONCAT(COALESCE(au.prenom,''),' ',COALESCE(au.nom,'')) AS assigned_to_name
+                       t.effort, t.created_at, t.updated_at, t.done_at
                 FROM sortie_task t
-                LEFT JOIN user cu ON cu.id = t.created_by
-                LEFT JOIN user au ON au.id = t.assigned_to
                 WHERE t.annonce_id=?
                 ORDER BY
                     CASE UPPER(t.status)
@@ -272,9 +339,7 @@ public class TaskService {
 
                     int at = rs.getInt("assigned_to");
                     t.setAssignedTo(rs.wasNull() ? null : at);
-
-                    t.setCreatedByName(normName(rs.getString("created_by_name"), t.getCreatedBy()));
-                    t.setAssignedToName(normName(rs.getString("assigned_to_name"), t.getAssignedTo()));
+                    t.setEffort(clampEffort(rs.getInt("effort")));
 
                     Timestamp c = rs.getTimestamp("created_at");
                     Timestamp u = rs.getTimestamp("updated_at");
@@ -290,6 +355,17 @@ public class TaskService {
             System.err.println("[TaskService] listTasks: " + e.getMessage());
         }
 
+        // Créateurs et assignés via l'annuaire partagé, en un seul aller-retour
+        Set<Integer> userIds = new HashSet<>();
+        for (TaskSnapshot t : out) {
+            userIds.add(t.getCreatedBy());
+            if (t.getAssignedTo() != null) userIds.add(t.getAssignedTo());
+        }
+        Map<Integer, UserDirectory.Entry> names = users.getAll(userIds);
+        for (TaskSnapshot t : out) {
+            t.setCreatedByName(nameOf(names, t.getCreatedBy()));
+            t.setAssignedToName(nameOf(names, t.getAssignedTo()));
+        }
         return out;
     }
 
@@ -335,54 +411,44 @@ public class TaskService {
 
     public List<Assignee> listEligibleAssignees(int annonceId) {
         if (annonceId <= 0) return List.of();
-        LinkedHashMap<Integer, String> map = new LinkedHashMap<>();
+        Set<Integer> ids = new LinkedHashSet<>();
 
         // Owner
-        String sqlOwner = """
-                SELECT a.user_id, CONCAT(COALESCE(u.prenom,''),' ',COALESCE(u.nom,'')) AS name
-                FROM annonce_sortie a
-                LEFT JOIN user u ON u.id = a.user_id
-                WHERE a.id=?
-                LIMIT 1
-                """;
+        String sqlOwner = "SELECT user_id FROM annonce_sortie WHERE id=? LIMIT 1";
         try (PreparedStatement ps = cnx.prepareStatement(sqlOwner)) {
             ps.setInt(1, annonceId);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     int uid = rs.getInt(1);
-                    if (!rs.wasNull() && uid > 0) {
-                        map.put(uid, normName(rs.getString(2), uid));
-                    }
+                    if (!rs.wasNull() && uid > 0) ids.add(uid);
                 }
             }
         } catch (SQLException ignored) {}
 
         // Accepted members
         String sqlMembers = """
-                SELECT p.user_id, CONCAT(COALESCE(u.prenom,''),' ',COALESCE(u.nom,'')) AS name
+                SELECT p.user_id
                 FROM participation_annonce p
-                LEFT JOIN user u ON u.id = p.user_id
                 WHERE p.annonce_id=?
                   AND (
                            UPPER(p.statut) LIKE 'CONFIRM%'
                         OR UPPER(p.statut) LIKE 'ACCEP%'
                   )
-                ORDER BY name ASC
                 """;
         try (PreparedStatement ps = cnx.prepareStatement(sqlMembers)) {
             ps.setInt(1, annonceId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     int uid = rs.getInt(1);
-                    if (uid <= 0) continue;
-                    map.putIfAbsent(uid, normName(rs.getString(2), uid));
+                    if (uid > 0) ids.add(uid);
                 }
             }
         } catch (SQLException ignored) {}
 
         List<Assignee> out = new ArrayList<>();
-        for (var e : map.entrySet()) {
-            out.add(new Assignee(e.getKey(), e.getValue()));
+        Map<Integer, UserDirectory.Entry> names = users.getAll(ids);
+        for (Integer uid : ids) {
+            out.add(new Assignee(uid, nameOf(names, uid)));
         }
         out.sort(Comparator.comparing(a -> a.name.toLowerCase(Locale.ROOT)));
         return out;
@@ -392,72 +458,131 @@ public class TaskService {
     //  Auto assign (équilibré)
     // ──────────────────────────────────────────────────────────────────
 
+    /**
+     * Répartit les tâches ouvertes non assignées entre l'organisateur et les membres acceptés.
+     *
+     * Charge de chaque membre = somme des efforts de ses tâches ouvertes (une requête groupée).
+     * Les tâches sont placées de la plus lourde à la plus légère, chacune chez le membre le moins
+     * chargé (tas min) ; à effort égal, ordre de création. Les affectations sont écrites en un
+     * UPDATE par lot dans une transaction, seulement sur les tâches encore non assignées.
+     *
+     * @return nombre de tâches assignées
+     */
     public int autoAssignBalanced(int annonceId) {
         if (annonceId <= 0) return 0;
 
         List<Assignee> members = listEligibleAssignees(annonceId);
         if (members.isEmpty()) return 0;
+        List<Integer> memberIds = new ArrayList<>();
+        for (Assignee a : members) memberIds.add(a.userId);
 
-        // Load current load per user (open tasks)
-        Map<Integer, Integer> load = new HashMap<>();
-        for (Assignee a : members) {
-            load.put(a.userId, countOpenAssignedTo(annonceId, a.userId));
-        }
-
-        // Get unassigned tasks (not DONE)
-        String sqlTasks = "SELECT id FROM sortie_task WHERE annonce_id=? AND assigned_to IS NULL AND UPPER(status) <> 'DONE' ORDER BY created_at ASC";
-        List<Integer> tasks = new ArrayList<>();
-        try (PreparedStatement ps = cnx.prepareStatement(sqlTasks)) {
-            ps.setInt(1, annonceId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) tasks.add(rs.getInt(1));
-            }
+        int changed;
+        try {
+            // Connexion dédiée : les verrous FOR UPDATE protègent aussi des autres threads
+            changed = Mydb.getInstance().inTransaction(c -> {
+                List<OpenTask> unassigned = lockUnassignedTasks(c, annonceId);
+                Map<Integer, Integer> plan = unassigned.isEmpty()
+                        ? Map.of()
+                        : planBalanced(memberIds, loadByAssignee(c, annonceId), unassigned);
+                return applyAssignments(c, annonceId, plan);
+            });
         } catch (SQLException e) {
-            System.err.println("[TaskService] autoAssignBalanced tasks: " + e.getMessage());
-            return 0;
+            throw new RuntimeException("TaskService.autoAssignBalanced: " + e.getMessage(), e);
         }
-        if (tasks.isEmpty()) return 0;
 
-        String sqlAssign = "UPDATE sortie_task SET assigned_to=? WHERE id=?";
-        int changed = 0;
-        try (PreparedStatement ps = cnx.prepareStatement(sqlAssign)) {
-            for (int taskId : tasks) {
-                int chosen = pickLeastLoaded(load, members);
-                ps.setInt(1, chosen);
-                ps.setInt(2, taskId);
-                changed += ps.executeUpdate();
-                load.put(chosen, load.getOrDefault(chosen, 0) + 1);
-            }
-        } catch (SQLException e) {
-            System.err.println("[TaskService] autoAssignBalanced assign: " + e.getMessage());
+        if (changed > 0) publishTaskChanged(annonceId, 0);
+        return changed;
+    }
+
+    /** Tâche ouverte à répartir. */
+    record OpenTask(int id, int effort) {}
+
+    /**
+     * Affectation gloutonne « plus lourde d'abord » : chaque tâche va au membre le moins chargé.
+     * À charge égale, l'ordre de {@code memberIds} départage.
+     *
+     * @param load   charge actuelle par membre (absents = 0) ; les non-membres sont ignorés
+     * @param tasks  tâches dans l'ordre de création
+     * @return tâche → membre, dans l'ordre d'affectation
+     */
+    static Map<Integer, Integer> planBalanced(List<Integer> memberIds, Map<Integer, Long> load, List<OpenTask> tasks) {
+        Map<Integer, Integer> plan = new LinkedHashMap<>();
+        if (memberIds.isEmpty() || tasks.isEmpty()) return plan;
+
+        record Slot(int userId, int rank, long load) {}
+        PriorityQueue<Slot> heap = new PriorityQueue<>(
+                Comparator.comparingLong(Slot::load).thenComparingInt(Slot::rank));
+        for (int i = 0; i < memberIds.size(); i++) {
+            int uid = memberIds.get(i);
+            heap.add(new Slot(uid, i, load.getOrDefault(uid, 0L)));
         }
 
-        return changed;
+        List<OpenTask> ordered = new ArrayList<>(tasks);
+        ordered.sort(Comparator.comparingInt(OpenTask::effort).reversed()); // tri stable : création à égalité
+        for (OpenTask t : ordered) {
+            Slot s = heap.poll();
+            plan.put(t.id(), s.userId());
+            heap.add(new Slot(s.userId(), s.rank(), s.load() + t.effort()));
+        }
+        return plan;
     }
 
-    private int pickLeastLoaded(Map<Integer, Integer> load, List<Assignee> members) {
-        int bestId = members.get(0).userId;
-        int best = Integer.MAX_VALUE;
-        for (Assignee a : members) {
-            int v = load.getOrDefault(a.userId, 0);
-            if (v < best) {
-                best = v;
-                bestId = a.userId;
+    private List<OpenTask> lockUnassignedTasks(Connection c, int annonceId) throws SQLException {
+        String sql = """
+                SELECT id, effort FROM sortie_task
+                WHERE annonce_id=? AND assigned_to IS NULL AND UPPER(status) <> 'DONE'
+                ORDER BY created_at ASC, id ASC
+                FOR UPDATE
+                """;
+        List<OpenTask> out = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, annonceId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(new OpenTask(rs.getInt(1), clampEffort(rs.getInt(2))));
             }
         }
-        return bestId;
+        return out;
     }
 
-    private int countOpenAssignedTo(int annonceId, int userId) {
-        String sql = "SELECT COUNT(*) FROM sortie_task WHERE annonce_id=? AND assigned_to=? AND UPPER(status) <> 'DONE'";
-        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+    /** Effort ouvert cumulé par assigné, en une requête. */
+    private Map<Integer, Long> loadByAssignee(Connection c, int annonceId) throws SQLException {
+        String sql = """
+                SELECT assigned_to, SUM(GREATEST(effort, 1)) FROM sortie_task
+                WHERE annonce_id=? AND assigned_to IS NOT NULL AND UPPER(status) <> 'DONE'
+                GROUP BY assigned_to
+                """;
+        Map<Integer, Long> out = new HashMap<>();
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, annonceId);
-            ps.setInt(2, userId);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt(1);
+                while (rs.next()) out.put(rs.getInt(1), rs.getLong(2));
             }
-        } catch (SQLException ignored) {}
-        return 0;
+        }
+        return out;
+    }
+
+    /** UPDATE ... CASE id par lots de {@value #ASSIGN_BATCH}, sans écraser une assignation concurrente. */
+    private int applyAssignments(Connection c, int annonceId, Map<Integer, Integer> plan) throws SQLException {
+        List<Map.Entry<Integer, Integer>> rows = new ArrayList<>(plan.entrySet());
+        int changed = 0;
+        for (int from = 0; from < rows.size(); from += ASSIGN_BATCH) {
+            List<Map.Entry<Integer, Integer>> chunk = rows.subList(from, Math.min(rows.size(), from + ASSIGN_BATCH));
+            StringBuilder sql = new StringBuilder("UPDATE sortie_task SET assigned_to = CASE id");
+            for (int i = 0; i < chunk.size(); i++) sql.append(" WHEN ? THEN ?");
+            sql.append(" END WHERE annonce_id=? AND assigned_to IS NULL AND id IN (")
+                    .append(String.join(",", Collections.nCopies(chunk.size(), "?"))).append(")");
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                int k = 1;
+                for (var e : chunk) {
+                    ps.setInt(k++, e.getKey());
+                    ps.setInt(k++, e.getValue());
+                }
+                ps.setInt(k++, annonceId);
+                for (var e : chunk) ps.setInt(k++, e.getKey());
+                changed += ps.executeUpdate();
+            }
+        }
+        return changed;
     }
 
     // ──────────────────────────────────────────────────────────────────
@@ -509,6 +634,10 @@ public class TaskService {
         };
     }
 
+    private static int clampEffort(int effort) {
+        return Math.max(DEFAULT_EFFORT, Math.min(MAX_EFFORT, effort));
+    }
+
     private static String emptyToNull(String s) {
         String t = safe(s).trim();
         return t.isEmpty() ? null : t;
@@ -518,10 +647,9 @@ public class TaskService {
         return s == null ? "" : s;
     }
 
-    private static String normName(String name, Integer userId) {
-        String n = safe(name).trim();
-        if (!n.isBlank()) return n;
-        if (userId != null && userId > 0) return "Utilisateur #" + userId;
-        return "";
+    private static String nameOf(Map<Integer, UserDirectory.Entry> names, Integer userId) {
+        if (userId == null || userId <= 0) return "";
+        UserDirectory.Entry e = names.get(userId);
+        return e == null ? "Utilisateur #" + userId : e.label();
     }
 }
@@ -0,0 +1,181 @@
+package services.users;
+
+import utils.Mydb;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Annuaire partagé des utilisateurs : id → nom d'affichage, avatar, rôle.
+ *
+ * Remplace les {@code LEFT JOIN user} faits uniquement pour afficher « prénom nom »
+ * (chat, sondages, tâches, album) : les services lisent leurs lignes sans jointure puis
+ * résolvent tous les ids d'un coup via {@link #getAll} (une requête IN pour les absents).
+ *
+ * Cache borné à {@value #MAX_ENTRIES} entrées (LRU) avec une durée de vie de {@link #TTL} ;
+ * {@link UserService#modifier} et {@link UserService#supprimer} invalident l'entrée concernée.
+ * Les ids inconnus sont aussi mis en cache (nom vide) pour ne pas être relus à chaque ligne.
+ */
+public final class UserDirectory {
+
+    static final int MAX_ENTRIES = 5_000;
+    static final Duration TTL = Duration.ofMinutes(10);
+    /** Ids par requête IN. */
+    static final int LOAD_CHUNK = 500;
+
+    /** Vue d'affichage d'un utilisateur ; {@code displayName} vide si inconnu. */
+    public record Entry(int id, String displayName, String avatarPath, String role) {
+        /** Nom d'affichage, ou « Utilisateur #id » à défaut. */
+        public String label() {
+            return displayName == null || displayName.isBlank() ? "Utilisateur #" + id : displayName;
+        }
+    }
+
+    /** Lecture des utilisateurs demandés (les ids absents de la réponse sont considérés inconnus). */
+    @FunctionalInterface
+    interface Loader {
+        Map<Integer, Entry> load(Collection<Integer> ids) throws Exception;
+    }
+
+    private record Cached(Entry entry, long loadedAtMs) {}
+
+    private static volatile UserDirectory instance;
+
+    private final Loader loader;
+    private final LongSupplier clock;
+
+    // Ordre d'accès : l'entrée la moins récemment lue sort en premier (protégé par this)
+    private final LinkedHashMap<Integer, Cached> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Cached> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // Incrémenté à chaque invalidation : un chargement commencé avant n'écrase pas le cache
+    private long generation;
+
+    public static UserDirectory getInstance() {
+        if (instance == null) {
+            synchronized (UserDirectory.class) {
+                if (instance == null) {
+                    instance = new UserDirectory(UserDirectory::loadFromDb, System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    UserDirectory(Loader loader, LongSupplier clock) {
+        this.loader = loader;
+        this.clock = clock;
+    }
+
+    public Entry get(int userId) {
+        if (userId <= 0) return null;
+        return getAll(List.of(userId)).get(userId);
+    }
+
+    /** Nom d'affichage, « Utilisateur #id » si inconnu, vide pour un id absent (null ou ≤ 0). */
+    public String displayName(Integer userId) {
+        if (userId == null || userId <= 0) return "";
+        Entry e = get(userId);
+        return e == null ? "Utilisateur #" + userId : e.label();
+    }
+
+    /**
+     * Entrées des ids demandés (les ids ≤ 0 sont ignorés). Les absents ou expirés sont lus
+     * en une requête ; en cas d'erreur de base, ils reçoivent une entrée vide non mise en cache.
+     */
+    public Map<Integer, Entry> getAll(Collection<Integer> userIds) {
+        Map<Integer, Entry> out = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) return out;
+
+        Set<Integer> missing = new LinkedHashSet<>();
+        long gen;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            for (Integer id : userIds) {
+                if (id == null || id <= 0 || out.containsKey(id)) continue;
+                Cached c = cache.get(id);
+                if (c != null && now - c.loadedAtMs() < TTL.toMillis()) out.put(id, c.entry());
+                else missing.add(id);
+            }
+            gen = generation;
+        }
+        if (missing.isEmpty()) return out;
+
+        Map<Integer, Entry> loaded;
+        try {
+            loaded = loader.load(missing);
+        } catch (Exception ex) {
+            System.err.println("[UserDirectory] Lecture: " + ex.getMessage());
+            for (Integer id : missing) out.put(id, unknown(id));
+            return out;
+        }
+
+        synchronized (this) {
+            long now = clock.getAsLong();
+            boolean fresh = gen == generation;
+            for (Integer id : missing) {
+                Entry e = loaded.get(id);
+                if (e == null) e = unknown(id);
+                out.put(id, e);
+                if (fresh) cache.put(id, new Cached(e, now));
+            }
+        }
+        return out;
+    }
+
+    public synchronized void invalidate(int userId) {
+        cache.remove(userId);
+        generation++;
+    }
+
+    public synchronized void invalidateAll() {
+        cache.clear();
+        generation++;
+    }
+
+    synchronized int size() {
+        return cache.size();
+    }
+
+    private static Entry unknown(int id) {
+        return new Entry(id, "", null, null);
+    }
+
+    private static Map<Integer, Entry> loadFromDb(Collection<Integer> ids) throws SQLException {
+        List<Integer> all = new ArrayList<>(ids);
+        Map<Integer, Entry> out = new HashMap<>();
+        for (int from = 0; from < all.size(); from += LOAD_CHUNK) {
+            List<Integer> chunk = all.subList(from, Math.min(all.size(), from + LOAD_CHUNK));
+            String sql = "SELECT id, prenom, nom, imageUrl, role FROM user WHERE id IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement ps = Mydb.getInstance().getConnection().prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 1, chunk.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("id");
+                        String name = (safe(rs.getString("prenom")).trim() + " " + safe(rs.getString("nom")).trim()).trim();
+                        out.put(id, new Entry(id, name, rs.getString("imageUrl"), rs.getString("role")));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static String safe(String s) { return s == null ? "" : s; }
+}
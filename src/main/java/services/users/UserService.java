@@ -69,6 +69,8 @@ public class UserService implements CrudService<User, Integer> {
             ps.setInt(8, user.getId());
             ps.executeUpdate();
         }
+        // Nom, avatar ou rôle ont pu changer
+        UserDirectory.getInstance().invalidate(user.getId());
     }
 
     /**
@@ -80,6 +82,7 @@ public class UserService implements CrudService<User, Integer> {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
+        UserDirectory.getInstance().invalidate(id);
     }
 
     /**
@@ -0,0 +1,427 @@
+package services.weather;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Passerelle unique vers les API météo (Open-Meteo pour les prévisions journalières,
+ * OpenWeatherMap pour la météo actuelle), partagée par les deux WeatherService.
+ *
+ * - Cache clé = (source, lat/lon arrondies à 0.01°, jour) avec une durée de vie
+ *   alignée sur le rafraîchissement des prévisions (1 h journalier, 10 min actuel).
+ * - Requêtes identiques simultanées fusionnées : un seul appel HTTP, les autres attendent.
+ * - Cache disque (~/.fintokhrej/weather-cache) relu au redémarrage ; hors ligne,
+ *   une valeur expirée de moins de {@link #MAX_STALE} est servie plutôt qu'une erreur.
+ *   Un fichier par (point, jour) : ceux plus vieux que {@link #MAX_STALE} sont supprimés
+ *   à la première écriture, puis au plus une fois par {@link #PRUNE_INTERVAL}.
+ */
+public final class WeatherGateway {
+
+    private static final String OPEN_METEO_URL = "https://api.open-meteo.com/v1/forecast";
+    private static final String OPEN_WEATHER_URL = "https://api.openweathermap.org/data/2.5/weather";
+    private static final String OPEN_WEATHER_KEY = "e2cd7474a04693143ae50e42eca0738c";
+
+    /** Open-Meteo recalcule ses prévisions environ toutes les heures. */
+    static final Duration FORECAST_TTL = Duration.ofHours(1);
+    /** OpenWeatherMap met à jour l'observation actuelle toutes les 10 minutes. */
+    static final Duration CURRENT_TTL = Duration.ofMinutes(10);
+    /** Au-delà, une valeur expirée n'est plus servie même hors ligne. */
+    static final Duration MAX_STALE = Duration.ofDays(3);
+    private static final int MAX_MEMORY_ENTRIES = 2_000;
+    /** Écart minimal entre deux nettoyages du dossier de cache. */
+    static final Duration PRUNE_INTERVAL = Duration.ofHours(6);
+
+    private static final String DAILY_PARAMS =
+            "temperature_2m_max,temperature_2m_min,precipitation_sum,windspeed_10m_max,weathercode";
+
+    /** Prévision d'un jour pour un point (valeurs null de l'API → 0). */
+    public record DailyForecast(LocalDate date, double tempMax, double tempMin,
+                                double precipitation, double windMax, int weatherCode) {
+
+        String toLine() {
+            return String.format(Locale.ROOT, "%s;%s;%s;%s;%s;%d",
+                    date, tempMax, tempMin, precipitation, windMax, weatherCode);
+        }
+
+        static DailyForecast parseLine(String line) {
+            String[] p = line.trim().split(";");
+            return new DailyForecast(LocalDate.parse(p[0]), Double.parseDouble(p[1]), Double.parseDouble(p[2]),
+                    Double.parseDouble(p[3]), Double.parseDouble(p[4]), Integer.parseInt(p[5]));
+        }
+    }
+
+    /** Clé de cache : coordonnées en centièmes de degré (~1 km). */
+    record Key(String source, long latE2, long lonE2, String day) {
+        static Key of(String source, double lat, double lon, String day) {
+            return new Key(source, Math.round(lat * 100), Math.round(lon * 100), day);
+        }
+
+        double lat() { return latE2 / 100.0; }
+        double lon() { return lonE2 / 100.0; }
+
+        String fileName() {
+            return source + "_" + latE2 + "_" + lonE2 + "_" + day + ".txt";
+        }
+    }
+
+    private record Cached(String payload, long fetchedAtMillis) {}
+
+    private static volatile WeatherGateway instance;
+
+    private final String openMeteoUrl;
+    private final String openWeatherUrl;
+    private final Path diskDir;
+    private final LongSupplier clock;
+    private final HttpClient httpClient;
+
+    private final Map<Key, Cached> memory = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong lastPruneMillis = new AtomicLong(Long.MIN_VALUE);
+
+    public static WeatherGateway getInstance() {
+        if (instance == null) {
+            synchronized (WeatherGateway.class) {
+                if (instance == null) {
+                    instance = new WeatherGateway(OPEN_METEO_URL, OPEN_WEATHER_URL,
+                            Paths.get(System.getProperty("user.home"), ".fintokhrej", "weather-cache"),
+                            System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Pour les tests : URLs locales, dossier de cache dédié (null = pas de disque), horloge. */
+    WeatherGateway(String openMeteoUrl, String openWeatherUrl, Path diskDir, LongSupplier clock) {
+        this.openMeteoUrl = openMeteoUrl;
+        this.openWeatherUrl = openWeatherUrl;
+        this.diskDir = diskDir;
+        this.clock = clock;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  API
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Prévision journalière Open-Meteo pour un point et un jour.
+     *
+     * @throws IOException si l'API est injoignable et qu'aucune valeur récente n'est en cache
+     */
+    public DailyForecast dailyForecast(double lat, double lon, LocalDate date) throws IOException {
+        Key key = Key.of("daily", lat, lon, date.toString());
+        Cached cached = lookup(key);
+        if (isFresh(cached, FORECAST_TTL)) return DailyForecast.parseLine(cached.payload());
+
+        try {
+            Map<LocalDate, DailyForecast> days = fetchDailyRange(key.lat(), key.lon(), date, date);
+            DailyForecast f = days.get(date);
+            if (f == null) throw new IOException("Jour absent de la réponse Open-Meteo: " + date);
+            return f;
+        } catch (IOException e) {
+            if (isUsableStale(cached)) {
+                System.err.println("[Weather] Hors ligne, prévision en cache servie: " + e);
+                return DailyForecast.parseLine(cached.payload());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * JSON brut OpenWeatherMap (météo actuelle) pour un point.
+     *
+     * @throws IOException si l'API est injoignable et qu'aucune valeur récente n'est en cache
+     */
+    public String currentWeatherJson(double lat, double lon) throws IOException {
+        Key key = Key.of("current", lat, lon, "now");
+        Cached cached = lookup(key);
+        if (isFresh(cached, CURRENT_TTL)) return cached.payload();
+
+        String url = String.format(Locale.ROOT, "%s?lat=%.2f&lon=%.2f&appid=%s&units=metric&lang=fr",
+                openWeatherUrl, key.lat(), key.lon(), OPEN_WEATHER_KEY);
+        try {
+            return singleFlight(url, () -> {
+                String json = httpGet(url);
+                store(key, json);
+                return json;
+            });
+        } catch (IOException e) {
+            if (isUsableStale(cached)) {
+                System.err.println("[Weather] Hors ligne, météo en cache servie: " + e);
+                return cached.payload();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Prévision journalière déjà en cache (mémoire ou disque) et encore fraîche,
+     * sans aucun appel réseau ; null sinon.
+     */
+    public DailyForecast peekDailyForecast(double lat, double lon, LocalDate date) {
+        Cached cached = lookup(Key.of("daily", lat, lon, date.toString()));
+        return isFresh(cached, FORECAST_TTL) ? DailyForecast.parseLine(cached.payload()) : null;
+    }
+
+    /**
+     * Précharge [from, to] pour un point en un seul appel Open-Meteo ;
+     * chaque jour reçu alimente le cache comme un appel {@link #dailyForecast} isolé.
+     */
+    public Map<LocalDate, DailyForecast> prefetchDailyRange(double lat, double lon, LocalDate from, LocalDate to)
+            throws IOException {
+        Key origin = Key.of("daily", lat, lon, from.toString());
+        return fetchDailyRange(origin.lat(), origin.lon(), from, to);
+    }
+
+    /** Vide le cache mémoire (le disque est conservé). */
+    public void clearMemory() {
+        memory.clear();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Open-Meteo
+    // ─────────────────────────────────────────────────────────────
+
+    /** Un appel Open-Meteo pour [from, to] ; chaque jour reçu est mis en cache séparément. */
+    Map<LocalDate, DailyForecast> fetchDailyRange(double lat, double lon, LocalDate from, LocalDate to)
+            throws IOException {
+        String url = String.format(Locale.ROOT,
+                "%s?latitude=%.2f&longitude=%.2f&daily=%s&start_date=%s&end_date=%s&timezone=auto",
+                openMeteoUrl, lat, lon, DAILY_PARAMS, from, to);
+        return singleFlight(url, () -> {
+            Map<LocalDate, DailyForecast> days = parseDaily(httpGet(url));
+            for (DailyForecast f : days.values()) {
+                store(Key.of("daily", lat, lon, f.date().toString()), f.toLine());
+            }
+            return days;
+        });
+    }
+
+    /** Parse le bloc "daily" (tableaux parallèles) d'une réponse Open-Meteo. */
+    static Map<LocalDate, DailyForecast> parseDaily(String json) {
+        int daily = json.indexOf("\"daily\"");
+        if (daily < 0) throw new IllegalArgumentException("Bloc daily absent.");
+        String body = json.substring(daily);
+        String[] dates = array(body, "time");
+        String[] tMax = array(body, "temperature_2m_max");
+        String[] tMin = array(body, "temperature_2m_min");
+        String[] precip = array(body, "precipitation_sum");
+        String[] wind = array(body, "windspeed_10m_max");
+        String[] code = array(body, "weathercode");
+
+        Map<LocalDate, DailyForecast> out = new HashMap<>();
+        for (int i = 0; i < dates.length; i++) {
+            String d = dates[i].replace("\"", "").trim();
+            if (d.isEmpty()) continue;
+            out.put(LocalDate.parse(d), new DailyForecast(LocalDate.parse(d),
+                    num(tMax, i), num(tMin, i), num(precip, i), num(wind, i), (int) num(code, i)));
+        }
+        return out;
+    }
+
+    private static String[] array(String json, String key) {
+        String search = "\"" + key + "\":[";
+        int idx = json.indexOf(search);
+        if (idx < 0) return new String[0];
+        int start = idx + search.length();
+        int end = json.indexOf(']', start);
+        if (end < 0) return new String[0];
+        String content = json.substring(start, end).trim();
+        return content.isEmpty() ? new String[0] : content.split(",");
+    }
+
+    private static double num(String[] values, int i) {
+        if (i >= values.length) return 0;
+        String v = values[i].trim();
+        if (v.isEmpty() || v.equals("null")) return 0;
+        return Double.parseDouble(v);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  HTTP + fusion des requêtes
+    // ─────────────────────────────────────────────────────────────
+
+    private String httpGet(String url) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("User-Agent", "JavaFX-EventApp/1.0")
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("Erreur API météo: " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Appel météo interrompu", e);
+        }
+    }
+
+    /**
+     * Exécute {@code call} une seule fois pour tous les appelants concurrents du même {@code id}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(String id, Callable<T> call) throws IOException {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(id, mine);
+        if (existing == null) {
+            try {
+                mine.complete(call.call());
+            } catch (Throwable t) {
+                mine.completeExceptionally(t);
+            } finally {
+                inFlight.remove(id, mine);
+            }
+        }
+        try {
+            return (T) (existing != null ? existing : mine).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Appel météo interrompu", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    //  Cache mémoire + disque
+    // ─────────────────────────────────────────────────────────────
+
+    private boolean isFresh(Cached c, Duration ttl) {
+        return c != null && clock.getAsLong() - c.fetchedAtMillis() < ttl.toMillis();
+    }
+
+    private boolean isUsableStale(Cached c) {
+        return c != null && clock.getAsLong() - c.fetchedAtMillis() < MAX_STALE.toMillis();
+    }
+
+    private Cached lookup(Key key) {
+        Cached c = memory.get(key);
+        if (c != null) return c;
+        c = readDisk(key);
+        if (c != null) memory.put(key, c);
+        return c;
+    }
+
+    private void store(Key key, String payload) {
+        Cached c = new Cached(payload, clock.getAsLong());
+        if (memory.size() >= MAX_MEMORY_ENTRIES) evictExpired();
+        memory.put(key, c);
+        writeDisk(key, c);
+    }
+
+    private void evictExpired() {
+        long now = clock.getAsLong();
+        memory.values().removeIf(c -> now - c.fetchedAtMillis() >= MAX_STALE.toMillis());
+        if (memory.size() >= MAX_MEMORY_ENTRIES) memory.clear();
+    }
+
+    private Cached readDisk(Key key) {
+        if (diskDir == null) return null;
+        Path file = diskDir.resolve(key.fileName());
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int nl = content.indexOf('\n');
+            if (nl < 0) return null;
+            return new Cached(content.substring(nl + 1), Long.parseLong(content.substring(0, nl).trim()));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Écriture atomique (fichier temporaire puis renommage) : pas de fichier tronqué au crash. */
+    private void writeDisk(Key key, Cached c) {
+        if (diskDir == null) return;
+        pruneDiskIfDue();
+        try {
+            Files.createDirectories(diskDir);
+            Path target = diskDir.resolve(key.fileName());
+            Path tmp = Files.createTempFile(diskDir, key.source(), ".tmp");
+            Files.writeString(tmp, c.fetchedAtMillis() + "\n" + c.payload(), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException atomicUnsupported) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("[Weather] Cache disque non écrit: " + e.getMessage());
+        }
+    }
+
+    private void pruneDiskIfDue() {
+        long now = clock.getAsLong();
+        long last = lastPruneMillis.get();
+        if (last != Long.MIN_VALUE && now - last < PRUNE_INTERVAL.toMillis()) return;
+        // Un seul thread nettoie ; les autres écrivent sans attendre
+        if (lastPruneMillis.compareAndSet(last, now)) pruneDisk();
+    }
+
+    /**
+     * Supprime les entrées plus vieilles que {@link #MAX_STALE} (jamais resservies) et les
+     * fichiers temporaires abandonnés par un crash.
+     *
+     * @return nombre de fichiers supprimés
+     */
+    int pruneDisk() {
+        if (diskDir == null || !Files.isDirectory(diskDir)) return 0;
+        long limit = clock.getAsLong() - MAX_STALE.toMillis();
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDir)) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file)) continue;
+                try {
+                    if (fetchedAtOnDisk(file) < limit && Files.deleteIfExists(file)) deleted++;
+                } catch (IOException e) {
+                    System.err.println("[Weather] Cache disque non nettoyé: " + file.getFileName() + " " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[Weather] Cache disque non nettoyé: " + e.getMessage());
+        }
+        return deleted;
+    }
+
+    /** Horodatage d'une entrée (première ligne) ; à défaut (temporaire, fichier illisible), sa date de modification. */
+    private static long fetchedAtOnDisk(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".txt")) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String first = in.readLine();
+                if (first != null) return Long.parseLong(first.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Files.getLastModifiedTime(file).toMillis();
+    }
+}
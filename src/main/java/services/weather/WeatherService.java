@@ -1,9 +1,5 @@
 package services.weather;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,12 +7,10 @@ import java.util.regex.Pattern;
  * Service pour récupérer les données météo via OpenWeatherMap API.
  * Utilise les coordonnées GPS (latitude, longitude) pour obtenir la météo actuelle.
  * Parse le JSON manuellement (aucune dépendance externe requise).
+ * L'appel HTTP et le cache (10 min, disque) sont assurés par {@link WeatherGateway}.
  */
 public class WeatherService {
 
-    private static final String API_KEY = "e2cd7474a04693143ae50e42eca0738c";
-    private static final String BASE_URL = "https://api.openweathermap.org/data/2.5/weather";
-
     /**
      * Récupère les données météo pour un lieu donné.
      * 
@@ -26,25 +20,7 @@ public class WeatherService {
      * @throws Exception Si l'appel API échoue
      */
     public static WeatherData getWeather(double latitude, double longitude) throws Exception {
-        String url = String.format(
-            "%s?lat=%.4f&lon=%.4f&appid=%s&units=metric&lang=fr",
-            BASE_URL, latitude, longitude, API_KEY
-        );
-
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(url))
-            .GET()
-            .timeout(java.time.Duration.ofSeconds(5))
-            .build();
-
-        HttpResponse<String> response = HttpClient.newHttpClient()
-            .send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() != 200) {
-            throw new Exception("Erreur API météo: " + response.statusCode());
-        }
-
-        return parseWeatherResponse(response.body());
+        return parseWeatherResponse(WeatherGateway.getInstance().currentWeatherJson(latitude, longitude));
     }
 
     /**
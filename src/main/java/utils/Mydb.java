@@ -1,25 +1,40 @@
 package utils;
 
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 public class Mydb {
 
+    /** Connexions dédiées gardées ouvertes entre deux transactions. */
+    private static final int MAX_IDLE_TX = 4;
+
+    /** Corps d'une transaction, exécuté sur la connexion dédiée du thread. */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection cn) throws SQLException;
+    }
+
     private final String url="jdbc:mysql://localhost:3306/fintokhrej";
     private final String user="root";
     private final String password="";
 
     public Connection getConnection() {
-        Connection cn = getOrCreateConnection();
-        return nonClosingProxy(cn);
+        getOrCreateConnection();
+        return nonClosingProxy(null);
     }
 
     private Connection connection;
-    private static Mydb instance;
+    private static volatile Mydb instance;
+    // Connexion de la transaction en cours sur ce thread (null hors transaction)
+    private final ThreadLocal<Connection> currentTx = new ThreadLocal<>();
+    private final Deque<Connection> idleTx = new ArrayDeque<>();
     
     public Mydb(){
         // Lazy-init via getOrCreateConnection(), but try to connect once early for fast feedback.
@@ -33,11 +48,93 @@ public class Mydb {
     }
     
     public static Mydb getInstance(){
-        if(instance==null)
-            instance=new Mydb();
+        if(instance==null) {
+            synchronized (Mydb.class) {
+                if(instance==null)
+                    instance=new Mydb();
+            }
+        }
         return instance;
     }
 
+    /**
+     * Exécute {@code work} dans une transaction sur une connexion dédiée, jamais sur la connexion partagée :
+     * les autres threads (UI, tâches de fond) ne voient ni ne rejoignent cette transaction, et les
+     * {@code SELECT ... FOR UPDATE} se protègent réellement entre threads.
+     * <p>
+     * Pendant la transaction, les connexions obtenues par {@link #getConnection()} sur ce même thread
+     * (champs {@code cnx} des services) pointent vers la connexion dédiée ; un appel imbriqué rejoint
+     * donc la transaction du thread courant, jamais celle d'un autre.
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        Connection joined = currentTx.get();
+        if (joined != null) return work.run(nonClosingProxy(joined));
+
+        Connection cn = borrowTxConnection();
+        boolean committed = false;
+        boolean healthy = true;
+        currentTx.set(cn);
+        try {
+            cn.setAutoCommit(false);
+            T result = work.run(nonClosingProxy(cn));
+            cn.commit();
+            committed = true;
+            return result;
+        } finally {
+            currentTx.remove();
+            if (!committed) {
+                try {
+                    cn.rollback();
+                } catch (SQLException e) {
+                    healthy = false;
+                }
+            }
+            releaseTxConnection(cn, healthy);
+        }
+    }
+
+    private Connection borrowTxConnection() throws SQLException {
+        while (true) {
+            Connection cn;
+            synchronized (idleTx) {
+                cn = idleTx.pollFirst();
+            }
+            if (cn == null) return DriverManager.getConnection(url, user, password);
+            try {
+                if (cn.isValid(2)) return cn;
+            } catch (SQLException ignored) {
+                // connexion morte : on en prend une autre
+            }
+            closeQuietly(cn);
+        }
+    }
+
+    private void releaseTxConnection(Connection cn, boolean healthy) {
+        if (healthy) {
+            try {
+                cn.setAutoCommit(true);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+        }
+        if (healthy) {
+            synchronized (idleTx) {
+                if (idleTx.size() < MAX_IDLE_TX) {
+                    idleTx.addFirst(cn);
+                    return;
+                }
+            }
+        }
+        closeQuietly(cn);
+    }
+
+    private static void closeQuietly(Connection cn) {
+        try {
+            cn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
     private synchronized Connection getOrCreateConnection() {
         try {
             if (connection == null || connection.isClosed()) {
@@ -52,11 +149,18 @@ public class Mydb {
     /**
      * Returns a Connection wrapper that ignores close() calls.
      * This prevents accidental closing of the shared connection via try-with-resources.
+     * With a null {@code fixed} target, each call goes to the calling thread's transaction
+     * connection if it has one, otherwise to the shared connection.
      */
-    private static Connection nonClosingProxy(Connection target) {
+    private Connection nonClosingProxy(Connection fixed) {
         InvocationHandler handler = new InvocationHandler() {
             @Override
             public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Connection target = fixed;
+                if (target == null) {
+                    target = currentTx.get();
+                    if (target == null) target = getOrCreateConnection();
+                }
                 String name = method.getName();
                 if ("close".equals(name)) {
                     return null; // no-op
@@ -70,7 +174,11 @@ public class Mydb {
                 if ("isWrapperFor".equals(name)) {
                     return target.isWrapperFor((Class<?>) args[0]);
                 }
-                return method.invoke(target, args);
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
             }
         };
         return (Connection) Proxy.newProxyInstance(
@@ -0,0 +1,72 @@
+package utils.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limiteur de débit « seau à jetons » partagé entre threads.
+ *
+ * - {@code permitsPerSecond} jetons sont ajoutés par seconde, jusqu'à {@code burst}.
+ * - {@link #acquire()} bloque jusqu'à ce qu'un jeton soit disponible.
+ * - {@link #pauseFor(long)} suspend tous les appelants (ex. Retry-After d'un 429) :
+ *   le seau est vidé et aucun jeton n'est délivré avant l'échéance.
+ */
+public final class TokenBucketRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond doit être > 0.");
+        if (burst < 1) throw new IllegalArgumentException("burst doit être >= 1.");
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Attend un jeton.
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now - pausedUntil < 0) {
+                    waitNanos = pausedUntil - now;
+                } else {
+                    refill(now);
+                    if (tokens >= 1.0) {
+                        tokens -= 1.0;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((1.0 - tokens) / permitsPerNano);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 100_000));
+        }
+    }
+
+    /**
+     * Suspend la délivrance de jetons pendant {@code millis} ms (cumul : on garde l'échéance la plus lointaine).
+     */
+    public synchronized void pauseFor(long millis) {
+        if (millis <= 0) return;
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until - pausedUntil > 0) pausedUntil = until;
+        tokens = 0;
+        lastRefill = until;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) return;
+        tokens = Math.min(burst, tokens + elapsed * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,227 @@
+package utils.payment;
+
+import models.evenements.Evenement;
+import models.evenements.Inscription;
+import models.evenements.Paiement;
+import models.users.User;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Génère en lot les tickets PDF de toutes les inscriptions d'un événement.
+ *
+ * - Le rendu est parallèle (un PDDocument par ticket, pool de threads borné).
+ * - Les parties fixes du ticket (fond/libellés et pied de page) sont pré-rendues
+ *   UNE fois en flux d'opérateurs, puis posées sur chaque page sous forme de
+ *   form XObject : seules les données du participant sont dessinées par ticket.
+ * - La sortie est un ZIP écrit en streaming, dans l'ordre des tickets ; au plus
+ *   {@code 2 × threads} tickets rendus sont gardés en mémoire à la fois.
+ */
+public final class TicketBatchPdfGenerator {
+
+    /** Un ticket à produire. {@code paiement} et {@code user} peuvent être null. */
+    public record TicketJob(Inscription inscription, Paiement paiement, User user, String ticketCode) {}
+
+    public record BatchResult(int tickets, long elapsedMs, long zipBytes) {
+        public double ticketsPerSecond() {
+            return elapsedMs <= 0 ? tickets : tickets * 1000.0 / elapsedMs;
+        }
+    }
+
+    private static final PDType1Font[] FONTS = {
+            PDType1Font.HELVETICA, PDType1Font.HELVETICA_BOLD, PDType1Font.COURIER_BOLD
+    };
+
+    /** Couches statiques pré-rendues (flux d'opérateurs + noms des polices utilisées). */
+    private static final class Layers {
+        static final Layers INSTANCE = build();
+
+        final byte[] background;
+        final byte[] footer;
+        final Map<COSName, PDType1Font> fonts;
+
+        private Layers(byte[] background, byte[] footer, Map<COSName, PDType1Font> fonts) {
+            this.background = background;
+            this.footer = footer;
+            this.fonts = fonts;
+        }
+
+        private static Layers build() {
+            warmUpFonts();
+            try (PDDocument doc = new PDDocument()) {
+                PDResources res = newFontResources();
+                byte[] bg = renderLayer(doc, res, true);
+                byte[] footer = renderLayer(doc, res, false);
+                Map<COSName, PDType1Font> fonts = new LinkedHashMap<>();
+                for (PDType1Font f : FONTS) fonts.put(res.add(f), f);
+                return new Layers(bg, footer, fonts);
+            } catch (IOException e) {
+                throw new IllegalStateException("Pré-rendu des couches ticket impossible: " + e.getMessage(), e);
+            }
+        }
+
+        private static byte[] renderLayer(PDDocument doc, PDResources res, boolean background) throws IOException {
+            PDFormXObject form = new PDFormXObject(doc);
+            form.setBBox(TicketPdfGenerator.PAGE_SIZE);
+            form.setResources(res);
+            ByteArrayOutputStream ops = new ByteArrayOutputStream();
+            try (PDPageContentStream cs = new PDPageContentStream(doc, form, ops)) {
+                if (background) TicketPdfGenerator.drawBackgroundLayer(cs);
+                else TicketPdfGenerator.drawFooterLayer(cs);
+            }
+            return ops.toByteArray();
+        }
+
+        /**
+         * Les polices standard sont partagées entre threads : on remplit leurs caches
+         * internes (encodage, largeurs) ici, une fois, pour que le rendu parallèle
+         * ne fasse ensuite que des lectures. Les textes sont limités à l'ASCII imprimable
+         * par TicketPdfGenerator.sanitize().
+         */
+        private static void warmUpFonts() {
+            StringBuilder ascii = new StringBuilder();
+            for (char c = 0x20; c <= 0x7E; c++) ascii.append(c);
+            for (PDType1Font f : FONTS) {
+                try {
+                    f.encode(ascii.toString());
+                    f.getStringWidth(ascii.toString());
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private TicketBatchPdfGenerator() {}
+
+    /**
+     * Rend tous les tickets en parallèle et les écrit dans un ZIP (un PDF par ticket).
+     *
+     * @param out      flux de sortie (non fermé par cette méthode)
+     * @param threads  nombre de threads de rendu (<= 0 : nombre de cœurs)
+     */
+    public static BatchResult generateZip(OutputStream out, Evenement evenement, String lieuName,
+                                          List<TicketJob> jobs, int threads) throws IOException {
+        long start = System.nanoTime();
+        Layers layers = Layers.INSTANCE;
+        int nThreads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors());
+        int window = nThreads * 2;
+
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread t = new Thread(r, "ticket-pdf-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        CountingOutputStream counting = new CountingOutputStream(out);
+        ZipOutputStream zip = new ZipOutputStream(counting);
+        ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        ArrayDeque<String> names = new ArrayDeque<>();
+        try {
+            int next = 0;
+            while (next < jobs.size() || !inFlight.isEmpty()) {
+                // Fenêtre bornée : on ne rend pas plus de 'window' tickets d'avance
+                while (next < jobs.size() && inFlight.size() < window) {
+                    TicketJob job = jobs.get(next++);
+                    inFlight.add(pool.submit(() -> renderTicket(layers, evenement, lieuName, job)));
+                    names.add(entryName(job));
+                }
+                byte[] pdf = await(inFlight.poll());
+                zip.putNextEntry(new ZipEntry(names.poll()));
+                zip.write(pdf);
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        return new BatchResult(jobs.size(), elapsedMs, counting.count);
+    }
+
+    private static byte[] renderTicket(Layers layers, Evenement evenement, String lieuName, TicketJob job)
+            throws IOException {
+        try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupMainMemoryOnly())) {
+            PDPage page = new PDPage(TicketPdfGenerator.PAGE_SIZE);
+            doc.addPage(page);
+
+            PDResources fontRes = new PDResources();
+            for (Map.Entry<COSName, PDType1Font> f : layers.fonts.entrySet()) fontRes.put(f.getKey(), f.getValue());
+            PDFormXObject background = layerForm(doc, layers.background, fontRes);
+            PDFormXObject footer = layerForm(doc, layers.footer, fontRes);
+
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                cs.drawForm(background);
+                TicketPdfGenerator.drawTicketFields(cs, evenement, job.inscription(), job.paiement(),
+                        job.user(), job.ticketCode(), lieuName);
+                cs.drawForm(footer);
+            }
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(8 * 1024);
+            doc.save(bos);
+            return bos.toByteArray();
+        }
+    }
+
+    private static PDFormXObject layerForm(PDDocument doc, byte[] content, PDResources fontRes) throws IOException {
+        PDFormXObject form = new PDFormXObject(new PDStream(doc, new ByteArrayInputStream(content), COSName.FLATE_DECODE));
+        form.setBBox(TicketPdfGenerator.PAGE_SIZE);
+        form.setResources(fontRes);
+        return form;
+    }
+
+    private static PDResources newFontResources() {
+        PDResources res = new PDResources();
+        for (PDType1Font f : FONTS) res.add(f);
+        return res;
+    }
+
+    private static String entryName(TicketJob job) {
+        User u = job.user();
+        String who = u == null ? "participant"
+                : TicketPdfGenerator.sanitize(u.getNom() + "_" + u.getPrenom()).replaceAll("[^A-Za-z0-9_-]", "");
+        return "Ticket_" + job.ticketCode() + "_" + who + ".pdf";
+    }
+
+    private static byte[] await(Future<byte[]> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Génération des tickets interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException io) throw io;
+            throw new IOException("Erreur de rendu ticket: " + c.getMessage(), c);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream target;
+        long count;
+
+        CountingOutputStream(OutputStream target) { this.target = target; }
+
+        @Override public void write(int b) throws IOException { target.write(b); count++; }
+        @Override public void write(byte[] b, int off, int len) throws IOException { target.write(b, off, len); count += len; }
+        @Override public void flush() throws IOException { target.flush(); }
+    }
+}
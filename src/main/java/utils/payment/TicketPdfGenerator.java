@@ -43,6 +43,46 @@ public class TicketPdfGenerator {
     private static final Color LIGHT_BG = new Color(248, 250, 252); // #f8fafc
     private static final Color GREEN    = new Color(22, 163, 74);   // #16a34a
     private static final Color BORDER   = new Color(226, 232, 240); // #e2e8f0
+    private static final Color ORANGE   = new Color(217, 119, 6);   // #d97706
+
+    // Mise en page (A5 paysage, plus proche d'un ticket)
+    static final PDRectangle PAGE_SIZE = new PDRectangle(595, 420); // ~A5
+    private static final float PAGE_W = 595;
+    private static final float PAGE_H = 420;
+    private static final float MARGIN = 30;
+
+    // Ordonnées fixes des lignes (le ticket a une mise en page constante)
+    private static final float Y_EVENT_HEADER  = PAGE_H - 95;
+    private static final float Y_EVENT_TITLE   = Y_EVENT_HEADER - 22;
+    private static final float Y_DATES         = Y_EVENT_TITLE - 18;
+    private static final float Y_LIEU          = Y_DATES - 15;
+    private static final float Y_TYPE          = Y_LIEU - 15;
+    private static final float Y_PART_HEADER   = Y_TYPE - 15 - 8;
+    private static final float Y_NOM           = Y_PART_HEADER - 22;
+    private static final float Y_EMAIL         = Y_NOM - 15;
+    private static final float Y_TICKETS       = Y_EMAIL - 15;
+    private static final float Y_PAIE_HEADER   = Y_TICKETS - 15 - 8;
+    private static final float Y_REFERENCE     = Y_PAIE_HEADER - 22;
+    private static final float Y_MONTANT       = Y_REFERENCE - 15;
+    private static final float Y_METHODE       = Y_MONTANT - 15;
+    private static final float Y_DATE_PAIE     = Y_METHODE - 15;
+    private static final float Y_BADGE         = Y_DATE_PAIE - 15 - 4;
+    private static final float Y_SEPARATOR     = Y_BADGE - 20;
+    private static final float Y_HINT          = Y_SEPARATOR - 20;
+    private static final float Y_BIG_CODE      = Y_HINT - 25;
+
+    /**
+     * Code unique du ticket : premier ticket de l'inscription + référence du paiement.
+     * Le même code est imprimé au paiement et à l'export des tickets de l'événement.
+     *
+     * @param firstTicketId Le plus petit id de ticket de l'inscription
+     * @param paiement      Le paiement (référence PAY-XXXXXXXX)
+     * @return ex: TIK-000042-XXXXXXXX
+     */
+    public static String ticketCode(int firstTicketId, Paiement paiement) {
+        return "TIK-" + String.format("%06d", firstTicketId)
+                + "-" + paiement.getReferenceCode().replace("PAY-", "");
+    }
 
     /**
      * Génère le PDF ticket et le sauvegarde dans le fichier spécifié.
@@ -60,184 +100,187 @@ public class TicketPdfGenerator {
             throws IOException {
 
         try (PDDocument doc = new PDDocument()) {
-            // Page A5 paysage (plus proche d'un ticket)
-            PDPage page = new PDPage(new PDRectangle(595, 420)); // ~A5
+            PDPage page = new PDPage(PAGE_SIZE);
             doc.addPage(page);
 
             try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
-
-                float pageW = 595;
-                float pageH = 420;
-                float margin = 30;
-                float y = pageH - margin;
-
-                // ═══════════════════════════════════════════
-                //  FOND HEADER
-                // ═══════════════════════════════════════════
-                cs.setNonStrokingColor(NAVY);
-                cs.addRect(0, pageH - 75, pageW, 75);
-                cs.fill();
-
-                // ── Titre header ──
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 20);
-                cs.setNonStrokingColor(Color.WHITE);
-                cs.newLineAtOffset(margin, pageH - 35);
-                cs.showText("TICKET D'ENTREE");
-                cs.endText();
-
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 10);
-                cs.setNonStrokingColor(new Color(255, 255, 255, 180));
-                cs.newLineAtOffset(margin, pageH - 52);
-                cs.showText("Votre confirmation de paiement et billet d'acces");
-                cs.endText();
-
-                // ── Code ticket en haut à droite ──
-                cs.beginText();
-                cs.setFont(PDType1Font.COURIER_BOLD, 14);
-                cs.setNonStrokingColor(new Color(59, 130, 246));
-                cs.newLineAtOffset(pageW - margin - 180, pageH - 38);
-                cs.showText(ticketCode);
-                cs.endText();
-
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 8);
-                cs.setNonStrokingColor(new Color(200, 200, 200));
-                cs.newLineAtOffset(pageW - margin - 180, pageH - 52);
-                cs.showText("Code de verification");
-                cs.endText();
-
-                y = pageH - 95;
-
-                // ═══════════════════════════════════════════
-                //  SECTION ÉVÉNEMENT
-                // ═══════════════════════════════════════════
-                y = drawSectionHeader(cs, "EVENEMENT", margin, y);
-
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 14);
-                cs.setNonStrokingColor(NAVY);
-                cs.newLineAtOffset(margin + 10, y);
-                String eventTitle = sanitize(evenement.getTitre());
-                if (eventTitle.length() > 50) eventTitle = eventTitle.substring(0, 47) + "...";
-                cs.showText(eventTitle);
-                cs.endText();
-                y -= 18;
-
-                // Dates
-                String dateDebut = evenement.getDateDebut() != null ? evenement.getDateDebut().format(FMT) : "--";
-                String dateFin = evenement.getDateFin() != null ? evenement.getDateFin().format(FMT) : "--";
-                y = drawInfoLine(cs, "Dates", dateDebut + "  ->  " + dateFin, margin + 10, y);
-
-                // Lieu
-                y = drawInfoLine(cs, "Lieu", lieuName != null && !lieuName.isEmpty() ? sanitize(lieuName) : "Non specifie", margin + 10, y);
-
-                // Type + Statut
-                String type = evenement.getType() != null ? evenement.getType() : "--";
-                String statut = evenement.getStatut() != null ? evenement.getStatut() : "--";
-                y = drawInfoLine(cs, "Type", type + "  |  Statut : " + statut, margin + 10, y);
-
-                y -= 8;
-
-                // ═══════════════════════════════════════════
-                //  SECTION PARTICIPANT
-                // ═══════════════════════════════════════════
-                y = drawSectionHeader(cs, "PARTICIPANT", margin, y);
-
-                String nomComplet = "---";
-                String email = "---";
-                if (user != null) {
-                    nomComplet = sanitize(safe(user.getNom()) + " " + safe(user.getPrenom()));
-                    email = safe(user.getEmail());
-                    if (email.isEmpty()) email = "---";
-                }
-
-                y = drawInfoLine(cs, "Nom", nomComplet, margin + 10, y);
-                y = drawInfoLine(cs, "Email", email, margin + 10, y);
-                y = drawInfoLine(cs, "Tickets", inscription.getNbTickets() + " ticket(s)", margin + 10, y);
-
-                y -= 8;
-
-                // ═══════════════════════════════════════════
-                //  SECTION PAIEMENT
-                // ═══════════════════════════════════════════
-                y = drawSectionHeader(cs, "PAIEMENT", margin, y);
-
-                y = drawInfoLine(cs, "Reference", safe(paiement.getReferenceCode()), margin + 10, y);
-                y = drawInfoLine(cs, "Montant", String.format(Locale.FRENCH, "%.2f TND", paiement.getMontant()), margin + 10, y);
-                y = drawInfoLine(cs, "Methode", formatMethode(paiement.getMethode()), margin + 10, y);
-                String datePaie = paiement.getDatePaiement() != null ? paiement.getDatePaiement().format(FMT) : "--";
-                y = drawInfoLine(cs, "Date", datePaie, margin + 10, y);
-
-                // ── Statut PAYÉ en vert ──
-                y -= 4;
-                cs.setNonStrokingColor(GREEN);
-                cs.addRect(margin + 10, y - 4, 90, 20);
-                cs.fill();
-
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA_BOLD, 10);
-                cs.setNonStrokingColor(Color.WHITE);
-                cs.newLineAtOffset(margin + 22, y);
-                cs.showText("PAYE");
-                cs.endText();
-
-                // ═══════════════════════════════════════════
-                //  SÉPARATEUR POINTILLÉ
-                // ═══════════════════════════════════════════
-                y -= 20;
-                cs.setStrokingColor(BORDER);
-                cs.setLineDashPattern(new float[]{4, 3}, 0);
-                cs.moveTo(margin, y);
-                cs.lineTo(pageW - margin, y);
-                cs.stroke();
-                cs.setLineDashPattern(new float[]{}, 0);
-
-                // ═══════════════════════════════════════════
-                //  CODE UNIQUE GRAND FORMAT
-                // ═══════════════════════════════════════════
-                y -= 20;
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 8);
-                cs.setNonStrokingColor(GRAY);
-                cs.newLineAtOffset(margin + 10, y);
-                cs.showText("Presentez ce code a l'entree de l'evenement :");
-                cs.endText();
-
-                y -= 25;
-                // Grand code centré
-                float codeWidth = PDType1Font.COURIER_BOLD.getStringWidth(ticketCode) / 1000 * 22;
-                float codeX = (pageW - codeWidth) / 2;
-                cs.beginText();
-                cs.setFont(PDType1Font.COURIER_BOLD, 22);
-                cs.setNonStrokingColor(NAVY);
-                cs.newLineAtOffset(codeX, y);
-                cs.showText(ticketCode);
-                cs.endText();
-
-                // ═══════════════════════════════════════════
-                //  PIED DE PAGE
-                // ═══════════════════════════════════════════
-                cs.setNonStrokingColor(BORDER);
-                cs.addRect(0, 0, pageW, 25);
-                cs.fill();
-
-                cs.beginText();
-                cs.setFont(PDType1Font.HELVETICA, 7);
-                cs.setNonStrokingColor(GRAY);
-                cs.newLineAtOffset(margin, 9);
-                cs.showText("Document genere automatiquement  |  Ce ticket est personnel et non cessible  |  Conservez-le precieusement");
-                cs.endText();
+                drawBackgroundLayer(cs);
+                drawTicketFields(cs, evenement, inscription, paiement, user, ticketCode, lieuName);
+                drawFooterLayer(cs);
             }
 
             doc.save(outputFile);
         }
     }
 
+    /**
+     * Partie fixe dessinée SOUS les données : bandeau, titres, en-têtes de section,
+     * libellés, séparateur. Identique pour tous les tickets.
+     */
+    static void drawBackgroundLayer(PDPageContentStream cs) throws IOException {
+        // ═══════════════════════════════════════════
+        //  FOND HEADER
+        // ═══════════════════════════════════════════
+        cs.setNonStrokingColor(NAVY);
+        cs.addRect(0, PAGE_H - 75, PAGE_W, 75);
+        cs.fill();
+
+        // ── Titre header ──
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA_BOLD, 20);
+        cs.setNonStrokingColor(Color.WHITE);
+        cs.newLineAtOffset(MARGIN, PAGE_H - 35);
+        cs.showText("TICKET D'ENTREE");
+        cs.endText();
+
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA, 10);
+        cs.setNonStrokingColor(new Color(255, 255, 255, 180));
+        cs.newLineAtOffset(MARGIN, PAGE_H - 52);
+        cs.showText("Votre confirmation de paiement et billet d'acces");
+        cs.endText();
+
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA, 8);
+        cs.setNonStrokingColor(new Color(200, 200, 200));
+        cs.newLineAtOffset(PAGE_W - MARGIN - 180, PAGE_H - 52);
+        cs.showText("Code de verification");
+        cs.endText();
+
+        // ═══════════════════════════════════════════
+        //  SECTIONS + LIBELLÉS
+        // ═══════════════════════════════════════════
+        float x = MARGIN + 10;
+        drawSectionHeader(cs, "EVENEMENT", MARGIN, Y_EVENT_HEADER);
+        drawInfoLabel(cs, "Dates", x, Y_DATES);
+        drawInfoLabel(cs, "Lieu", x, Y_LIEU);
+        drawInfoLabel(cs, "Type", x, Y_TYPE);
+
+        drawSectionHeader(cs, "PARTICIPANT", MARGIN, Y_PART_HEADER);
+        drawInfoLabel(cs, "Nom", x, Y_NOM);
+        drawInfoLabel(cs, "Email", x, Y_EMAIL);
+        drawInfoLabel(cs, "Tickets", x, Y_TICKETS);
+
+        drawSectionHeader(cs, "PAIEMENT", MARGIN, Y_PAIE_HEADER);
+        drawInfoLabel(cs, "Reference", x, Y_REFERENCE);
+        drawInfoLabel(cs, "Montant", x, Y_MONTANT);
+        drawInfoLabel(cs, "Methode", x, Y_METHODE);
+        drawInfoLabel(cs, "Date", x, Y_DATE_PAIE);
+
+        // ═══════════════════════════════════════════
+        //  SÉPARATEUR POINTILLÉ
+        // ═══════════════════════════════════════════
+        cs.setStrokingColor(BORDER);
+        cs.setLineDashPattern(new float[]{4, 3}, 0);
+        cs.moveTo(MARGIN, Y_SEPARATOR);
+        cs.lineTo(PAGE_W - MARGIN, Y_SEPARATOR);
+        cs.stroke();
+        cs.setLineDashPattern(new float[]{}, 0);
+
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA, 8);
+        cs.setNonStrokingColor(GRAY);
+        cs.newLineAtOffset(MARGIN + 10, Y_HINT);
+        cs.showText("Presentez ce code a l'entree de l'evenement :");
+        cs.endText();
+    }
+
+    /**
+     * Partie fixe dessinée PAR-DESSUS les données : pied de page.
+     */
+    static void drawFooterLayer(PDPageContentStream cs) throws IOException {
+        cs.setNonStrokingColor(BORDER);
+        cs.addRect(0, 0, PAGE_W, 25);
+        cs.fill();
+
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA, 7);
+        cs.setNonStrokingColor(GRAY);
+        cs.newLineAtOffset(MARGIN, 9);
+        cs.showText("Document genere automatiquement  |  Ce ticket est personnel et non cessible  |  Conservez-le precieusement");
+        cs.endText();
+    }
+
+    /**
+     * Données propres à un ticket. {@code paiement} peut être null (inscription non payée).
+     */
+    static void drawTicketFields(PDPageContentStream cs, Evenement evenement, Inscription inscription,
+                                 Paiement paiement, User user, String ticketCode, String lieuName)
+            throws IOException {
+        float x = MARGIN + 10;
+
+        // ── Code ticket en haut à droite ──
+        cs.beginText();
+        cs.setFont(PDType1Font.COURIER_BOLD, 14);
+        cs.setNonStrokingColor(new Color(59, 130, 246));
+        cs.newLineAtOffset(PAGE_W - MARGIN - 180, PAGE_H - 38);
+        cs.showText(ticketCode);
+        cs.endText();
+
+        // ── Événement ──
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA_BOLD, 14);
+        cs.setNonStrokingColor(NAVY);
+        cs.newLineAtOffset(x, Y_EVENT_TITLE);
+        String eventTitle = sanitize(evenement.getTitre());
+        if (eventTitle.length() > 50) eventTitle = eventTitle.substring(0, 47) + "...";
+        cs.showText(eventTitle);
+        cs.endText();
+
+        String dateDebut = evenement.getDateDebut() != null ? evenement.getDateDebut().format(FMT) : "--";
+        String dateFin = evenement.getDateFin() != null ? evenement.getDateFin().format(FMT) : "--";
+        drawInfoValue(cs, dateDebut + "  ->  " + dateFin, x, Y_DATES);
+        drawInfoValue(cs, lieuName != null && !lieuName.isEmpty() ? sanitize(lieuName) : "Non specifie", x, Y_LIEU);
+        String type = evenement.getType() != null ? evenement.getType() : "--";
+        String statut = evenement.getStatut() != null ? evenement.getStatut() : "--";
+        drawInfoValue(cs, type + "  |  Statut : " + statut, x, Y_TYPE);
+
+        // ── Participant ──
+        String nomComplet = "---";
+        String email = "---";
+        if (user != null) {
+            nomComplet = sanitize(safe(user.getNom()) + " " + safe(user.getPrenom()));
+            email = safe(user.getEmail());
+            if (email.isEmpty()) email = "---";
+        }
+        drawInfoValue(cs, nomComplet, x, Y_NOM);
+        drawInfoValue(cs, email, x, Y_EMAIL);
+        drawInfoValue(cs, inscription.getNbTickets() + " ticket(s)", x, Y_TICKETS);
+
+        // ── Paiement ──
+        boolean paye = paiement != null;
+        drawInfoValue(cs, paye ? safe(paiement.getReferenceCode()) : "--", x, Y_REFERENCE);
+        drawInfoValue(cs, paye ? String.format(Locale.FRENCH, "%.2f TND", paiement.getMontant()) : "--", x, Y_MONTANT);
+        drawInfoValue(cs, paye ? formatMethode(paiement.getMethode()) : "--", x, Y_METHODE);
+        String datePaie = paye && paiement.getDatePaiement() != null ? paiement.getDatePaiement().format(FMT) : "--";
+        drawInfoValue(cs, datePaie, x, Y_DATE_PAIE);
+
+        // ── Statut PAYÉ en vert (NON PAYE en orange) ──
+        cs.setNonStrokingColor(paye ? GREEN : ORANGE);
+        cs.addRect(x, Y_BADGE - 4, 90, 20);
+        cs.fill();
+
+        cs.beginText();
+        cs.setFont(PDType1Font.HELVETICA_BOLD, 10);
+        cs.setNonStrokingColor(Color.WHITE);
+        cs.newLineAtOffset(MARGIN + 22, Y_BADGE);
+        cs.showText(paye ? "PAYE" : "NON PAYE");
+        cs.endText();
+
+        // ── Code unique grand format, centré (Courier : chasse fixe de 600/1000 em) ──
+        float codeWidth = ticketCode.length() * 600f / 1000 * 22;
+        float codeX = (PAGE_W - codeWidth) / 2;
+        cs.beginText();
+        cs.setFont(PDType1Font.COURIER_BOLD, 22);
+        cs.setNonStrokingColor(NAVY);
+        cs.newLineAtOffset(codeX, Y_BIG_CODE);
+        cs.showText(ticketCode);
+        cs.endText();
+    }
+
     // ── Helpers ──
 
-    private static float drawSectionHeader(PDPageContentStream cs, String title, float x, float y)
+    private static void drawSectionHeader(PDPageContentStream cs, String title, float x, float y)
             throws IOException {
         cs.setNonStrokingColor(LIGHT_BG);
         cs.addRect(x, y - 4, 535, 18);
@@ -253,19 +296,20 @@ public class TicketPdfGenerator {
         cs.newLineAtOffset(x + 10, y);
         cs.showText(title);
         cs.endText();
-
-        return y - 22;
     }
 
-    private static float drawInfoLine(PDPageContentStream cs, String label, String value,
-                                      float x, float y) throws IOException {
+    private static void drawInfoLabel(PDPageContentStream cs, String label, float x, float y)
+            throws IOException {
         cs.beginText();
         cs.setFont(PDType1Font.HELVETICA, 9);
         cs.setNonStrokingColor(GRAY);
         cs.newLineAtOffset(x, y);
         cs.showText(label + " :");
         cs.endText();
+    }
 
+    private static void drawInfoValue(PDPageContentStream cs, String value, float x, float y)
+            throws IOException {
         cs.beginText();
         cs.setFont(PDType1Font.HELVETICA_BOLD, 9);
         cs.setNonStrokingColor(NAVY);
@@ -274,8 +318,6 @@ public class TicketPdfGenerator {
         if (safeValue.length() > 65) safeValue = safeValue.substring(0, 62) + "...";
         cs.showText(safeValue);
         cs.endText();
-
-        return y - 15;
     }
 
     private static String formatMethode(String m) {
@@ -294,7 +336,7 @@ public class TicketPdfGenerator {
     /**
      * Sanitize string for PDFBox (remove non-WinAnsi characters)
      */
-    private static String sanitize(String s) {
+    static String sanitize(String s) {
         if (s == null) return "";
         // Replace common accented chars and special chars
         return s.replace("é", "e").replace("è", "e").replace("ê", "e").replace("ë", "e")
@@ -0,0 +1,257 @@
+package utils.ui;
+
+import javafx.application.Platform;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Task;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Tâches de fond des contrôleurs : un pool borné partagé au lieu d'un {@code new Thread} par chargement.
+ *
+ * <ul>
+ *     <li>Pool de {@link #POOL_SIZE} threads démons, file à priorité : les chargements visibles
+ *         ({@link Priority#USER_VISIBLE}) passent devant les rafraîchissements ({@link Priority#BACKGROUND}),
+ *         ordre d'arrivée à priorité égale.</li>
+ *     <li>Chaque vue a son {@link Scope}, lié à un nœud ({@link #scope(Node)}) : quand le nœud quitte sa
+ *         scène ou que la fenêtre se ferme, les tâches en file sont abandonnées, celles en cours interrompues,
+ *         et aucun callback n'atteint plus la vue.</li>
+ *     <li>Les callbacks sont exécutés sur le thread JavaFX ({@code Platform.runLater} intégré).</li>
+ *     <li>Les écritures ({@link Scope#write}) ne sont jamais abandonnées : seul leur callback l'est.</li>
+ * </ul>
+ */
+public final class UiTasks {
+
+    static final int POOL_SIZE = Math.max(2, Math.min(6, Runtime.getRuntime().availableProcessors()));
+
+    public enum Priority { USER_VISIBLE, NORMAL, BACKGROUND }
+
+    /** Travail de fond qui produit un résultat. */
+    @FunctionalInterface
+    public interface Work<T> {
+        T call() throws Exception;
+    }
+
+    /** Travail de fond sans résultat. */
+    @FunctionalInterface
+    public interface Job {
+        void run() throws Exception;
+    }
+
+    /** Annulation d'une tâche précise (sans effet sur une écriture déjà lancée). */
+    @FunctionalInterface
+    public interface Handle {
+        void cancel();
+    }
+
+    private static volatile UiTasks instance;
+
+    public static UiTasks getInstance() {
+        if (instance == null) {
+            synchronized (UiTasks.class) {
+                if (instance == null) {
+                    AtomicInteger n = new AtomicInteger();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                            new PriorityBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "ui-task-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    instance = new UiTasks(pool, Platform::runLater);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Scope lié à la vue qui contient {@code view} (annulé quand elle est retirée ou masquée). */
+    public static Scope scope(Node view) {
+        return getInstance().newScope(view == null ? "vue" : view.getClass().getSimpleName()).bindTo(view);
+    }
+
+    private final Executor pool;
+    private final Consumer<Runnable> fx;
+    private final AtomicLong sequence = new AtomicLong();
+
+    UiTasks(Executor pool, Consumer<Runnable> fx) {
+        this.pool = pool;
+        this.fx = fx;
+    }
+
+    /** Scope non lié : à annuler soi-même ({@link Scope#cancelAll}). */
+    public Scope newScope(String name) {
+        return new Scope(name);
+    }
+
+    // Ordonnée par priorité puis ordre d'arrivée
+    private final class QueuedTask extends FutureTask<Void> implements Comparable<QueuedTask> {
+        final Priority priority;
+        final long seq = sequence.incrementAndGet();
+        final boolean durable;
+
+        QueuedTask(Callable<Void> body, Priority priority, boolean durable) {
+            super(body);
+            this.priority = priority;
+            this.durable = durable;
+        }
+
+        @Override
+        public int compareTo(QueuedTask o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    public final class Scope {
+
+        private final String name;
+        private final Set<QueuedTask> tasks = ConcurrentHashMap.newKeySet();
+        private final Set<Task<?>> fxTasks = ConcurrentHashMap.newKeySet();
+        // Incrémenté à chaque annulation : les callbacks d'avant ne sont plus livrés
+        private final AtomicInteger generation = new AtomicInteger();
+        private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+        private ObservableValue<Boolean> shown;
+
+        private Scope(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Annule dès que {@code view} n'est plus affiché (retiré de sa scène, fenêtre fermée).
+         * Le scope reste utilisable si la vue revient.
+         */
+        public Scope bindTo(Node view) {
+            if (view == null) return this;
+            shown = view.sceneProperty()
+                    .flatMap(Scene::windowProperty)
+                    .flatMap(Window::showingProperty)
+                    .orElse(false);
+            shown.addListener((o, was, is) -> {
+                if (!is) cancelAll();
+            });
+            return this;
+        }
+
+        /** Appelé à chaque annulation (remise à zéro des indicateurs « chargement en cours » de la vue). */
+        public Scope onCancel(Runnable listener) {
+            cancelListeners.add(listener);
+            return this;
+        }
+
+        /** Chargement visible par l'utilisateur : prioritaire, annulé avec la vue. */
+        public <T> Handle load(Work<T> work, Consumer<T> onSuccess) {
+            return submit(Priority.USER_VISIBLE, false, work, onSuccess, null);
+        }
+
+        public <T> Handle load(Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+            return submit(Priority.USER_VISIBLE, false, work, onSuccess, onError);
+        }
+
+        /** Rafraîchissement (badges, compteurs) : passe après les chargements visibles, annulé avec la vue. */
+        public <T> Handle background(Work<T> work, Consumer<T> onSuccess) {
+            return submit(Priority.BACKGROUND, false, work, onSuccess, null);
+        }
+
+        /** Écriture : toujours menée à terme ; le callback n'est livré que si la vue est encore là. */
+        public <T> Handle write(Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+            return submit(Priority.USER_VISIBLE, true, work, onSuccess, onError);
+        }
+
+        public Handle write(Job job) {
+            return write(job, null);
+        }
+
+        public Handle write(Job job, Consumer<Throwable> onError) {
+            return submit(Priority.USER_VISIBLE, true, () -> {
+                job.run();
+                return null;
+            }, null, onError);
+        }
+
+        /** Exécute une {@link Task} JavaFX existante dans le pool ; annulée avec la vue. */
+        public Handle execute(Priority priority, Task<?> task) {
+            fxTasks.add(task);
+            Handle h = submit(priority, false, () -> {
+                try {
+                    task.run();
+                } finally {
+                    fxTasks.remove(task);
+                }
+                return null;
+            }, null, null);
+            return () -> {
+                task.cancel();
+                h.cancel();
+            };
+        }
+
+        public <T> Handle submit(Priority priority, boolean durable, Work<T> work,
+                                 Consumer<T> onSuccess, Consumer<Throwable> onError) {
+            int gen = generation.get();
+            QueuedTask[] self = new QueuedTask[1];
+            QueuedTask task = new QueuedTask(() -> {
+                try {
+                    if (!durable && gen != generation.get()) return null;
+                    T result = work.call();
+                    if (onSuccess != null) deliver(gen, () -> onSuccess.accept(result));
+                } catch (Throwable ex) {
+                    if (onError != null) deliver(gen, () -> onError.accept(ex));
+                    else if (gen == generation.get()) System.err.println("[UiTasks] " + name + ": " + ex);
+                } finally {
+                    tasks.remove(self[0]);
+                }
+                return null;
+            }, priority, durable);
+            self[0] = task;
+            tasks.add(task);
+            pool.execute(task);
+            return () -> {
+                if (durable) return;
+                task.cancel(true);
+                tasks.remove(task);
+                if (pool instanceof ThreadPoolExecutor tpe) tpe.remove(task);
+            };
+        }
+
+        /** Abandonne les tâches en file, interrompt celles en cours (hors écritures), coupe les callbacks. */
+        public void cancelAll() {
+            generation.incrementAndGet();
+            for (QueuedTask t : tasks) {
+                if (t.durable) continue;
+                t.cancel(true);
+                tasks.remove(t);
+                if (pool instanceof ThreadPoolExecutor tpe) tpe.remove(t);
+            }
+            for (Task<?> t : fxTasks) t.cancel();
+            fxTasks.clear();
+            for (Runnable l : cancelListeners) l.run();
+        }
+
+        int pendingCount() {
+            return tasks.size();
+        }
+
+        private void deliver(int gen, Runnable callback) {
+            if (gen != generation.get()) return;
+            fx.accept(() -> {
+                if (gen == generation.get()) callback.run();
+            });
+        }
+    }
+}
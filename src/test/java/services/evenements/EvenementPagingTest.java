@@ -0,0 +1,59 @@
+package services.evenements;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Construction du SQL de pagination par curseur (sans base de données).
+ */
+public class EvenementPagingTest {
+
+    @Test
+    void firstPageHasNoCursorCondition() {
+        List<Object> params = new ArrayList<>();
+        String sql = EvenementService.pageSql(EvenementService.PageQuery.all(), null, 31, params);
+
+        assertFalse(sql.contains("date_debut <"));
+        assertTrue(sql.endsWith("ORDER BY date_debut DESC, id DESC LIMIT 31"));
+        assertTrue(params.isEmpty());
+    }
+
+    @Test
+    void dateDescCursorComparesKeyThenId() {
+        LocalDateTime d = LocalDateTime.of(2026, 5, 1, 18, 0);
+        List<Object> params = new ArrayList<>();
+        String sql = EvenementService.pageSql(EvenementService.PageQuery.all(),
+                new EvenementService.PageCursor(d, "Concert", 42), 31, params);
+
+        assertTrue(sql.contains("(date_debut < ? OR (date_debut = ? AND id < ?))"));
+        assertEquals(List.of(Timestamp.valueOf(d), Timestamp.valueOf(d), 42), params);
+    }
+
+    @Test
+    void titleSortUsesTitleCursorAfterFilter() {
+        EvenementService.PageQuery q = new EvenementService.PageQuery(
+                EvenementService.FilterField.TYPE, "  Sport ", EvenementService.SortOrder.TITRE_ASC);
+        List<Object> params = new ArrayList<>();
+        String sql = EvenementService.pageSql(q,
+                new EvenementService.PageCursor(LocalDateTime.now(), "Marathon", 7), 11, params);
+
+        assertTrue(sql.contains("LOWER(type) LIKE ?"));
+        assertTrue(sql.contains("(titre > ? OR (titre = ? AND id > ?))"));
+        assertTrue(sql.endsWith("ORDER BY titre ASC, id ASC LIMIT 11"));
+        // Filtre d'abord, puis curseur : même ordre que les '?'
+        assertEquals(List.of("%sport%", "Marathon", "Marathon", 7), params);
+    }
+
+    @Test
+    void likeWildcardsAreEscaped() {
+        assertEquals("100\\%", EvenementService.escapeLike("100%"));
+        assertEquals("a\\_b", EvenementService.escapeLike("a_b"));
+        assertEquals("c\\\\d", EvenementService.escapeLike("c\\d"));
+    }
+}
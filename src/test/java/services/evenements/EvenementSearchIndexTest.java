@@ -0,0 +1,133 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvenementSearchIndexTest {
+
+    private static Evenement ev(int id, String titre, String description, String type, String statut) {
+        Evenement e = new Evenement();
+        e.setId(id);
+        e.setTitre(titre);
+        e.setDescription(description);
+        e.setType(type);
+        e.setStatut(statut);
+        e.setDateDebut(LocalDateTime.now().plusDays(id % 30));
+        e.setDateFin(LocalDateTime.now().plusDays(id % 30).plusHours(3));
+        e.setCapaciteMax(50);
+        return e;
+    }
+
+    @Test
+    void testAccentInsensitiveAndTitleRanking() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        index.rebuild(List.of(
+                ev(1, "Soirée jazz", "Concert en plein air", "PUBLIC", "OUVERT"),
+                ev(2, "Atelier cuisine", "Une soiree gourmande autour du jazz", "PUBLIC", "OUVERT"),
+                ev(3, "Marathon", "Course à pied", "PUBLIC", "OUVERT")
+        ));
+
+        EvenementSearchIndex.Page page = index.search("SOIREE", null, null, null, 10);
+        assertEquals(2, page.hits().size());
+        // Le titre pèse plus que la description
+        assertEquals(1, page.hits().get(0).evenement().getId());
+
+        assertEquals(1, index.search("course a pied", null, null, null, 10).hits().size());
+        assertEquals(3, index.search("course a pied", null, null, null, 10).hits().get(0).evenement().getId());
+    }
+
+    @Test
+    void testPrefixOnLastTermAndFilters() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        index.rebuild(List.of(
+                ev(1, "Festival de musique", "", "PUBLIC", "OUVERT"),
+                ev(2, "Festin berbère", "", "PRIVE", "OUVERT"),
+                ev(3, "Festival du film", "", "PUBLIC", "FERME")
+        ));
+
+        assertEquals(3, index.search("fest", null, null, null, 10).hits().size());
+        assertEquals(2, index.search("festival", null, null, null, 10).hits().size());
+        assertEquals(1, index.search("fest", "PRIVE", null, null, 10).hits().size());
+        assertEquals(1, index.search("festival", null, "ferme", null, 10).hits().size());
+    }
+
+    @Test
+    void testQueryWithoutUsableTermsMatchesNothing() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        index.rebuild(List.of(
+                ev(1, "Soirée de la musique", "", "PUBLIC", "OUVERT"),
+                ev(2, "Marathon", "", "PUBLIC", "OUVERT")
+        ));
+
+        assertEquals(2, index.search("  ", null, null, null, 10).hits().size(), "saisie vide : tout");
+        EvenementSearchIndex.Page page = index.search("de la a", null, null, null, 10);
+        assertTrue(page.hits().isEmpty(), "mots vides seuls : rien");
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void testSyncOnUpsertAndRemove() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        index.rebuild(List.of(ev(1, "Randonnée", "Montagne", "PUBLIC", "OUVERT")));
+
+        index.upsert(ev(1, "Plongée", "Mer", "PUBLIC", "OUVERT"));
+        assertTrue(index.search("randonnee", null, null, null, 10).hits().isEmpty());
+        assertEquals(1, index.search("plongee", null, null, null, 10).hits().size());
+
+        index.remove(1);
+        assertTrue(index.search("plongee", null, null, null, 10).hits().isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testKeysetPaginationCoversAllResultsOnce() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        List<Evenement> events = new ArrayList<>();
+        for (int i = 1; i <= 250; i++) {
+            events.add(ev(i, "Concert " + i, (i % 3 == 0) ? "concert concert" : "musique", "PUBLIC", "OUVERT"));
+        }
+        index.rebuild(events);
+
+        Set<Integer> seen = new HashSet<>();
+        EvenementSearchIndex.Cursor cursor = null;
+        double lastScore = Double.MAX_VALUE;
+        int pages = 0;
+        do {
+            EvenementSearchIndex.Page page = index.search("concert", null, null, cursor, 40);
+            for (EvenementSearchIndex.Hit h : page.hits()) {
+                assertTrue(seen.add(h.evenement().getId()), "Doublon entre pages");
+                assertTrue(h.score() <= lastScore, "Ordre de pertinence non respecté");
+                lastScore = h.score();
+            }
+            cursor = page.next();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(250, seen.size());
+        assertEquals(7, pages);
+    }
+
+    @Test
+    void testResultsAreCopiesOfTheIndexedEvents() {
+        EvenementSearchIndex index = new EvenementSearchIndex();
+        Evenement source = ev(1, "Concert jazz", "", "PUBLIC", "OUVERT");
+        index.rebuild(List.of(source));
+
+        Evenement hit = index.search("jazz", null, null, null, 10).hits().get(0).evenement();
+        hit.setTitre("modifié");
+        hit.setType("PRIVE");
+        source.setStatut("ANNULE");
+
+        Evenement again = index.search("jazz", "PUBLIC", "OUVERT", null, 10).hits().get(0).evenement();
+        assertEquals("Concert jazz", again.getTitre());
+        assertFalse(hit == again);
+    }
+}
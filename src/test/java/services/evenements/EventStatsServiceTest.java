@@ -0,0 +1,156 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.*;
+import utils.TestDbUtils;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventStatsServiceTest {
+
+    static Connection cnx;
+    static EvenementService evenementService;
+    static InscriptionService inscriptionService;
+    static TicketService ticketService;
+    static PaiementService paiementService;
+    static EventStatsService eventStats;
+
+    static int userA;
+    static int userB;
+    static final List<Integer> eventIds = new ArrayList<>();
+
+    @BeforeAll
+    static void setup() throws Exception {
+        cnx = TestDbUtils.cnx();
+        evenementService = new EvenementService();
+        inscriptionService = new InscriptionService();
+        ticketService = new TicketService();
+        paiementService = new PaiementService();
+        eventStats = new EventStatsService();
+        eventStats.ensureSchema();
+        paiementService.ensureSchema();
+
+        userA = TestDbUtils.ensureUser(cnx);
+        userB = TestDbUtils.ensureUserOtherThan(cnx, userA);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        for (int eventId : eventIds) {
+            try {
+                inscriptionService.getByEventId(eventId).forEach(i -> inscriptionService.delete(i.getId()));
+            } catch (Exception ignored) {}
+            try { evenementService.delete(eventId); } catch (Exception ignored) {}
+        }
+    }
+
+    private static int createEvent() {
+        Evenement e = new Evenement();
+        e.setTitre("StatsTest_" + System.nanoTime());
+        e.setDescription("desc test");
+        e.setDateDebut(LocalDateTime.now().plusDays(5));
+        e.setDateFin(LocalDateTime.now().plusDays(5).plusHours(2));
+        e.setCapaciteMax(10);
+        e.setStatut("OUVERT");
+        e.setType("PUBLIC");
+        e.setPrix(20);
+        int id = evenementService.add(e);
+        assertTrue(id > 0);
+        eventIds.add(id);
+        return id;
+    }
+
+    /** Les compteurs tenus par deltas doivent égaler un recalcul complet. */
+    private static void assertMatchesRebuild(int eventId) {
+        EventStatsService.EventStats incremental = eventStats.get(eventId);
+        eventStats.rebuildAll();
+        EventStatsService.EventStats rebuilt = eventStats.get(eventId);
+        assertEquals(rebuilt, incremental);
+    }
+
+    @Test
+    void testCountersFollowInscriptionLifecycle() {
+        int eventId = createEvent();
+
+        int insA = inscriptionService.addInscription(eventId, userA, 20f, 2);
+        int insB = inscriptionService.addInscription(eventId, userB, 20f, 1);
+        EventStatsService.EventStats s = eventStats.get(eventId);
+        assertEquals(2, s.enAttente());
+        assertEquals(2, inscriptionService.countByEvent(eventId));
+
+        inscriptionService.updateStatut(insA, "CONFIRMEE");
+        inscriptionService.updateStatut(insB, "ANNULEE");
+        inscriptionService.updateStatut(insB, "ANNULEE"); // sans effet
+        s = eventStats.get(eventId);
+        assertEquals(0, s.enAttente());
+        assertEquals(1, s.confirmees());
+        assertEquals(1, s.annulees());
+        assertEquals(1, s.actives());
+        assertMatchesRebuild(eventId);
+
+        inscriptionService.delete(insB);
+        assertEquals(0, eventStats.get(eventId).annulees());
+        assertMatchesRebuild(eventId);
+    }
+
+    @Test
+    void testTicketsAndRevenueOnlyCountPaid() {
+        int eventId = createEvent();
+        int ins = inscriptionService.addInscription(eventId, userA, 40f, 2);
+
+        int ticket = ticketService.createForInscription(ins);
+        assertEquals(1, ticketService.countByEventId(eventId));
+
+        // Paiement en attente : pas de revenu tant qu'il n'est pas confirmé
+        int pending = paiementService.addPending(ins, 40, "CARTE_BANCAIRE", "cs_test_stats",
+                LocalDateTime.now().plusMinutes(30));
+        assertEquals(0, eventStats.get(eventId).revenu(), 0.001);
+
+        assertTrue(paiementService.settlePending(pending, PaiementService.STATUT_PAYE));
+        assertFalse(paiementService.settlePending(pending, PaiementService.STATUT_PAYE));
+        EventStatsService.EventStats s = eventStats.get(eventId);
+        assertEquals(40, s.revenu(), 0.001);
+        assertEquals(3, s.tickets()); // 1 manuel + 2 créés au règlement
+        assertMatchesRebuild(eventId);
+
+        ticketService.delete(ticket);
+        paiementService.delete(pending);
+        s = eventStats.get(eventId);
+        assertEquals(2, s.tickets());
+        assertEquals(0, s.revenu(), 0.001);
+        assertMatchesRebuild(eventId);
+
+        // Suppression de l'inscription : ses tickets partent en cascade
+        inscriptionService.delete(ins);
+        s = eventStats.get(eventId);
+        assertEquals(0, s.tickets());
+        assertEquals(0, s.actives());
+        assertMatchesRebuild(eventId);
+    }
+
+    @Test
+    void testGetAllReturnsEveryEventInOneRead() {
+        int withInscription = createEvent();
+        int empty = createEvent();
+        inscriptionService.addInscription(withInscription, userA, 20f, 1);
+
+        var all = eventStats.getAll();
+        assertEquals(1, all.get(withInscription).actives());
+        assertEquals(EventStatsService.EventStats.empty(empty), all.get(empty));
+    }
+
+    @Test
+    void testDeltaMoveBetweenStatuses() {
+        EventStatsService.Delta d = EventStatsService.Delta.move("EN_ATTENTE", "CONFIRMEE");
+        assertEquals(new EventStatsService.Delta(-1, 1, 0, 0, 0), d);
+        assertEquals(new EventStatsService.Delta(0, 0, 0, 0, 0), d.plus(d.negate()));
+        assertTrue(EventStatsService.Delta.move("ANNULEE", "ANNULEE").isEmpty());
+        // Statut inconnu → compté en attente, comme dans le recalcul SQL
+        assertEquals(new EventStatsService.Delta(1, 0, 0, 0, 0), EventStatsService.Delta.statut("REFUSEE", 1));
+    }
+}
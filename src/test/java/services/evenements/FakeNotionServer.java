@@ -0,0 +1,153 @@
+package services.evenements;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Faux serveur Notion (API v1 minimale) pour les tests de synchronisation.
+ *
+ * Gère : query de base paginée, création de page, PATCH (mise à jour / archivage).
+ * Peut injecter des 429 avec Retry-After sur les N premières écritures.
+ */
+class FakeNotionServer implements AutoCloseable {
+
+    private static final Pattern EVENT_ID = Pattern.compile("\"EventID\":\\s*\\{\"number\":\\s*(\\d+)");
+    private static final Pattern CURSOR = Pattern.compile("\"start_cursor\":\\s*\"(\\d+)\"");
+
+    /** pageId → eventId des pages non archivées. */
+    final Map<String, Integer> pages = new ConcurrentHashMap<>();
+    /** Horodatage (nanoTime) de chaque requête reçue. */
+    final List<Long> requestTimes = new CopyOnWriteArrayList<>();
+    final AtomicInteger creates = new AtomicInteger();
+    final AtomicInteger updates = new AtomicInteger();
+    final AtomicInteger archives = new AtomicInteger();
+    final AtomicInteger queries = new AtomicInteger();
+    final AtomicInteger throttled = new AtomicInteger();
+
+    private final AtomicInteger pending429 = new AtomicInteger();
+    private volatile String retryAfter = "1";
+    private final HttpServer server;
+
+    FakeNotionServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+    }
+
+    String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    /** Les {@code count} prochaines écritures reçoivent un 429 avec ce Retry-After. */
+    void throttleNextWrites(int count, String retryAfterHeader) {
+        this.retryAfter = retryAfterHeader;
+        pending429.set(count);
+    }
+
+    String seedPage(int eventId) {
+        String id = UUID.randomUUID().toString();
+        pages.put(id, eventId);
+        return id;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        requestTimes.add(System.nanoTime());
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            String method = ex.getRequestMethod();
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+            boolean write = path.startsWith("/v1/pages");
+            if (write && pending429.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throttled.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", retryAfter);
+                respond(ex, 429, "{\"object\":\"error\",\"status\":429,\"code\":\"rate_limited\",\"message\":\"slow down\"}");
+                return;
+            }
+
+            if (path.matches("/v1/databases/[^/]+/query") && method.equals("POST")) {
+                queries.incrementAndGet();
+                respond(ex, 200, queryPage(body));
+            } else if (path.matches("/v1/databases/[^/]+") && method.equals("GET")) {
+                respond(ex, 200, "{\"object\":\"database\",\"properties\":{\"Titre\":{\"id\":\"title\",\"name\":\"Titre\",\"type\":\"title\",\"title\":{}}}}");
+            } else if (path.equals("/v1/pages") && method.equals("POST")) {
+                Matcher m = EVENT_ID.matcher(body);
+                if (!m.find()) { respond(ex, 400, "{\"message\":\"EventID manquant\"}"); return; }
+                String id = UUID.randomUUID().toString();
+                pages.put(id, Integer.parseInt(m.group(1)));
+                creates.incrementAndGet();
+                respond(ex, 200, pageJson(id, pages.get(id)));
+            } else if (path.startsWith("/v1/pages/") && method.equals("PATCH")) {
+                String id = path.substring("/v1/pages/".length());
+                Integer eventId = pages.get(id);
+                if (eventId == null) { respond(ex, 404, "{\"message\":\"page introuvable\"}"); return; }
+                if (body.replace(" ", "").contains("\"archived\":true")) {
+                    pages.remove(id);
+                    archives.incrementAndGet();
+                } else {
+                    updates.incrementAndGet();
+                }
+                respond(ex, 200, pageJson(id, eventId));
+            } else {
+                respond(ex, 404, "{\"message\":\"route inconnue\"}");
+            }
+        }
+    }
+
+    private String queryPage(String body) {
+        List<Map.Entry<String, Integer>> all = new ArrayList<>(pages.entrySet());
+        all.sort(Map.Entry.comparingByKey());
+        Matcher m = CURSOR.matcher(body);
+        int from = m.find() ? Integer.parseInt(m.group(1)) : 0;
+        int to = Math.min(all.size(), from + 100);
+        StringBuilder sb = new StringBuilder("{\"object\":\"list\",\"results\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) sb.append(',');
+            sb.append(pageJson(all.get(i).getKey(), all.get(i).getValue()));
+        }
+        boolean more = to < all.size();
+        sb.append("],\"has_more\":").append(more)
+                .append(",\"next_cursor\":").append(more ? "\"" + to + "\"" : "null").append('}');
+        return sb.toString();
+    }
+
+    /** Forme proche d'une vraie page Notion (champs de remplissage compris). */
+    private static String pageJson(String id, int eventId) {
+        return "{\"object\":\"page\",\"id\":\"" + id + "\","
+                + "\"created_time\":\"2026-01-01T00:00:00.000Z\",\"last_edited_time\":\"2026-01-01T00:00:00.000Z\","
+                + "\"parent\":{\"type\":\"database_id\",\"database_id\":\"db\"},\"archived\":false,"
+                + "\"properties\":{\"EventID\":{\"id\":\"evid\",\"type\":\"number\",\"number\":" + eventId + "}},"
+                + "\"url\":\"https://www.notion.so/" + id.replace("-", "") + "\"}";
+    }
+
+    private static void respond(HttpExchange ex, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ICalendarServiceTest {
+
+    private static Evenement ev(int id, String titre, String description) {
+        Evenement e = new Evenement();
+        e.setId(id);
+        e.setTitre(titre);
+        e.setDescription(description);
+        e.setType("PUBLIC");
+        e.setStatut("OUVERT");
+        e.setDateDebut(LocalDateTime.of(2026, 6, 1, 18, 0));
+        e.setDateFin(LocalDateTime.of(2026, 6, 1, 22, 0));
+        e.setCapaciteMax(100);
+        e.setLieuId(1);
+        return e;
+    }
+
+    @Test
+    void testLinesAreFoldedAt75OctetsWithoutSplittingCharacters() throws Exception {
+        StringWriter sw = new StringWriter();
+        IcsWriter w = new IcsWriter(sw);
+        String value = "Soirée été à Djerba, 🎉 ; ".repeat(20);
+        w.text("SUMMARY", value);
+        w.flush();
+
+        String out = sw.toString();
+        for (String physical : out.split("\r\n")) {
+            assertTrue(physical.getBytes(StandardCharsets.UTF_8).length <= 75,
+                    "Ligne trop longue: " + physical);
+        }
+        // Dépliage (RFC 5545 §3.1) : on retrouve exactement la valeur échappée
+        String unfolded = out.replace("\r\n ", "");
+        assertEquals("SUMMARY:" + IcsWriter.escape(value) + "\r\n", unfolded);
+        assertFalse(out.contains("�"));
+    }
+
+    @Test
+    void testDescriptionNewlinesEscapedOnce() {
+        String ics = ICalendarService.getInstance()
+                .buildIcsCalendar(List.of(ev(1, "Jazz", "Ligne 1\nLigne 2")), id -> "Tunis");
+        String unfolded = ics.replace("\r\n ", "");
+        assertTrue(unfolded.contains("DESCRIPTION:Ligne 1\\nLigne 2\\n\\n"));
+        assertFalse(unfolded.contains("\\\\n"));
+        assertTrue(unfolded.contains("LOCATION:Tunis\r\n"));
+        assertTrue(ics.startsWith("BEGIN:VCALENDAR\r\n"));
+        assertTrue(ics.endsWith("END:VCALENDAR\r\n"));
+    }
+
+    @Test
+    void testFeedServesEtagAndNotModified() throws Exception {
+        List<Evenement> events = new CopyOnWriteArrayList<>(List.of(ev(1, "Jazz", ""), ev(2, "Théâtre", "")));
+        List<Integer> userRequests = new ArrayList<>();
+        IcsFeedServer feed = new IcsFeedServer(() -> events,
+                userId -> { userRequests.add(userId); return List.of(events.get(0)); },
+                () -> id -> "Tunis");
+        feed.start(0);
+        try {
+            HttpURLConnection c1 = open(feed.feedUrl(null), null);
+            assertEquals(200, c1.getResponseCode());
+            assertTrue(c1.getContentType().startsWith("text/calendar"));
+            String etag = c1.getHeaderField("ETag");
+            assertNotNull(etag);
+            String body = new String(c1.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(2, body.split("BEGIN:VEVENT", -1).length - 1);
+
+            HttpURLConnection c2 = open(feed.feedUrl(null), etag);
+            assertEquals(304, c2.getResponseCode());
+
+            events.add(ev(3, "Cinéma", ""));
+            HttpURLConnection c3 = open(feed.feedUrl(null), etag);
+            assertEquals(200, c3.getResponseCode());
+            assertNotEquals(etag, c3.getHeaderField("ETag"));
+            c3.getInputStream().readAllBytes();
+
+            HttpURLConnection c4 = open(feed.feedUrl(42), null);
+            assertEquals(200, c4.getResponseCode());
+            c4.getInputStream().readAllBytes();
+            assertEquals(List.of(42), userRequests);
+
+            assertEquals(404, open(feed.getBaseUrl() + "/calendar/user/abc.ics", null).getResponseCode());
+        } finally {
+            feed.stop();
+        }
+    }
+
+    private static HttpURLConnection open(String url, String ifNoneMatch) throws Exception {
+        HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+        if (ifNoneMatch != null) c.setRequestProperty("If-None-Match", ifNoneMatch);
+        return c;
+    }
+}
@@ -0,0 +1,184 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.*;
+import utils.TestDbUtils;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InscriptionServiceTest {
+
+    static Connection cnx;
+    static EvenementService evenementService;
+    static InscriptionService inscriptionService;
+    static SeatInventoryService seatInventory;
+
+    static int userA;
+    static int userB;
+    static final List<Integer> eventIds = new ArrayList<>();
+
+    @BeforeAll
+    static void setup() throws Exception {
+        cnx = TestDbUtils.cnx();
+        evenementService = new EvenementService();
+        inscriptionService = new InscriptionService();
+        seatInventory = new SeatInventoryService();
+        seatInventory.ensureSchema();
+
+        userA = TestDbUtils.ensureUser(cnx);
+        userB = TestDbUtils.ensureUserOtherThan(cnx, userA);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        for (int eventId : eventIds) {
+            try {
+                inscriptionService.getByEventId(eventId).forEach(i -> inscriptionService.delete(i.getId()));
+            } catch (Exception ignored) {}
+            try { evenementService.delete(eventId); } catch (Exception ignored) {}
+        }
+    }
+
+    private static int createEvent(int capacite) {
+        Evenement e = new Evenement();
+        e.setTitre("EventTest_" + System.nanoTime());
+        e.setDescription("desc test");
+        e.setDateDebut(LocalDateTime.now().plusDays(5));
+        e.setDateFin(LocalDateTime.now().plusDays(5).plusHours(2));
+        e.setCapaciteMax(capacite);
+        e.setStatut("OUVERT");
+        e.setType("PUBLIC");
+        e.setPrix(0);
+        int id = evenementService.add(e);
+        assertTrue(id > 0);
+        eventIds.add(id);
+        return id;
+    }
+
+    @Test
+    void testConcurrentReservationsNeverOversell() throws Exception {
+        int capacite = 25;
+        int attempts = 2000;
+        int eventId = createEvent(capacite);
+
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < attempts; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                if (seatInventory.tryReserve(eventId, 1)) granted.incrementAndGet();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(capacite, granted.get(), "Places accordées != capacité");
+        assertEquals(capacite, seatInventory.getReserved(eventId));
+        assertEquals(0, seatInventory.getRemaining(eventId));
+
+        seatInventory.release(eventId, capacite);
+        assertEquals(capacite, seatInventory.getRemaining(eventId));
+    }
+
+    @Test
+    void testConcurrentDuplicateInscriptionsForSameUser() throws Exception {
+        int eventId = createEvent(100);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger ok = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    inscriptionService.addInscription(eventId, userA, 0f, 2);
+                    ok.incrementAndGet();
+                } catch (IllegalStateException ignored) {}
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1, ok.get());
+        assertEquals(1, inscriptionService.getByEventId(eventId).size());
+        assertEquals(2, seatInventory.getReserved(eventId), "Places des tentatives refusées non rendues");
+    }
+
+    @Test
+    void testRebuildWaitsForInFlightReservation() throws Exception {
+        int eventId = createEvent(10);
+        CountDownLatch reserved = new CountDownLatch(1);
+
+        // Réservation comptée, inscription pas encore validée
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> writer = pool.submit(() -> utils.Mydb.getInstance().inTransaction(cn -> {
+            assertTrue(seatInventory.tryReserve(cn, eventId, 2));
+            reserved.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try (var ps = cn.prepareStatement(
+                    "INSERT INTO inscription(event_id, user_id, statut, paiement, nb_tickets, date_creation) "
+                            + "VALUES (?, ?, 'EN_ATTENTE', 0, 2, NOW())")) {
+                ps.setInt(1, eventId);
+                ps.setInt(2, userB);
+                ps.executeUpdate();
+            }
+            return null;
+        }));
+        assertTrue(reserved.await(10, TimeUnit.SECONDS));
+
+        seatInventory.rebuildAll();             // attend le commit au lieu d'écraser la réservation
+        writer.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(2, seatInventory.getReserved(eventId));
+        assertEquals(8, inscriptionService.getPlacesRestantes(eventId));
+    }
+
+    @Test
+    void testNbTicketsCancellationAndReactivation() {
+        int eventId = createEvent(3);
+
+        int insA = inscriptionService.addInscription(eventId, userA, 0f, 2);
+        assertEquals(1, inscriptionService.getPlacesRestantes(eventId));
+
+        assertThrows(IllegalStateException.class,
+                () -> inscriptionService.addInscription(eventId, userB, 0f, 2));
+        assertEquals(1, inscriptionService.getPlacesRestantes(eventId));
+
+        int insB = inscriptionService.addInscription(eventId, userB, 0f, 1);
+        assertEquals(0, inscriptionService.getPlacesRestantes(eventId));
+
+        inscriptionService.updateStatut(insA, "ANNULEE");
+        assertEquals(2, inscriptionService.getPlacesRestantes(eventId));
+        // Annuler deux fois ne libère pas deux fois
+        inscriptionService.updateStatut(insA, "ANNULEE");
+        assertEquals(2, inscriptionService.getPlacesRestantes(eventId));
+
+        inscriptionService.updateStatut(insA, "CONFIRMEE");
+        assertEquals(0, inscriptionService.getPlacesRestantes(eventId));
+
+        inscriptionService.delete(insB);
+        assertEquals(1, inscriptionService.getPlacesRestantes(eventId));
+
+        seatInventory.rebuildAll();
+        assertEquals(1, inscriptionService.getPlacesRestantes(eventId));
+    }
+}
@@ -0,0 +1,114 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.Test;
+import utils.http.TokenBucketRateLimiter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotionCalendarServiceTest {
+
+    private static Evenement ev(int id) {
+        Evenement e = new Evenement();
+        e.setId(id);
+        e.setTitre("Événement " + id);
+        e.setDescription("Description " + id);
+        e.setType("PUBLIC");
+        e.setStatut("OUVERT");
+        e.setDateDebut(LocalDateTime.of(2026, 7, 1, 10, 0).plusDays(id));
+        e.setDateFin(LocalDateTime.of(2026, 7, 1, 12, 0).plusDays(id));
+        e.setCapaciteMax(50);
+        return e;
+    }
+
+    private static NotionCalendarService service(FakeNotionServer fake, double rate) {
+        NotionCalendarService s = new NotionCalendarService(fake.apiUrl(), new TokenBucketRateLimiter(rate, 3));
+        s.configure("secret_test", "db123");
+        return s;
+    }
+
+    @Test
+    void testSyncCreatesUpdatesAndArchivesWithProgress() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            for (int id = 1; id <= 3; id++) fake.seedPage(id);      // déjà présents
+            fake.seedPage(900);                                      // orphelins
+            fake.seedPage(901);
+
+            List<Evenement> events = new ArrayList<>();
+            for (int id = 1; id <= 30; id++) events.add(ev(id));
+
+            AtomicInteger lastDone = new AtomicInteger();
+            AtomicInteger lastTotal = new AtomicInteger();
+            NotionCalendarService.SyncResult r = service(fake, 50).syncAll(events, id -> "Tunis",
+                    (done, total, msg) -> {
+                        lastDone.accumulateAndGet(done, Math::max);
+                        lastTotal.set(total);
+                    });
+
+            assertEquals(27, r.created);
+            assertEquals(3, r.updated);
+            assertEquals(2, r.deleted);
+            assertEquals(0, r.failed, String.valueOf(r.errors));
+            assertEquals(32, lastTotal.get());
+            assertEquals(32, lastDone.get());
+
+            Set<Integer> remote = new HashSet<>(fake.pages.values());
+            assertEquals(30, remote.size());
+            for (int id = 1; id <= 30; id++) assertTrue(remote.contains(id));
+        }
+    }
+
+    @Test
+    void testThroughputStaysUnderRateLimit() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            List<Evenement> events = new ArrayList<>();
+            for (int id = 1; id <= 40; id++) events.add(ev(id));
+
+            double rate = 20;
+            service(fake, rate).syncAll(events, id -> "");
+
+            // 1 query + 40 créations : au-delà du burst initial (3), pas plus de 20 req/s
+            List<Long> times = new ArrayList<>(fake.requestTimes);
+            times.sort(Long::compare);
+            double seconds = (times.get(times.size() - 1) - times.get(0)) / 1e9;
+            double minSeconds = (times.size() - 3) / rate;
+            assertTrue(seconds >= minSeconds * 0.9,
+                    "Débit trop élevé: " + times.size() + " requêtes en " + seconds + " s");
+            assertEquals(40, fake.creates.get());
+        }
+    }
+
+    @Test
+    void testRetryAfterOn429() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            fake.throttleNextWrites(4, "0.3");
+            List<Evenement> events = new ArrayList<>();
+            for (int id = 1; id <= 10; id++) events.add(ev(id));
+
+            long t0 = System.nanoTime();
+            NotionCalendarService.SyncResult r = service(fake, 50).syncAll(events, id -> "");
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+
+            assertEquals(0, r.failed, String.valueOf(r.errors));
+            assertEquals(10, r.created);
+            assertEquals(4, fake.throttled.get());
+            assertTrue(ms >= 300, "Retry-After ignoré (" + ms + " ms)");
+        }
+    }
+
+    @Test
+    void testRetryAfterParsing() {
+        assertEquals(2000, NotionCalendarService.retryAfterMillis("2"));
+        assertEquals(500, NotionCalendarService.retryAfterMillis("0.5"));
+        assertEquals(-1, NotionCalendarService.retryAfterMillis(null));
+        assertEquals(-1, NotionCalendarService.retryAfterMillis("bientôt"));
+        assertEquals(0, NotionCalendarService.retryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+}
@@ -0,0 +1,147 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.Test;
+import utils.http.TokenBucketRateLimiter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotionSyncDeltaTest {
+
+    /** État de synchro en mémoire (pas de base MySQL nécessaire). */
+    static class MemorySyncState extends NotionSyncStateService {
+        final Map<Integer, Entry> entries = new HashMap<>();
+        LocalDateTime refreshedAt;
+
+        @Override public synchronized Map<Integer, Entry> load(String databaseId) { return new HashMap<>(entries); }
+        @Override public synchronized LocalDateTime getMappingsRefreshedAt(String databaseId) { return refreshedAt; }
+
+        @Override
+        public synchronized void replaceMappings(String databaseId, Map<Integer, String> pages, LocalDateTime at) {
+            Map<Integer, Entry> next = new HashMap<>();
+            pages.forEach((eventId, pageId) -> {
+                Entry old = entries.get(eventId);
+                next.put(eventId, old != null && old.pageId().equals(pageId) ? old : new Entry(eventId, pageId, null, null));
+            });
+            entries.clear();
+            entries.putAll(next);
+            refreshedAt = at;
+        }
+
+        @Override
+        public synchronized void saveResults(String databaseId, Collection<Entry> written,
+                                             Collection<Integer> removed, LocalDateTime syncedAt) {
+            written.forEach(e -> entries.put(e.eventId(), e));
+            removed.forEach(entries::remove);
+        }
+
+        @Override public synchronized void clear(String databaseId) { entries.clear(); refreshedAt = null; }
+    }
+
+    private static Evenement ev(int id) {
+        Evenement e = new Evenement();
+        e.setId(id);
+        e.setTitre("Événement " + id);
+        e.setDescription("Description " + id);
+        e.setType("PUBLIC");
+        e.setStatut("OUVERT");
+        e.setDateDebut(LocalDateTime.of(2026, 7, 1, 10, 0).plusDays(id));
+        e.setDateFin(LocalDateTime.of(2026, 7, 1, 12, 0).plusDays(id));
+        e.setCapaciteMax(50);
+        return e;
+    }
+
+    private static NotionCalendarService service(FakeNotionServer fake, NotionSyncStateService state) {
+        NotionCalendarService s = new NotionCalendarService(fake.apiUrl(), new TokenBucketRateLimiter(100, 10), state);
+        s.configure("secret_test", "db123");
+        return s;
+    }
+
+    @Test
+    void testSecondRunSendsOnlyChanges() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            MemorySyncState state = new MemorySyncState();
+            NotionCalendarService notion = service(fake, state);
+            List<Evenement> events = new ArrayList<>();
+            for (int id = 1; id <= 20; id++) events.add(ev(id));
+
+            NotionCalendarService.SyncResult first = notion.syncSinceLastRun(events, id -> "Tunis", null);
+            assertEquals(20, first.created);
+            assertTrue(first.mappingsRefreshed);
+            assertEquals(1, fake.queries.get());
+
+            // Rien n'a changé : aucune requête
+            int before = fake.requestTimes.size();
+            NotionCalendarService.SyncResult second = notion.syncSinceLastRun(events, id -> "Tunis", null);
+            assertEquals(20, second.skipped);
+            assertFalse(second.mappingsRefreshed);
+            assertEquals(before, fake.requestTimes.size());
+
+            // 1 modifié, 1 supprimé, 1 nouveau
+            events.get(4).setTitre("Renommé");
+            events.remove(9);
+            events.add(ev(21));
+            NotionCalendarService.SyncResult third = notion.syncSinceLastRun(events, id -> "Tunis", null);
+            assertEquals(1, third.updated);
+            assertEquals(1, third.deleted);
+            assertEquals(1, third.created);
+            assertEquals(18, third.skipped);
+            assertEquals(0, third.failed, String.valueOf(third.errors));
+            assertEquals(1, fake.queries.get());
+            assertEquals(20, fake.pages.size());
+        }
+    }
+
+    @Test
+    void testStaleMappingIsReloadedAndDeletedPageRecreated() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            MemorySyncState state = new MemorySyncState();
+            NotionCalendarService notion = service(fake, state);
+            List<Evenement> events = new ArrayList<>(List.of(ev(1), ev(2), ev(3)));
+            notion.syncSinceLastRun(events, id -> "", null);
+
+            // Page supprimée à la main dans Notion + événement modifié localement → recréée
+            String pageOf2 = state.entries.get(2).pageId();
+            fake.pages.remove(pageOf2);
+            events.get(1).setDescription("Nouvelle description");
+            NotionCalendarService.SyncResult r = notion.syncSinceLastRun(events, id -> "", null);
+            assertEquals(1, r.created, String.valueOf(r.errors));
+            assertEquals(0, r.failed);
+            assertNotEquals(pageOf2, state.entries.get(2).pageId());
+
+            // Mapping périmé : relecture Notion, les empreintes des pages identiques sont conservées
+            state.refreshedAt = LocalDateTime.now().minusDays(2);
+            int queries = fake.queries.get();
+            NotionCalendarService.SyncResult stale = notion.syncSinceLastRun(events, id -> "", null);
+            assertTrue(stale.mappingsRefreshed);
+            assertEquals(queries + 1, fake.queries.get());
+            assertEquals(3, stale.skipped);
+        }
+    }
+
+    @Test
+    void testFullSyncRewritesOnlyUnknownHashes() throws Exception {
+        try (FakeNotionServer fake = new FakeNotionServer()) {
+            fake.seedPage(1);                    // créée par une autre instance : empreinte inconnue
+            MemorySyncState state = new MemorySyncState();
+            NotionCalendarService notion = service(fake, state);
+            List<Evenement> events = List.of(ev(1), ev(2));
+
+            NotionCalendarService.SyncResult r1 = notion.syncAll(events, id -> "");
+            assertEquals(1, r1.updated);
+            assertEquals(1, r1.created);
+
+            NotionCalendarService.SyncResult r2 = notion.syncAll(events, id -> "");
+            assertTrue(r2.mappingsRefreshed);
+            assertEquals(2, r2.skipped);
+            assertEquals(1, fake.updates.get());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Profils d'intérêts : fusion fork-join et classement à égalité (sans base de données).
+ */
+public class RecommendationServiceTest {
+
+    private static Evenement event(String titre, String description) {
+        Evenement e = new Evenement();
+        e.setTitre(titre);
+        e.setDescription(description);
+        return e;
+    }
+
+    @Test
+    void forkJoinMergeKeepsEveryUserWhateverTheSplit() {
+        // Assez de users pour plusieurs feuilles (seuil 64) : chaque fusion doit tout garder
+        List<Map.Entry<Integer, List<Evenement>>> work = new ArrayList<>();
+        for (int userId = 1; userId <= 300; userId++) {
+            List<Evenement> events = new ArrayList<>();
+            events.add(event("Concert jazz", "soiree user" + userId));
+            if (userId % 2 == 0) events.add(event("Atelier jazz", "poterie"));
+            work.add(Map.entry(userId, events));
+        }
+
+        Map<Integer, Map<String, Integer>> profiles = RecommendationService.profilesOf(work);
+        assertEquals(300, profiles.size());
+        assertEquals(Integer.valueOf(2), profiles.get(42).get("jazz"));
+        assertEquals(Integer.valueOf(1), profiles.get(41).get("jazz"));
+        assertEquals(Integer.valueOf(1), profiles.get(300).get("user300"));
+        assertFalse(profiles.get(41).containsKey("poterie"));
+
+        // L'ordre des users en entrée ne change rien
+        List<Map.Entry<Integer, List<Evenement>>> shuffled = new ArrayList<>(work);
+        Collections.reverse(shuffled);
+        assertEquals(profiles, RecommendationService.profilesOf(shuffled));
+        assertTrue(RecommendationService.profilesOf(List.of()).isEmpty());
+    }
+
+    @Test
+    void tiesAreRankedByKeyword() {
+        Map<Integer, Map<String, Integer>> profiles = new LinkedHashMap<>();
+        profiles.put(1, Map.of("theatre", 1, "jazz", 1, "randonnee", 1));
+        profiles.put(2, Map.of("randonnee", 2, "cinema", 1, "zumba", 1));
+        profiles.put(3, Map.of("randonnee", 1, "atelier", 3));
+
+        Map<String, Integer> top = RecommendationService.aggregateInterests(profiles, 4);
+        assertEquals(List.of("randonnee", "atelier", "cinema", "jazz"), new ArrayList<>(top.keySet()));
+        assertEquals(Integer.valueOf(3), top.get("randonnee"));
+
+        // Mêmes profils, autre ordre d'insertion : même classement
+        Map<Integer, Map<String, Integer>> reversed = new LinkedHashMap<>();
+        reversed.put(3, profiles.get(3));
+        reversed.put(2, profiles.get(2));
+        reversed.put(1, profiles.get(1));
+        assertEquals(new ArrayList<>(top.keySet()),
+                new ArrayList<>(RecommendationService.aggregateInterests(reversed, 4).keySet()));
+    }
+
+    @Test
+    void keywordProfileBreaksTiesAlphabetically() {
+        List<Map.Entry<Integer, List<Evenement>>> work = List.of(Map.entry(7, List.of(
+                event("Zumba plage", "yoga"), event("Balade", "yoga zumba"))));
+
+        Map<String, Integer> profile = RecommendationService.profilesOf(work).get(7);
+        assertEquals(List.of("yoga", "zumba", "balade", "plage"), new ArrayList<>(profile.keySet()));
+    }
+}
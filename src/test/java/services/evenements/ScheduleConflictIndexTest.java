@@ -0,0 +1,136 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import models.sorties.AnnonceSortie;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduleConflictIndexTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 6, 1, 10, 0);
+
+    private static Evenement event(int lieuId, int startH, int endH, String statut) {
+        Evenement e = new Evenement();
+        e.setTitre("Ev");
+        e.setLieuId(lieuId);
+        e.setDateDebut(T0.plusHours(startH));
+        e.setDateFin(T0.plusHours(endH));
+        e.setStatut(statut);
+        return e;
+    }
+
+    private static ScheduleConflictIndex emptyIndex() {
+        ScheduleConflictIndex idx = new ScheduleConflictIndex(into -> {});
+        idx.ensureLoaded();
+        return idx;
+    }
+
+    @Test
+    void treeMatchesBruteForce() {
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        List<int[]> live = new ArrayList<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            int s = rnd.nextInt(1000), len = 1 + rnd.nextInt(50);
+            tree.put(i, T0.plusMinutes(s), T0.plusMinutes(s + len), i);
+            live.add(new int[]{i, s, s + len});
+        }
+        // Retrait d'un intervalle sur trois
+        for (int i = 0; i < 400; i += 3) {
+            int key = i;
+            assertTrue(tree.remove(key));
+            live.removeIf(iv -> iv[0] == key);
+        }
+        assertFalse(tree.remove(0));
+        assertEquals(live.size(), tree.size());
+
+        for (int q = 0; q < 200; q++) {
+            int qs = rnd.nextInt(1000), qe = qs + 1 + rnd.nextInt(80);
+            List<Integer> expected = live.stream()
+                    .filter(iv -> iv[1] < qe && qs < iv[2])
+                    .map(iv -> iv[0]).sorted().toList();
+            List<Integer> actual = tree.overlapping(T0.plusMinutes(qs), T0.plusMinutes(qe))
+                    .stream().sorted().toList();
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void adjacentSlotsDoNotConflict() {
+        ScheduleConflictIndex idx = emptyIndex();
+        idx.upsertEvent(1, event(7, 0, 2, "OUVERT"));
+        idx.setInscription(100, 1, true);
+
+        assertTrue(idx.userConflicts(100, T0.plusHours(2), T0.plusHours(4)).isEmpty());
+        assertEquals(1, idx.userConflicts(100, T0.plusHours(1), T0.plusHours(3)).size());
+        assertTrue(idx.userConflicts(200, T0, T0.plusHours(2)).isEmpty());
+    }
+
+    @Test
+    void movingOrCancellingEventUpdatesAttendees() {
+        ScheduleConflictIndex idx = emptyIndex();
+        idx.upsertEvent(1, event(7, 0, 2, "OUVERT"));
+        idx.setInscription(100, 1, true);
+        assertEquals(1, idx.userConflicts(100, T0.plusHours(1), T0.plusHours(2)).size());
+
+        idx.upsertEvent(1, event(9, 5, 6, "OUVERT"));
+        assertTrue(idx.userConflicts(100, T0, T0.plusHours(2)).isEmpty());
+        assertEquals(1, idx.userConflicts(100, T0.plusHours(5), T0.plusHours(6)).size());
+
+        idx.upsertEvent(1, event(9, 5, 6, "ANNULE"));
+        assertTrue(idx.userConflicts(100, T0.plusHours(5), T0.plusHours(6)).isEmpty());
+
+        // Réouverture : l'inscrit retrouve le créneau
+        idx.upsertEvent(1, event(9, 5, 6, "OUVERT"));
+        assertEquals(1, idx.userConflicts(100, T0.plusHours(5), T0.plusHours(6)).size());
+
+        idx.removeEvent(1);
+        assertTrue(idx.userConflicts(100, T0.plusHours(5), T0.plusHours(6)).isEmpty());
+    }
+
+    @Test
+    void sortieConflictsWithInscriptionButNotItself() {
+        ScheduleConflictIndex idx = emptyIndex();
+        idx.upsertEvent(1, event(7, 0, 2, "OUVERT"));
+        idx.setInscription(100, 1, true);
+
+        AnnonceSortie s = new AnnonceSortie();
+        s.setId(50);
+        s.setTitre("Rando");
+        s.setDateSortie(T0.plusHours(1));
+        s.setStatut("OUVERTE");
+
+        List<ScheduleConflictIndex.Conflict> c = idx.sortieConflicts(100, s);
+        assertEquals(1, c.size());
+        assertEquals(ScheduleConflictIndex.Kind.EVENEMENT, c.get(0).kind());
+
+        idx.setParticipation(100, s, true);
+        assertEquals(1, idx.sortieConflicts(100, s).size());
+        // Un autre user inscrit à rien : aucun conflit
+        assertTrue(idx.sortieConflicts(200, s).isEmpty());
+
+        idx.setInscription(100, 1, false);
+        assertTrue(idx.sortieConflicts(100, s).isEmpty());
+        assertEquals(1, idx.userConflicts(100, T0.plusHours(2), T0.plusHours(3)).size());
+
+        idx.setParticipation(100, s, false);
+        assertTrue(idx.userConflicts(100, T0, T0.plusHours(5)).isEmpty());
+    }
+
+    @Test
+    void updatesAreIgnoredUntilLoaded() {
+        List<Integer> loads = new ArrayList<>();
+        ScheduleConflictIndex idx = new ScheduleConflictIndex(into -> loads.add(1));
+        idx.upsertEvent(1, event(7, 0, 2, "OUVERT"));
+        idx.setInscription(100, 1, true);
+        // Le chargement (ici vide) fait foi : les mises à jour d'avant n'ont rien laissé
+        assertTrue(idx.userConflicts(100, T0, T0.plusHours(2)).isEmpty());
+        assertEquals(1, loads.size());
+    }
+}
@@ -0,0 +1,61 @@
+package services.evenements;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Arithmétique du score tendance (sans base de données).
+ */
+public class TrendingServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    @Test
+    void halvesEveryHalfLife() {
+        assertEquals(1.0, TrendingService.contribution(T0, T0), 1e-12);
+        assertEquals(0.5, TrendingService.contribution(T0, T0.plus(TrendingService.HALF_LIFE)), 1e-9);
+        assertEquals(0.25, TrendingService.decay(1.0, T0, T0.plus(TrendingService.HALF_LIFE.multipliedBy(2))), 1e-9);
+        // Horloge qui recule : pas de croissance
+        assertEquals(2.0, TrendingService.decay(2.0, T0, T0.minusHours(1)), 1e-12);
+    }
+
+    @Test
+    void incrementalUpdatesEqualDirectSum() {
+        List<LocalDateTime> inscriptions = List.of(
+                T0, T0.plusHours(5), T0.plusDays(1), T0.plusDays(2).plusMinutes(30), T0.plusDays(4));
+
+        // Ce que fait la table : score·exp(-λΔt) + 1 à chaque inscription
+        double stored = 0;
+        LocalDateTime updatedAt = T0;
+        for (LocalDateTime at : inscriptions) {
+            stored = TrendingService.decay(stored, updatedAt, at) + 1.0;
+            updatedAt = at;
+        }
+        // Annulation de la 2e inscription à T0+5j : on retire sa contribution actuelle
+        LocalDateTime cancelAt = T0.plusDays(5);
+        stored = TrendingService.decay(stored, updatedAt, cancelAt)
+                - TrendingService.contribution(inscriptions.get(1), cancelAt);
+        updatedAt = cancelAt;
+
+        LocalDateTime now = T0.plusDays(6);
+        double direct = 0;
+        for (int i = 0; i < inscriptions.size(); i++) {
+            if (i != 1) direct += TrendingService.contribution(inscriptions.get(i), now);
+        }
+        assertEquals(direct, TrendingService.decay(stored, updatedAt, now), 1e-9);
+    }
+
+    @Test
+    void recentBurstOutranksOldPopularity() {
+        LocalDateTime now = T0.plusDays(30);
+        double old = 0;
+        for (int i = 0; i < 20; i++) old += TrendingService.contribution(T0.plusHours(i), now);
+        double recent = 0;
+        for (int i = 0; i < 3; i++) recent += TrendingService.contribution(now.minusHours(i), now);
+        assertTrue(recent > old);
+    }
+}
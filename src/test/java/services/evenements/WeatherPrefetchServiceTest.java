@@ -0,0 +1,61 @@
+package services.evenements;
+
+import models.evenements.Evenement;
+import models.lieux.Lieu;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeatherPrefetchServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 7, 1);
+
+    private static Evenement ev(int id, Integer lieuId, int inDays) {
+        Evenement e = new Evenement();
+        e.setId(id);
+        e.setLieuId(lieuId);
+        e.setDateDebut(TODAY.plusDays(inDays).atTime(18, 0));
+        return e;
+    }
+
+    private static Lieu lieu(int id, double lat, double lon) {
+        Lieu l = new Lieu();
+        l.setId(id);
+        l.setLatitude(lat);
+        l.setLongitude(lon);
+        return l;
+    }
+
+    @Test
+    void testOneRangePerLocationWithinHorizon() {
+        Map<Integer, Lieu> lieux = Map.of(
+                1, lieu(1, 36.8512, 10.3234),
+                2, lieu(2, 36.8534, 10.3201),      // même case de 0.01° que le lieu 1
+                3, lieu(3, 33.8076, 10.8451));
+        List<Evenement> events = List.of(
+                ev(1, 1, 2), ev(2, 2, 9), ev(3, 1, 5),
+                ev(4, 3, 0),
+                ev(5, null, 16),                   // sans lieu → Tunis
+                ev(6, 3, 17),                      // hors horizon
+                ev(7, 1, -1));                     // passé
+
+        List<WeatherPrefetchService.RangeRequest> plan = WeatherPrefetchService.plan(events, lieux::get, TODAY);
+
+        assertEquals(3, plan.size());
+        WeatherPrefetchService.RangeRequest marsa = plan.get(0);
+        assertEquals(36.85, marsa.lat(), 1e-9);
+        assertEquals(10.32, marsa.lon(), 1e-9);
+        assertEquals(TODAY.plusDays(2), marsa.from());
+        assertEquals(TODAY.plusDays(9), marsa.to());
+        assertEquals(3, marsa.eventCount());
+
+        assertEquals(TODAY, plan.get(1).from());
+        assertEquals(TODAY, plan.get(1).to());
+        assertEquals(36.81, plan.get(2).lat(), 1e-9);
+        assertEquals(TODAY.plusDays(16), plan.get(2).from());
+    }
+}
@@ -0,0 +1,122 @@
+package services.payment;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoRateCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private static CryptoRateCache.Rates rates(double btc, Instant at) {
+        return new CryptoRateCache.Rates(btc, 3_000, at, false);
+    }
+
+    @Test
+    void testFreshRatesServedWithoutRefetch() {
+        AtomicInteger calls = new AtomicInteger();
+        CryptoRateCache cache = new CryptoRateCache(now -> {
+            calls.incrementAndGet();
+            return rates(90_000, now);
+        }, clock::get);
+
+        CryptoRateCache.Rates first = cache.get(Duration.ofSeconds(1));
+        clock.addAndGet(30_000);
+        CryptoRateCache.Rates second = cache.get(Duration.ofSeconds(1));
+
+        assertEquals(90_000, first.btcUSD(), 0.0);
+        assertSame(first, second);
+        assertEquals(1, calls.get());
+        cache.shutdown();
+    }
+
+    @Test
+    void testStaleServedImmediatelyWhileSingleRefreshRuns() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CryptoRateCache cache = new CryptoRateCache(now -> {
+            if (calls.incrementAndGet() > 1) release.await(5, TimeUnit.SECONDS);
+            return rates(90_000 + calls.get(), now);
+        }, clock::get);
+        CryptoRateCache.Rates initial = cache.get(Duration.ofSeconds(1));
+
+        clock.addAndGet(CryptoRateCache.FRESH_TTL.toMillis() + 1_000);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            assertSame(initial, cache.get(Duration.ofSeconds(5)));
+        }
+        assertTrue(System.nanoTime() - t0 < TimeUnit.MILLISECONDS.toNanos(500), "get() a bloqué");
+
+        CompletableFuture<CryptoRateCache.Rates> refresh = cache.refreshAsync();
+        release.countDown();
+        assertEquals(90_002, refresh.get(5, TimeUnit.SECONDS).btcUSD(), 0.0);
+        assertEquals(2, calls.get());
+        assertEquals(90_002, cache.get(Duration.ofSeconds(1)).btcUSD(), 0.0);
+        cache.shutdown();
+    }
+
+    @Test
+    void testSlowApiBoundedByMaxWaitThenFallback() {
+        CryptoRateCache cache = new CryptoRateCache(now -> {
+            Thread.sleep(2_000);
+            return rates(90_000, now);
+        }, clock::get);
+
+        long t0 = System.nanoTime();
+        CryptoRateCache.Rates r = cache.get(Duration.ofMillis(100));
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+
+        assertTrue(ms < 1_000, "attente " + ms + " ms");
+        assertTrue(r.fallback());
+        assertEquals(CryptoRateCache.FALLBACK_BTC_USD, r.btcUSD(), 0.0);
+        cache.shutdown();
+    }
+
+    @Test
+    void testBreakerOpensAfterFailuresAndHalfOpensLater() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger failuresLeft = new AtomicInteger(CryptoRateCache.FAILURE_THRESHOLD);
+        CryptoRateCache cache = new CryptoRateCache(now -> {
+            calls.incrementAndGet();
+            if (failuresLeft.getAndDecrement() > 0) throw new RuntimeException("CoinGecko 429");
+            return rates(91_000, now);
+        }, clock::get);
+
+        for (int i = 0; i < CryptoRateCache.FAILURE_THRESHOLD; i++) {
+            assertTrue(cache.get(Duration.ofSeconds(1)).fallback());
+        }
+        assertEquals(CryptoRateCache.BreakerState.OPEN, cache.getBreakerState());
+
+        // Disjoncteur ouvert : aucun appel, réponse immédiate
+        assertTrue(cache.get(Duration.ofSeconds(5)).fallback());
+        assertNull(cache.refreshAsync());
+        assertEquals(CryptoRateCache.FAILURE_THRESHOLD, calls.get());
+
+        clock.addAndGet(CryptoRateCache.OPEN_DURATION.toMillis());
+        assertEquals(CryptoRateCache.BreakerState.HALF_OPEN, cache.getBreakerState());
+        CryptoRateCache.Rates r = cache.get(Duration.ofSeconds(1));
+        assertFalse(r.fallback());
+        assertEquals(91_000, r.btcUSD(), 0.0);
+        assertEquals(CryptoRateCache.BreakerState.CLOSED, cache.getBreakerState());
+        cache.shutdown();
+    }
+
+    @Test
+    void testQuoteCarriesRateAge() {
+        Instant at = Instant.parse("2026-01-01T10:00:00Z");
+        CryptoPaymentService.CryptoQuote q = CryptoPaymentService.toQuote(95, rates(95_000, at));
+
+        assertEquals(0.001, q.btcAmount(), 1e-12);
+        assertFalse(q.estimated());
+        assertEquals(Duration.ofSeconds(42), q.age(at.plusSeconds(42)));
+        assertEquals(Duration.ZERO, q.age(at.minusSeconds(1)));
+    }
+}
@@ -0,0 +1,146 @@
+package services.payment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Faux Stripe + Flouci pour les tests du suivi de paiement.
+ *
+ * Stripe : POST /stripe/checkout/sessions, GET /stripe/checkout/sessions/{id},
+ *          POST /stripe/checkout/sessions/{id}/expire
+ * Flouci : POST /flouci/generate_payment, GET /flouci/verify_payment/{id}
+ *
+ * Chaque référence suit un scénario : une file de statuts renvoyés un par un
+ * (le dernier est répété). "HTTP_500" simule une panne du fournisseur.
+ */
+class FakePaymentProviderServer implements AutoCloseable {
+
+    private final Map<String, Deque<String>> scripts = new ConcurrentHashMap<>();
+    /** Horodatage (ms) de chaque vérification, par référence. */
+    final Map<String, List<Long>> checks = new ConcurrentHashMap<>();
+    /** Références dont l'expiration a été demandée. */
+    final List<String> expires = new CopyOnWriteArrayList<>();
+    private final HttpServer server;
+
+    FakePaymentProviderServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/stripe/checkout/sessions", this::stripe);
+        server.createContext("/flouci", this::flouci);
+        server.start();
+    }
+
+    String stripeUrl() { return base() + "/stripe"; }
+    String flouciUrl() { return base() + "/flouci"; }
+
+    private String base() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Définit les statuts successifs renvoyés pour cette référence. */
+    void script(String ref, String... statuses) {
+        scripts.put(ref, new ArrayDeque<>(List.of(statuses)));
+    }
+
+    int checkCount(String ref) {
+        return checks.getOrDefault(ref, List.of()).size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /** Statut courant sans compter de vérification. */
+    private String current(String ref) {
+        Deque<String> q = scripts.get(ref);
+        if (q == null) return null;
+        synchronized (q) {
+            return q.peek();
+        }
+    }
+
+    private String next(String ref) {
+        checks.computeIfAbsent(ref, k -> new CopyOnWriteArrayList<>()).add(System.currentTimeMillis());
+        Deque<String> q = scripts.get(ref);
+        if (q == null) return null;
+        synchronized (q) {
+            return q.size() > 1 ? q.poll() : q.peek();
+        }
+    }
+
+    private void stripe(HttpExchange ex) throws IOException {
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            if (ex.getRequestMethod().equals("POST") && path.endsWith("/expire")) {
+                String id = path.substring("/stripe/checkout/sessions/".length(), path.length() - "/expire".length());
+                expires.add(id);
+                String status = current(id);
+                if (status == null) { respond(ex, 404, "{\"error\":{\"message\":\"No such checkout.session\"}}"); return; }
+                if (status.equals("paid") || status.equals("expired")) {
+                    respond(ex, 400, "{\"error\":{\"message\":\"Only Checkout Sessions with a status of open can be expired.\"}}");
+                    return;
+                }
+                script(id, "expired");
+                respond(ex, 200, session(id, "expired", "unpaid"));
+                return;
+            }
+            if (ex.getRequestMethod().equals("POST")) {
+                String id = "cs_test_" + UUID.randomUUID().toString().replace("-", "");
+                script(id, "unpaid");
+                respond(ex, 200, session(id, "open", "unpaid"));
+                return;
+            }
+            String id = path.substring("/stripe/checkout/sessions/".length());
+            String status = next(id);
+            if (status == null) { respond(ex, 404, "{\"error\":{\"message\":\"No such checkout.session\"}}"); return; }
+            if (status.equals("HTTP_500")) { respond(ex, 500, "{\"error\":{\"message\":\"boom\"}}"); return; }
+            String sessionStatus = status.equals("paid") ? "complete" : status.equals("expired") ? "expired" : "open";
+            respond(ex, 200, session(id, sessionStatus, status.equals("expired") ? "unpaid" : status));
+        }
+    }
+
+    private void flouci(HttpExchange ex) throws IOException {
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            if (path.equals("/flouci/generate_payment")) {
+                String id = UUID.randomUUID().toString();
+                script(id, "PENDING");
+                respond(ex, 200, "{\"result\":{\"success\":true,\"payment_id\":\"" + id
+                        + "\",\"link\":\"http://flouci.test/pay/" + id + "\"}}");
+                return;
+            }
+            String id = path.substring("/flouci/verify_payment/".length());
+            String status = next(id);
+            if (status == null || status.equals("HTTP_500")) { respond(ex, 500, "{\"success\":false}"); return; }
+            respond(ex, 200, "{\"success\":true,\"result\":{\"status\":\"" + status + "\",\"amount\":30000}}");
+        }
+    }
+
+    private static String session(String id, String status, String paymentStatus) {
+        return "{\"id\":\"" + id + "\",\"object\":\"checkout.session\",\"automatic_tax\":{\"enabled\":false,\"status\":null},"
+                + "\"payment_status\":\"" + paymentStatus + "\",\"status\":\"" + status + "\","
+                + "\"url\":\"https://checkout.stripe.test/c/pay/" + id + "\"}";
+    }
+
+    private static void respond(HttpExchange ex, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
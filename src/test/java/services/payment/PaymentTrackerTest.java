@@ -0,0 +1,244 @@
+package services.payment;
+
+import org.junit.jupiter.api.Test;
+import services.evenements.PaiementService;
+import services.evenements.PaiementService.PendingPayment;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentTrackerTest {
+
+    /** Table paiement simulée : survit à la « fermeture » d'un tracker. */
+    static class MemoryStore implements PaymentTracker.Store {
+        final Map<Integer, PendingPayment> pending = new ConcurrentHashMap<>();
+        final Map<Integer, String> statuts = new ConcurrentHashMap<>();
+        final Map<Integer, String> lastErrors = new ConcurrentHashMap<>();
+
+        void add(PendingPayment p) {
+            pending.put(p.paiementId(), p);
+            statuts.put(p.paiementId(), PaiementService.STATUT_EN_ATTENTE);
+        }
+
+        @Override public List<PendingPayment> loadPending() { return new ArrayList<>(pending.values()); }
+
+        @Override
+        public void reschedule(PendingPayment p, String lastError) {
+            pending.put(p.paiementId(), p);
+            if (lastError != null) lastErrors.put(p.paiementId(), lastError);
+        }
+
+        @Override
+        public synchronized boolean settle(PendingPayment p, String statut) {
+            if (!PaiementService.STATUT_EN_ATTENTE.equals(statuts.get(p.paiementId()))) return false;
+            statuts.put(p.paiementId(), statut);
+            pending.remove(p.paiementId());
+            return true;
+        }
+    }
+
+    private static PaymentTracker tracker(MemoryStore store, FakePaymentProviderServer fake) {
+        StripePaymentService stripe = new StripePaymentService(fake.stripeUrl());
+        FlouciPaymentService flouci = new FlouciPaymentService(fake.flouciUrl());
+        return new PaymentTracker(store, Map.of(
+                "CARTE_BANCAIRE", ref -> PaymentTracker.fromStripe(stripe.getSession(ref)),
+                "FLOUCI", ref -> PaymentTracker.fromFlouci(flouci.getPaymentStatus(ref))),
+                Map.of("CARTE_BANCAIRE", stripe::expireSession),
+                Duration.ofMillis(50), Duration.ofMillis(200));
+    }
+
+    private static PendingPayment pending(int id, String methode, String ref, Duration deadline) {
+        return new PendingPayment(id, 100 + id, 30.0, methode, ref, 0, LocalDateTime.now(),
+                LocalDateTime.now().plus(deadline));
+    }
+
+    private static CountDownLatch awaitSettlements(PaymentTracker t, List<PaymentTracker.Settlement> sink, int n) {
+        CountDownLatch latch = new CountDownLatch(n);
+        t.addListener(s -> { sink.add(s); latch.countDown(); });
+        return latch;
+    }
+
+    @Test
+    void testStripeSessionPolledWithBackoffUntilPaid() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            StripePaymentService.CheckoutSession session =
+                    new StripePaymentService(fake.stripeUrl()).createSession("Jazz × 2", 100, 1);
+            assertNotNull(session.id());
+            fake.script(session.id(), "unpaid", "unpaid", "HTTP_500", "unpaid", "paid");
+
+            MemoryStore store = new MemoryStore();
+            PaymentTracker t = tracker(store, fake);
+            List<PaymentTracker.Settlement> settled = new CopyOnWriteArrayList<>();
+            CountDownLatch done = awaitSettlements(t, settled, 1);
+
+            PendingPayment p = pending(1, "CARTE_BANCAIRE", session.id(), Duration.ofMinutes(5));
+            store.add(p);
+            t.track(p);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(PaiementService.STATUT_PAYE, store.statuts.get(1));
+            assertTrue(settled.get(0).isPaid());
+            assertEquals(5, fake.checkCount(session.id()));
+            assertTrue(store.lastErrors.containsKey(1), "erreur 500 non enregistrée");
+
+            // Délais croissants : 50, 100, 200, 200 ms
+            List<Long> times = fake.checks.get(session.id());
+            long first = times.get(1) - times.get(0);
+            long third = times.get(3) - times.get(2);
+            assertTrue(third > first, "pas de backoff: " + times);
+            assertFalse(t.isTracking(1));
+            t.shutdown();
+        }
+    }
+
+    @Test
+    void testFlouciFailureAndDeadlineExpiry() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            FlouciPaymentService flouci = new FlouciPaymentService(fake.flouciUrl());
+            String refused = flouci.generatePayment(30).paymentId();
+            String stuck = flouci.generatePayment(30).paymentId();
+            fake.script(refused, "PENDING", "FAILURE");
+
+            MemoryStore store = new MemoryStore();
+            PaymentTracker t = tracker(store, fake);
+            List<PaymentTracker.Settlement> settled = new CopyOnWriteArrayList<>();
+            CountDownLatch done = awaitSettlements(t, settled, 2);
+
+            PendingPayment a = pending(1, "FLOUCI", refused, Duration.ofMinutes(5));
+            PendingPayment b = pending(2, "FLOUCI", stuck, Duration.ofMillis(400));
+            store.add(a);
+            store.add(b);
+            t.track(a);
+            t.track(b);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(PaiementService.STATUT_ECHOUE, store.statuts.get(1));
+            assertEquals(PaiementService.STATUT_EXPIRE, store.statuts.get(2));
+            t.shutdown();
+        }
+    }
+
+    @Test
+    void testPendingPaymentsResumeAfterRestart() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            fake.script("cs_resume", "unpaid");
+            MemoryStore store = new MemoryStore();
+
+            PaymentTracker before = tracker(store, fake);
+            PendingPayment p = pending(7, "CARTE_BANCAIRE", "cs_resume", Duration.ofMinutes(5));
+            store.add(p);
+            before.track(p);
+            Thread.sleep(150);
+            before.shutdown();                          // « fermeture » de l'application
+            assertEquals(PaiementService.STATUT_EN_ATTENTE, store.statuts.get(7));
+            assertTrue(store.pending.get(7).attempts() > 0);
+
+            fake.script("cs_resume", "paid");           // payé pendant que l'app était fermée
+            PaymentTracker after = tracker(store, fake);
+            List<PaymentTracker.Settlement> settled = new CopyOnWriteArrayList<>();
+            CountDownLatch done = awaitSettlements(after, settled, 1);
+            after.start();
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(PaiementService.STATUT_PAYE, store.statuts.get(7));
+            assertEquals(107, settled.get(0).inscriptionId());
+            after.shutdown();
+        }
+    }
+
+    @Test
+    void testCancelStopsTrackingAndIsFinal() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            fake.script("cs_cancel", "unpaid");
+            MemoryStore store = new MemoryStore();
+            PaymentTracker t = tracker(store, fake);
+            PendingPayment p = pending(3, "CARTE_BANCAIRE", "cs_cancel", Duration.ofMinutes(5));
+            store.add(p);
+            t.track(p);
+            Thread.sleep(100);
+
+            // Session encore ouverte : expirée chez Stripe puis confirmée avant d'écrire ANNULE
+            assertEquals(PaymentTracker.CancelResult.CANCELLED, t.cancel(3).get(5, TimeUnit.SECONDS));
+            assertEquals(List.of("cs_cancel"), fake.expires);
+            assertEquals(PaymentTracker.CancelResult.NOT_TRACKED, t.cancel(3).get(5, TimeUnit.SECONDS));
+            int checks = fake.checkCount("cs_cancel");
+            Thread.sleep(400);
+            assertEquals(checks, fake.checkCount("cs_cancel"));
+            assertEquals(PaiementService.STATUT_ANNULE, store.statuts.get(3));
+            t.shutdown();
+        }
+    }
+
+    @Test
+    void testCancelOfAPaidSessionSettlesPaid() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            fake.script("cs_late", "unpaid");
+            MemoryStore store = new MemoryStore();
+            PaymentTracker t = tracker(store, fake);
+            PendingPayment p = pending(4, "CARTE_BANCAIRE", "cs_late", Duration.ofMinutes(5));
+            store.add(p);
+            t.track(p);
+            Thread.sleep(100);
+
+            fake.script("cs_late", "paid");              // payé juste avant le clic « Annuler »
+            assertEquals(PaymentTracker.CancelResult.PAID, t.cancel(4).get(5, TimeUnit.SECONDS));
+            assertTrue(fake.expires.isEmpty(), "une session payée n'est pas expirée");
+            assertEquals(PaiementService.STATUT_PAYE, store.statuts.get(4));
+            t.shutdown();
+        }
+    }
+
+    @Test
+    void testCancelWithoutProviderConfirmationKeepsTracking() throws Exception {
+        try (FakePaymentProviderServer fake = new FakePaymentProviderServer()) {
+            FlouciPaymentService flouci = new FlouciPaymentService(fake.flouciUrl());
+            String open = flouci.generatePayment(30).paymentId();
+            String down = flouci.generatePayment(30).paymentId();
+            fake.script(down, "HTTP_500");
+
+            MemoryStore store = new MemoryStore();
+            PaymentTracker t = tracker(store, fake);
+            PendingPayment a = pending(5, "FLOUCI", open, Duration.ofMinutes(5));
+            PendingPayment b = pending(6, "FLOUCI", down, Duration.ofMinutes(5));
+            store.add(a);
+            store.add(b);
+            t.track(a);
+            t.track(b);
+
+            // Flouci encore payable (pas d'annulation côté fournisseur) / injoignable : rien n'est écrit
+            assertEquals(PaymentTracker.CancelResult.STILL_PENDING, t.cancel(5).get(5, TimeUnit.SECONDS));
+            assertEquals(PaymentTracker.CancelResult.STILL_PENDING, t.cancel(6).get(5, TimeUnit.SECONDS));
+            assertEquals(PaiementService.STATUT_EN_ATTENTE, store.statuts.get(5));
+            assertEquals(PaiementService.STATUT_EN_ATTENTE, store.statuts.get(6));
+            assertTrue(t.isTracking(5));
+
+            // Payé après coup : le suivi le voit encore
+            List<PaymentTracker.Settlement> settled = new CopyOnWriteArrayList<>();
+            CountDownLatch done = awaitSettlements(t, settled, 1);
+            fake.script(open, "SUCCESS");
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(PaiementService.STATUT_PAYE, store.statuts.get(5));
+            t.shutdown();
+        }
+    }
+
+    @Test
+    void testBackoffDoublesUpToCap() {
+        Duration init = Duration.ofSeconds(2);
+        Duration max = Duration.ofSeconds(60);
+        assertEquals(2_000, PaymentTracker.backoff(1, init, max).toMillis());
+        assertEquals(4_000, PaymentTracker.backoff(2, init, max).toMillis());
+        assertEquals(32_000, PaymentTracker.backoff(5, init, max).toMillis());
+        assertEquals(60_000, PaymentTracker.backoff(6, init, max).toMillis());
+        assertEquals(60_000, PaymentTracker.backoff(500, init, max).toMillis());
+    }
+}
@@ -0,0 +1,176 @@
+package services.sorties;
+
+import models.sorties.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Diffusion du hub, format et authentification du relais (sans base ni socket).
+ */
+public class ChatHubTest {
+
+    private static ChatMessage message(int id, int annonceId) {
+        ChatMessage m = new ChatMessage(annonceId, 7, "Salut « tout le monde »\nà demain");
+        m.setId(id);
+        m.setSenderName("Amine");
+        m.setSentAt(LocalDateTime.of(2026, 5, 2, 18, 30, 15));
+        m.setMessageType("TEXT");
+        return m;
+    }
+
+    private static void drain(ExecutorService dispatcher) throws InterruptedException {
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void deliversOnlyToSubscribersOfTheAnnonceInOrder() throws Exception {
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        ChatHub hub = new ChatHub(dispatcher);
+        List<Integer> a = new ArrayList<>();
+        List<Integer> b = new ArrayList<>();
+        hub.subscribe(1, e -> a.add(e.refId()));
+        hub.subscribe(2, e -> b.add(e.refId()));
+
+        hub.publish(ChatHub.ChatEvent.message(message(10, 1)));
+        hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.POLL_UPDATED, 1, 3));
+        hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.TASKS_CHANGED, 2, 4));
+        drain(dispatcher);
+
+        assertEquals(List.of(10, 3), a);
+        assertEquals(List.of(4), b);
+    }
+
+    @Test
+    void failingListenerDoesNotStarveOthersAndCloseUnsubscribes() throws Exception {
+        ChatHub hub = new ChatHub(Runnable::run);
+        List<ChatHub.Type> seen = new ArrayList<>();
+        hub.subscribe(1, e -> { throw new IllegalStateException("boom"); });
+        ChatHub.Subscription sub = hub.subscribe(1, e -> seen.add(e.type()));
+        assertEquals(2, hub.subscriberCount(1));
+
+        hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.PINS_CHANGED, 1, 0));
+        hub.resyncAll();
+        sub.close();
+        sub.close();
+        hub.publish(ChatHub.ChatEvent.of(ChatHub.Type.PINS_CHANGED, 1, 0));
+
+        assertEquals(List.of(ChatHub.Type.PINS_CHANGED, ChatHub.Type.RESYNC), seen);
+        assertEquals(1, hub.subscriberCount(1));
+    }
+
+    @Test
+    void relayLineCarriesOnlyIdentifiers() {
+        ChatMessage m = message(42, 5);
+        m.setMessageType("POLL");
+        m.setPollId(9);
+
+        String line = ChatRelay.encode(ChatHub.ChatEvent.message(m));
+        // Ni contenu ni expéditeur sur le fil : le destinataire relit le message en base
+        assertFalse(line.contains("Salut"));
+        assertFalse(line.contains("Amine"));
+        assertFalse(line.contains("\n"));
+
+        ChatHub.ChatEvent back = ChatRelay.decode(line);
+        assertNotNull(back);
+        assertEquals(ChatHub.Type.MESSAGE, back.type());
+        assertEquals(5, back.annonceId());
+        assertEquals(42, back.refId());
+        assertNull(back.message());
+
+        ChatHub.ChatEvent tasks = ChatRelay.decode(ChatRelay.encode(ChatHub.ChatEvent.of(ChatHub.Type.TASKS_CHANGED, 5, 0)));
+        assertNull(tasks.message());
+        assertEquals(ChatHub.Type.TASKS_CHANGED, tasks.type());
+
+        assertNull(ChatRelay.decode("pas du json"));
+    }
+
+    @Test
+    void messageFramesAreReadBackFromTheDatabase() {
+        Map<Integer, ChatMessage> db = Map.of(42, message(42, 5));
+        ChatRelay relay = new ChatRelay(new ChatHub(Runnable::run), 1, new byte[32], db::get);
+
+        ChatHub.ChatEvent ok = relay.resolve(ChatRelay.decode("{\"type\":\"MESSAGE\",\"annonceId\":5,\"refId\":42}"));
+        assertNotNull(ok);
+        assertEquals("Amine", ok.message().getSenderName());
+        assertEquals(db.get(42).getContent(), ok.message().getContent());
+
+        // Id inconnu, ou annoncé sur une autre annonce que la sienne : ignoré
+        assertNull(relay.resolve(ChatRelay.decode("{\"type\":\"MESSAGE\",\"annonceId\":5,\"refId\":43}")));
+        assertNull(relay.resolve(ChatRelay.decode("{\"type\":\"MESSAGE\",\"annonceId\":6,\"refId\":42}")));
+
+        ChatHub.ChatEvent pins = ChatHub.ChatEvent.of(ChatHub.Type.PINS_CHANGED, 5, 0);
+        assertSame(pins, relay.resolve(pins));
+    }
+
+    @Test
+    void handshakeAdmitsOnlyPeersSharingTheSecret() throws Exception {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) 7);
+        byte[] other = secret.clone();
+        other[0] = 8;
+
+        assertArrayEquals(new boolean[]{true, true}, shake(secret, secret));
+        assertArrayEquals(new boolean[]{false, false}, shake(secret, other));
+    }
+
+    /** Serveur et client reliés par des tubes, chacun sur son thread. */
+    private static boolean[] shake(byte[] serverSecret, byte[] clientSecret) throws Exception {
+        PipedOutputStream toServer = new PipedOutputStream();
+        PipedOutputStream toClient = new PipedOutputStream();
+        BufferedReader serverIn = reader(new PipedInputStream(toServer));
+        BufferedReader clientIn = reader(new PipedInputStream(toClient));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> server = pool.submit(() -> ChatRelay.handshake(serverIn, writer(toClient), serverSecret, true));
+            Future<Boolean> client = pool.submit(() -> ChatRelay.handshake(clientIn, writer(toServer), clientSecret, false));
+            return new boolean[]{server.get(5, TimeUnit.SECONDS), client.get(5, TimeUnit.SECONDS)};
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static PrintWriter writer(OutputStream out) {
+        return new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+    }
+
+    @Test
+    void secretIsCreatedOnceThenReused() throws Exception {
+        Path dir = Files.createTempDirectory("chat-relay");
+        Path key = dir.resolve("sub").resolve("chat-relay.key");
+
+        byte[] first = ChatRelay.loadSecret(key);
+        assertEquals(32, first.length);
+        assertArrayEquals(first, ChatRelay.loadSecret(key));
+
+        Files.writeString(key, "zz");
+        assertThrows(IOException.class, () -> ChatRelay.loadSecret(key));
+    }
+}
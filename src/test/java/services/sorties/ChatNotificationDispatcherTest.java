@@ -0,0 +1,103 @@
+package services.sorties;
+
+import models.notifications.Notification;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fan-out des notifications de chat (sans base : destinataires et écriture simulés).
+ */
+public class ChatNotificationDispatcherTest {
+
+    private static final Set<Integer> GROUP_50 = IntStream.rangeClosed(1, 50).boxed().collect(Collectors.toSet());
+
+    private static ChatNotificationDispatcher.Job job(int annonceId, int senderId, int messageId) {
+        return new ChatNotificationDispatcher.Job(annonceId, senderId, messageId, "User " + senderId, "msg " + messageId, false);
+    }
+
+    private static int messageId(Notification n) {
+        String meta = n.getMetadataJson();
+        return Integer.parseInt(meta.substring(meta.indexOf("chatMessageId\":") + 15, meta.length() - 1));
+    }
+
+    @Test
+    void oneBatchPerWaveExcludingTheSender() {
+        List<List<Notification>> writes = new ArrayList<>();
+        ChatNotificationDispatcher d = new ChatNotificationDispatcher(a -> GROUP_50, writes::add, Runnable::run);
+
+        d.submit(job(7, 1, 100));
+
+        assertEquals(1, writes.size());
+        List<Notification> batch = writes.get(0);
+        assertEquals(49, batch.size());
+        assertTrue(batch.stream().noneMatch(n -> n.getReceiverId() == 1));
+        assertTrue(batch.stream().allMatch(n -> n.getEntityId() == 7 && n.getBody().startsWith("User 1 : ")));
+    }
+
+    @Test
+    void burstIsCoalescedButSenderKeepsOthersLatestMessage() {
+        List<Runnable> queued = new ArrayList<>();
+        List<List<Notification>> writes = new ArrayList<>();
+        AtomicInteger loads = new AtomicInteger();
+        ChatNotificationDispatcher d = new ChatNotificationDispatcher(a -> {
+            loads.incrementAndGet();
+            return Set.of(1, 2, 3);
+        }, writes::add, queued::add);
+
+        d.submit(job(7, 1, 10));
+        d.submit(job(7, 2, 11));
+        d.submit(job(7, 2, 12));
+        d.submit(job(8, 3, 13));
+        assertEquals(1, queued.size(), "un seul passage du worker pour la rafale");
+        queued.get(0).run();
+
+        assertEquals(1, writes.size());
+        assertEquals(2, loads.get(), "destinataires lus une fois par annonce");
+        Map<String, Integer> latest = new HashMap<>();
+        for (Notification n : writes.get(0)) latest.put(n.getEntityId() + ":" + n.getReceiverId(), messageId(n));
+
+        // Ce qu'aurait laissé l'écriture message par message
+        assertEquals(Map.of("7:1", 12, "7:2", 10, "7:3", 12, "8:1", 13, "8:2", 13), latest);
+    }
+
+    @Test
+    void submitReturnsWhileTheWriteIsStillBlocked() throws Exception {
+        // Worker réel (celui de ChatService.send) ; l'écriture reste bloquée jusqu'à `release`
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Notification>> writes = new CopyOnWriteArrayList<>();
+        ChatNotificationDispatcher d = ChatNotificationDispatcher.create(a -> GROUP_50, batch -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writes.add(batch);
+        });
+
+        d.submit(job(1, 1, 1));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // Écriture en cours : les envois suivants ne l'attendent pas
+        for (int i = 2; i <= 200; i++) d.submit(job(1 + i % 20, 1 + i % 50, i));
+        assertTrue(writes.isEmpty(), "submit a attendu l'écriture");
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writes.size() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(2, writes.size(), "la rafale suivante part en une seule vague");
+    }
+}
@@ -0,0 +1,97 @@
+package services.sorties;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tampon des états de lecture du chat (sans base : écriture simulée, pas de tick).
+ */
+public class ChatReadStateBufferTest {
+
+    private static ChatReadStateBuffer.ReadKey key(int annonceId, int userId) {
+        return new ChatReadStateBuffer.ReadKey(annonceId, userId);
+    }
+
+    @Test
+    void onlyTheHighestIdPerPairIsWrittenInOneBatch() {
+        List<Map<ChatReadStateBuffer.ReadKey, Integer>> writes = new ArrayList<>();
+        ChatReadStateBuffer b = new ChatReadStateBuffer(writes::add, null);
+
+        b.record(7, 1, 10);
+        b.record(7, 1, 14);
+        b.record(7, 1, 12);
+        b.record(7, 2, 11);
+        b.record(8, 1, 0); // ignoré
+        b.flush();
+
+        assertEquals(1, writes.size());
+        assertEquals(Map.of(key(7, 1), 14, key(7, 2), 11), writes.get(0));
+        assertTrue(b.isEmpty());
+
+        b.flush();
+        assertEquals(1, writes.size(), "rien à écrire : pas d'aller-retour");
+    }
+
+    @Test
+    void failedBatchIsRetriedWithNewerCursors() {
+        List<Map<ChatReadStateBuffer.ReadKey, Integer>> writes = new ArrayList<>();
+        boolean[] fail = {true};
+        ChatReadStateBuffer b = new ChatReadStateBuffer(batch -> {
+            if (fail[0]) throw new RuntimeException("base indisponible");
+            writes.add(batch);
+        }, null);
+
+        b.record(7, 1, 20);
+        b.record(7, 2, 5);
+        assertThrows(RuntimeException.class, b::flush);
+        assertFalse(b.isEmpty());
+
+        // Lu plus loin pendant la panne, et un curseur plus ancien qui ne doit pas gagner
+        b.record(7, 1, 25);
+        b.record(7, 2, 3);
+        fail[0] = false;
+        b.flush();
+
+        assertEquals(List.of(Map.of(key(7, 1), 25, key(7, 2), 5)), writes);
+    }
+
+    @Test
+    void concurrentRecordsAreNeverLost() throws Exception {
+        Map<ChatReadStateBuffer.ReadKey, Integer> written = new HashMap<>();
+        ChatReadStateBuffer b = new ChatReadStateBuffer(batch ->
+                batch.forEach((k, v) -> written.merge(k, v, Math::max)), null);
+
+        int threads = 4, perThread = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        for (int t = 0; t < threads; t++) {
+            int userId = t + 1;
+            pool.execute(() -> {
+                for (int id = 1; id <= perThread; id++) b.record(1 + id % 3, userId, id);
+            });
+        }
+        // Vidages concurrents des enregistrements
+        pool.execute(() -> {
+            for (int i = 0; i < 200; i++) b.flush();
+        });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        b.flush();
+
+        for (int userId = 1; userId <= threads; userId++) {
+            for (int annonceId = 1; annonceId <= 3; annonceId++) {
+                int expected = perThread;
+                while (1 + expected % 3 != annonceId) expected--;
+                assertEquals(expected, (int) written.get(key(annonceId, userId)), annonceId + ":" + userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package services.sorties;
+
+import models.sorties.AnnonceSortie;
+import models.sorties.ChatMessage;
+import org.junit.jupiter.api.*;
+import utils.TestDbUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatServicePagingTest {
+
+    static Connection cnx;
+    static ChatService chat;
+    static AnnonceSortieService annonces;
+
+    static int ownerId;
+    static int annonceId = -1;
+    static final List<Integer> sentIds = new ArrayList<>();
+
+    @BeforeAll
+    static void setup() throws Exception {
+        cnx = TestDbUtils.cnx();
+        chat = new ChatService();
+        chat.ensureSchema();
+        annonces = new AnnonceSortieService();
+        ownerId = TestDbUtils.ensureUser(cnx);
+
+        String titre = "ChatPagingTest_" + System.currentTimeMillis();
+        AnnonceSortie a = new AnnonceSortie();
+        a.setUserId(ownerId);
+        a.setTitre(titre);
+        a.setDescription("desc test");
+        a.setVille("Tunis");
+        a.setLieuTexte("Centre");
+        a.setPointRencontre("Point A");
+        a.setTypeActivite("Marche");
+        a.setDateSortie(LocalDateTime.now().plusDays(1));
+        a.setBudgetMax(0);
+        a.setNbPlaces(5);
+        a.setStatut("OUVERTE");
+        a.setQuestions(List.of());
+        annonces.add(a);
+        annonceId = annonces.getAll().stream()
+                .filter(x -> titre.equals(x.getTitre()))
+                .findFirst().orElseThrow().getId();
+
+        for (int i = 1; i <= 7; i++) {
+            sentIds.add(chat.send(annonceId, ownerId, "message " + i).getId());
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        try (PreparedStatement ps = cnx.prepareStatement("DELETE FROM chat_message WHERE annonce_id=?")) {
+            ps.setInt(1, annonceId);
+            ps.executeUpdate();
+        } catch (Exception ignored) {}
+        try {
+            if (annonceId > 0) annonces.delete(annonceId);
+        } catch (Exception ignored) {}
+    }
+
+    @Test
+    void latestPageIsTheNewestInChronologicalOrder() {
+        ChatService.MessagePage page = chat.getLatestPage(annonceId, 3);
+
+        assertEquals(sentIds.subList(4, 7), ids(page.messages()));
+        assertEquals((int) sentIds.get(4), page.oldestId());
+        assertTrue(page.hasMore());
+    }
+
+    @Test
+    void walkingBackwardsReturnsEveryMessageOnce() {
+        List<Integer> all = new ArrayList<>();
+        ChatService.MessagePage page = chat.getLatestPage(annonceId, 3);
+        all.addAll(0, ids(page.messages()));
+        while (page.hasMore()) {
+            page = chat.getPageBefore(annonceId, page.oldestId(), 3);
+            all.addAll(0, ids(page.messages()));
+        }
+        assertEquals(sentIds, all);
+
+        // Curseur au-delà du début : page vide, pas d'autre page
+        ChatService.MessagePage empty = chat.getPageBefore(annonceId, sentIds.get(0), 3);
+        assertTrue(empty.messages().isEmpty());
+        assertFalse(empty.hasMore());
+    }
+
+    @Test
+    void catchUpAfterCursorIsOrderedById() {
+        assertEquals(sentIds.subList(5, 7), ids(chat.getMessagesAfter(annonceId, sentIds.get(4))));
+        assertEquals(1, chat.countSenders(annonceId));
+    }
+
+    private static List<Integer> ids(List<ChatMessage> msgs) {
+        return msgs.stream().map(ChatMessage::getId).toList();
+    }
+}
@@ -0,0 +1,93 @@
+package services.sorties;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import utils.TestDbUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(OrderAnnotation.class)
+public class ChatUnreadCountTest {
+
+    static Connection cnx;
+    static ChatService chat;
+
+    static int ownerId;
+    static int readerId;
+    static int annonceId = -1;
+    static int otherAnnonceId = -1;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        cnx = TestDbUtils.cnx();
+        chat = new ChatService();
+        chat.ensureSchema();
+        ownerId = TestDbUtils.ensureUser(cnx);
+        readerId = TestDbUtils.ensureUserOtherThan(cnx, ownerId);
+        annonceId = TestDbUtils.createAnnonceSortie(cnx, ownerId);
+        otherAnnonceId = TestDbUtils.createAnnonceSortie(cnx, ownerId);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        for (String table : List.of("chat_message", "chat_read_state")) {
+            try (PreparedStatement ps = cnx.prepareStatement("DELETE FROM " + table + " WHERE annonce_id IN (?, ?)")) {
+                ps.setInt(1, annonceId);
+                ps.setInt(2, otherAnnonceId);
+                ps.executeUpdate();
+            } catch (Exception ignored) {}
+        }
+        TestDbUtils.deleteById(cnx, "annonce_sortie", annonceId);
+        TestDbUtils.deleteById(cnx, "annonce_sortie", otherAnnonceId);
+    }
+
+    @Test
+    @Order(1)
+    void seededFromHistoryThenIncrementedOnSend() {
+        chat.send(annonceId, ownerId, "un");
+        chat.send(annonceId, ownerId, "deux");
+        chat.send(annonceId, readerId, "le sien ne compte pas");
+
+        // Premier appel : amorçage depuis l'historique
+        assertEquals(2, chat.getUnreadCount(annonceId, readerId));
+
+        chat.send(annonceId, ownerId, "trois");
+        assertEquals(3, chat.getUnreadCount(annonceId, readerId));
+    }
+
+    @Test
+    @Order(2)
+    void markReadResetsToMessagesAfterCursor() {
+        int firstId = chat.getLatestPage(annonceId, 10).messages().get(0).getId();
+        chat.markReadUpTo(annonceId, readerId, firstId);
+        assertEquals(2, chat.getUnreadCount(annonceId, readerId));
+
+        // Un curseur plus ancien ne fait pas reculer l'état
+        chat.markReadUpTo(annonceId, readerId, firstId - 1);
+        assertEquals(2, chat.getUnreadCount(annonceId, readerId));
+
+        chat.markAllRead(annonceId, readerId);
+        assertEquals(0, chat.getUnreadCount(annonceId, readerId));
+    }
+
+    @Test
+    @Order(3)
+    void allCountsOfAUserInOneCall() {
+        chat.send(annonceId, ownerId, "quatre");
+
+        Map<Integer, Long> counts = chat.getUnreadCounts(readerId, List.of(annonceId, otherAnnonceId));
+        assertEquals(Long.valueOf(1), counts.get(annonceId));
+        assertEquals(Long.valueOf(0), counts.get(otherAnnonceId));
+
+        // L'annonce vide a maintenant un compteur : le prochain message y est compté
+        chat.send(otherAnnonceId, ownerId, "bonjour");
+        Map<Integer, Long> all = chat.getUnreadCounts(readerId);
+        assertEquals(Long.valueOf(1), all.get(annonceId));
+        assertEquals(Long.valueOf(1), all.get(otherAnnonceId));
+    }
+}
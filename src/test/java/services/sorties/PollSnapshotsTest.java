@@ -0,0 +1,140 @@
+package services.sorties;
+
+import models.sorties.PollOptionSnapshot;
+import models.sorties.PollSnapshot;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import utils.TestDbUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(OrderAnnotation.class)
+public class PollSnapshotsTest {
+
+    static Connection cnx;
+    static PollService polls;
+
+    static int ownerId;
+    static int voterId;
+    static int annonceId = -1;
+    static int pollA;
+    static int pollB;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        cnx = TestDbUtils.cnx();
+        polls = new PollService();
+        polls.ensureSchema();
+        ownerId = TestDbUtils.ensureUser(cnx);
+        voterId = TestDbUtils.ensureUserOtherThan(cnx, ownerId);
+        annonceId = TestDbUtils.createAnnonceSortie(cnx, ownerId);
+        pollA = polls.createPoll(annonceId, ownerId, "Quand ?", true, true, false, List.of("Samedi", "Dimanche", "Lundi"));
+        pollB = polls.createPoll(annonceId, ownerId, "Où ?", false, true, true, List.of("Plage", "Montagne"));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        for (String sql : List.of(
+                "DELETE FROM poll_vote WHERE poll_id IN (?, ?)",
+                "DELETE FROM poll_option WHERE poll_id IN (?, ?)",
+                "DELETE FROM poll WHERE id IN (?, ?)")) {
+            try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+                ps.setInt(1, pollA);
+                ps.setInt(2, pollB);
+                ps.executeUpdate();
+            } catch (Exception ignored) {}
+        }
+        TestDbUtils.deleteById(cnx, "annonce_sortie", annonceId);
+    }
+
+    @Test
+    @Order(1)
+    void tallyFollowsVoteChangesAndClears() {
+        List<Integer> a = optionIds(pollA);
+
+        polls.vote(pollA, ownerId, true, Set.of(a.get(0), a.get(1)));
+        polls.vote(pollA, voterId, true, Set.of(a.get(0)));
+        assertTallies(pollA, 2, 2, 1, 0);
+
+        // Changement de vote : seules les options retirées/ajoutées bougent
+        polls.vote(pollA, ownerId, true, Set.of(a.get(1), a.get(2)));
+        assertTallies(pollA, 2, 1, 1, 1);
+
+        polls.clearVote(pollA, voterId);
+        polls.clearVote(pollA, voterId); // sans vote : aucun effet
+        assertTallies(pollA, 1, 0, 1, 1);
+    }
+
+    @Test
+    @Order(2)
+    void batchReturnsEveryCardWithMyVotes() {
+        int plage = optionIds(pollB).get(0);
+        polls.vote(pollB, voterId, false, Set.of(plage));
+
+        Map<Integer, PollSnapshot> snaps = polls.getSnapshots(List.of(pollB, pollA, 999_999_999), voterId);
+        assertEquals(List.of(pollB, pollA), List.copyOf(snaps.keySet()));
+
+        PollSnapshot b = snaps.get(pollB);
+        assertEquals(Set.of(plage), Set.copyOf(b.getMyOptionIds()));
+        assertEquals(1, b.getTotalVoters());
+        assertEquals(1.0, b.getOptions().get(0).getPercent(), 1e-9);
+        assertTrue(b.isPinned());
+        assertTrue(snaps.get(pollA).getMyOptionIds().isEmpty());
+
+        // Même résultat que l'appel unitaire
+        PollSnapshot single = polls.getSnapshot(pollA, ownerId);
+        assertEquals(votes(single), votes(polls.getSnapshots(List.of(pollA), ownerId).get(pollA)));
+    }
+
+    @Test
+    @Order(3)
+    void materializedCountsMatchVoteRows() throws Exception {
+        // Votes en écriture différée : on force le lot avant de comparer à la base
+        PollService.flushPendingVotes();
+        String sql = """
+                SELECT COUNT(*) FROM poll_option o
+                WHERE o.poll_id IN (?, ?)
+                  AND o.vote_count <> (SELECT COUNT(*) FROM poll_vote v WHERE v.poll_id=o.poll_id AND v.option_id=o.id)
+                """;
+        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+            ps.setInt(1, pollA);
+            ps.setInt(2, pollB);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+        // Relu depuis la base seule, le décompte est identique à celui servi de mémoire
+        List<Integer> fromMemory = votes(polls.getSnapshot(pollA, ownerId));
+        List<Integer> fromDb = new ArrayList<>();
+        try (PreparedStatement ps = cnx.prepareStatement("SELECT vote_count FROM poll_option WHERE poll_id=? ORDER BY id")) {
+            ps.setInt(1, pollA);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) fromDb.add(rs.getInt(1));
+            }
+        }
+        assertEquals(fromMemory, fromDb);
+    }
+
+    private static List<Integer> optionIds(int pollId) {
+        return polls.getSnapshot(pollId, ownerId).getOptions().stream().map(PollOptionSnapshot::getId).toList();
+    }
+
+    private static List<Integer> votes(PollSnapshot s) {
+        return s.getOptions().stream().map(PollOptionSnapshot::getVotes).toList();
+    }
+
+    private static void assertTallies(int pollId, int voters, Integer... perOption) {
+        PollSnapshot s = polls.getSnapshot(pollId, ownerId);
+        assertEquals(voters, s.getTotalVoters());
+        assertEquals(List.of(perOption), votes(s));
+    }
+}
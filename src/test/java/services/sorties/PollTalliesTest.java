@@ -0,0 +1,179 @@
+package services.sorties;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Décomptes en mémoire des sondages (sans base : table poll_vote simulée, pas de tick).
+ */
+public class PollTalliesTest {
+
+    private static final int POLL = 5;
+    private static final int ANNONCE = 9;
+
+    /** poll_vote simulée : (sondage, utilisateur) → options. */
+    private final Map<PollTallies.BallotKey, Set<Integer>> table = new HashMap<>();
+    private final List<Map<PollTallies.BallotKey, PollTallies.Ballot>> writes = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private boolean open = true;
+    private boolean failWrites = false;
+
+    private final PollTallies.Store store = new PollTallies.Store() {
+        @Override
+        public PollTallies.Loaded load(int pollId) {
+            loads.incrementAndGet();
+            Map<Integer, Set<Integer>> ballots = new HashMap<>();
+            synchronized (table) {
+                table.forEach((k, v) -> {
+                    if (k.pollId() == pollId) ballots.put(k.userId(), v);
+                });
+            }
+            return new PollTallies.Loaded(ANNONCE, open, true, true, Set.of(1, 2, 3), ballots);
+        }
+
+        @Override
+        public void write(Map<PollTallies.BallotKey, PollTallies.Ballot> batch) {
+            if (failWrites) throw new IllegalStateException("base indisponible");
+            writes.add(batch);
+            synchronized (table) {
+                batch.forEach((k, b) -> {
+                    if (b.optionIds().isEmpty()) table.remove(k);
+                    else table.put(k, b.optionIds());
+                });
+            }
+        }
+    };
+
+    private PollTallies tallies() {
+        return new PollTallies(store, batch -> {}, null);
+    }
+
+    private static PollTallies.BallotKey key(int userId) {
+        return new PollTallies.BallotKey(POLL, userId);
+    }
+
+    @Test
+    void votesAreCountedInMemoryAndWrittenOncePerVoter() throws Exception {
+        PollTallies t = tallies();
+
+        t.vote(POLL, 1, Set.of(1, 2));
+        t.vote(POLL, 2, Set.of(1));
+        t.vote(POLL, 1, Set.of(2, 3)); // change d'avis avant l'écriture
+        t.vote(POLL, 3, Set.of(3));
+        t.clear(POLL, 3);
+
+        PollTallies.Tally tally = t.peek(POLL);
+        assertEquals(List.of(1, 1, 1), List.of(tally.votes(1), tally.votes(2), tally.votes(3)));
+        assertEquals(2, tally.voters());
+        assertEquals(Set.of(2, 3), tally.ballotOf(1));
+        assertEquals(1, loads.get());
+        assertTrue(writes.isEmpty(), "rien d'écrit avant le lot");
+
+        t.flush();
+        assertEquals(1, writes.size());
+        assertEquals(Set.of(key(1), key(2), key(3)), writes.get(0).keySet());
+        assertEquals(Map.of(key(1), Set.of(2, 3), key(2), Set.of(1)), table);
+
+        // Rejouer le même lot ne change rien
+        store.write(writes.get(0));
+        assertEquals(Map.of(key(1), Set.of(2, 3), key(2), Set.of(1)), table);
+    }
+
+    @Test
+    void rulesAreCheckedAgainstTheTally() {
+        PollTallies t = tallies();
+        assertThrows(IllegalArgumentException.class, () -> t.vote(POLL, 1, Set.of(42)));
+        assertNull(t.clear(POLL, 1), "pas de vote à retirer");
+
+        open = false;
+        t.evict(POLL);
+        assertThrows(IllegalStateException.class, () -> t.vote(POLL, 1, Set.of(1)));
+    }
+
+    @Test
+    void rebuildOverlaysVotesNotYetWritten() {
+        table.put(key(1), Set.of(1));
+        table.put(key(2), Set.of(2));
+        PollTallies t = tallies();
+
+        t.vote(POLL, 2, Set.of(3));
+        t.vote(POLL, 4, Set.of(3));
+        failWrites = true;
+        assertThrows(RuntimeException.class, t::flush);
+
+        // Redémarrage du décompte (éviction, événement d'un autre client) : la base est en retard
+        t.evict(POLL);
+        PollTallies.Tally rebuilt = t.tally(POLL);
+        assertEquals(List.of(1, 0, 2), List.of(rebuilt.votes(1), rebuilt.votes(2), rebuilt.votes(3)));
+        assertEquals(3, rebuilt.voters());
+
+        // Le lot en échec est retenté ; le vote arrivé entre-temps l'emporte
+        t.vote(POLL, 4, Set.of(1));
+        failWrites = false;
+        t.flush();
+        assertEquals(Map.of(key(1), Set.of(1), key(2), Set.of(3), key(4), Set.of(1)), table);
+    }
+
+    @Test
+    void clearOnClosedPollDropsTheQueuedBallot() {
+        PollTallies t = tallies();
+        t.vote(POLL, 1, Set.of(2));
+
+        // Clôture avant le lot : plus de décompte, le bulletin attend encore en file
+        open = false;
+        t.evict(POLL);
+        assertNull(t.tally(POLL));
+        t.clearUntracked(POLL, 1);
+        t.flush();
+
+        assertTrue(table.isEmpty(), "le vote retiré n'est pas réinséré");
+        assertFalse(t.hasUnwritten(POLL));
+        assertEquals(Set.of(), writes.get(writes.size() - 1).get(key(1)).optionIds());
+    }
+
+    @Test
+    void concurrentVotersKeepCountsConsistent() throws Exception {
+        PollTallies t = tallies();
+        int voters = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int u = 1; u <= voters; u++) {
+            int userId = u;
+            pool.execute(() -> {
+                t.vote(POLL, userId, Set.of(1 + userId % 3));
+                t.vote(POLL, userId, Set.of(1 + userId % 3, 1 + (userId + 1) % 3));
+                if (userId % 5 == 0) t.clear(POLL, userId);
+            });
+        }
+        pool.execute(() -> {
+            for (int i = 0; i < 50; i++) t.flush();
+        });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        t.flush();
+
+        PollTallies.Tally tally = t.peek(POLL);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Set<Integer> expectedVoters = new HashSet<>();
+        table.forEach((k, v) -> {
+            expectedVoters.add(k.userId());
+            for (Integer oid : v) expected.merge(oid, 1, Integer::sum);
+        });
+        assertEquals(voters - voters / 5, expectedVoters.size());
+        assertEquals(expectedVoters.size(), tally.voters());
+        for (int oid = 1; oid <= 3; oid++) {
+            assertEquals((int) expected.getOrDefault(oid, 0), tally.votes(oid), "option " + oid);
+        }
+    }
+}
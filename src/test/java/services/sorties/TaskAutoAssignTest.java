@@ -0,0 +1,74 @@
+package services.sorties;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plan d'auto-répartition des tâches (sans base).
+ */
+public class TaskAutoAssignTest {
+
+    private static List<TaskService.OpenTask> unitTasks(int from, int count) {
+        List<TaskService.OpenTask> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) out.add(new TaskService.OpenTask(from + i, 1));
+        return out;
+    }
+
+    @Test
+    void unitEffortFillsTheLeastLoadedFirstInMemberOrder() {
+        // 10 a déjà 2 tâches ouvertes, 20 et 30 aucune
+        Map<Integer, Integer> plan = TaskService.planBalanced(
+                List.of(10, 20, 30), Map.of(10, 2L), unitTasks(1, 5));
+
+        assertEquals(List.of(1, 2, 3, 4, 5), List.copyOf(plan.keySet()), "ordre de création conservé");
+        assertEquals(List.of(20, 30, 20, 30, 10), List.copyOf(plan.values()));
+    }
+
+    @Test
+    void heavyTasksArePlacedFirstAndSpreadByEffort() {
+        List<TaskService.OpenTask> tasks = List.of(
+                new TaskService.OpenTask(1, 1),
+                new TaskService.OpenTask(2, 5),
+                new TaskService.OpenTask(3, 3),
+                new TaskService.OpenTask(4, 3),
+                new TaskService.OpenTask(5, 2));
+
+        Map<Integer, Integer> plan = TaskService.planBalanced(List.of(10, 20), Map.of(), tasks);
+
+        assertEquals(List.of(2, 3, 4, 5, 1), List.copyOf(plan.keySet()));
+        Map<Integer, Long> load = new HashMap<>();
+        for (TaskService.OpenTask t : tasks) load.merge(plan.get(t.id()), (long) t.effort(), Long::sum);
+        assertEquals(Map.of(10, 7L, 20, 7L), load);
+    }
+
+    @Test
+    void loadsOfFormerMembersAreIgnored() {
+        Map<Integer, Integer> plan = TaskService.planBalanced(
+                List.of(10), Map.of(99, 50L), unitTasks(1, 2));
+        assertEquals(Map.of(1, 10, 2, 10), plan);
+        assertTrue(TaskService.planBalanced(List.of(), Map.of(), unitTasks(1, 2)).isEmpty());
+    }
+
+    @Test
+    void hundredsOfTasksStayBalanced() {
+        List<Integer> members = new ArrayList<>();
+        for (int m = 1; m <= 12; m++) members.add(m);
+        List<TaskService.OpenTask> tasks = new ArrayList<>();
+        for (int i = 1; i <= 600; i++) tasks.add(new TaskService.OpenTask(i, 1 + i % 4));
+
+        Map<Integer, Integer> plan = TaskService.planBalanced(members, Map.of(), tasks);
+
+        assertEquals(600, plan.size());
+        Map<Integer, Long> load = new HashMap<>();
+        for (TaskService.OpenTask t : tasks) load.merge(plan.get(t.id()), (long) t.effort(), Long::sum);
+        long max = load.values().stream().mapToLong(Long::longValue).max().orElseThrow();
+        long min = load.values().stream().mapToLong(Long::longValue).min().orElseThrow();
+        assertTrue(max - min <= TaskService.MAX_EFFORT, "écart " + (max - min));
+    }
+}
@@ -0,0 +1,102 @@
+package services.users;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Annuaire des utilisateurs (sans base : chargement simulé, horloge manuelle).
+ */
+public class UserDirectoryTest {
+
+    private final List<List<Integer>> loads = new ArrayList<>();
+    private final Map<Integer, String> names = new HashMap<>(Map.of(1, "Amine Ben Ali", 2, "Sarra Trabelsi"));
+    private final AtomicLong now = new AtomicLong(0);
+
+    private UserDirectory directory() {
+        return new UserDirectory(this::load, now::get);
+    }
+
+    private Map<Integer, UserDirectory.Entry> load(Collection<Integer> ids) {
+        loads.add(new ArrayList<>(ids));
+        Map<Integer, UserDirectory.Entry> out = new HashMap<>();
+        for (Integer id : ids) {
+            String n = names.get(id);
+            if (n != null) out.put(id, new UserDirectory.Entry(id, n, "avatars/" + id + ".png", "USER"));
+        }
+        return out;
+    }
+
+    @Test
+    void missingIdsAreLoadedInOneCallThenServedFromCache() {
+        UserDirectory d = directory();
+
+        Map<Integer, UserDirectory.Entry> first = d.getAll(List.of(1, 2, 99, 1, 0));
+        assertEquals(1, loads.size());
+        assertEquals(List.of(1, 2, 99), loads.get(0));
+        assertEquals("Amine Ben Ali", first.get(1).label());
+        assertEquals("Utilisateur #99", first.get(99).label());
+        assertFalse(first.containsKey(0));
+
+        // Y compris l'id inconnu : pas de relecture par ligne
+        assertEquals("Sarra Trabelsi", d.displayName(2));
+        assertEquals("Utilisateur #99", d.displayName(99));
+        assertEquals("", d.displayName(null));
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    void entriesExpireAfterTtlAndOnInvalidate() {
+        UserDirectory d = directory();
+        d.get(1);
+
+        names.put(1, "Amine B.");
+        now.addAndGet(UserDirectory.TTL.toMillis() - 1);
+        assertEquals("Amine Ben Ali", d.displayName(1));
+
+        now.addAndGet(1);
+        assertEquals("Amine B.", d.displayName(1));
+        assertEquals(2, loads.size());
+
+        names.put(1, "Amine Benali");
+        d.invalidate(1);
+        assertEquals("Amine Benali", d.displayName(1));
+        assertEquals(3, loads.size());
+    }
+
+    @Test
+    void sizeIsBounded() {
+        UserDirectory d = directory();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= UserDirectory.MAX_ENTRIES + 100; i++) ids.add(i);
+        d.getAll(ids);
+        assertEquals(UserDirectory.MAX_ENTRIES, d.size());
+
+        // Les plus anciens sont sortis, les récents restent
+        loads.clear();
+        d.get(UserDirectory.MAX_ENTRIES + 100);
+        assertTrue(loads.isEmpty());
+        d.get(1);
+        assertEquals(List.of(List.of(1)), loads);
+    }
+
+    @Test
+    void loaderFailureIsNotCached() {
+        boolean[] fail = {true};
+        UserDirectory d = new UserDirectory(ids -> {
+            if (fail[0]) throw new IllegalStateException("base indisponible");
+            return load(ids);
+        }, now::get);
+
+        assertEquals("Utilisateur #1", d.displayName(1));
+        fail[0] = false;
+        assertEquals("Amine Ben Ali", d.displayName(1));
+    }
+}
@@ -0,0 +1,183 @@
+package services.weather;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeatherGatewayTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 7, 14);
+
+    /** Faux Open-Meteo : compte les appels, répond lentement pour laisser les requêtes se chevaucher. */
+    private static HttpServer fakeApi(AtomicInteger calls) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/forecast", ex -> {
+            calls.incrementAndGet();
+            try { Thread.sleep(150); } catch (InterruptedException ignored) { }
+            String json = "{\"latitude\":36.81,\"daily_units\":{\"time\":\"iso8601\"},\"daily\":{"
+                    + "\"time\":[\"" + DAY + "\"],\"temperature_2m_max\":[30.0],\"temperature_2m_min\":[20.0],"
+                    + "\"precipitation_sum\":[null],\"windspeed_10m_max\":[12.5],\"weathercode\":[1]}}";
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/forecast";
+    }
+
+    @Test
+    void testConcurrentIdenticalRequestsAreCoalesced() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = fakeApi(calls);
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        try {
+            WeatherGateway gw = new WeatherGateway(url(server), url(server), null, System::currentTimeMillis);
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<WeatherGateway.DailyForecast>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                double jitter = i * 0.0004;      // même case de 0.01° après arrondi
+                results.add(pool.submit(() -> { go.await(); return gw.dailyForecast(36.8065 + jitter, 10.1815, DAY); }));
+            }
+            go.countDown();
+            for (Future<WeatherGateway.DailyForecast> f : results) {
+                assertEquals(30.0, f.get().tempMax());
+                assertEquals(0.0, f.get().precipitation());
+            }
+            assertEquals(1, calls.get());
+
+            gw.dailyForecast(36.81, 10.18, DAY);
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testTtlExpiryRefetches() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = fakeApi(calls);
+        try {
+            AtomicLong now = new AtomicLong(1_000_000);
+            WeatherGateway gw = new WeatherGateway(url(server), url(server), null, now::get);
+            gw.dailyForecast(36.8, 10.2, DAY);
+            now.addAndGet(WeatherGateway.FORECAST_TTL.toMillis() - 1);
+            gw.dailyForecast(36.8, 10.2, DAY);
+            assertEquals(1, calls.get());
+            now.addAndGet(2);
+            gw.dailyForecast(36.8, 10.2, DAY);
+            assertEquals(2, calls.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testDiskCacheSurvivesRestartAndServesOffline() throws Exception {
+        Path dir = Files.createTempDirectory("weather-cache");
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = fakeApi(calls);
+        String apiUrl = url(server);
+        AtomicLong now = new AtomicLong(5_000_000);
+        new WeatherGateway(apiUrl, apiUrl, dir, now::get).dailyForecast(36.8, 10.2, DAY);
+        server.stop(0);
+
+        // « Redémarrage » : nouvelle instance, même dossier, API coupée
+        WeatherGateway restarted = new WeatherGateway(apiUrl, apiUrl, dir, now::get);
+        assertEquals(12.5, restarted.dailyForecast(36.8, 10.2, DAY).windMax());
+
+        // Expiré mais récent : servi hors ligne
+        now.addAndGet(WeatherGateway.FORECAST_TTL.toMillis() * 5);
+        assertEquals(1, restarted.dailyForecast(36.8, 10.2, DAY).weatherCode());
+
+        // Trop vieux : erreur remontée
+        now.addAndGet(WeatherGateway.MAX_STALE.toMillis());
+        WeatherGateway old = new WeatherGateway(apiUrl, apiUrl, dir, now::get);
+        assertThrows(IOException.class, () -> old.dailyForecast(36.8, 10.2, DAY));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testDiskCacheDropsEntriesOlderThanMaxStale() throws Exception {
+        Path dir = Files.createTempDirectory("weather-cache");
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = fakeApi(calls);
+        long start = System.currentTimeMillis();
+        AtomicLong now = new AtomicLong(start);
+        long tooOld = start - WeatherGateway.MAX_STALE.toMillis() - 1;
+        Path old = dir.resolve("daily_100_200_2026-01-01.txt");
+        Path recent = dir.resolve("daily_100_200_2026-01-02.txt");
+        Path abandoned = dir.resolve("daily123.tmp");
+        Files.writeString(old, tooOld + "\n{}");
+        Files.writeString(recent, (start - 1_000) + "\n{}");
+        Files.writeString(abandoned, "");
+        Files.setLastModifiedTime(abandoned, FileTime.fromMillis(tooOld));
+        try {
+            // La première écriture nettoie le dossier
+            WeatherGateway gateway = new WeatherGateway(url(server), url(server), dir, now::get);
+            gateway.dailyForecast(36.8, 10.2, DAY);
+            assertFalse(Files.exists(old));
+            assertFalse(Files.exists(abandoned));
+            assertTrue(Files.exists(recent));
+            assertTrue(Files.exists(dir.resolve(WeatherGateway.Key.of("daily", 36.8, 10.2, DAY.toString()).fileName())));
+
+            // Trois jours plus tard, l'entrée « récente » a vieilli à son tour
+            now.addAndGet(WeatherGateway.MAX_STALE.toMillis());
+            assertEquals(1, gateway.pruneDisk());
+            assertFalse(Files.exists(recent));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testRangePrefetchFillsEachDay() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/forecast", ex -> {
+            calls.incrementAndGet();
+            String json = "{\"daily\":{\"time\":[\"2026-07-14\",\"2026-07-15\",\"2026-07-16\"],"
+                    + "\"temperature_2m_max\":[30,31,32],\"temperature_2m_min\":[20,21,22],"
+                    + "\"precipitation_sum\":[0,4.5,0],\"windspeed_10m_max\":[10,20,30],\"weathercode\":[0,61,2]}}";
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        });
+        server.start();
+        try {
+            WeatherGateway gw = new WeatherGateway(url(server), url(server), null, System::currentTimeMillis);
+            assertNull(gw.peekDailyForecast(36.8, 10.2, DAY));
+
+            assertEquals(3, gw.prefetchDailyRange(36.8, 10.2, DAY, DAY.plusDays(2)).size());
+            assertEquals(61, gw.peekDailyForecast(36.8, 10.2, DAY.plusDays(1)).weatherCode());
+            assertEquals(32.0, gw.dailyForecast(36.8, 10.2, DAY.plusDays(2)).tempMax());
+            assertEquals(1, calls.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package utils.payment;
+
+import models.evenements.Evenement;
+import models.evenements.Inscription;
+import models.evenements.Paiement;
+import models.users.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Export ZIP des tickets (rendu réel, sans base).
+ */
+public class TicketBatchPdfGeneratorTest {
+
+    private static Evenement event() {
+        Evenement e = new Evenement();
+        e.setId(1);
+        e.setTitre("Concert Jazz");
+        e.setDateDebut(LocalDateTime.of(2026, 6, 1, 20, 0));
+        e.setDateFin(LocalDateTime.of(2026, 6, 1, 23, 0));
+        e.setType("PUBLIC");
+        e.setStatut("OUVERT");
+        return e;
+    }
+
+    private static TicketBatchPdfGenerator.TicketJob job(int i) {
+        Inscription ins = new Inscription();
+        ins.setId(100 + i);
+        ins.setNbTickets(1);
+        Paiement p = new Paiement();
+        p.setId(500 + i);
+        p.setStatut("PAYE");
+        p.setMethode("CARTE_BANCAIRE");
+        p.setMontant(30);
+        p.setReferenceCode("PAY-REF" + i);
+        User u = new User();
+        u.setNom("Nom" + i);
+        u.setPrenom("Prénom");
+        return new TicketBatchPdfGenerator.TicketJob(ins, p, u, TicketPdfGenerator.ticketCode(1000 + i, p));
+    }
+
+    /** Noms des entrées du ZIP, dans l'ordre, en vérifiant que chacune est un PDF. */
+    private static List<String> entries(byte[] zip) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry e;
+            while ((e = in.getNextEntry()) != null) {
+                byte[] pdf = in.readAllBytes();
+                assertTrue(pdf.length > 0 && new String(pdf, 0, 5).equals("%PDF-"), e.getName());
+                names.add(e.getName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    void entriesFollowJobOrderBeyondTheRenderWindow() throws Exception {
+        // 2 threads → fenêtre de 4 : 9 tickets obligent à la faire glisser
+        List<TicketBatchPdfGenerator.TicketJob> jobs = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) jobs.add(job(i));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TicketBatchPdfGenerator.BatchResult r = TicketBatchPdfGenerator.generateZip(out, event(), "Théâtre", jobs, 2);
+
+        List<String> names = entries(out.toByteArray());
+        assertEquals(9, names.size());
+        for (int i = 0; i < 9; i++) {
+            assertEquals("Ticket_" + jobs.get(i).ticketCode() + "_Nom" + (i + 1) + "_Prenom.pdf", names.get(i));
+        }
+        assertEquals(9, r.tickets());
+        assertEquals(out.size(), r.zipBytes());
+    }
+
+    @Test
+    void noJobsGivesAnEmptyArchive() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TicketBatchPdfGenerator.BatchResult r = TicketBatchPdfGenerator.generateZip(out, event(), null, List.of(), 2);
+
+        assertTrue(entries(out.toByteArray()).isEmpty());
+        assertEquals(0, r.tickets());
+    }
+}
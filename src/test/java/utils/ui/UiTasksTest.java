@@ -0,0 +1,128 @@
+package utils.ui;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pool et scopes des tâches de fond (sans JavaFX : un thread, file FX simulée).
+ */
+public class UiTasksTest {
+
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+    /** Callbacks en attente du « thread FX », exécutés par {@link #drainFx()}. */
+    private final ConcurrentLinkedQueue<Runnable> fxQueue = new ConcurrentLinkedQueue<>();
+    private final UiTasks tasks = new UiTasks(pool, fxQueue::add);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void drainFx() {
+        Runnable r;
+        while ((r = fxQueue.poll()) != null) r.run();
+    }
+
+    /** Occupe l'unique thread jusqu'à {@code release}. */
+    private CountDownLatch blockPool(UiTasks.Scope scope) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scope.write(() -> {
+            started.countDown();
+            release.await();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((pool.getActiveCount() > 0 || !pool.getQueue().isEmpty()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(pool.getQueue().isEmpty());
+    }
+
+    @Test
+    void visibleLoadsRunBeforeBackgroundRefreshesInArrivalOrder() throws Exception {
+        UiTasks.Scope scope = tasks.newScope("test");
+        CountDownLatch release = blockPool(scope);
+
+        List<String> order = new ArrayList<>();
+        scope.background(() -> "badge", order::add);
+        scope.load(() -> "page-1", order::add);
+        scope.submit(UiTasks.Priority.NORMAL, false, () -> "normal", order::add, null);
+        scope.load(() -> "page-2", order::add);
+
+        release.countDown();
+        awaitIdle();
+        drainFx();
+        assertEquals(List.of("page-1", "page-2", "normal", "badge"), order);
+    }
+
+    @Test
+    void cancelDropsQueuedLoadsButStillRunsWrites() throws Exception {
+        UiTasks.Scope scope = tasks.newScope("test");
+        CountDownLatch release = blockPool(scope);
+
+        List<String> ran = new ArrayList<>();
+        List<String> delivered = new ArrayList<>();
+        scope.load(() -> { ran.add("load"); return "load"; }, delivered::add);
+        scope.write(() -> { ran.add("write"); return "write"; }, delivered::add, null);
+        assertEquals(3, scope.pendingCount());
+
+        scope.cancelAll();
+        release.countDown();
+        awaitIdle();
+        drainFx();
+
+        assertEquals(List.of("write"), ran, "l'écriture est menée à terme");
+        assertTrue(delivered.isEmpty(), "aucun callback vers la vue quittée");
+        assertEquals(0, scope.pendingCount());
+    }
+
+    @Test
+    void resultReadyBeforeCancelIsNotDeliveredAfterIt() throws Exception {
+        UiTasks.Scope scope = tasks.newScope("test");
+        List<String> delivered = new ArrayList<>();
+        int[] cancels = {0};
+        scope.onCancel(() -> cancels[0]++);
+
+        scope.load(() -> "stale", delivered::add);
+        awaitIdle();
+        assertEquals(1, fxQueue.size(), "callback en attente du thread FX");
+
+        scope.cancelAll();
+        drainFx();
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, cancels[0]);
+
+        // Le scope sert encore quand la vue revient
+        scope.load(() -> "fresh", delivered::add);
+        awaitIdle();
+        drainFx();
+        assertEquals(List.of("fresh"), delivered);
+    }
+
+    @Test
+    void errorsGoToTheErrorCallbackOnTheFxThread() throws Exception {
+        UiTasks.Scope scope = tasks.newScope("test");
+        List<String> errors = new ArrayList<>();
+        scope.load(() -> { throw new IllegalStateException("base indisponible"); },
+                v -> fail("pas de résultat"), e -> errors.add(e.getMessage()));
+        awaitIdle();
+        assertTrue(errors.isEmpty(), "rien avant le passage FX");
+        drainFx();
+        assertEquals(List.of("base indisponible"), errors);
+    }
+}